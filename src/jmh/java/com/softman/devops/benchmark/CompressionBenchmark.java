@@ -0,0 +1,119 @@
+package com.softman.devops.benchmark;
+
+import com.google.gson.JsonObject;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.service.MeasuresResponseParser;
+import com.softman.devops.service.SonarMetricsService;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Plain versus gzip encoded measures responses from a local stub. {@code fetchMetrics} reports the body bytes the
+ * stub sent per call as the {@code wireBytesPerCall} counter; {@code parse} isolates decoding plus parsing of one
+ * body held in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompressionBenchmark {
+    @Param({"true", "false"})
+    public boolean compression;
+
+    @Param({"10", "500"})
+    public int metricCount;
+
+    private MeasuresStubServer stubServer;
+    private SonarMetricsService service;
+    private SonarMetricsRequest request;
+    private MeasuresResponseParser parser;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String measures = MeasuresStubServer.measuresBody(metricCount);
+        stubServer = new MeasuresStubServer(measures, true);
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .cacheMaxEntries(0)
+                .uncompressedHosts(compression ? Set.of() : Set.of(UpstreamSettings.ALL_HOSTS))
+                .build();
+        service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(10))
+                .jobTimeout(Duration.ofSeconds(30))
+                .upstreamSettings(settings)
+                .build();
+        JsonObject json = new JsonObject();
+        json.addProperty("baseurl", stubServer.baseUrl());
+        json.addProperty("token", "benchmark-token");
+        json.addProperty("component", "bench");
+        json.addProperty("metrics", "metric_0,metric_1");
+        json.addProperty("retries", 0);
+        request = SonarMetricsRequest.fromJson(json);
+        parser = new MeasuresResponseParser(UpstreamSettings.DEFAULT_MAX_RESPONSE_BYTES);
+        byte[] plain = measures.getBytes(StandardCharsets.UTF_8);
+        body = compression ? MeasuresStubServer.gzip(plain) : plain;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        stubServer.close();
+    }
+
+    @Benchmark
+    public List<SonarMetricValue> fetchMetrics(WireBytes wireBytes) throws Exception {
+        long before = stubServer.bytesSent();
+        List<SonarMetricValue> metrics = service.fetchMetricsAsync(request, Instant.now()).get();
+        wireBytes.record(stubServer.bytesSent() - before);
+        return metrics;
+    }
+
+    @Benchmark
+    public List<SonarMetricValue> parse() throws Exception {
+        ByteArrayInputStream raw = new ByteArrayInputStream(body);
+        return parser.parse(compression ? new GZIPInputStream(raw) : raw);
+    }
+
+    /**
+     * Average response body size per call, reported next to the timing results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireBytes {
+        private long calls;
+        private long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            calls = 0;
+            bytes = 0;
+        }
+
+        void record(long sent) {
+            calls++;
+            bytes += sent;
+        }
+
+        public double wireBytesPerCall() {
+            return calls == 0 ? 0 : (double) bytes / calls;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.softman.devops.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.service.MeasuresResponseParser;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Streaming {@link MeasuresResponseParser} versus the previous buffer-to-String plus Gson tree path.
+ * Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MeasuresParserBenchmark {
+    @Param({"10", "200"})
+    public int metricCount;
+
+    @Param({"0", "500"})
+    public int unrelatedEntries;
+
+    private byte[] body;
+    private MeasuresResponseParser streamingParser;
+
+    @Setup
+    public void setUp() {
+        body = buildBody(metricCount, unrelatedEntries).getBytes(StandardCharsets.UTF_8);
+        streamingParser = new MeasuresResponseParser(64L * 1024 * 1024);
+    }
+
+    @Benchmark
+    public List<SonarMetricValue> streaming() throws Exception {
+        return streamingParser.parse(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public List<SonarMetricValue> tree() {
+        return parseTree(new String(body, StandardCharsets.UTF_8));
+    }
+
+    private static String buildBody(int metricCount, int unrelatedEntries) {
+        StringBuilder builder = new StringBuilder("{\"paging\":{\"pageIndex\":1},\"component\":{\"key\":\"bench\",\"periods\":[");
+        for (int i = 0; i < unrelatedEntries; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"index\":").append(i).append(",\"mode\":\"previous_version\",\"date\":\"2024-01-01\"}");
+        }
+        builder.append("],\"measures\":[");
+        for (int i = 0; i < metricCount; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"metric\":\"metric_").append(i)
+                    .append("\",\"value\":\"").append(i * 1.5)
+                    .append("\",\"bestValue\":").append(i % 2 == 0)
+                    .append(",\"periods\":[{\"index\":1,\"value\":\"0.0\"}]}");
+        }
+        return builder.append("]}}").toString();
+    }
+
+    private static List<SonarMetricValue> parseTree(String body) {
+        JsonObject component = JsonParser.parseString(body).getAsJsonObject().getAsJsonObject("component");
+        JsonArray measures = component.getAsJsonArray("measures");
+        List<SonarMetricValue> results = new ArrayList<>();
+        for (JsonElement element : measures) {
+            JsonObject measure = element.getAsJsonObject();
+            String metric = measure.get("metric").getAsString();
+            String value = measure.get("value").getAsString();
+            JsonElement best = measure.get("bestValue");
+            boolean bestValue = best != null && !best.isJsonNull()
+                    && (best.getAsJsonPrimitive().isBoolean() ? best.getAsBoolean()
+                    : Boolean.parseBoolean(best.getAsString().toLowerCase(Locale.ROOT)));
+            results.add(new SonarMetricValue(metric, value, bestValue));
+        }
+        return results;
+    }
+}
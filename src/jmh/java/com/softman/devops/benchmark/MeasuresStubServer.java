@@ -0,0 +1,85 @@
+package com.softman.devops.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local SonarQube stand-in that answers every measures lookup with the same canned body, gzip encoded when the
+ * client accepts it and compression is on. Body bytes written are counted.
+ */
+final class MeasuresStubServer implements AutoCloseable {
+    private final HttpServer httpServer;
+    private final ExecutorService executorService;
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    MeasuresStubServer(String body) throws IOException {
+        this(body, false);
+    }
+
+    MeasuresStubServer(String body, boolean compress) throws IOException {
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        byte[] gzipped = gzip(payload);
+        this.httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.executorService = Executors.newFixedThreadPool(8);
+        this.httpServer.setExecutor(executorService);
+        this.httpServer.createContext("/api/measures/component", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            byte[] response = payload;
+            if (compress && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                response = gzipped;
+            }
+            bytesSent.addAndGet(response.length);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(response);
+            }
+        });
+        this.httpServer.start();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + httpServer.getAddress().getPort();
+    }
+
+    long bytesSent() {
+        return bytesSent.get();
+    }
+
+    static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (GZIPOutputStream outputStream = new GZIPOutputStream(encoded)) {
+            outputStream.write(body);
+        }
+        return encoded.toByteArray();
+    }
+
+    static String measuresBody(int metricCount) {
+        StringBuilder builder = new StringBuilder("{\"component\":{\"key\":\"bench\",\"name\":\"bench\",\"measures\":[");
+        for (int i = 0; i < metricCount; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"metric\":\"metric_").append(i)
+                    .append("\",\"value\":\"").append(i * 1.5)
+                    .append("\",\"bestValue\":").append(i % 2 == 0).append('}');
+        }
+        return builder.append("]}}").toString();
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,99 @@
+package com.softman.devops.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.softman.devops.SoftmanDevOpsServer;
+import com.softman.devops.config.LogLevel;
+import com.softman.devops.config.ServiceConfiguration;
+import com.softman.devops.config.SyntheticSourceSettings;
+import com.softman.devops.service.SyntheticMetricsSource;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Drives {@code /sonar/metrics} over loopback with the synthetic source behind it, so the score is the server's own
+ * cost per request (parsing, connection guard, serialization) without SonarQube or its network round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class ServerThroughputBenchmark {
+    @Param({"on", "latency=exp:2"})
+    public String synthetic;
+
+    @Param({"10"})
+    public int metrics;
+
+    private SoftmanDevOpsServer server;
+    private HttpClient httpClient;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Duration jobTimeout = Duration.ofSeconds(30);
+        ServiceConfiguration configuration = new ServiceConfiguration(port, 1024, Duration.ofSeconds(10), jobTimeout,
+                LogLevel.ERROR, Path.of(System.getProperty("java.io.tmpdir")));
+        Gson gson = new Gson();
+        server = new SoftmanDevOpsServer(configuration,
+                new SyntheticMetricsSource(SyntheticSourceSettings.fromOption(synthetic), jobTimeout), gson);
+        server.start();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + port + "/sonar/metrics"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(payload())))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public int fetchMetrics() throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    private JsonObject payload() {
+        StringBuilder metricKeys = new StringBuilder();
+        for (int i = 0; i < metrics; i++) {
+            if (i > 0) {
+                metricKeys.append(',');
+            }
+            metricKeys.append("metric_").append(i);
+        }
+        JsonObject payload = new JsonObject();
+        payload.addProperty("baseurl", "http://synthetic");
+        payload.addProperty("token", "benchmark-token");
+        payload.addProperty("component", "bench");
+        payload.addProperty("metrics", metricKeys.toString());
+        return payload;
+    }
+}
@@ -0,0 +1,97 @@
+package com.softman.devops.benchmark;
+
+import com.google.gson.JsonObject;
+import com.softman.devops.config.HttpVersionPolicy;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.service.SonarMetricsService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares upstream version policies against a local stub. The JDK stub only speaks HTTP/1.1, so the
+ * HTTP_2 case measures the cost of the h2c upgrade offer plus fallback; point {@code baseUrl} at an
+ * h2c-capable SonarQube proxy to measure multiplexing itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class UpstreamProtocolBenchmark {
+    @Param({"1.1", "2"})
+    public String httpVersion;
+
+    @Param({""})
+    public String baseUrl;
+
+    private static final AtomicInteger COMPONENT_SEQUENCE = new AtomicInteger();
+
+    private MeasuresStubServer stubServer;
+    private SonarMetricsService service;
+    private String target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        target = baseUrl;
+        if (target.isEmpty()) {
+            stubServer = new MeasuresStubServer(MeasuresStubServer.measuresBody(10));
+            target = stubServer.baseUrl();
+        }
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .cacheMaxEntries(0)
+                .httpVersionPolicy(HttpVersionPolicy.fromOption(httpVersion))
+                .build();
+        service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(10))
+                .jobTimeout(Duration.ofSeconds(30))
+                .upstreamSettings(settings)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        if (stubServer != null) {
+            stubServer.close();
+        }
+    }
+
+    @Benchmark
+    public List<SonarMetricValue> fetchMetrics(ThreadRequest threadRequest) throws Exception {
+        return service.fetchMetricsAsync(threadRequest.request, Instant.now()).get();
+    }
+
+    /**
+     * Gives every benchmark thread its own component so identical in-flight calls are not coalesced.
+     */
+    @State(Scope.Thread)
+    public static class ThreadRequest {
+        SonarMetricsRequest request;
+
+        @Setup(Level.Trial)
+        public void setUp(UpstreamProtocolBenchmark benchmark) throws Exception {
+            JsonObject json = new JsonObject();
+            json.addProperty("baseurl", benchmark.target);
+            json.addProperty("token", "benchmark-token");
+            json.addProperty("component", "bench-" + COMPONENT_SEQUENCE.incrementAndGet());
+            json.addProperty("metrics", "metric_0,metric_1");
+            json.addProperty("retries", 0);
+            request = SonarMetricsRequest.fromJson(json);
+        }
+    }
+}
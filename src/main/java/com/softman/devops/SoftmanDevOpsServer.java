@@ -2,17 +2,26 @@ package com.softman.devops;
 
 import com.google.gson.Gson;
 import com.softman.devops.config.ServiceConfiguration;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.handler.BatchJobHandler;
 import com.softman.devops.handler.BatchSonarMetricsHandler;
+import com.softman.devops.handler.ClientDisconnectMonitor;
 import com.softman.devops.handler.SonarMetricsHandler;
-import com.softman.devops.service.SonarMetricsService;
+import com.softman.devops.handler.StatsHandler;
+import com.softman.devops.service.CallLimiter;
+import com.softman.devops.service.MetricsSource;
 import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,26 +34,54 @@ public final class SoftmanDevOpsServer {
     private final AtomicInteger activeRequests = new AtomicInteger();
     private final int maxConnections;
     private final CountDownLatch stopLatch = new CountDownLatch(1);
+    private final MetricsSource metricsSource;
+    private final ClientDisconnectMonitor disconnectMonitor;
+    private final BatchJobHandler jobHandler;
+    private final Duration warmupTimeout;
 
-    public SoftmanDevOpsServer(ServiceConfiguration configuration, SonarMetricsService sonarMetricsService, Gson gson) {
+    public SoftmanDevOpsServer(ServiceConfiguration configuration, MetricsSource metricsSource, Gson gson) {
         Objects.requireNonNull(configuration, "configuration");
-        Objects.requireNonNull(sonarMetricsService, "sonarMetricsService");
+        Objects.requireNonNull(metricsSource, "metricsSource");
         Objects.requireNonNull(gson, "gson");
+        this.metricsSource = metricsSource;
         try {
             this.httpServer = HttpServer.create(new InetSocketAddress(configuration.getPort()), 0);
         } catch (IOException exception) {
             throw new IllegalStateException("Failed to start HTTP server on port " + configuration.getPort(), exception);
         }
         this.maxConnections = configuration.getMaxConnections();
+        this.warmupTimeout = configuration.getRequestTimeout();
         this.executorService = Executors.newCachedThreadPool(new NamedThreadFactory());
         this.httpServer.setExecutor(executorService);
-        this.httpServer.createContext("/sonar/metrics",
-                new SonarMetricsHandler(sonarMetricsService, gson, activeRequests, maxConnections));
-        this.httpServer.createContext("/sonar/metrics_batch",
-                new BatchSonarMetricsHandler(sonarMetricsService, gson, activeRequests, maxConnections));
+        this.disconnectMonitor = new ClientDisconnectMonitor();
+        UpstreamSettings upstreamSettings = configuration.getUpstreamSettings();
+        CallLimiter upstreamCalls = new CallLimiter(upstreamSettings.getMaxUpstreamCalls());
+        this.httpServer.createContext("/sonar/metrics", new SonarMetricsHandler(metricsSource, gson, activeRequests,
+                maxConnections, disconnectMonitor, upstreamCalls));
+        this.httpServer.createContext("/sonar/metrics_batch", new BatchSonarMetricsHandler(metricsSource, gson,
+                activeRequests, maxConnections, disconnectMonitor, upstreamCalls,
+                upstreamSettings.getBatchParallelism(), upstreamSettings.getBatchSchedule()));
+        this.jobHandler = new BatchJobHandler(metricsSource, gson, upstreamCalls,
+                upstreamSettings.getBatchParallelism(), upstreamSettings.getBatchSchedule(),
+                configuration.getJobSettings());
+        this.httpServer.createContext("/sonar/jobs", jobHandler);
+        this.httpServer.createContext("/sonar/stats",
+                new StatsHandler(metricsSource, disconnectMonitor, upstreamCalls, jobHandler, gson));
     }
 
+    /**
+     * Lets the metrics source warm up, waiting at most one request timeout, and then starts accepting requests.
+     */
     public void start() {
+        try {
+            metricsSource.warmUp().get(warmupTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException timeoutException) {
+            LOGGER.warn("Warm-up still running after {} ms, accepting requests anyway", warmupTimeout.toMillis());
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException executionException) {
+            LOGGER.warn("Warm-up failed, accepting requests anyway", executionException.getCause());
+        }
         httpServer.start();
         LOGGER.info("SoftmanDevOps server started on port {}", httpServer.getAddress().getPort());
     }
@@ -52,6 +89,8 @@ public final class SoftmanDevOpsServer {
     public void stop() {
         httpServer.stop(0);
         executorService.shutdownNow();
+        jobHandler.close();
+        metricsSource.close();
         stopLatch.countDown();
         LOGGER.info("SoftmanDevOps server stopped");
     }
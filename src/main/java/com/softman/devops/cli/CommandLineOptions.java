@@ -1,5 +1,8 @@
 package com.softman.devops.cli;
 
+import com.softman.devops.config.JobSettings;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.config.WarmupSettings;
 import java.util.Optional;
 
 public record CommandLineOptions(boolean helpRequested,
@@ -8,5 +11,23 @@ public record CommandLineOptions(boolean helpRequested,
                                  int timeoutSeconds,
                                  int jobTimeoutSeconds,
                                  int logLevelCode,
-                                 Optional<String> logDirectory) {
+                                 Optional<String> logDirectory,
+                                 UpstreamSettings upstreamSettings,
+                                 int snapshotMegabytes,
+                                 WarmupSettings warmupSettings,
+                                 JobSettings jobSettings) {
+
+    /**
+     * Options without the upstream, snapshot, warm-up and job flags, which keep their defaults.
+     */
+    public CommandLineOptions(boolean helpRequested,
+                              Optional<Integer> port,
+                              int maxConnections,
+                              int timeoutSeconds,
+                              int jobTimeoutSeconds,
+                              int logLevelCode,
+                              Optional<String> logDirectory) {
+        this(helpRequested, port, maxConnections, timeoutSeconds, jobTimeoutSeconds, logLevelCode, logDirectory,
+                UpstreamSettings.defaults(), 0, WarmupSettings.none(), JobSettings.defaults());
+    }
 }
@@ -1,9 +1,23 @@
 package com.softman.devops.cli;
 
+import com.softman.devops.config.BackoffStrategy;
+import com.softman.devops.config.BatchSchedule;
+import com.softman.devops.config.HedgePolicy;
+import com.softman.devops.config.HttpVersionPolicy;
+import com.softman.devops.config.JobSettings;
+import com.softman.devops.config.SyntheticSourceSettings;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.config.WarmupSettings;
+import com.softman.devops.service.MetricsSnapshotStore;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public final class CommandLineParser {
     private static final int DEFAULT_MAX_CONNECTIONS = 5;
@@ -56,8 +70,116 @@ public final class CommandLineParser {
         }
 
         Optional<String> logDirectory = Optional.ofNullable(values.get("logdir"));
+        UpstreamSettings upstreamSettings = parseUpstreamSettings(values);
+        int snapshotMegabytes = parseNonNegativeInt(values.get("snapshotmb"), 0, "snapshotmb");
+        if (snapshotMegabytes > MetricsSnapshotStore.MAX_MEGABYTES) {
+            throw new IllegalArgumentException("snapshotmb must not exceed " + MetricsSnapshotStore.MAX_MEGABYTES);
+        }
+        WarmupSettings warmupSettings = parseWarmupSettings(values);
+        JobSettings jobSettings = parseJobSettings(values);
+
+        return new CommandLineOptions(helpRequested, port, maxConnections, timeoutSeconds, jobTimeoutSeconds, logLevel,
+                logDirectory, upstreamSettings, snapshotMegabytes, warmupSettings, jobSettings);
+    }
 
-        return new CommandLineOptions(helpRequested, port, maxConnections, timeoutSeconds, jobTimeoutSeconds, logLevel, logDirectory);
+    private JobSettings parseJobSettings(Map<String, String> values) {
+        int workers = parseInteger(values.get("jobworkers"), JobSettings.DEFAULT_WORKERS, "jobworkers");
+        int queueSize = parseNonNegativeInt(values.get("jobqueue"), JobSettings.DEFAULT_QUEUE_SIZE, "jobqueue");
+        Duration deadline = Duration.ofSeconds(parseInteger(values.get("jobdeadline"),
+                (int) JobSettings.DEFAULT_DEADLINE.toSeconds(), "jobdeadline"));
+        Duration resultTtl = Duration.ofSeconds(parseInteger(values.get("jobttl"),
+                (int) JobSettings.DEFAULT_RESULT_TTL.toSeconds(), "jobttl"));
+        int maxResults = parseInteger(values.get("jobresults"), JobSettings.DEFAULT_MAX_RESULTS, "jobresults");
+        return new JobSettings(workers, queueSize, deadline, resultTtl, maxResults);
+    }
+
+    private WarmupSettings parseWarmupSettings(Map<String, String> values) {
+        String warmup = values.get("warmup");
+        int connectionsPerHost = parseInteger(values.get("warmupconns"),
+                WarmupSettings.DEFAULT_CONNECTIONS_PER_HOST, "warmupconns");
+        Duration keepAliveInterval = Duration.ofSeconds(parseNonNegativeInt(values.get("keepalive"),
+                (int) WarmupSettings.DEFAULT_KEEP_ALIVE_INTERVAL.toSeconds(), "keepalive"));
+        if (warmup == null) {
+            return new WarmupSettings(List.of(), connectionsPerHost, keepAliveInterval);
+        }
+        return new WarmupSettings(new ArrayList<>(parseList(warmup, "warmup")), connectionsPerHost,
+                keepAliveInterval);
+    }
+
+    private UpstreamSettings parseUpstreamSettings(Map<String, String> values) {
+        UpstreamSettings.Builder builder = UpstreamSettings.builder();
+        builder.cacheMaxEntries(parseNonNegativeInt(values.get("cachesize"),
+                UpstreamSettings.DEFAULT_CACHE_MAX_ENTRIES, "cachesize"));
+        builder.cacheTtl(Duration.ofSeconds(parseNonNegativeInt(values.get("cachettl"),
+                (int) UpstreamSettings.DEFAULT_CACHE_TTL.toSeconds(), "cachettl")));
+        builder.maxResponseBytes(1024L * parseInteger(values.get("maxresponsekb"),
+                (int) (UpstreamSettings.DEFAULT_MAX_RESPONSE_BYTES / 1024), "maxresponsekb"));
+        int breakerRate = parseNonNegativeInt(values.get("breakerrate"),
+                UpstreamSettings.DEFAULT_BREAKER_FAILURE_RATE, "breakerrate");
+        if (breakerRate > 100) {
+            throw new IllegalArgumentException("breakerrate must be between 0 and 100");
+        }
+        builder.breakerFailureRate(breakerRate);
+        builder.breakerOpenDuration(Duration.ofSeconds(parseInteger(values.get("breakeropen"),
+                (int) UpstreamSettings.DEFAULT_BREAKER_OPEN_DURATION.toSeconds(), "breakeropen")));
+        builder.retryBudgetPercent(parseNonNegativeInt(values.get("retrybudget"),
+                UpstreamSettings.DEFAULT_RETRY_BUDGET_PERCENT, "retrybudget"));
+        String backoff = values.get("backoff");
+        if (backoff != null) {
+            builder.backoffStrategy(BackoffStrategy.fromOption(backoff));
+        }
+        String hedge = values.get("hedge");
+        if (hedge != null) {
+            builder.hedgePolicy(HedgePolicy.fromOption(hedge));
+        }
+        builder.adaptiveTimeoutFactor(parseNonNegativeDouble(values.get("adaptivetimeout"),
+                UpstreamSettings.DEFAULT_ADAPTIVE_TIMEOUT_FACTOR, "adaptivetimeout"));
+        builder.adaptiveTimeoutFloor(Duration.ofSeconds(parseNonNegativeInt(values.get("timeoutfloor"),
+                (int) UpstreamSettings.DEFAULT_ADAPTIVE_TIMEOUT_FLOOR.toSeconds(), "timeoutfloor")));
+        builder.hostQps(parseNonNegativeInt(values.get("hostqps"), UpstreamSettings.DEFAULT_HOST_QPS, "hostqps"));
+        builder.hostBurst(parseInteger(values.get("hostburst"), UpstreamSettings.DEFAULT_HOST_BURST, "hostburst"));
+        builder.microBatchWindow(Duration.ofMillis(parseNonNegativeInt(values.get("microbatch"),
+                (int) UpstreamSettings.DEFAULT_MICRO_BATCH_WINDOW.toMillis(), "microbatch")));
+        builder.microBatchMaxItems(parseInteger(values.get("microbatchsize"),
+                UpstreamSettings.DEFAULT_MICRO_BATCH_MAX_ITEMS, "microbatchsize"));
+        String noCompress = values.get("nocompress");
+        if (noCompress != null) {
+            builder.uncompressedHosts(parseList(noCompress, "nocompress"));
+        }
+        builder.maxStaleness(Duration.ofSeconds(parseNonNegativeInt(values.get("maxstale"),
+                (int) UpstreamSettings.DEFAULT_MAX_STALENESS.toSeconds(), "maxstale")));
+        builder.staleMaxEntries(parseNonNegativeInt(values.get("stalesize"),
+                UpstreamSettings.DEFAULT_STALE_MAX_ENTRIES, "stalesize"));
+        builder.batchParallelism(parseInteger(values.get("batchparallel"),
+                UpstreamSettings.DEFAULT_BATCH_PARALLELISM, "batchparallel"));
+        builder.maxUpstreamCalls(parseNonNegativeInt(values.get("maxupstream"),
+                UpstreamSettings.DEFAULT_MAX_UPSTREAM_CALLS, "maxupstream"));
+        String batchSchedule = values.get("batchschedule");
+        if (batchSchedule != null) {
+            builder.batchSchedule(BatchSchedule.fromOption(batchSchedule));
+        }
+        String synthetic = values.get("synthetic");
+        if (synthetic != null) {
+            builder.syntheticSource(SyntheticSourceSettings.fromOption(synthetic));
+        }
+        String httpVersion = values.get("httpversion");
+        if (httpVersion != null) {
+            builder.httpVersionPolicy(HttpVersionPolicy.fromOption(httpVersion));
+        }
+        return builder.build();
+    }
+
+    private Set<String> parseList(String rawValue, String optionKey) {
+        Set<String> entries = new LinkedHashSet<>();
+        for (String entry : rawValue.split(",")) {
+            if (!entry.isBlank()) {
+                entries.add(entry.trim());
+            }
+        }
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException(optionKey + " must list at least one value");
+        }
+        return entries;
     }
 
     private Optional<Integer> parseInteger(String rawValue) {
@@ -86,6 +208,36 @@ public final class CommandLineParser {
         }
     }
 
+    private int parseNonNegativeInt(String rawValue, int defaultValue, String optionKey) {
+        if (rawValue == null) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(rawValue);
+            if (value < 0) {
+                throw new IllegalArgumentException(optionKey + " must not be negative");
+            }
+            return value;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(optionKey + " must be a non-negative integer", ex);
+        }
+    }
+
+    private double parseNonNegativeDouble(String rawValue, double defaultValue, String optionKey) {
+        if (rawValue == null) {
+            return defaultValue;
+        }
+        try {
+            double value = Double.parseDouble(rawValue);
+            if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+                throw new IllegalArgumentException(optionKey + " must be a non-negative number");
+            }
+            return value;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(optionKey + " must be a non-negative number", ex);
+        }
+    }
+
     public String buildHelpMessage() {
         return String.join(System.lineSeparator(),
                 "SoftmanDevOps service options:",
@@ -95,7 +247,39 @@ public final class CommandLineParser {
                 "  --timeout <seconds>   Per-call timeout in seconds (default 60).",
                 "  --jobtimeout <seconds> Max total job duration in seconds (default 180).",
                 "  --loglevel <1|2|3>    1=ERROR, 2=INFO, 3=DEBUG (default 2).",
-                "  --logdir <path>       Directory for log files (default current directory)."
+                "  --logdir <path>       Directory for log files (default current directory).",
+                "  --cachesize <number>  Max cached components, 0 disables (default 1000).",
+                "  --cachettl <seconds>  Cached response lifetime in seconds, 0 disables (default 30).",
+                "  --httpversion <1.1|2> Upstream HTTP version; 2 negotiates h2/h2c with 1.1 fallback (default 1.1).",
+                "  --maxresponsekb <kb>  Largest SonarQube response body accepted, in KiB (default 8192).",
+                "  --breakerrate <percent> Failure rate that opens a host's circuit, 0 disables (default 50).",
+                "  --breakeropen <seconds> How long an open circuit fails fast before probing (default 30).",
+                "  --backoff <policy>    Retry backoff: full, decorrelated, fixed or exponential (default full).",
+                "  --retrybudget <percent> Retries per host as a share of first attempts over 10s, 0 disables (default 20).",
+                "  --hedge <off|ms|pNN>  Send a second call when the first is slower than a delay or host percentile (default off).",
+                "  --adaptivetimeout <factor> Per-host call timeout = p99 latency x factor, capped by --timeout, e.g. 3; 0 disables (default 0).",
+                "  --timeoutfloor <seconds> Lowest adaptive call timeout (default 2).",
+                "  --hostqps <number>    Outbound calls per second per SonarQube host, 0 means unlimited (default 0).",
+                "  --hostburst <number>  Calls a host may receive at once before --hostqps applies (default 10).",
+                "  --microbatch <ms>     Window for merging concurrent /sonar/metrics calls into one search, 0 disables (default 0).",
+                "  --microbatchsize <number> Requests that flush a micro-batch early, at most 100 (default 20).",
+                "  --nocompress <urls>   Comma-separated base URLs to fetch without gzip/deflate, * for all.",
+                "  --maxstale <seconds>  Serve the last good answer this old when SonarQube fails, 0 disables (default 0).",
+                "  --stalesize <number>  Max answers kept for --maxstale (default 1000).",
+                "  --snapshotmb <number> Size cap of the metrics snapshot in the log directory, at most 2047, 0 disables (default 0).",
+                "  --batchparallel <number> Items of one batch request looked up at the same time (default 4).",
+                "  --maxupstream <number> Lookups running at once across all requests, 0 means unlimited (default 64).",
+                "  --batchschedule <policy> Order and time budget of batch lookups: whole, fair, edf or shortest (default whole).",
+                "  --jobworkers <number> Background batch jobs (POST /sonar/jobs) running at once (default 2).",
+                "  --jobqueue <number>   Background jobs waiting to start before new ones are rejected (default 20).",
+                "  --jobdeadline <seconds> Max duration of one background job in seconds (default 3600).",
+                "  --jobttl <seconds>    How long a finished job's results are kept (default 3600).",
+                "  --jobresults <number> Finished jobs kept at most, oldest evicted first (default 100).",
+                "  --warmup <urls>       Comma-separated SonarQube base URLs to connect to before accepting requests.",
+                "  --warmupconns <number> Connections opened and kept warm per --warmup host, at most 64 (default 2).",
+                "  --keepalive <seconds> Interval of keep-alive probes to --warmup hosts, 0 disables (default 20).",
+                "  --synthetic <spec>    Load testing only: answer from an in-process fake SonarQube, e.g. on or",
+                "                        latency=5-50,errors=1,valuebytes=16 (latency also <ms>, exp:<mean ms> or exp:<min>-<mean>)."
         );
     }
 }
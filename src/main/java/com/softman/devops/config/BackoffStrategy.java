@@ -0,0 +1,33 @@
+package com.softman.devops.config;
+
+import java.util.Locale;
+
+/**
+ * How the delay before a retry is chosen. The jittered strategies spread retries from concurrent clients apart.
+ */
+public enum BackoffStrategy {
+    EXPONENTIAL("exponential"),
+    FULL_JITTER("full"),
+    DECORRELATED_JITTER("decorrelated"),
+    FIXED("fixed");
+
+    private final String option;
+
+    BackoffStrategy(String option) {
+        this.option = option;
+    }
+
+    public static BackoffStrategy fromOption(String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (BackoffStrategy strategy : values()) {
+            if (strategy.option.equals(normalized)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported backoff policy: " + value);
+    }
+
+    public String getOption() {
+        return option;
+    }
+}
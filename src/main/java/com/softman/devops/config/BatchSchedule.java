@@ -0,0 +1,36 @@
+package com.softman.devops.config;
+
+import java.util.Locale;
+
+/**
+ * How the calls of one batch share its job deadline. {@link #WHOLE_DEADLINE} starts them in order, each with the whole
+ * job deadline, {@link #FAIR_SHARE} gives every call an equal slice of the time left, {@link #EARLIEST_DEADLINE} lets
+ * the calls of the batch closest to its deadline go first when batches wait for the shared upstream cap, and
+ * {@link #SHORTEST_LATENCY} starts the calls expected to answer soonest first.
+ */
+public enum BatchSchedule {
+    WHOLE_DEADLINE("whole"),
+    FAIR_SHARE("fair"),
+    EARLIEST_DEADLINE("edf"),
+    SHORTEST_LATENCY("shortest");
+
+    private final String option;
+
+    BatchSchedule(String option) {
+        this.option = option;
+    }
+
+    public static BatchSchedule fromOption(String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        for (BatchSchedule schedule : values()) {
+            if (schedule.option.equals(normalized)) {
+                return schedule;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported batch schedule: " + value);
+    }
+
+    public String getOption() {
+        return option;
+    }
+}
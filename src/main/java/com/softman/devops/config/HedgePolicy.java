@@ -0,0 +1,79 @@
+package com.softman.devops.config;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * When a second, identical SonarQube call is sent while the first has not answered: never, after a fixed delay, or
+ * after the host's observed latency percentile.
+ */
+public final class HedgePolicy {
+    private static final HedgePolicy OFF = new HedgePolicy(null, 0);
+
+    private final Duration fixedDelay;
+    private final int percentile;
+
+    private HedgePolicy(Duration fixedDelay, int percentile) {
+        this.fixedDelay = fixedDelay;
+        this.percentile = percentile;
+    }
+
+    public static HedgePolicy off() {
+        return OFF;
+    }
+
+    public static HedgePolicy fixedDelay(Duration delay) {
+        if (delay == null || delay.isNegative() || delay.isZero()) {
+            throw new IllegalArgumentException("hedge delay must be positive");
+        }
+        return new HedgePolicy(delay, 0);
+    }
+
+    public static HedgePolicy percentile(int percentile) {
+        if (percentile < 1 || percentile > 99) {
+            throw new IllegalArgumentException("hedge percentile must be between 1 and 99");
+        }
+        return new HedgePolicy(null, percentile);
+    }
+
+    /**
+     * Parses {@code off}, a delay in milliseconds such as {@code 250}, or a percentile such as {@code p95}.
+     */
+    public static HedgePolicy fromOption(String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        if ("off".equals(normalized)) {
+            return off();
+        }
+        try {
+            if (normalized.startsWith("p")) {
+                return percentile(Integer.parseInt(normalized.substring(1)));
+            }
+            return fixedDelay(Duration.ofMillis(Long.parseLong(normalized)));
+        } catch (NumberFormatException numberFormatException) {
+            throw new IllegalArgumentException("hedge must be off, a delay in ms or pNN: " + value,
+                    numberFormatException);
+        }
+    }
+
+    public boolean isEnabled() {
+        return fixedDelay != null || percentile > 0;
+    }
+
+    public Optional<Duration> getFixedDelay() {
+        return Optional.ofNullable(fixedDelay);
+    }
+
+    public OptionalInt getPercentile() {
+        return percentile > 0 ? OptionalInt.of(percentile) : OptionalInt.empty();
+    }
+
+    @Override
+    public String toString() {
+        if (fixedDelay != null) {
+            return fixedDelay.toMillis() + "ms";
+        }
+        return percentile > 0 ? "p" + percentile : "off";
+    }
+}
@@ -0,0 +1,29 @@
+package com.softman.devops.config;
+
+import java.net.http.HttpClient;
+
+/**
+ * Upstream HTTP protocol policy. HTTP_2 negotiates h2 (ALPN) or h2c (upgrade) and falls back to 1.1.
+ */
+public enum HttpVersionPolicy {
+    HTTP_1_1(HttpClient.Version.HTTP_1_1),
+    HTTP_2(HttpClient.Version.HTTP_2);
+
+    private final HttpClient.Version clientVersion;
+
+    HttpVersionPolicy(HttpClient.Version clientVersion) {
+        this.clientVersion = clientVersion;
+    }
+
+    public static HttpVersionPolicy fromOption(String value) {
+        return switch (value) {
+            case "1.1" -> HTTP_1_1;
+            case "2" -> HTTP_2;
+            default -> throw new IllegalArgumentException("Unsupported HTTP version: " + value);
+        };
+    }
+
+    public HttpClient.Version getClientVersion() {
+        return clientVersion;
+    }
+}
@@ -0,0 +1,84 @@
+package com.softman.devops.config;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Background batch jobs: how many run at once, how many may wait to start, how long one may run, and how long
+ * and how many finished jobs are kept for their results to be collected.
+ */
+public final class JobSettings {
+    public static final int DEFAULT_WORKERS = 2;
+    public static final int DEFAULT_QUEUE_SIZE = 20;
+    public static final Duration DEFAULT_DEADLINE = Duration.ofHours(1);
+    public static final Duration DEFAULT_RESULT_TTL = Duration.ofHours(1);
+    public static final int DEFAULT_MAX_RESULTS = 100;
+
+    private final int workers;
+    private final int queueSize;
+    private final Duration deadline;
+    private final Duration resultTtl;
+    private final int maxResults;
+
+    /**
+     * @param queueSize  jobs accepted while {@code workers} jobs run, 0 to reject them
+     * @param deadline   how long a job may run once it starts
+     * @param resultTtl  how long a finished job is kept after it finishes
+     * @param maxResults finished jobs kept at most; the oldest are evicted first
+     */
+    public JobSettings(int workers, int queueSize, Duration deadline, Duration resultTtl, int maxResults) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("jobworkers must be positive");
+        }
+        if (queueSize < 0) {
+            throw new IllegalArgumentException("jobqueue must not be negative");
+        }
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("jobresults must be positive");
+        }
+        this.workers = workers;
+        this.queueSize = queueSize;
+        this.deadline = requirePositive(deadline, "deadline");
+        this.resultTtl = requirePositive(resultTtl, "resultTtl");
+        this.maxResults = maxResults;
+    }
+
+    public static JobSettings defaults() {
+        return new JobSettings(DEFAULT_WORKERS, DEFAULT_QUEUE_SIZE, DEFAULT_DEADLINE, DEFAULT_RESULT_TTL,
+                DEFAULT_MAX_RESULTS);
+    }
+
+    private static Duration requirePositive(Duration duration, String fieldName) {
+        Objects.requireNonNull(duration, fieldName);
+        if (duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException(fieldName + " must be positive");
+        }
+        return duration;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    public Duration getResultTtl() {
+        return resultTtl;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    @Override
+    public String toString() {
+        return "workers=" + workers + ", queue=" + queueSize + ", deadline=" + deadline.toSeconds() + "s, resultTtl="
+                + resultTtl.toSeconds() + "s, maxResults=" + maxResults;
+    }
+}
@@ -5,12 +5,18 @@ import java.time.Duration;
 import java.util.Objects;
 
 public final class ServiceConfiguration {
+    public static final String SNAPSHOT_FILE_NAME = "softman-metrics.snapshot";
+
     private final int port;
     private final int maxConnections;
     private final Duration requestTimeout;
     private final Duration jobTimeout;
     private final LogLevel logLevel;
     private final Path logDirectory;
+    private final UpstreamSettings upstreamSettings;
+    private final long snapshotMaxBytes;
+    private final WarmupSettings warmupSettings;
+    private final JobSettings jobSettings;
 
     public ServiceConfiguration(int port,
                                 int maxConnections,
@@ -18,12 +24,37 @@ public final class ServiceConfiguration {
                                 Duration jobTimeout,
                                 LogLevel logLevel,
                                 Path logDirectory) {
-        this.port = validatePort(port);
-        this.maxConnections = validateMaxConnections(maxConnections);
-        this.requestTimeout = validateDuration(requestTimeout, "requestTimeout");
-        this.jobTimeout = validateDuration(jobTimeout, "jobTimeout");
-        this.logLevel = Objects.requireNonNull(logLevel, "logLevel");
-        this.logDirectory = Objects.requireNonNull(logDirectory, "logDirectory");
+        this(builder()
+                .port(port)
+                .maxConnections(maxConnections)
+                .requestTimeout(requestTimeout)
+                .jobTimeout(jobTimeout)
+                .logLevel(logLevel)
+                .logDirectory(logDirectory));
+    }
+
+    private ServiceConfiguration(Builder builder) {
+        this.port = validatePort(builder.port);
+        this.maxConnections = validateMaxConnections(builder.maxConnections);
+        this.requestTimeout = validateDuration(builder.requestTimeout, "requestTimeout");
+        this.jobTimeout = validateDuration(builder.jobTimeout, "jobTimeout");
+        this.logLevel = Objects.requireNonNull(builder.logLevel, "logLevel");
+        this.logDirectory = Objects.requireNonNull(builder.logDirectory, "logDirectory");
+        this.upstreamSettings = Objects.requireNonNull(builder.upstreamSettings, "upstreamSettings");
+        if (builder.snapshotMaxBytes < 0) {
+            throw new IllegalArgumentException("snapshotMaxBytes must not be negative");
+        }
+        this.snapshotMaxBytes = builder.snapshotMaxBytes;
+        this.warmupSettings = Objects.requireNonNull(builder.warmupSettings, "warmupSettings");
+        this.jobSettings = Objects.requireNonNull(builder.jobSettings, "jobSettings");
+    }
+
+    /**
+     * Port, connection limit, timeouts, log level and log directory must be set; the settings objects default to
+     * {@link UpstreamSettings#defaults()}, no snapshot, no warm-up and {@link JobSettings#defaults()}.
+     */
+    public static Builder builder() {
+        return new Builder();
     }
 
     private int validatePort(int value) {
@@ -71,4 +102,110 @@ public final class ServiceConfiguration {
     public Path getLogDirectory() {
         return logDirectory;
     }
+
+    public UpstreamSettings getUpstreamSettings() {
+        return upstreamSettings;
+    }
+
+    public long getSnapshotMaxBytes() {
+        return snapshotMaxBytes;
+    }
+
+    public WarmupSettings getWarmupSettings() {
+        return warmupSettings;
+    }
+
+    public JobSettings getJobSettings() {
+        return jobSettings;
+    }
+
+    /**
+     * The metrics snapshot only pays off when there is a response cache to warm.
+     */
+    public boolean isSnapshotEnabled() {
+        return snapshotMaxBytes > 0 && upstreamSettings.isCacheEnabled();
+    }
+
+    public Path getSnapshotFile() {
+        return logDirectory.resolve(SNAPSHOT_FILE_NAME);
+    }
+
+    public static final class Builder {
+        private int port;
+        private int maxConnections;
+        private Duration requestTimeout;
+        private Duration jobTimeout;
+        private LogLevel logLevel;
+        private Path logDirectory;
+        private UpstreamSettings upstreamSettings = UpstreamSettings.defaults();
+        private long snapshotMaxBytes;
+        private WarmupSettings warmupSettings = WarmupSettings.none();
+        private JobSettings jobSettings = JobSettings.defaults();
+
+        private Builder() {
+        }
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        public Builder jobTimeout(Duration jobTimeout) {
+            this.jobTimeout = jobTimeout;
+            return this;
+        }
+
+        public Builder logLevel(LogLevel logLevel) {
+            this.logLevel = logLevel;
+            return this;
+        }
+
+        public Builder logDirectory(Path logDirectory) {
+            this.logDirectory = logDirectory;
+            return this;
+        }
+
+        public Builder upstreamSettings(UpstreamSettings upstreamSettings) {
+            this.upstreamSettings = upstreamSettings;
+            return this;
+        }
+
+        /**
+         * Size cap of the metrics snapshot kept next to the logs, 0 to run without one.
+         */
+        public Builder snapshotMaxBytes(long snapshotMaxBytes) {
+            this.snapshotMaxBytes = snapshotMaxBytes;
+            return this;
+        }
+
+        /**
+         * SonarQube hosts to connect to before accepting requests and to keep connections open to.
+         */
+        public Builder warmupSettings(WarmupSettings warmupSettings) {
+            this.warmupSettings = warmupSettings;
+            return this;
+        }
+
+        /**
+         * Workers, deadline and result retention of background batch jobs.
+         */
+        public Builder jobSettings(JobSettings jobSettings) {
+            this.jobSettings = jobSettings;
+            return this;
+        }
+
+        public ServiceConfiguration build() {
+            return new ServiceConfiguration(this);
+        }
+    }
 }
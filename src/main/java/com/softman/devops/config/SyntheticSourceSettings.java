@@ -0,0 +1,152 @@
+package com.softman.devops.config;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Behaviour of the in-process synthetic metrics source used for load testing the server without SonarQube: how long
+ * an answer takes, how often it fails, and how large each metric value is.
+ */
+public final class SyntheticSourceSettings {
+    public static final int DEFAULT_VALUE_BYTES = 8;
+
+    public enum LatencyShape {
+        /**
+         * Always {@code min}.
+         */
+        FIXED,
+        /**
+         * Uniformly between {@code min} and {@code max}.
+         */
+        UNIFORM,
+        /**
+         * {@code min} plus an exponentially distributed wait whose mean is a tenth of {@code max - min}, capped at
+         * {@code max}.
+         */
+        EXPONENTIAL
+    }
+
+    private final LatencyShape latencyShape;
+    private final Duration minLatency;
+    private final Duration maxLatency;
+    private final int errorPercent;
+    private final int valueBytes;
+
+    public SyntheticSourceSettings(LatencyShape latencyShape,
+                                   Duration minLatency,
+                                   Duration maxLatency,
+                                   int errorPercent,
+                                   int valueBytes) {
+        this.latencyShape = Objects.requireNonNull(latencyShape, "latencyShape");
+        this.minLatency = Objects.requireNonNull(minLatency, "minLatency");
+        this.maxLatency = Objects.requireNonNull(maxLatency, "maxLatency");
+        if (minLatency.isNegative() || maxLatency.compareTo(minLatency) < 0) {
+            throw new IllegalArgumentException("synthetic latency must not be negative and max must not be below min");
+        }
+        if (errorPercent < 0 || errorPercent > 100) {
+            throw new IllegalArgumentException("synthetic errors must be between 0 and 100");
+        }
+        if (valueBytes <= 0) {
+            throw new IllegalArgumentException("synthetic valuebytes must be positive");
+        }
+        this.errorPercent = errorPercent;
+        this.valueBytes = valueBytes;
+    }
+
+    public static SyntheticSourceSettings instant() {
+        return new SyntheticSourceSettings(LatencyShape.FIXED, Duration.ZERO, Duration.ZERO, 0, DEFAULT_VALUE_BYTES);
+    }
+
+    /**
+     * Parses comma-separated {@code key=value} pairs; unset keys keep the {@link #instant()} defaults.
+     * <ul>
+     *     <li>{@code latency}: {@code <ms>}, {@code <min>-<max>} (uniform), {@code exp:<mean>} or
+     *     {@code exp:<min>-<mean>} (never below {@code min}), exponential ones capped at ten times their mean's
+     *     distance from {@code min}</li>
+     *     <li>{@code errors}: percentage of calls failing with a 503</li>
+     *     <li>{@code valuebytes}: length of every metric value</li>
+     * </ul>
+     * {@code on} alone means an instant, error-free source.
+     */
+    public static SyntheticSourceSettings fromOption(String value) {
+        LatencyShape shape = LatencyShape.FIXED;
+        Duration min = Duration.ZERO;
+        Duration max = Duration.ZERO;
+        int errors = 0;
+        int valueBytes = DEFAULT_VALUE_BYTES;
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        if ("on".equals(normalized)) {
+            return instant();
+        }
+        try {
+            for (String pair : normalized.split(",")) {
+                String[] parts = pair.trim().split("=", 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("synthetic expects key=value pairs: " + value);
+                }
+                String setting = parts[1].trim();
+                switch (parts[0].trim()) {
+                    case "latency" -> {
+                        if (setting.startsWith("exp:")) {
+                            String[] bounds = setting.substring(4).split("-", 2);
+                            shape = LatencyShape.EXPONENTIAL;
+                            min = bounds.length == 2 ? Duration.ofMillis(Long.parseLong(bounds[0])) : Duration.ZERO;
+                            Duration mean = Duration.ofMillis(Long.parseLong(bounds[bounds.length - 1]));
+                            if (mean.compareTo(min) < 0) {
+                                throw new IllegalArgumentException("synthetic exp mean must not be below its min");
+                            }
+                            max = min.plus(mean.minus(min).multipliedBy(10));
+                        } else if (setting.contains("-")) {
+                            String[] bounds = setting.split("-", 2);
+                            shape = LatencyShape.UNIFORM;
+                            min = Duration.ofMillis(Long.parseLong(bounds[0]));
+                            max = Duration.ofMillis(Long.parseLong(bounds[1]));
+                        } else {
+                            shape = LatencyShape.FIXED;
+                            min = Duration.ofMillis(Long.parseLong(setting));
+                            max = min;
+                        }
+                    }
+                    case "errors" -> errors = Integer.parseInt(setting);
+                    case "valuebytes" -> valueBytes = Integer.parseInt(setting);
+                    default -> throw new IllegalArgumentException("Unknown synthetic setting: " + parts[0].trim());
+                }
+            }
+        } catch (NumberFormatException numberFormatException) {
+            throw new IllegalArgumentException("synthetic settings must be numeric: " + value, numberFormatException);
+        }
+        return new SyntheticSourceSettings(shape, min, max, errors, valueBytes);
+    }
+
+    public LatencyShape getLatencyShape() {
+        return latencyShape;
+    }
+
+    public Duration getMinLatency() {
+        return minLatency;
+    }
+
+    public Duration getMaxLatency() {
+        return maxLatency;
+    }
+
+    public int getErrorPercent() {
+        return errorPercent;
+    }
+
+    public int getValueBytes() {
+        return valueBytes;
+    }
+
+    @Override
+    public String toString() {
+        String latency = switch (latencyShape) {
+            case FIXED -> minLatency.toMillis() + "ms";
+            case UNIFORM -> minLatency.toMillis() + "-" + maxLatency.toMillis() + "ms";
+            case EXPONENTIAL -> "exp:" + (minLatency.isZero() ? "" : minLatency.toMillis() + "-")
+                    + minLatency.plus(maxLatency.minus(minLatency).dividedBy(10)).toMillis() + "ms";
+        };
+        return "latency=" + latency + ", errors=" + errorPercent + "%, valuebytes=" + valueBytes;
+    }
+}
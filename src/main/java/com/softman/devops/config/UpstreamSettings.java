@@ -0,0 +1,501 @@
+package com.softman.devops.config;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tuning knobs for how the service talks to SonarQube, grouped so new options do not widen every constructor.
+ */
+public final class UpstreamSettings {
+    public static final int DEFAULT_CACHE_MAX_ENTRIES = 1000;
+    public static final Duration DEFAULT_CACHE_TTL = Duration.ofSeconds(30);
+    public static final HttpVersionPolicy DEFAULT_HTTP_VERSION = HttpVersionPolicy.HTTP_1_1;
+    public static final long DEFAULT_MAX_RESPONSE_BYTES = 8L * 1024 * 1024;
+    public static final int DEFAULT_BREAKER_FAILURE_RATE = 50;
+    public static final int DEFAULT_BREAKER_WINDOW_SIZE = 20;
+    public static final int DEFAULT_BREAKER_MINIMUM_CALLS = 10;
+    public static final Duration DEFAULT_BREAKER_OPEN_DURATION = Duration.ofSeconds(30);
+    public static final BackoffStrategy DEFAULT_BACKOFF_STRATEGY = BackoffStrategy.FULL_JITTER;
+    public static final Duration DEFAULT_BACKOFF_BASE = Duration.ofMillis(500);
+    public static final Duration DEFAULT_BACKOFF_CAP = Duration.ofSeconds(5);
+    public static final int DEFAULT_RETRY_BUDGET_PERCENT = 20;
+    public static final int DEFAULT_RETRY_BUDGET_MIN_RETRIES = 10;
+    public static final Duration DEFAULT_RETRY_BUDGET_WINDOW = Duration.ofSeconds(10);
+    public static final HedgePolicy DEFAULT_HEDGE_POLICY = HedgePolicy.off();
+    /**
+     * Off by default, so {@code --timeout} stays the per-call timeout unless learned timeouts are asked for.
+     */
+    public static final double DEFAULT_ADAPTIVE_TIMEOUT_FACTOR = 0;
+    public static final Duration DEFAULT_ADAPTIVE_TIMEOUT_FLOOR = Duration.ofSeconds(2);
+    public static final int DEFAULT_HOST_QPS = 0;
+    public static final int DEFAULT_HOST_BURST = 10;
+    public static final Duration DEFAULT_MICRO_BATCH_WINDOW = Duration.ZERO;
+    public static final int DEFAULT_MICRO_BATCH_MAX_ITEMS = 20;
+    public static final int MAX_MICRO_BATCH_ITEMS = 100;
+    public static final int DEFAULT_STALE_MAX_ENTRIES = 1000;
+    public static final Duration DEFAULT_MAX_STALENESS = Duration.ZERO;
+    public static final int DEFAULT_BATCH_PARALLELISM = 4;
+    public static final int DEFAULT_MAX_UPSTREAM_CALLS = 64;
+    public static final BatchSchedule DEFAULT_BATCH_SCHEDULE = BatchSchedule.WHOLE_DEADLINE;
+    /**
+     * Entry of {@link Builder#uncompressedHosts} that turns off response compression for every host.
+     */
+    public static final String ALL_HOSTS = "*";
+
+    private final int cacheMaxEntries;
+    private final Duration cacheTtl;
+    private final HttpVersionPolicy httpVersionPolicy;
+    private final long maxResponseBytes;
+    private final int breakerFailureRate;
+    private final int breakerWindowSize;
+    private final int breakerMinimumCalls;
+    private final Duration breakerOpenDuration;
+    private final BackoffStrategy backoffStrategy;
+    private final Duration backoffBase;
+    private final Duration backoffCap;
+    private final int retryBudgetPercent;
+    private final int retryBudgetMinRetries;
+    private final Duration retryBudgetWindow;
+    private final HedgePolicy hedgePolicy;
+    private final double adaptiveTimeoutFactor;
+    private final Duration adaptiveTimeoutFloor;
+    private final int hostQps;
+    private final int hostBurst;
+    private final Duration microBatchWindow;
+    private final int microBatchMaxItems;
+    private final Set<String> uncompressedHosts;
+    private final int staleMaxEntries;
+    private final Duration maxStaleness;
+    private final Optional<SyntheticSourceSettings> syntheticSource;
+    private final int batchParallelism;
+    private final int maxUpstreamCalls;
+    private final BatchSchedule batchSchedule;
+
+    private UpstreamSettings(Builder builder) {
+        this.cacheMaxEntries = validateNonNegative(builder.cacheMaxEntries, "cacheMaxEntries");
+        this.cacheTtl = validateNonNegative(builder.cacheTtl, "cacheTtl");
+        this.httpVersionPolicy = Objects.requireNonNull(builder.httpVersionPolicy, "httpVersionPolicy");
+        this.maxResponseBytes = validatePositive(builder.maxResponseBytes, "maxResponseBytes");
+        if (builder.breakerFailureRate < 0 || builder.breakerFailureRate > 100) {
+            throw new IllegalArgumentException("breakerFailureRate must be between 0 and 100");
+        }
+        this.breakerFailureRate = builder.breakerFailureRate;
+        this.breakerWindowSize = validatePositive(builder.breakerWindowSize, "breakerWindowSize");
+        this.breakerMinimumCalls = validatePositive(builder.breakerMinimumCalls, "breakerMinimumCalls");
+        if (breakerMinimumCalls > breakerWindowSize) {
+            throw new IllegalArgumentException("breakerMinimumCalls must not exceed breakerWindowSize");
+        }
+        this.breakerOpenDuration = validateNonNegative(builder.breakerOpenDuration, "breakerOpenDuration");
+        if (breakerOpenDuration.isZero()) {
+            throw new IllegalArgumentException("breakerOpenDuration must be positive");
+        }
+        this.backoffStrategy = Objects.requireNonNull(builder.backoffStrategy, "backoffStrategy");
+        this.backoffBase = validateNonNegative(builder.backoffBase, "backoffBase");
+        this.backoffCap = validateNonNegative(builder.backoffCap, "backoffCap");
+        if (backoffBase.isZero() || backoffCap.compareTo(backoffBase) < 0) {
+            throw new IllegalArgumentException("backoffBase must be positive and not exceed backoffCap");
+        }
+        this.retryBudgetPercent = validateNonNegative(builder.retryBudgetPercent, "retryBudgetPercent");
+        this.retryBudgetMinRetries = validateNonNegative(builder.retryBudgetMinRetries, "retryBudgetMinRetries");
+        this.retryBudgetWindow = validateNonNegative(builder.retryBudgetWindow, "retryBudgetWindow");
+        if (retryBudgetWindow.toSeconds() < 1) {
+            throw new IllegalArgumentException("retryBudgetWindow must be at least one second");
+        }
+        this.hedgePolicy = Objects.requireNonNull(builder.hedgePolicy, "hedgePolicy");
+        if (builder.adaptiveTimeoutFactor < 0 || Double.isNaN(builder.adaptiveTimeoutFactor)
+                || Double.isInfinite(builder.adaptiveTimeoutFactor)) {
+            throw new IllegalArgumentException("adaptiveTimeoutFactor must be a non-negative number");
+        }
+        this.adaptiveTimeoutFactor = builder.adaptiveTimeoutFactor;
+        this.adaptiveTimeoutFloor = validateNonNegative(builder.adaptiveTimeoutFloor, "adaptiveTimeoutFloor");
+        this.hostQps = validateNonNegative(builder.hostQps, "hostQps");
+        this.hostBurst = validatePositive(builder.hostBurst, "hostBurst");
+        this.microBatchWindow = validateNonNegative(builder.microBatchWindow, "microBatchWindow");
+        this.microBatchMaxItems = validatePositive(builder.microBatchMaxItems, "microBatchMaxItems");
+        if (microBatchMaxItems > MAX_MICRO_BATCH_ITEMS) {
+            throw new IllegalArgumentException("microBatchMaxItems must not exceed " + MAX_MICRO_BATCH_ITEMS);
+        }
+        this.uncompressedHosts = Objects.requireNonNull(builder.uncompressedHosts, "uncompressedHosts").stream()
+                .map(UpstreamSettings::normalizeHost)
+                .collect(Collectors.toUnmodifiableSet());
+        this.staleMaxEntries = validateNonNegative(builder.staleMaxEntries, "staleMaxEntries");
+        this.maxStaleness = validateNonNegative(builder.maxStaleness, "maxStaleness");
+        this.syntheticSource = Objects.requireNonNull(builder.syntheticSource, "syntheticSource");
+        this.batchParallelism = validatePositive(builder.batchParallelism, "batchParallelism");
+        this.maxUpstreamCalls = validateNonNegative(builder.maxUpstreamCalls, "maxUpstreamCalls");
+        this.batchSchedule = Objects.requireNonNull(builder.batchSchedule, "batchSchedule");
+    }
+
+    public static UpstreamSettings defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static int validateNonNegative(int value, String fieldName) {
+        if (value < 0) {
+            throw new IllegalArgumentException(fieldName + " must not be negative");
+        }
+        return value;
+    }
+
+    private static int validatePositive(int value, String fieldName) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(fieldName + " must be positive");
+        }
+        return value;
+    }
+
+    private static long validatePositive(long value, String fieldName) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(fieldName + " must be positive");
+        }
+        return value;
+    }
+
+    private static Duration validateNonNegative(Duration duration, String fieldName) {
+        Objects.requireNonNull(duration, fieldName);
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException(fieldName + " must not be negative");
+        }
+        return duration;
+    }
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheMaxEntries > 0 && !cacheTtl.isZero();
+    }
+
+    public HttpVersionPolicy getHttpVersionPolicy() {
+        return httpVersionPolicy;
+    }
+
+    public long getMaxResponseBytes() {
+        return maxResponseBytes;
+    }
+
+    public int getBreakerFailureRate() {
+        return breakerFailureRate;
+    }
+
+    public int getBreakerWindowSize() {
+        return breakerWindowSize;
+    }
+
+    public int getBreakerMinimumCalls() {
+        return breakerMinimumCalls;
+    }
+
+    public Duration getBreakerOpenDuration() {
+        return breakerOpenDuration;
+    }
+
+    public BackoffStrategy getBackoffStrategy() {
+        return backoffStrategy;
+    }
+
+    public Duration getBackoffBase() {
+        return backoffBase;
+    }
+
+    public Duration getBackoffCap() {
+        return backoffCap;
+    }
+
+    public int getRetryBudgetPercent() {
+        return retryBudgetPercent;
+    }
+
+    public int getRetryBudgetMinRetries() {
+        return retryBudgetMinRetries;
+    }
+
+    public Duration getRetryBudgetWindow() {
+        return retryBudgetWindow;
+    }
+
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    public double getAdaptiveTimeoutFactor() {
+        return adaptiveTimeoutFactor;
+    }
+
+    public Duration getAdaptiveTimeoutFloor() {
+        return adaptiveTimeoutFloor;
+    }
+
+    public int getHostQps() {
+        return hostQps;
+    }
+
+    public int getHostBurst() {
+        return hostBurst;
+    }
+
+    public Duration getMicroBatchWindow() {
+        return microBatchWindow;
+    }
+
+    public int getMicroBatchMaxItems() {
+        return microBatchMaxItems;
+    }
+
+    public boolean isMicroBatchEnabled() {
+        return !microBatchWindow.isZero();
+    }
+
+    public Set<String> getUncompressedHosts() {
+        return uncompressedHosts;
+    }
+
+    /**
+     * Whether responses from {@code baseUrl} may be requested gzip or deflate encoded.
+     */
+    public boolean isCompressionEnabled(String baseUrl) {
+        return !uncompressedHosts.contains(ALL_HOSTS) && !uncompressedHosts.contains(normalizeHost(baseUrl));
+    }
+
+    public int getStaleMaxEntries() {
+        return staleMaxEntries;
+    }
+
+    public Duration getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    public boolean isStaleIfErrorEnabled() {
+        return staleMaxEntries > 0 && !maxStaleness.isZero();
+    }
+
+    public Optional<SyntheticSourceSettings> getSyntheticSource() {
+        return syntheticSource;
+    }
+
+    /**
+     * Lookups of one batch request that run at the same time.
+     */
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    /**
+     * Lookups running at the same time across all requests, 0 for no limit.
+     */
+    public int getMaxUpstreamCalls() {
+        return maxUpstreamCalls;
+    }
+
+    public BatchSchedule getBatchSchedule() {
+        return batchSchedule;
+    }
+
+    private static String normalizeHost(String baseUrl) {
+        String trimmed = baseUrl.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    public static final class Builder {
+        private int cacheMaxEntries = DEFAULT_CACHE_MAX_ENTRIES;
+        private Duration cacheTtl = DEFAULT_CACHE_TTL;
+        private HttpVersionPolicy httpVersionPolicy = DEFAULT_HTTP_VERSION;
+        private long maxResponseBytes = DEFAULT_MAX_RESPONSE_BYTES;
+        private int breakerFailureRate = DEFAULT_BREAKER_FAILURE_RATE;
+        private int breakerWindowSize = DEFAULT_BREAKER_WINDOW_SIZE;
+        private int breakerMinimumCalls = DEFAULT_BREAKER_MINIMUM_CALLS;
+        private Duration breakerOpenDuration = DEFAULT_BREAKER_OPEN_DURATION;
+        private BackoffStrategy backoffStrategy = DEFAULT_BACKOFF_STRATEGY;
+        private Duration backoffBase = DEFAULT_BACKOFF_BASE;
+        private Duration backoffCap = DEFAULT_BACKOFF_CAP;
+        private int retryBudgetPercent = DEFAULT_RETRY_BUDGET_PERCENT;
+        private int retryBudgetMinRetries = DEFAULT_RETRY_BUDGET_MIN_RETRIES;
+        private Duration retryBudgetWindow = DEFAULT_RETRY_BUDGET_WINDOW;
+        private HedgePolicy hedgePolicy = DEFAULT_HEDGE_POLICY;
+        private double adaptiveTimeoutFactor = DEFAULT_ADAPTIVE_TIMEOUT_FACTOR;
+        private Duration adaptiveTimeoutFloor = DEFAULT_ADAPTIVE_TIMEOUT_FLOOR;
+        private int hostQps = DEFAULT_HOST_QPS;
+        private int hostBurst = DEFAULT_HOST_BURST;
+        private Duration microBatchWindow = DEFAULT_MICRO_BATCH_WINDOW;
+        private int microBatchMaxItems = DEFAULT_MICRO_BATCH_MAX_ITEMS;
+        private Set<String> uncompressedHosts = Set.of();
+        private int staleMaxEntries = DEFAULT_STALE_MAX_ENTRIES;
+        private Duration maxStaleness = DEFAULT_MAX_STALENESS;
+        private Optional<SyntheticSourceSettings> syntheticSource = Optional.empty();
+        private int batchParallelism = DEFAULT_BATCH_PARALLELISM;
+        private int maxUpstreamCalls = DEFAULT_MAX_UPSTREAM_CALLS;
+        private BatchSchedule batchSchedule = DEFAULT_BATCH_SCHEDULE;
+
+        private Builder() {
+        }
+
+        public Builder cacheMaxEntries(int cacheMaxEntries) {
+            this.cacheMaxEntries = cacheMaxEntries;
+            return this;
+        }
+
+        public Builder cacheTtl(Duration cacheTtl) {
+            this.cacheTtl = cacheTtl;
+            return this;
+        }
+
+        public Builder httpVersionPolicy(HttpVersionPolicy httpVersionPolicy) {
+            this.httpVersionPolicy = httpVersionPolicy;
+            return this;
+        }
+
+        public Builder maxResponseBytes(long maxResponseBytes) {
+            this.maxResponseBytes = maxResponseBytes;
+            return this;
+        }
+
+        public Builder breakerFailureRate(int breakerFailureRate) {
+            this.breakerFailureRate = breakerFailureRate;
+            return this;
+        }
+
+        public Builder breakerWindowSize(int breakerWindowSize) {
+            this.breakerWindowSize = breakerWindowSize;
+            return this;
+        }
+
+        public Builder breakerMinimumCalls(int breakerMinimumCalls) {
+            this.breakerMinimumCalls = breakerMinimumCalls;
+            return this;
+        }
+
+        public Builder breakerOpenDuration(Duration breakerOpenDuration) {
+            this.breakerOpenDuration = breakerOpenDuration;
+            return this;
+        }
+
+        public Builder backoffStrategy(BackoffStrategy backoffStrategy) {
+            this.backoffStrategy = backoffStrategy;
+            return this;
+        }
+
+        public Builder backoffBase(Duration backoffBase) {
+            this.backoffBase = backoffBase;
+            return this;
+        }
+
+        public Builder backoffCap(Duration backoffCap) {
+            this.backoffCap = backoffCap;
+            return this;
+        }
+
+        public Builder retryBudgetPercent(int retryBudgetPercent) {
+            this.retryBudgetPercent = retryBudgetPercent;
+            return this;
+        }
+
+        public Builder retryBudgetMinRetries(int retryBudgetMinRetries) {
+            this.retryBudgetMinRetries = retryBudgetMinRetries;
+            return this;
+        }
+
+        public Builder retryBudgetWindow(Duration retryBudgetWindow) {
+            this.retryBudgetWindow = retryBudgetWindow;
+            return this;
+        }
+
+        public Builder hedgePolicy(HedgePolicy hedgePolicy) {
+            this.hedgePolicy = hedgePolicy;
+            return this;
+        }
+
+        public Builder adaptiveTimeoutFactor(double adaptiveTimeoutFactor) {
+            this.adaptiveTimeoutFactor = adaptiveTimeoutFactor;
+            return this;
+        }
+
+        public Builder adaptiveTimeoutFloor(Duration adaptiveTimeoutFloor) {
+            this.adaptiveTimeoutFloor = adaptiveTimeoutFloor;
+            return this;
+        }
+
+        public Builder hostQps(int hostQps) {
+            this.hostQps = hostQps;
+            return this;
+        }
+
+        public Builder hostBurst(int hostBurst) {
+            this.hostBurst = hostBurst;
+            return this;
+        }
+
+        public Builder microBatchWindow(Duration microBatchWindow) {
+            this.microBatchWindow = microBatchWindow;
+            return this;
+        }
+
+        public Builder microBatchMaxItems(int microBatchMaxItems) {
+            this.microBatchMaxItems = microBatchMaxItems;
+            return this;
+        }
+
+        /**
+         * Base URLs that are always asked for uncompressed responses; {@link #ALL_HOSTS} matches every host.
+         */
+        public Builder uncompressedHosts(Set<String> uncompressedHosts) {
+            this.uncompressedHosts = uncompressedHosts;
+            return this;
+        }
+
+        public Builder staleMaxEntries(int staleMaxEntries) {
+            this.staleMaxEntries = staleMaxEntries;
+            return this;
+        }
+
+        /**
+         * Oldest successful answer served when SonarQube fails; {@link Duration#ZERO} turns stale-if-error off.
+         */
+        public Builder maxStaleness(Duration maxStaleness) {
+            this.maxStaleness = maxStaleness;
+            return this;
+        }
+
+        /**
+         * Answers every request from an in-process synthetic source instead of SonarQube; meant for load tests.
+         */
+        public Builder syntheticSource(SyntheticSourceSettings syntheticSource) {
+            this.syntheticSource = Optional.of(syntheticSource);
+            return this;
+        }
+
+        public Builder batchParallelism(int batchParallelism) {
+            this.batchParallelism = batchParallelism;
+            return this;
+        }
+
+        /**
+         * Caps lookups running at once across all requests; single requests are started before waiting batch items.
+         * 0 means no cap.
+         */
+        public Builder maxUpstreamCalls(int maxUpstreamCalls) {
+            this.maxUpstreamCalls = maxUpstreamCalls;
+            return this;
+        }
+
+        public Builder batchSchedule(BatchSchedule batchSchedule) {
+            this.batchSchedule = batchSchedule;
+            return this;
+        }
+
+        public UpstreamSettings build() {
+            return new UpstreamSettings(this);
+        }
+    }
+}
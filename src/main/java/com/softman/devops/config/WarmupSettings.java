@@ -0,0 +1,65 @@
+package com.softman.devops.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * SonarQube base URLs to connect to before the server accepts requests, how many connections to open per host, and
+ * how often to probe them so idle pooled connections are not closed between bursts.
+ */
+public final class WarmupSettings {
+    public static final int DEFAULT_CONNECTIONS_PER_HOST = 2;
+    public static final Duration DEFAULT_KEEP_ALIVE_INTERVAL = Duration.ofSeconds(20);
+    public static final int MAX_CONNECTIONS_PER_HOST = 64;
+
+    private final List<String> targets;
+    private final int connectionsPerHost;
+    private final Duration keepAliveInterval;
+
+    /**
+     * @param keepAliveInterval pause between keep-alive probes, {@link Duration#ZERO} to only warm up at startup
+     */
+    public WarmupSettings(List<String> targets, int connectionsPerHost, Duration keepAliveInterval) {
+        this.targets = List.copyOf(Objects.requireNonNull(targets, "targets"));
+        if (connectionsPerHost <= 0 || connectionsPerHost > MAX_CONNECTIONS_PER_HOST) {
+            throw new IllegalArgumentException(
+                    "warmupconns must be between 1 and " + MAX_CONNECTIONS_PER_HOST);
+        }
+        this.connectionsPerHost = connectionsPerHost;
+        this.keepAliveInterval = Objects.requireNonNull(keepAliveInterval, "keepAliveInterval");
+        if (keepAliveInterval.isNegative()) {
+            throw new IllegalArgumentException("keepAliveInterval must not be negative");
+        }
+    }
+
+    public static WarmupSettings none() {
+        return new WarmupSettings(List.of(), DEFAULT_CONNECTIONS_PER_HOST, DEFAULT_KEEP_ALIVE_INTERVAL);
+    }
+
+    public boolean isEnabled() {
+        return !targets.isEmpty();
+    }
+
+    public List<String> getTargets() {
+        return targets;
+    }
+
+    public int getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    public Duration getKeepAliveInterval() {
+        return keepAliveInterval;
+    }
+
+    public boolean isKeepAliveEnabled() {
+        return isEnabled() && !keepAliveInterval.isZero();
+    }
+
+    @Override
+    public String toString() {
+        return "targets=" + targets + ", connectionsPerHost=" + connectionsPerHost + ", keepAlive="
+                + keepAliveInterval.toSeconds() + "s";
+    }
+}
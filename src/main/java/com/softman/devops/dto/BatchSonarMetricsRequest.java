@@ -52,6 +52,9 @@ public final class BatchSonarMetricsRequest {
             copyIfPresent(itemObject, merged, "branch");
             copyIfPresent(itemObject, merged, "pull_request");
             copyIfPresent(itemObject, merged, "custid");
+            copyIfPresent(itemObject, merged, "max_age");
+            copyIfPresent(itemObject, merged, "no_cache");
+            copyIfPresent(itemObject, merged, "backoff");
 
             Optional<Integer> itemRetries = readOptionalNonNegativeInt(itemObject, "retries");
             if (itemRetries.isPresent()) {
@@ -1,10 +1,13 @@
 package com.softman.devops.dto;
 
+import com.softman.devops.config.BackoffStrategy;
 import com.softman.devops.handler.ValidationException;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
@@ -23,6 +26,9 @@ public final class SonarMetricsRequest {
     private final Optional<String> pullRequest;
     private final int retries;
     private final Optional<String> customerId;
+    private final Optional<Duration> maxAge;
+    private final boolean noCache;
+    private final Optional<BackoffStrategy> backoff;
 
     private SonarMetricsRequest(String baseUrl,
                                 String token,
@@ -31,7 +37,10 @@ public final class SonarMetricsRequest {
                                 Optional<String> branch,
                                 Optional<String> pullRequest,
                                 int retries,
-                                Optional<String> customerId) {
+                                Optional<String> customerId,
+                                Optional<Duration> maxAge,
+                                boolean noCache,
+                                Optional<BackoffStrategy> backoff) {
         this.baseUrl = baseUrl;
         this.token = token;
         this.component = component;
@@ -40,6 +49,9 @@ public final class SonarMetricsRequest {
         this.pullRequest = pullRequest;
         this.retries = retries;
         this.customerId = customerId;
+        this.maxAge = maxAge;
+        this.noCache = noCache;
+        this.backoff = backoff;
     }
 
     public static SonarMetricsRequest fromJson(JsonObject body) throws ValidationException {
@@ -54,8 +66,43 @@ public final class SonarMetricsRequest {
         Optional<String> pullRequest = readOptionalString(body, "pull_request");
         Optional<String> customerId = readOptionalString(body, "custid");
         int retries = readOptionalNonNegativeInt(body, "retries").orElse(DEFAULT_RETRIES);
+        Optional<Duration> maxAge = readOptionalNonNegativeInt(body, "max_age").map(Duration::ofSeconds);
+        boolean noCache = readOptionalBoolean(body, "no_cache").orElse(false);
+        Optional<BackoffStrategy> backoff = readOptionalBackoff(body, "backoff");
 
-        return new SonarMetricsRequest(baseUrl, token, component, metricList, branch, pullRequest, retries, customerId);
+        return new SonarMetricsRequest(baseUrl, token, component, metricList, branch, pullRequest, retries, customerId,
+                maxAge, noCache, backoff);
+    }
+
+    /**
+     * One lookup that answers every request of {@code requests}, which must name the same component of the same
+     * SonarQube. It asks for the union of their metrics in first-seen order, with the most retries, the shortest
+     * {@code max_age}, {@code no_cache} when any request sets it, and the first backoff given. It has no customer id.
+     */
+    public static SonarMetricsRequest union(List<SonarMetricsRequest> requests) {
+        SonarMetricsRequest first = requests.get(0);
+        if (requests.size() == 1) {
+            return first;
+        }
+        Set<String> metrics = new LinkedHashSet<>();
+        int retries = 0;
+        Optional<Duration> maxAge = Optional.empty();
+        boolean noCache = false;
+        Optional<BackoffStrategy> backoff = Optional.empty();
+        for (SonarMetricsRequest request : requests) {
+            metrics.addAll(request.metrics);
+            retries = Math.max(retries, request.retries);
+            if (request.maxAge.isPresent()
+                    && (maxAge.isEmpty() || request.maxAge.get().compareTo(maxAge.get()) < 0)) {
+                maxAge = request.maxAge;
+            }
+            noCache |= request.noCache;
+            if (backoff.isEmpty()) {
+                backoff = request.backoff;
+            }
+        }
+        return new SonarMetricsRequest(first.baseUrl, first.token, first.component, new ArrayList<>(metrics),
+                first.branch, first.pullRequest, retries, Optional.empty(), maxAge, noCache, backoff);
     }
 
     private static void ensureFlatObject(JsonObject body) throws ValidationException {
@@ -145,6 +192,33 @@ public final class SonarMetricsRequest {
         return Optional.of(value);
     }
 
+    private static Optional<Boolean> readOptionalBoolean(JsonObject body, String key) throws ValidationException {
+        if (!body.has(key)) {
+            return Optional.empty();
+        }
+        JsonElement element = body.get(key);
+        if (element == null || element.isJsonNull()) {
+            return Optional.empty();
+        }
+        if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isBoolean()) {
+            throw new ValidationException(key + " must be a boolean");
+        }
+        return Optional.of(element.getAsBoolean());
+    }
+
+    private static Optional<BackoffStrategy> readOptionalBackoff(JsonObject body, String key)
+            throws ValidationException {
+        Optional<String> value = readOptionalString(body, key);
+        if (value.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(BackoffStrategy.fromOption(value.get()));
+        } catch (IllegalArgumentException illegalArgumentException) {
+            throw new ValidationException(key + " must be one of full, decorrelated, fixed, exponential");
+        }
+    }
+
     public String getBaseUrl() {
         return baseUrl;
     }
@@ -176,4 +250,16 @@ public final class SonarMetricsRequest {
     public Optional<String> getCustomerId() {
         return customerId;
     }
+
+    public Optional<Duration> getMaxAge() {
+        return maxAge;
+    }
+
+    public boolean isNoCache() {
+        return noCache;
+    }
+
+    public Optional<BackoffStrategy> getBackoff() {
+        return backoff;
+    }
 }
@@ -24,14 +24,18 @@ public final class ConfigurationFactory {
             .map(Path::of)
             .orElse(Path.of("."));
 
-        return new ServiceConfiguration(
-            port,
-            maxConnections,
-            timeout,
-            jobTimeout,
-            logLevel,
-            logDirectory
-        );
+        return ServiceConfiguration.builder()
+            .port(port)
+            .maxConnections(maxConnections)
+            .requestTimeout(timeout)
+            .jobTimeout(jobTimeout)
+            .logLevel(logLevel)
+            .logDirectory(logDirectory)
+            .upstreamSettings(options.upstreamSettings())
+            .snapshotMaxBytes(options.snapshotMegabytes() * 1024L * 1024L)
+            .warmupSettings(options.warmupSettings())
+            .jobSettings(options.jobSettings())
+            .build();
     }
 
     private static void validateOptions(CommandLineOptions options) {
@@ -4,9 +4,18 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.softman.devops.SoftmanDevOpsServer;
 import com.softman.devops.config.ServiceConfiguration;
+import com.softman.devops.config.SyntheticSourceSettings;
+import com.softman.devops.service.MetricsSnapshotStore;
+import com.softman.devops.service.MetricsSource;
 import com.softman.devops.service.SonarMetricsService;
+import com.softman.devops.service.SyntheticMetricsSource;
+import java.time.Clock;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public final class ServerFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerFactory.class);
 
     private ServerFactory() {
     }
@@ -15,9 +24,9 @@ public final class ServerFactory {
         validateConfiguration(configuration);
 
         Gson gson = createGson();
-        SonarMetricsService service = createSonarMetricsService(configuration);
+        MetricsSource source = createMetricsSource(configuration);
 
-        return new SoftmanDevOpsServer(configuration, service, gson);
+        return new SoftmanDevOpsServer(configuration, source, gson);
     }
 
     private static Gson createGson() {
@@ -26,10 +35,39 @@ public final class ServerFactory {
             .create();
     }
 
+    private static MetricsSource createMetricsSource(ServiceConfiguration configuration) {
+        Optional<SyntheticSourceSettings> synthetic = configuration.getUpstreamSettings().getSyntheticSource();
+        if (synthetic.isPresent()) {
+            LOGGER.warn("Answering from the synthetic metrics source ({}); SonarQube is never called", synthetic.get());
+            if (configuration.getWarmupSettings().isEnabled()) {
+                LOGGER.warn("Ignoring --warmup, the synthetic source opens no connections");
+            }
+            return new SyntheticMetricsSource(synthetic.get(), configuration.getJobTimeout());
+        }
+        return createSonarMetricsService(configuration);
+    }
+
     private static SonarMetricsService createSonarMetricsService(ServiceConfiguration configuration) {
-        return new SonarMetricsService(
-            configuration.getRequestTimeout(),
-            configuration.getJobTimeout()
+        Clock clock = Clock.systemUTC();
+        return SonarMetricsService.builder()
+            .requestTimeout(configuration.getRequestTimeout())
+            .jobTimeout(configuration.getJobTimeout())
+            .clock(clock)
+            .upstreamSettings(configuration.getUpstreamSettings())
+            .snapshotStore(createSnapshotStore(configuration, clock))
+            .warmupSettings(configuration.getWarmupSettings())
+            .build();
+    }
+
+    private static MetricsSnapshotStore createSnapshotStore(ServiceConfiguration configuration, Clock clock) {
+        if (!configuration.isSnapshotEnabled()) {
+            return MetricsSnapshotStore.disabled();
+        }
+        return MetricsSnapshotStore.open(
+            configuration.getSnapshotFile(),
+            configuration.getSnapshotMaxBytes(),
+            configuration.getUpstreamSettings().getCacheTtl(),
+            clock
         );
     }
 
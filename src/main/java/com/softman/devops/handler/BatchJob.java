@@ -0,0 +1,108 @@
+package com.softman.devops.handler;
+
+import com.google.gson.JsonObject;
+import com.softman.devops.dto.BatchSonarMetricsRequest;
+import com.softman.devops.handler.BatchRunner.BatchResults;
+import java.time.Instant;
+
+/**
+ * One batch request run in the background. Its item results fill in while it runs, so progress and the results known
+ * so far can be read at any time.
+ */
+final class BatchJob {
+
+    enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private final String id;
+    private final BatchSonarMetricsRequest request;
+    private final BatchResults results;
+    private final Instant submittedAt;
+    private State state = State.QUEUED;
+    private Instant startedAt;
+    private Instant deadline;
+    private Instant finishedAt;
+    private String batchStatus;
+    private String failureMessage;
+
+    BatchJob(String id, BatchSonarMetricsRequest request, Instant submittedAt) {
+        this.id = id;
+        this.request = request;
+        this.results = new BatchResults(request.getItems().size(), null);
+        this.submittedAt = submittedAt;
+    }
+
+    String id() {
+        return id;
+    }
+
+    BatchSonarMetricsRequest request() {
+        return request;
+    }
+
+    BatchResults results() {
+        return results;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    synchronized Instant finishedAt() {
+        return finishedAt;
+    }
+
+    synchronized void start(Instant now, Instant jobDeadline) {
+        state = State.RUNNING;
+        startedAt = now;
+        deadline = jobDeadline;
+    }
+
+    /**
+     * @param response the batch response, whose status becomes the job's
+     */
+    synchronized void finish(Instant now, JsonObject response) {
+        state = State.DONE;
+        finishedAt = now;
+        batchStatus = response.get("status").getAsString();
+    }
+
+    synchronized void fail(Instant now, String message) {
+        state = State.FAILED;
+        finishedAt = now;
+        failureMessage = message;
+    }
+
+    /**
+     * State, timestamps and counts of the job, and every item result known so far in {@code data[]} order with
+     * {@code null} for items still being looked up.
+     */
+    synchronized JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.addProperty("state", state.name());
+        if (batchStatus != null) {
+            json.addProperty("status", batchStatus);
+        }
+        if (failureMessage != null) {
+            json.addProperty("message", failureMessage);
+        }
+        json.addProperty("submittedAt", submittedAt.toString());
+        if (startedAt != null) {
+            json.addProperty("startedAt", startedAt.toString());
+            json.addProperty("deadline", deadline.toString());
+        }
+        if (finishedAt != null) {
+            json.addProperty("finishedAt", finishedAt.toString());
+        }
+        JsonObject progress = results.toProgress();
+        for (String field : progress.keySet()) {
+            json.add(field, progress.get(field));
+        }
+        return json;
+    }
+}
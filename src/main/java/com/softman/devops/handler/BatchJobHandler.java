@@ -0,0 +1,298 @@
+package com.softman.devops.handler;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.softman.devops.config.BatchSchedule;
+import com.softman.devops.config.JobSettings;
+import com.softman.devops.dto.BatchSonarMetricsRequest;
+import com.softman.devops.handler.BatchJobStore.StoreStats;
+import com.softman.devops.handler.BatchRunner.InFlightCalls;
+import com.softman.devops.service.CallLimiter;
+import com.softman.devops.service.MetricsSource;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background batch jobs for scans too large for one HTTP exchange. {@code POST /sonar/jobs} takes the payload of
+ * {@code /sonar/metrics_batch}, answers {@code 202} with the job id straight away and queues the job;
+ * {@code GET /sonar/jobs/{id}} reports its progress and the item results known so far. At most {@code workers} jobs
+ * run at once and up to {@code queueSize} more wait for one of them to finish; a full queue rejects new jobs with
+ * {@code 429}. Jobs are asynchronous like the batch endpoint, so no thread waits for a running job. The lookups of a
+ * job go through the shared upstream limiter as batch calls, so single requests still go first.
+ */
+public final class BatchJobHandler implements HttpHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchJobHandler.class);
+    private static final String CONTEXT_PATH = "/sonar/jobs";
+    /**
+     * Time past the deadline given to the calls still running to give up before the job abandons them.
+     */
+    private static final Duration DEADLINE_GRACE = Duration.ofSeconds(5);
+
+    private final Gson gson;
+    private final BatchRunner batchRunner;
+    private final JobSettings settings;
+    private final Clock clock;
+    private final BatchJobStore store;
+    private final Deque<BatchJob> queue = new ArrayDeque<>();
+    private final Map<BatchJob, InFlightCalls> running = new HashMap<>();
+    private boolean closed;
+    private long rejectedJobs;
+
+    /**
+     * @param upstreamCalls    limiter shared with the other handlers
+     * @param batchParallelism items of one job looked up at the same time
+     * @param batchSchedule    how the items of a job share its deadline
+     */
+    public BatchJobHandler(MetricsSource metricsSource,
+                           Gson gson,
+                           CallLimiter upstreamCalls,
+                           int batchParallelism,
+                           BatchSchedule batchSchedule,
+                           JobSettings settings) {
+        this.gson = gson;
+        this.settings = Objects.requireNonNull(settings, "settings");
+        this.clock = Clock.systemUTC();
+        this.batchRunner = new BatchRunner(metricsSource, upstreamCalls, batchParallelism, batchSchedule, clock);
+        this.store = new BatchJobStore(settings.getResultTtl(), settings.getMaxResults(), clock);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String jobPath = path.length() > CONTEXT_PATH.length() ? path.substring(CONTEXT_PATH.length()) : "";
+        if (jobPath.isEmpty() || "/".equals(jobPath)) {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendPlainText(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            submit(exchange);
+        } else if (jobPath.startsWith("/") && jobPath.indexOf('/', 1) < 0) {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendPlainText(exchange, 405, "Method Not Allowed");
+                return;
+            }
+            report(exchange, jobPath.substring(1));
+        } else {
+            sendPlainText(exchange, 404, "Not Found");
+        }
+    }
+
+    /**
+     * Fails the queued jobs; jobs still running cancel their lookups and fail.
+     */
+    public void close() {
+        List<BatchJob> queued;
+        List<InFlightCalls> cancelled;
+        synchronized (this) {
+            closed = true;
+            queued = List.copyOf(queue);
+            queue.clear();
+            cancelled = List.copyOf(running.values());
+        }
+        for (BatchJob job : queued) {
+            job.fail(clock.instant(), "Server stopped");
+            store.finished(job);
+        }
+        cancelled.forEach(InFlightCalls::cancel);
+    }
+
+    public JobStats stats() {
+        StoreStats stored = store.stats();
+        long rejected;
+        synchronized (this) {
+            rejected = rejectedJobs;
+        }
+        return new JobStats(settings.getWorkers(), stored.queued(), stored.running(), stored.finished(),
+                rejected, stored.evictions());
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        BatchSonarMetricsRequest batchRequest;
+        try {
+            String requestBody = readBody(exchange.getRequestBody());
+            if (requestBody.isBlank()) {
+                throw new ValidationException("Request body must not be empty");
+            }
+            batchRequest = BatchSonarMetricsRequest.fromJson(gson.fromJson(requestBody, JsonObject.class));
+        } catch (ValidationException validationException) {
+            LOGGER.info("Batch job validation failure: {}", validationException.getMessage());
+            sendError(exchange, 400, "BAD_REQUEST", validationException.getMessage());
+            return;
+        } catch (JsonParseException parseException) {
+            LOGGER.info("Malformed JSON payload for batch job endpoint", parseException);
+            sendError(exchange, 400, "BAD_REQUEST", "Invalid JSON payload");
+            return;
+        }
+
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), batchRequest, clock.instant());
+        store.add(job);
+        if (!admit(job)) {
+            store.remove(job);
+            LOGGER.warn("Rejecting batch job, {} jobs already waiting", settings.getQueueSize());
+            sendError(exchange, 429, "TOO_MANY_JOBS", "Maximum queued jobs exceeded");
+            return;
+        }
+        LOGGER.info("Accepted batch job {} with {} items", job.id(), batchRequest.getItems().size());
+        JsonObject accepted = new JsonObject();
+        accepted.addProperty("id", job.id());
+        accepted.addProperty("state", job.state().name());
+        accepted.addProperty("total", batchRequest.getItems().size());
+        exchange.getResponseHeaders().put("Location", List.of(CONTEXT_PATH + "/" + job.id()));
+        sendJson(exchange, 202, accepted);
+    }
+
+    private void report(HttpExchange exchange, String id) throws IOException {
+        BatchJob job = store.find(id).orElse(null);
+        if (job == null) {
+            sendError(exchange, 404, "NOT_FOUND", "Unknown or expired job: " + id);
+            return;
+        }
+        sendJson(exchange, 200, job.toJson());
+    }
+
+    /**
+     * Starts {@code job} when fewer than {@code workers} jobs run, queues it when the queue has room, and otherwise
+     * returns {@code false}.
+     */
+    private boolean admit(BatchJob job) {
+        synchronized (this) {
+            if (closed) {
+                rejectedJobs++;
+                return false;
+            }
+            if (running.size() >= settings.getWorkers()) {
+                if (queue.size() >= settings.getQueueSize()) {
+                    rejectedJobs++;
+                    return false;
+                }
+                queue.addLast(job);
+                return true;
+            }
+        }
+        start(job);
+        return true;
+    }
+
+    /**
+     * Starts the batch of {@code job} and completes the job from the batch, failing it once the job deadline and
+     * a grace period have passed.
+     */
+    private void start(BatchJob job) {
+        Instant startedAt = clock.instant();
+        Instant deadline = startedAt.plus(settings.getDeadline());
+        InFlightCalls calls = batchRunner.callsForJob(deadline);
+        synchronized (this) {
+            running.put(job, calls);
+        }
+        job.start(startedAt, deadline);
+        CompletableFuture<JsonObject> run;
+        try {
+            run = batchRunner.run(job.request(), calls, job.results());
+        } catch (RuntimeException runtimeException) {
+            run = CompletableFuture.failedFuture(runtimeException);
+        }
+        long waitMillis = settings.getDeadline().plus(DEADLINE_GRACE).toMillis();
+        run.orTimeout(waitMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((response, failure) -> finish(job, calls, startedAt, response, failure));
+    }
+
+    private void finish(BatchJob job, InFlightCalls calls, Instant startedAt, JsonObject response, Throwable failure) {
+        try {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            if (cause == null) {
+                job.finish(clock.instant(), response);
+                LOGGER.info("Batch job {} finished with {} in {} ms", job.id(), response.get("status").getAsString(),
+                        Duration.between(startedAt, clock.instant()).toMillis());
+            } else if (cause instanceof TimeoutException) {
+                calls.cancel();
+                job.fail(clock.instant(), "Job deadline exceeded");
+                LOGGER.warn("Batch job {} still running after its deadline, abandoned", job.id());
+            } else if (isClosed()) {
+                calls.cancel();
+                job.fail(clock.instant(), "Server stopped");
+            } else {
+                calls.cancel();
+                job.fail(clock.instant(), "Unexpected failure");
+                LOGGER.error("Unexpected failure while running batch job {}", job.id(), cause);
+            }
+        } finally {
+            store.finished(job);
+            BatchJob next;
+            synchronized (this) {
+                running.remove(job);
+                next = closed ? null : queue.pollFirst();
+            }
+            if (next != null) {
+                start(next);
+            }
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private String readBody(InputStream inputStream) throws IOException {
+        return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private void sendJson(HttpExchange exchange, int statusCode, JsonObject body) throws IOException {
+        byte[] data = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.put("Content-Type", List.of("application/json; charset=UTF-8"));
+        headers.put("Cache-Control", List.of("no-store"));
+        exchange.sendResponseHeaders(statusCode, data.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(data);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int statusCode, String status, String message) throws IOException {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("status", status);
+        payload.addProperty("message", message);
+        sendJson(exchange, statusCode, payload);
+    }
+
+    private void sendPlainText(HttpExchange exchange, int statusCode, String message) throws IOException {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.put("Content-Type", List.of("text/plain; charset=UTF-8"));
+        exchange.sendResponseHeaders(statusCode, data.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(data);
+        }
+    }
+
+    /**
+     * {@code queued} and {@code running} are jobs in progress, {@code finished} those whose results are still kept;
+     * {@code rejected} counts jobs refused with a full queue and {@code evicted} finished jobs dropped by age or
+     * count.
+     */
+    public record JobStats(int workers, int queued, int running, int finished, long rejected, long evicted) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.softman.devops.handler;
+
+import com.softman.devops.handler.BatchJob.State;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Background jobs by id. Queued and running jobs are always kept; a finished job is kept until {@code resultTtl}
+ * after it finished, and when more than {@code maxFinished} have finished the ones that finished first are evicted.
+ */
+final class BatchJobStore {
+    private final Duration resultTtl;
+    private final int maxFinished;
+    private final Clock clock;
+    private final Map<String, BatchJob> jobs = new HashMap<>();
+    private final Deque<BatchJob> finished = new ArrayDeque<>();
+    private long evictions;
+
+    BatchJobStore(Duration resultTtl, int maxFinished, Clock clock) {
+        if (maxFinished <= 0) {
+            throw new IllegalArgumentException("maxFinished must be positive");
+        }
+        this.resultTtl = resultTtl;
+        this.maxFinished = maxFinished;
+        this.clock = clock;
+    }
+
+    synchronized void add(BatchJob job) {
+        jobs.put(job.id(), job);
+    }
+
+    /**
+     * Forgets a job that was never run, such as one the executor rejected.
+     */
+    synchronized void remove(BatchJob job) {
+        jobs.remove(job.id());
+    }
+
+    synchronized Optional<BatchJob> find(String id) {
+        evictExpired();
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Starts the retention of a job that has just finished.
+     */
+    synchronized void finished(BatchJob job) {
+        finished.addLast(job);
+        evictExpired();
+        while (finished.size() > maxFinished) {
+            evict(finished.removeFirst());
+        }
+    }
+
+    synchronized StoreStats stats() {
+        evictExpired();
+        int queued = 0;
+        int running = 0;
+        for (BatchJob job : jobs.values()) {
+            State state = job.state();
+            if (state == State.QUEUED) {
+                queued++;
+            } else if (state == State.RUNNING) {
+                running++;
+            }
+        }
+        return new StoreStats(queued, running, finished.size(), evictions);
+    }
+
+    /**
+     * Jobs finish in clock order, so the expired ones are at the head of the queue.
+     */
+    private void evictExpired() {
+        Instant now = clock.instant();
+        while (!finished.isEmpty() && !finished.peekFirst().finishedAt().plus(resultTtl).isAfter(now)) {
+            evict(finished.removeFirst());
+        }
+    }
+
+    private void evict(BatchJob job) {
+        jobs.remove(job.id());
+        evictions++;
+    }
+
+    record StoreStats(int queued, int running, int finished, long evictions) {
+    }
+}
@@ -0,0 +1,452 @@
+package com.softman.devops.handler;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.softman.devops.config.BatchSchedule;
+import com.softman.devops.dto.BatchSonarMetricsRequest;
+import com.softman.devops.dto.BatchSonarMetricsRequest.BatchItem;
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.service.BatchPlanner;
+import com.softman.devops.service.BatchPlanner.PlannedCall;
+import com.softman.devops.service.BatchScheduler;
+import com.softman.devops.service.CallLimiter;
+import com.softman.devops.service.CallLimiter.Priority;
+import com.softman.devops.service.CallTimeoutException;
+import com.softman.devops.service.CircuitOpenException;
+import com.softman.devops.service.JobDeadlineExceededException;
+import com.softman.devops.service.MetricsSource;
+import com.softman.devops.service.StaleMetricsStore.StaleMetrics;
+import com.softman.devops.service.UpstreamErrorException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Looks up the items of a batch request: plans the upstream calls, runs them through the batch's scheduler and the
+ * shared upstream limiter, and turns each outcome into an item result. Used by the batch endpoint, which answers
+ * within the request, and by background batch jobs.
+ */
+final class BatchRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchRunner.class);
+
+    private final MetricsSource metricsSource;
+    private final BatchPlanner batchPlanner = new BatchPlanner();
+    private final CallLimiter upstreamCalls;
+    private final int batchParallelism;
+    private final BatchSchedule batchSchedule;
+    private final Clock clock;
+
+    BatchRunner(MetricsSource metricsSource,
+                CallLimiter upstreamCalls,
+                int batchParallelism,
+                BatchSchedule batchSchedule,
+                Clock clock) {
+        if (batchParallelism <= 0) {
+            throw new IllegalArgumentException("batchParallelism must be positive");
+        }
+        this.metricsSource = Objects.requireNonNull(metricsSource, "metricsSource");
+        this.upstreamCalls = Objects.requireNonNull(upstreamCalls, "upstreamCalls");
+        this.batchParallelism = batchParallelism;
+        this.batchSchedule = Objects.requireNonNull(batchSchedule, "batchSchedule");
+        this.clock = Objects.requireNonNull(clock, "clock");
+    }
+
+    /**
+     * Calls of a batch answered within one request, which all count against the job timeout from its start.
+     */
+    InFlightCalls callsForRequest(Instant startTime) {
+        return new InFlightCalls(metricsSource.jobDeadline(startTime), () -> startTime);
+    }
+
+    /**
+     * Calls of a background job, which all end by the job's deadline; on its own a call may take up to the job
+     * timeout from when it starts.
+     */
+    InFlightCalls callsForJob(Instant deadline) {
+        return new InFlightCalls(deadline, clock::instant);
+    }
+
+    /**
+     * Starts every planned call of the batch at once; the per-batch and shared limiters decide how many run.
+     */
+    CompletableFuture<JsonObject> run(BatchSonarMetricsRequest batchRequest,
+                                      InFlightCalls calls,
+                                      BatchResults results) {
+        List<PlannedCall> plan = batchPlanner.plan(batchRequest.getItems());
+        results.plannedCalls(plan.size());
+        results.skippedCalls(calls::skipped);
+        List<CompletableFuture<Void>> planned = new ArrayList<>();
+        for (PlannedCall call : plan) {
+            planned.add(call.search()
+                    ? processSearch(call, results, calls)
+                    : processItems(call, results, calls));
+        }
+        calls.start();
+        return allOf(planned).thenApply(ignored -> results.toResponse());
+    }
+
+    /**
+     * Runs one measures search and fills in its items. Items the search did not return, and every item of a search
+     * SonarQube rejected with a client error, are retried one by one on the per-item path.
+     */
+    private CompletableFuture<Void> processSearch(PlannedCall call, BatchResults results, InFlightCalls calls) {
+        return calls.submit(expectedLatency(call.requests()),
+                        (startTime, deadline) -> metricsSource.searchMetricsAsync(call.requests(), startTime,
+                                deadline))
+                .handle((found, failure) -> {
+                    Throwable cause = failure == null ? null : unwrap(failure);
+                    if (cause instanceof CancellationException) {
+                        throw new CompletionException(cause);
+                    }
+                    boolean rejected = cause instanceof UpstreamErrorException upstreamErrorException
+                            && !upstreamErrorException.isServerError();
+                    if (rejected) {
+                        LOGGER.info("Measures search rejected ({}), fetching {} items one by one",
+                                cause.getMessage(), call.items().size());
+                    }
+                    List<BatchItem> remaining = new ArrayList<>();
+                    for (int i = 0; i < call.items().size(); i++) {
+                        BatchItem item = call.items().get(i);
+                        if (cause != null && !rejected) {
+                            results.set(item, failedItem(item, item.request(), cause));
+                        } else if (found != null && found.get(i).isPresent()) {
+                            results.set(item, successfulItem(item, found.get(i).get()));
+                        } else {
+                            remaining.add(item);
+                        }
+                    }
+                    List<CompletableFuture<Void>> fallback = new ArrayList<>();
+                    for (PlannedCall itemCall : batchPlanner.merge(remaining)) {
+                        fallback.add(processItems(itemCall, results, calls));
+                    }
+                    return allOf(fallback);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Fetches the union of the metrics of a per-item call once and gives each of its items the metrics it asked for.
+     */
+    private CompletableFuture<Void> processItems(PlannedCall call, BatchResults results, InFlightCalls calls) {
+        SonarMetricsRequest request = call.request();
+        return calls.submit(metricsSource.expectedLatency(request),
+                        (startTime, deadline) -> metricsSource.fetchMetricsAsync(request, startTime, deadline))
+                .handle((metrics, failure) -> {
+                    for (BatchItem item : call.items()) {
+                        results.set(item, failure == null
+                                ? successfulItem(item, metrics)
+                                : failedItem(item, request, unwrap(failure)));
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * A search takes as long as its slowest component, so its expected latency is the longest of its requests'.
+     */
+    private Optional<Duration> expectedLatency(List<SonarMetricsRequest> requests) {
+        Duration longest = Duration.ZERO;
+        for (SonarMetricsRequest request : requests) {
+            Optional<Duration> expected = metricsSource.expectedLatency(request);
+            if (expected.isEmpty()) {
+                return Optional.empty();
+            }
+            if (expected.get().compareTo(longest) > 0) {
+                longest = expected.get();
+            }
+        }
+        return Optional.of(longest);
+    }
+
+    private static CompletableFuture<Void> allOf(List<CompletableFuture<Void>> futures) {
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+    }
+
+    private JsonObject successfulItem(BatchItem item, List<SonarMetricValue> metrics) {
+        JsonObject itemResult = newItemResult(item);
+        itemResult.addProperty("status", "SUCCESS");
+        addMetricFields(itemResult, metrics, item.request().getMetrics());
+        return itemResult;
+    }
+
+    /**
+     * @param fetched the request that failed, which asked for at least the item's metrics
+     */
+    private JsonObject failedItem(BatchItem item, SonarMetricsRequest fetched, Throwable failure) {
+        if (failure instanceof CancellationException) {
+            throw new CompletionException(failure);
+        }
+        Optional<StaleMetrics> stale = metricsSource.staleMetrics(fetched, failure);
+        if (stale.isEmpty() && fetched != item.request()) {
+            stale = metricsSource.staleMetrics(item.request(), failure);
+        }
+        if (stale.isPresent()) {
+            JsonObject itemResult = successfulItem(item, stale.get().values());
+            itemResult.addProperty("stale", true);
+            itemResult.addProperty("ageSeconds", stale.get().age().toSeconds());
+            return itemResult;
+        }
+        JsonObject itemResult = newItemResult(item);
+        addError(itemResult, resolveFailureStatus(item, failure), item.request().getMetrics());
+        return itemResult;
+    }
+
+    private JsonObject newItemResult(BatchItem item) {
+        JsonObject itemResult = new JsonObject();
+        itemResult.addProperty("component", item.request().getComponent());
+        item.request().getCustomerId().ifPresent(id -> itemResult.addProperty("custid", id));
+        return itemResult;
+    }
+
+    private String resolveFailureStatus(BatchItem item, Throwable failure) {
+        if (failure instanceof CallTimeoutException callTimeoutException) {
+            LOGGER.warn("Batch item {} timed out: {}", item.index(), callTimeoutException.getMessage());
+            return "CALL_TIMEOUT";
+        }
+        if (failure instanceof JobDeadlineExceededException) {
+            LOGGER.warn("Batch item {} exceeded job deadline", item.index());
+            return "JOB_DEADLINE_EXCEEDED";
+        }
+        if (failure instanceof UpstreamErrorException upstreamErrorException) {
+            int statusCode = upstreamErrorException.getStatusCode();
+            boolean serverError = upstreamErrorException.isServerError();
+            String status = serverError ? "UPSTREAM_5XX" : "UPSTREAM_4XX";
+            String message = status + " (" + statusCode + ")";
+            LOGGER.warn("Batch item {} upstream error: {}", item.index(), message);
+            return status;
+        }
+        if (failure instanceof CircuitOpenException) {
+            LOGGER.warn("Batch item {} rejected by open circuit", item.index());
+            return "UPSTREAM_CIRCUIT_OPEN";
+        }
+        throw new CompletionException(failure);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable current = failure;
+        while (current instanceof CompletionException && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private static String resolveBatchStatus(int total, int successCount) {
+        if (successCount == 0) {
+            return "FAILED";
+        }
+        if (successCount == total) {
+            return "SUCCESS";
+        }
+        return "PARTIAL_SUCCESS";
+    }
+
+    private void addError(JsonObject target, String status, List<String> requestedMetrics) {
+        target.addProperty("status", status);
+        addNullMetricFields(target, requestedMetrics);
+    }
+
+    private void addMetricFields(JsonObject target,
+                                 List<SonarMetricValue> metrics,
+                                 List<String> requestedMetrics) {
+        Map<String, SonarMetricValue> metricsByKey = new HashMap<>();
+        for (SonarMetricValue metricValue : metrics) {
+            metricsByKey.put(metricValue.metric(), metricValue);
+        }
+        for (int i = 0; i < requestedMetrics.size(); i++) {
+            String metricKey = requestedMetrics.get(i);
+            int displayIndex = i + 1;
+            String suffix = String.format("%02d", displayIndex);
+            target.addProperty("metric" + suffix, metricKey);
+            SonarMetricValue metricValue = metricsByKey.get(metricKey);
+            if (metricValue != null) {
+                target.addProperty("value" + suffix, metricValue.value());
+                target.addProperty("bestValue" + suffix, metricValue.bestValue());
+            } else {
+                target.add("value" + suffix, JsonNull.INSTANCE);
+                target.add("bestValue" + suffix, JsonNull.INSTANCE);
+            }
+        }
+    }
+
+    private void addNullMetricFields(JsonObject target, List<String> requestedMetrics) {
+        for (int i = 0; i < requestedMetrics.size(); i++) {
+            int displayIndex = i + 1;
+            String suffix = String.format("%02d", displayIndex);
+            target.add("metric" + suffix, JsonNull.INSTANCE);
+            target.add("value" + suffix, JsonNull.INSTANCE);
+            target.add("bestValue" + suffix, JsonNull.INSTANCE);
+        }
+    }
+
+    /**
+     * Item results of one batch as they complete. Buffered results are kept for the response object and can be
+     * read while the batch runs; streamed ones are handed to the stream straight away and only counted, so a
+     * streamed batch never holds all of them.
+     */
+    static final class BatchResults {
+        private final int total;
+        private final AtomicReferenceArray<JsonObject> buffered;
+        private final BiConsumer<BatchItem, JsonObject> streamed;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger successes = new AtomicInteger();
+        private volatile int plannedCalls;
+        private volatile IntSupplier skippedCalls = () -> 0;
+
+        /**
+         * @param streamed receives each item result, or {@code null} to buffer them
+         */
+        BatchResults(int total, BiConsumer<BatchItem, JsonObject> streamed) {
+            this.total = total;
+            this.buffered = streamed == null ? new AtomicReferenceArray<>(total) : null;
+            this.streamed = streamed;
+        }
+
+        private void plannedCalls(int count) {
+            plannedCalls = count;
+        }
+
+        private void skippedCalls(IntSupplier count) {
+            skippedCalls = count;
+        }
+
+        private void set(BatchItem item, JsonObject itemResult) {
+            if ("SUCCESS".equals(itemResult.get("status").getAsString())) {
+                successes.incrementAndGet();
+            }
+            if (streamed != null) {
+                streamed.accept(item, itemResult);
+            } else {
+                buffered.set(item.index(), itemResult);
+            }
+            completed.incrementAndGet();
+        }
+
+        int total() {
+            return total;
+        }
+
+        int completed() {
+            return completed.get();
+        }
+
+        /**
+         * Counts and the results known so far, {@code null} for items still being looked up.
+         */
+        JsonObject toProgress() {
+            JsonObject progress = new JsonObject();
+            progress.addProperty("total", total);
+            progress.addProperty("completed", completed.get());
+            progress.addProperty("succeeded", successes.get());
+            progress.addProperty("requestedCalls", total);
+            progress.addProperty("plannedCalls", plannedCalls);
+            progress.addProperty("skippedCalls", skippedCalls.getAsInt());
+            if (buffered != null) {
+                progress.add("results", bufferedResults());
+            }
+            return progress;
+        }
+
+        /**
+         * The response object with every result in {@code data[]} order, or the summary line of a streamed batch.
+         * Both report how many upstream calls the items would have needed one by one, how many were planned and how
+         * many of those were never sent because they could not finish within their share of the deadline.
+         */
+        JsonObject toResponse() {
+            JsonObject response = new JsonObject();
+            response.addProperty("status", resolveBatchStatus(total, successes.get()));
+            response.addProperty("requestedCalls", total);
+            response.addProperty("plannedCalls", plannedCalls);
+            response.addProperty("skippedCalls", skippedCalls.getAsInt());
+            if (buffered == null) {
+                response.addProperty("total", total);
+                response.addProperty("succeeded", successes.get());
+                return response;
+            }
+            response.add("results", bufferedResults());
+            return response;
+        }
+
+        private JsonArray bufferedResults() {
+            JsonArray resultsArray = new JsonArray();
+            for (int i = 0; i < total; i++) {
+                JsonObject itemResult = buffered.get(i);
+                resultsArray.add(itemResult == null ? JsonNull.INSTANCE : itemResult);
+            }
+            return resultsArray;
+        }
+    }
+
+    /**
+     * Source calls of one batch. They are started through the batch's own scheduler and then the shared upstream
+     * limiter, and the ones still waiting or running are kept so they can be cancelled together, when a client
+     * disconnects or a job is abandoned. With {@link BatchSchedule#EARLIEST_DEADLINE} the shared limiter starts
+     * waiting calls of the batch due first.
+     */
+    final class InFlightCalls {
+        private final Set<CompletableFuture<?>> calls = ConcurrentHashMap.newKeySet();
+        private final BatchScheduler scheduler;
+        private final Supplier<Instant> startTime;
+        private volatile boolean cancelled;
+
+        private InFlightCalls(Instant deadline, Supplier<Instant> startTime) {
+            this.scheduler = new BatchScheduler(batchSchedule, batchParallelism, deadline, clock);
+            this.startTime = startTime;
+        }
+
+        /**
+         * @param call starts the source call with the start time its job timeout counts from and its deadline
+         */
+        private <T> CompletableFuture<T> submit(Optional<Duration> expectedLatency,
+                                                BiFunction<Instant, Instant, CompletableFuture<T>> call) {
+            return track(scheduler.submit(expectedLatency, deadline -> upstreamCalls.submit(Priority.BATCH,
+                    batchSchedule == BatchSchedule.EARLIEST_DEADLINE ? deadline : Instant.MAX,
+                    () -> call.apply(startTime.get(), deadline))));
+        }
+
+        private void start() {
+            scheduler.start();
+        }
+
+        private int skipped() {
+            return scheduler.skipped();
+        }
+
+        private <T> CompletableFuture<T> track(CompletableFuture<T> call) {
+            calls.add(call);
+            call.whenComplete((result, failure) -> calls.remove(call));
+            if (cancelled) {
+                call.cancel(true);
+            }
+            return call;
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (CompletableFuture<?> call : calls) {
+                call.cancel(true);
+            }
+        }
+    }
+}
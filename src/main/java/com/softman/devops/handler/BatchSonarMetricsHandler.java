@@ -1,17 +1,16 @@
 package com.softman.devops.handler;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonNull;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.softman.devops.config.BatchSchedule;
 import com.softman.devops.dto.BatchSonarMetricsRequest;
 import com.softman.devops.dto.BatchSonarMetricsRequest.BatchItem;
-import com.softman.devops.dto.SonarMetricValue;
-import com.softman.devops.service.CallTimeoutException;
-import com.softman.devops.service.JobDeadlineExceededException;
-import com.softman.devops.service.SonarMetricsService;
-import com.softman.devops.service.UpstreamErrorException;
+import com.softman.devops.handler.BatchRunner.BatchResults;
+import com.softman.devops.handler.BatchRunner.InFlightCalls;
+import com.softman.devops.service.CallLimiter;
+import com.softman.devops.service.MetricsSource;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -19,9 +18,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
@@ -29,20 +30,34 @@ import org.slf4j.LoggerFactory;
 
 public final class BatchSonarMetricsHandler implements HttpHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(BatchSonarMetricsHandler.class);
+    private static final String NDJSON = "application/x-ndjson";
 
-    private final SonarMetricsService sonarMetricsService;
     private final Gson gson;
     private final AtomicInteger activeRequests;
     private final int maxConcurrentRequests;
+    private final ClientDisconnectMonitor disconnectMonitor;
+    private final Clock clock;
+    private final BatchRunner batchRunner;
 
-    public BatchSonarMetricsHandler(SonarMetricsService sonarMetricsService,
+    /**
+     * @param upstreamCalls    limiter shared with the single-request handler, which it lets go first
+     * @param batchParallelism items of one batch looked up at the same time
+     * @param batchSchedule    how the items of a batch share its job deadline
+     */
+    public BatchSonarMetricsHandler(MetricsSource metricsSource,
                                     Gson gson,
                                     AtomicInteger activeRequests,
-                                    int maxConcurrentRequests) {
-        this.sonarMetricsService = sonarMetricsService;
+                                    int maxConcurrentRequests,
+                                    ClientDisconnectMonitor disconnectMonitor,
+                                    CallLimiter upstreamCalls,
+                                    int batchParallelism,
+                                    BatchSchedule batchSchedule) {
         this.gson = gson;
         this.activeRequests = activeRequests;
         this.maxConcurrentRequests = maxConcurrentRequests;
+        this.disconnectMonitor = disconnectMonitor;
+        this.clock = Clock.systemUTC();
+        this.batchRunner = new BatchRunner(metricsSource, upstreamCalls, batchParallelism, batchSchedule, clock);
     }
 
     @Override
@@ -59,7 +74,8 @@ public final class BatchSonarMetricsHandler implements HttpHandler {
             return;
         }
 
-        Instant startTime = Instant.now();
+        Instant startTime = clock.instant();
+        boolean dispatched = false;
         try {
             String requestBody = readBody(exchange.getRequestBody());
             if (requestBody.isBlank()) {
@@ -67,8 +83,19 @@ public final class BatchSonarMetricsHandler implements HttpHandler {
             }
             JsonObject jsonObject = parseJson(requestBody);
             BatchSonarMetricsRequest batchRequest = BatchSonarMetricsRequest.fromJson(jsonObject);
-            JsonObject response = processBatch(batchRequest, startTime);
-            sendJson(exchange, 200, response);
+            InFlightCalls calls = batchRunner.callsForRequest(startTime);
+            int size = batchRequest.getItems().size();
+            if (wantsStream(exchange)) {
+                sendStreamHeaders(exchange);
+                NdjsonStream stream = new NdjsonStream(exchange.getResponseBody(), calls);
+                dispatched = true;
+                batchRunner.run(batchRequest, calls, new BatchResults(size, stream::writeItem))
+                        .whenComplete((summary, failure) -> completeStream(exchange, stream, summary, failure));
+            } else {
+                dispatched = true;
+                batchRunner.run(batchRequest, calls, new BatchResults(size, null))
+                        .whenComplete((response, failure) -> complete(exchange, calls, response, failure));
+            }
         } catch (ValidationException validationException) {
             LOGGER.info("Batch validation failure: {}", validationException.getMessage());
             sendError(exchange, 400, "BAD_REQUEST", validationException.getMessage());
@@ -76,91 +103,57 @@ public final class BatchSonarMetricsHandler implements HttpHandler {
             LOGGER.info("Malformed JSON payload for batch endpoint", parseException);
             sendError(exchange, 400, "BAD_REQUEST", "Invalid JSON payload");
         } finally {
-            activeRequests.decrementAndGet();
-        }
-    }
-
-    private JsonObject processBatch(BatchSonarMetricsRequest batchRequest, Instant startTime) {
-        JsonObject response = new JsonObject();
-        JsonArray resultsArray = new JsonArray();
-        int successCount = 0;
-        for (BatchItem item : batchRequest.getItems()) {
-            JsonObject itemResult = new JsonObject();
-            itemResult.addProperty("component", item.request().getComponent());
-            item.request().getCustomerId().ifPresent(id -> itemResult.addProperty("custid", id));
-            try {
-                List<SonarMetricValue> metrics = sonarMetricsService.fetchMetrics(item.request(), startTime);
-                itemResult.addProperty("status", "SUCCESS");
-                addMetricFields(itemResult, metrics, item.request().getMetrics());
-                successCount++;
-            } catch (CallTimeoutException callTimeoutException) {
-                LOGGER.warn("Batch item {} timed out: {}", item.index(), callTimeoutException.getMessage());
-                addError(itemResult, "CALL_TIMEOUT", item.request().getMetrics());
-            } catch (JobDeadlineExceededException jobTimeoutException) {
-                LOGGER.warn("Batch item {} exceeded job deadline", item.index());
-                addError(itemResult, "JOB_DEADLINE_EXCEEDED", item.request().getMetrics());
-            } catch (UpstreamErrorException upstreamErrorException) {
-                int statusCode = upstreamErrorException.getStatusCode();
-                boolean serverError = upstreamErrorException.isServerError();
-                String status = serverError ? "UPSTREAM_5XX" : "UPSTREAM_4XX";
-                String message = status + " (" + statusCode + ")";
-                LOGGER.warn("Batch item {} upstream error: {}", item.index(), message);
-                addError(itemResult, status, item.request().getMetrics());
+            if (!dispatched) {
+                activeRequests.decrementAndGet();
             }
-            resultsArray.add(itemResult);
-        }
-
-        int total = batchRequest.getItems().size();
-        response.addProperty("status", resolveBatchStatus(total, successCount));
-        response.add("results", resultsArray);
-        return response;
-    }
-
-    private String resolveBatchStatus(int total, int successCount) {
-        if (successCount == 0) {
-            return "FAILED";
-        }
-        if (successCount == total) {
-            return "SUCCESS";
         }
-        return "PARTIAL_SUCCESS";
     }
 
-    private void addError(JsonObject target, String status, List<String> requestedMetrics) {
-        target.addProperty("status", status);
-        addNullMetricFields(target, requestedMetrics);
-    }
-
-    private void addMetricFields(JsonObject target,
-                                 List<SonarMetricValue> metrics,
-                                 List<String> requestedMetrics) {
-        Map<String, SonarMetricValue> metricsByKey = new HashMap<>();
-        for (SonarMetricValue metricValue : metrics) {
-            metricsByKey.put(metricValue.metric(), metricValue);
-        }
-        for (int i = 0; i < requestedMetrics.size(); i++) {
-            String metricKey = requestedMetrics.get(i);
-            int displayIndex = i + 1;
-            String suffix = String.format("%02d", displayIndex);
-            target.addProperty("metric" + suffix, metricKey);
-            SonarMetricValue metricValue = metricsByKey.get(metricKey);
-            if (metricValue != null) {
-                target.addProperty("value" + suffix, metricValue.value());
-                target.addProperty("bestValue" + suffix, metricValue.bestValue());
+    /**
+     * An unexpected failure cancels the lookups still running before the error is sent, as no item will be reported.
+     */
+    private void complete(HttpExchange exchange, InFlightCalls calls, JsonObject response, Throwable failure) {
+        try {
+            if (failure == null) {
+                sendJson(exchange, 200, response);
             } else {
-                target.add("value" + suffix, JsonNull.INSTANCE);
-                target.add("bestValue" + suffix, JsonNull.INSTANCE);
+                LOGGER.error("Unexpected failure while processing batch", failure);
+                calls.cancel();
+                sendError(exchange, 500, "INTERNAL_ERROR", "Unexpected failure while processing batch");
             }
+        } catch (IOException ioException) {
+            LOGGER.warn("Failed to write batch response: {}", ioException.getMessage());
+            disconnectMonitor.recordDisconnect();
+        } finally {
+            activeRequests.decrementAndGet();
+            exchange.close();
         }
     }
 
-    private void addNullMetricFields(JsonObject target, List<String> requestedMetrics) {
-        for (int i = 0; i < requestedMetrics.size(); i++) {
-            int displayIndex = i + 1;
-            String suffix = String.format("%02d", displayIndex);
-            target.add("metric" + suffix, JsonNull.INSTANCE);
-            target.add("value" + suffix, JsonNull.INSTANCE);
-            target.add("bestValue" + suffix, JsonNull.INSTANCE);
+    /**
+     * Streamed batches end with a summary line instead of a response object. A line that cannot be written stops the
+     * batch; an unexpected failure cancels the lookups still running and ends the stream with an error line, as the
+     * status code was sent with the first line.
+     */
+    private void completeStream(HttpExchange exchange,
+                                NdjsonStream stream,
+                                JsonObject summary,
+                                Throwable failure) {
+        try {
+            if (stream.isBroken()) {
+                LOGGER.info("Client disconnected, abandoned streamed batch request");
+                disconnectMonitor.recordCancelledBatch();
+                return;
+            }
+            if (failure == null) {
+                stream.writeLine(summary);
+            } else {
+                LOGGER.error("Unexpected failure while streaming batch", failure);
+                stream.fail("Unexpected failure while processing batch");
+            }
+        } finally {
+            activeRequests.decrementAndGet();
+            exchange.close();
         }
     }
 
@@ -183,6 +176,29 @@ public final class BatchSonarMetricsHandler implements HttpHandler {
         }
     }
 
+    /**
+     * Streaming is asked for with {@code Accept: application/x-ndjson} or {@code ?stream=true}.
+     */
+    private boolean wantsStream(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null && Arrays.asList(query.split("&")).contains("stream=true")) {
+            return true;
+        }
+        List<String> accept = exchange.getRequestHeaders().get("Accept");
+        return accept != null && accept.stream()
+                .anyMatch(value -> value.toLowerCase(Locale.ROOT).contains(NDJSON));
+    }
+
+    /**
+     * Starts a chunked response.
+     */
+    private void sendStreamHeaders(HttpExchange exchange) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.put("Content-Type", List.of(NDJSON + "; charset=UTF-8"));
+        headers.put("Cache-Control", List.of("no-store"));
+        exchange.sendResponseHeaders(200, 0);
+    }
+
     private void sendError(HttpExchange exchange, int statusCode, String status, String message) throws IOException {
         JsonObject payload = new JsonObject();
         payload.addProperty("status", status);
@@ -199,4 +215,56 @@ public final class BatchSonarMetricsHandler implements HttpHandler {
             outputStream.write(data);
         }
     }
+
+    /**
+     * NDJSON body of a streamed batch: one line per item result, tagged with its {@code data[]} index, as soon as
+     * it is known. A failed write means the client is gone, so the rest of the batch is cancelled.
+     */
+    private final class NdjsonStream {
+        private final OutputStream body;
+        private final InFlightCalls calls;
+        private boolean broken;
+
+        private NdjsonStream(OutputStream body, InFlightCalls calls) {
+            this.body = body;
+            this.calls = calls;
+        }
+
+        private void writeItem(BatchItem item, JsonObject itemResult) {
+            JsonObject line = new JsonObject();
+            line.addProperty("index", item.index());
+            for (Map.Entry<String, JsonElement> field : itemResult.entrySet()) {
+                line.add(field.getKey(), field.getValue());
+            }
+            writeLine(line);
+        }
+
+        private synchronized void writeLine(JsonObject line) {
+            if (broken) {
+                return;
+            }
+            byte[] data = (gson.toJson(line) + "\n").getBytes(StandardCharsets.UTF_8);
+            try {
+                body.write(data);
+                body.flush();
+            } catch (IOException ioException) {
+                broken = true;
+                LOGGER.info("Streamed batch write failed: {}", ioException.getMessage());
+                disconnectMonitor.recordDisconnect();
+                calls.cancel();
+            }
+        }
+
+        private void fail(String message) {
+            calls.cancel();
+            JsonObject line = new JsonObject();
+            line.addProperty("status", "INTERNAL_ERROR");
+            line.addProperty("message", message);
+            writeLine(line);
+        }
+
+        private synchronized boolean isBroken() {
+            return broken;
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package com.softman.devops.handler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts clients that hang up before their response is complete. The JDK HTTP server has no disconnect callback and
+ * no supported way to reach an exchange's socket, so a client is only seen to be gone when writing to it fails: a
+ * streamed batch cancels its remaining lookups at the first line it cannot write, other responses are dropped.
+ */
+public final class ClientDisconnectMonitor {
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong cancelledBatches = new AtomicLong();
+
+    void recordDisconnect() {
+        disconnects.incrementAndGet();
+    }
+
+    void recordCancelledBatch() {
+        cancelledBatches.incrementAndGet();
+    }
+
+    public DisconnectStats stats() {
+        return new DisconnectStats(disconnects.get(), cancelledBatches.get());
+    }
+
+    /**
+     * {@code disconnects} counts responses that could not be written because the client was gone;
+     * {@code cancelledBatches} counts streamed batches abandoned because of it.
+     */
+    public record DisconnectStats(long disconnects, long cancelledBatches) {
+    }
+}
@@ -5,9 +5,13 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.softman.devops.dto.SonarMetricValue;
 import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.service.CallLimiter;
+import com.softman.devops.service.CallLimiter.Priority;
 import com.softman.devops.service.CallTimeoutException;
+import com.softman.devops.service.CircuitOpenException;
 import com.softman.devops.service.JobDeadlineExceededException;
-import com.softman.devops.service.SonarMetricsService;
+import com.softman.devops.service.MetricsSource;
+import com.softman.devops.service.StaleMetricsStore.StaleMetrics;
 import com.softman.devops.service.UpstreamErrorException;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
@@ -20,6 +24,8 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,22 +33,46 @@ import org.slf4j.LoggerFactory;
 public final class SonarMetricsHandler implements HttpHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(SonarMetricsHandler.class);
 
-    private final SonarMetricsService sonarMetricsService;
+    private final MetricsSource metricsSource;
     private final Gson gson;
     private final AtomicInteger activeRequests;
     private final int maxConcurrentRequests;
+    private final ClientDisconnectMonitor disconnectMonitor;
+    private final CallLimiter upstreamCalls;
 
-    public SonarMetricsHandler(SonarMetricsService sonarMetricsService,
+    public SonarMetricsHandler(MetricsSource metricsSource,
                                Gson gson,
                                AtomicInteger activeRequests,
                                int maxConcurrentRequests) {
-        this.sonarMetricsService = Objects.requireNonNull(sonarMetricsService, "sonarMetricsService");
+        this(metricsSource, gson, activeRequests, maxConcurrentRequests, new ClientDisconnectMonitor());
+    }
+
+    public SonarMetricsHandler(MetricsSource metricsSource,
+                               Gson gson,
+                               AtomicInteger activeRequests,
+                               int maxConcurrentRequests,
+                               ClientDisconnectMonitor disconnectMonitor) {
+        this(metricsSource, gson, activeRequests, maxConcurrentRequests, disconnectMonitor, CallLimiter.unlimited());
+    }
+
+    /**
+     * @param upstreamCalls limiter shared with the batch handler; lookups of this handler go first when it is full
+     */
+    public SonarMetricsHandler(MetricsSource metricsSource,
+                               Gson gson,
+                               AtomicInteger activeRequests,
+                               int maxConcurrentRequests,
+                               ClientDisconnectMonitor disconnectMonitor,
+                               CallLimiter upstreamCalls) {
+        this.metricsSource = Objects.requireNonNull(metricsSource, "metricsSource");
         this.gson = Objects.requireNonNull(gson, "gson");
         this.activeRequests = Objects.requireNonNull(activeRequests, "activeRequests");
         if (maxConcurrentRequests <= 0) {
             throw new IllegalArgumentException("maxConcurrentRequests must be positive");
         }
         this.maxConcurrentRequests = maxConcurrentRequests;
+        this.disconnectMonitor = Objects.requireNonNull(disconnectMonitor, "disconnectMonitor");
+        this.upstreamCalls = Objects.requireNonNull(upstreamCalls, "upstreamCalls");
     }
 
     @Override
@@ -59,6 +89,7 @@ public final class SonarMetricsHandler implements HttpHandler {
             return;
         }
         Instant startTime = Instant.now();
+        boolean dispatched = false;
         try {
             String requestBody = readBody(exchange.getRequestBody());
             if (requestBody.isBlank()) {
@@ -66,30 +97,76 @@ public final class SonarMetricsHandler implements HttpHandler {
             }
             JsonObject jsonObject = parseJson(requestBody);
             SonarMetricsRequest sonarRequest = SonarMetricsRequest.fromJson(jsonObject);
-            List<SonarMetricValue> metrics = sonarMetricsService.fetchMetrics(sonarRequest, startTime);
-            sendSuccess(exchange, metrics, sonarRequest.getCustomerId());
+            CompletableFuture<List<SonarMetricValue>> pending = upstreamCalls.submit(Priority.INTERACTIVE,
+                    () -> metricsSource.fetchMetricsBatchedAsync(sonarRequest, startTime));
+            pending.whenComplete((metrics, failure) -> complete(exchange, sonarRequest, metrics, failure));
+            dispatched = true;
         } catch (ValidationException validationException) {
             LOGGER.info("Validation failure: {}", validationException.getMessage());
             sendError(exchange, 400, "BAD_REQUEST", validationException.getMessage());
-        } catch (CallTimeoutException callTimeoutException) {
+        } catch (JsonParseException jsonParseException) {
+            LOGGER.info("Malformed JSON payload", jsonParseException);
+            sendError(exchange, 400, "BAD_REQUEST", "Invalid JSON payload");
+        } finally {
+            if (!dispatched) {
+                activeRequests.decrementAndGet();
+            }
+        }
+    }
+
+    private void complete(HttpExchange exchange,
+                          SonarMetricsRequest sonarRequest,
+                          List<SonarMetricValue> metrics,
+                          Throwable failure) {
+        try {
+            if (failure == null) {
+                sendSuccess(exchange, metrics, sonarRequest.getCustomerId(), Optional.empty());
+                return;
+            }
+            Optional<StaleMetrics> stale = metricsSource.staleMetrics(sonarRequest, failure);
+            if (stale.isPresent()) {
+                sendSuccess(exchange, stale.get().values(), sonarRequest.getCustomerId(), stale);
+            } else {
+                sendFailure(exchange, unwrap(failure));
+            }
+        } catch (IOException ioException) {
+            LOGGER.warn("Failed to write response: {}", ioException.getMessage());
+            disconnectMonitor.recordDisconnect();
+        } finally {
+            activeRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private void sendFailure(HttpExchange exchange, Throwable failure) throws IOException {
+        if (failure instanceof CallTimeoutException callTimeoutException) {
             LOGGER.warn("Call timeout: {}", callTimeoutException.getMessage());
             sendError(exchange, 408, "CALL_TIMEOUT", callTimeoutException.getMessage());
-        } catch (JobDeadlineExceededException jobTimeoutException) {
+        } else if (failure instanceof JobDeadlineExceededException jobTimeoutException) {
             LOGGER.warn("Job timeout: {}", jobTimeoutException.getMessage());
             sendError(exchange, 504, "JOB_DEADLINE_EXCEEDED", jobTimeoutException.getMessage());
-        } catch (UpstreamErrorException upstreamErrorException) {
+        } else if (failure instanceof UpstreamErrorException upstreamErrorException) {
             int statusCode = upstreamErrorException.getStatusCode();
             boolean serverError = upstreamErrorException.isServerError();
             String status = serverError ? "UPSTREAM_5XX" : "UPSTREAM_4XX";
             String message = status + " (" + statusCode + ")";
             LOGGER.warn("Upstream error: {}", message);
             sendError(exchange, statusCode, status, message);
-        } catch (JsonParseException jsonParseException) {
-            LOGGER.info("Malformed JSON payload", jsonParseException);
-            sendError(exchange, 400, "BAD_REQUEST", "Invalid JSON payload");
-        } finally {
-            activeRequests.decrementAndGet();
+        } else if (failure instanceof CircuitOpenException circuitOpenException) {
+            LOGGER.warn("Circuit open: {}", circuitOpenException.getMessage());
+            sendError(exchange, 503, "UPSTREAM_CIRCUIT_OPEN", circuitOpenException.getMessage());
+        } else {
+            LOGGER.error("Unexpected failure while fetching metrics", failure);
+            sendError(exchange, 500, "INTERNAL_ERROR", "Unexpected failure while fetching metrics");
+        }
+    }
+
+    private Throwable unwrap(Throwable failure) {
+        Throwable current = failure;
+        while (current instanceof CompletionException && current.getCause() != null) {
+            current = current.getCause();
         }
+        return current;
     }
 
     private JsonObject parseJson(String requestBody) throws ValidationException {
@@ -100,10 +177,17 @@ public final class SonarMetricsHandler implements HttpHandler {
         return jsonObject;
     }
 
-    private void sendSuccess(HttpExchange exchange, List<SonarMetricValue> metrics, Optional<String> customerId) throws IOException {
+    private void sendSuccess(HttpExchange exchange,
+                             List<SonarMetricValue> metrics,
+                             Optional<String> customerId,
+                             Optional<StaleMetrics> stale) throws IOException {
         JsonObject response = new JsonObject();
         response.addProperty("status", "SUCCESS");
         customerId.ifPresent(id -> response.addProperty("custid", id));
+        stale.ifPresent(staleMetrics -> {
+            response.addProperty("stale", true);
+            response.addProperty("ageSeconds", staleMetrics.age().toSeconds());
+        });
         response.add("result", gson.toJsonTree(metrics));
         sendJson(exchange, 200, response);
     }
@@ -0,0 +1,77 @@
+package com.softman.devops.handler;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.softman.devops.service.CallLimiter;
+import com.softman.devops.service.MetricsSource;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public final class StatsHandler implements HttpHandler {
+    private final MetricsSource metricsSource;
+    private final ClientDisconnectMonitor disconnectMonitor;
+    private final CallLimiter upstreamCalls;
+    private final BatchJobHandler jobs;
+    private final Gson gson;
+
+    /**
+     * @param jobs handler of background batch jobs, {@code null} when they are not served
+     */
+    public StatsHandler(MetricsSource metricsSource,
+                        ClientDisconnectMonitor disconnectMonitor,
+                        CallLimiter upstreamCalls,
+                        BatchJobHandler jobs,
+                        Gson gson) {
+        this.metricsSource = Objects.requireNonNull(metricsSource, "metricsSource");
+        this.disconnectMonitor = Objects.requireNonNull(disconnectMonitor, "disconnectMonitor");
+        this.upstreamCalls = Objects.requireNonNull(upstreamCalls, "upstreamCalls");
+        this.jobs = jobs;
+        this.gson = Objects.requireNonNull(gson, "gson");
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            sendPlainText(exchange, 405, "Method Not Allowed");
+            return;
+        }
+        JsonObject response = new JsonObject();
+        for (Map.Entry<String, Object> section : metricsSource.stats().entrySet()) {
+            response.add(section.getKey(), gson.toJsonTree(section.getValue()));
+        }
+        response.add("upstreamCalls", gson.toJsonTree(upstreamCalls.stats()));
+        response.add("clientDisconnects", gson.toJsonTree(disconnectMonitor.stats()));
+        if (jobs != null) {
+            response.add("jobs", gson.toJsonTree(jobs.stats()));
+        }
+        sendJson(exchange, response);
+    }
+
+    private void sendJson(HttpExchange exchange, JsonObject body) throws IOException {
+        byte[] data = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.put("Content-Type", List.of("application/json; charset=UTF-8"));
+        headers.put("Cache-Control", List.of("no-store"));
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(data);
+        }
+    }
+
+    private void sendPlainText(HttpExchange exchange, int statusCode, String message) throws IOException {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.put("Content-Type", List.of("text/plain; charset=UTF-8"));
+        exchange.sendResponseHeaders(statusCode, data.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(data);
+        }
+    }
+}
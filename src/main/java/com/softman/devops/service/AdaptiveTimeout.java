@@ -0,0 +1,51 @@
+package com.softman.devops.service;
+
+import java.time.Duration;
+
+/**
+ * Per-call timeout learned from a host's latency: p99 times {@code factor}, clamped between {@code floor} and
+ * {@code ceiling}. Until enough samples exist, or when the factor is 0, the ceiling is used.
+ */
+public final class AdaptiveTimeout {
+    static final long MIN_SAMPLES = 20;
+    private static final double PERCENTILE = 99;
+
+    private final double factor;
+    private final Duration floor;
+    private final Duration ceiling;
+
+    public AdaptiveTimeout(double factor, Duration floor, Duration ceiling) {
+        if (factor < 0 || Double.isNaN(factor) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("factor must be a non-negative number");
+        }
+        if (floor == null || floor.isNegative()) {
+            throw new IllegalArgumentException("floor must not be negative");
+        }
+        if (ceiling == null || ceiling.isNegative() || ceiling.isZero()) {
+            throw new IllegalArgumentException("ceiling must be positive");
+        }
+        this.factor = factor;
+        this.floor = floor;
+        this.ceiling = ceiling;
+    }
+
+    public boolean isEnabled() {
+        return factor > 0;
+    }
+
+    public Duration timeoutFor(LatencyHistogram latency) {
+        if (!isEnabled()) {
+            return ceiling;
+        }
+        return latency.percentile(PERCENTILE, MIN_SAMPLES)
+                .map(p99 -> clamp(Duration.ofMillis((long) Math.ceil(p99.toMillis() * factor))))
+                .orElse(ceiling);
+    }
+
+    private Duration clamp(Duration candidate) {
+        if (candidate.compareTo(floor) < 0) {
+            candidate = floor;
+        }
+        return candidate.compareTo(ceiling) > 0 ? ceiling : candidate;
+    }
+}
@@ -0,0 +1,44 @@
+package com.softman.devops.service;
+
+import com.softman.devops.config.BackoffStrategy;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the delay before retry number {@code retry} (1-based), given the delay used before the previous retry
+ * ({@link Duration#ZERO} for the first one).
+ */
+@FunctionalInterface
+public interface BackoffPolicy {
+    Duration nextDelay(int retry, Duration previousDelay);
+
+    static BackoffPolicy of(BackoffStrategy strategy, Duration base, Duration cap) {
+        if (base == null || base.isNegative() || base.isZero()) {
+            throw new IllegalArgumentException("base must be positive");
+        }
+        if (cap == null || cap.compareTo(base) < 0) {
+            throw new IllegalArgumentException("cap must not be less than base");
+        }
+        long baseMillis = base.toMillis();
+        long capMillis = cap.toMillis();
+        return switch (strategy) {
+            case EXPONENTIAL -> (retry, previousDelay) -> Duration.ofMillis(exponentialMillis(baseMillis, capMillis, retry));
+            case FULL_JITTER -> (retry, previousDelay) ->
+                    Duration.ofMillis(randomBetween(0, exponentialMillis(baseMillis, capMillis, retry)));
+            case DECORRELATED_JITTER -> (retry, previousDelay) -> {
+                long upper = Math.max(baseMillis, previousDelay.toMillis()) * 3;
+                return Duration.ofMillis(Math.min(capMillis, randomBetween(baseMillis, upper)));
+            };
+            case FIXED -> (retry, previousDelay) -> base;
+        };
+    }
+
+    private static long exponentialMillis(long baseMillis, long capMillis, int retry) {
+        int shift = Math.min(Math.max(0, retry - 1), 30);
+        return Math.min(capMillis, baseMillis << shift);
+    }
+
+    private static long randomBetween(long lowerInclusive, long upperInclusive) {
+        return ThreadLocalRandom.current().nextLong(lowerInclusive, upperInclusive + 1);
+    }
+}
@@ -0,0 +1,143 @@
+package com.softman.devops.service;
+
+import com.softman.devops.dto.BatchSonarMetricsRequest.BatchItem;
+import com.softman.devops.dto.SonarMetricsRequest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits a batch into upstream calls. Main-branch items that share baseurl and token are grouped into
+ * {@code /api/measures/search} calls of at most {@code maxProjectKeys} distinct components; branch and pull request
+ * items, and groups naming a single component, stay on the per-item path. Items on the per-item path that name the
+ * same component, branch or pull request of the same SonarQube through the same token are merged into one call for
+ * the union of their metrics. Calls are returned in the order of their first item.
+ */
+public final class BatchPlanner {
+    /**
+     * SonarQube's limit on {@code projectKeys} for {@code /api/measures/search}.
+     */
+    public static final int MAX_PROJECT_KEYS = 100;
+
+    private final int maxProjectKeys;
+
+    public BatchPlanner() {
+        this(MAX_PROJECT_KEYS);
+    }
+
+    public BatchPlanner(int maxProjectKeys) {
+        if (maxProjectKeys <= 0 || maxProjectKeys > MAX_PROJECT_KEYS) {
+            throw new IllegalArgumentException("maxProjectKeys must be between 1 and " + MAX_PROJECT_KEYS);
+        }
+        this.maxProjectKeys = maxProjectKeys;
+    }
+
+    public List<PlannedCall> plan(List<BatchItem> items) {
+        List<BatchItem> single = new ArrayList<>();
+        Map<GroupKey, List<BatchItem>> groups = new LinkedHashMap<>();
+        for (BatchItem item : items) {
+            SonarMetricsRequest request = item.request();
+            if (request.getBranch().isPresent() || request.getPullRequest().isPresent()) {
+                single.add(item);
+            } else {
+                GroupKey key = new GroupKey(SonarMetricsService.normalizeBaseUrl(request.getBaseUrl()),
+                        request.getToken());
+                groups.computeIfAbsent(key, ignored -> new ArrayList<>()).add(item);
+            }
+        }
+        List<PlannedCall> calls = new ArrayList<>();
+        for (List<BatchItem> group : groups.values()) {
+            for (List<BatchItem> chunk : chunk(group)) {
+                if (distinctComponents(chunk).size() > 1) {
+                    calls.add(new PlannedCall(true, chunk));
+                } else {
+                    single.addAll(chunk);
+                }
+            }
+        }
+        calls.addAll(merge(single));
+        calls.sort(Comparator.comparingInt(call -> call.items().get(0).index()));
+        return List.copyOf(calls);
+    }
+
+    /**
+     * Per-item calls for {@code items}, one for each distinct component, branch or pull request of a SonarQube and
+     * token, in the order of their first item.
+     */
+    public List<PlannedCall> merge(List<BatchItem> items) {
+        Map<MetricsComponentKey, List<BatchItem>> byComponent = new LinkedHashMap<>();
+        for (BatchItem item : items) {
+            byComponent.computeIfAbsent(MetricsComponentKey.of(item.request()), ignored -> new ArrayList<>())
+                    .add(item);
+        }
+        List<PlannedCall> calls = new ArrayList<>();
+        for (List<BatchItem> merged : byComponent.values()) {
+            merged.sort(Comparator.comparingInt(BatchItem::index));
+            calls.add(new PlannedCall(false, merged));
+        }
+        calls.sort(Comparator.comparingInt(call -> call.items().get(0).index()));
+        return calls;
+    }
+
+    private List<List<BatchItem>> chunk(List<BatchItem> group) {
+        Map<String, List<BatchItem>> byComponent = new LinkedHashMap<>();
+        for (BatchItem item : group) {
+            byComponent.computeIfAbsent(item.request().getComponent(), ignored -> new ArrayList<>()).add(item);
+        }
+        List<List<BatchItem>> chunks = new ArrayList<>();
+        List<BatchItem> current = new ArrayList<>();
+        int components = 0;
+        for (List<BatchItem> componentItems : byComponent.values()) {
+            if (components == maxProjectKeys) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                components = 0;
+            }
+            current.addAll(componentItems);
+            components++;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        for (List<BatchItem> chunk : chunks) {
+            chunk.sort(Comparator.comparingInt(BatchItem::index));
+        }
+        return chunks;
+    }
+
+    private static Set<String> distinctComponents(List<BatchItem> items) {
+        Set<String> components = new LinkedHashSet<>();
+        items.forEach(item -> components.add(item.request().getComponent()));
+        return components;
+    }
+
+    private record GroupKey(String baseUrl, String token) {
+    }
+
+    /**
+     * One upstream call: a measures search over several items, or a per-item call answering one or more items of
+     * the same component.
+     */
+    public record PlannedCall(boolean search, List<BatchItem> items) {
+        public PlannedCall {
+            items = List.copyOf(items);
+        }
+
+        public List<SonarMetricsRequest> requests() {
+            return items.stream().map(BatchItem::request).toList();
+        }
+
+        /**
+         * The request of a per-item call, asking for the metrics of all its items.
+         *
+         * @see SonarMetricsRequest#union(List)
+         */
+        public SonarMetricsRequest request() {
+            return SonarMetricsRequest.union(requests());
+        }
+    }
+}
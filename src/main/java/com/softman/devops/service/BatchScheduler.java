@@ -0,0 +1,198 @@
+package com.softman.devops.service;
+
+import com.softman.devops.config.BatchSchedule;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the upstream calls of one batch, at most {@code parallelism} at once, and gives each the deadline it must
+ * finish by. {@link BatchSchedule#WHOLE_DEADLINE} starts calls in the order they were submitted, each with the whole
+ * job deadline, and only fails the ones still waiting once it has passed. With {@link BatchSchedule#FAIR_SHARE} calls
+ * also start in order, but a call started while {@code n} calls wait gets the time left divided by the
+ * {@code n / parallelism} rounds still to run, so a slow early call cannot use up the time of the later ones.
+ * {@link BatchSchedule#EARLIEST_DEADLINE} starts calls in order with the whole job deadline;
+ * {@link BatchSchedule#SHORTEST_LATENCY} starts the calls expected to answer soonest first, which finishes the most
+ * calls when time runs short. Under these three, a call whose expected latency exceeds its budget is failed with
+ * {@link JobDeadlineExceededException} without being started, leaving its time to the others. Nothing starts before
+ * {@link #start()}, so the first budgets are worked out over the whole batch.
+ */
+public final class BatchScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchScheduler.class);
+    private static final Comparator<Pending<?>> SHORTEST_FIRST = Comparator.comparing(
+            (Pending<?> pending) -> pending.expectedLatency.orElse(null),
+            Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final BatchSchedule schedule;
+    private final int parallelism;
+    private final Instant jobDeadline;
+    private final Clock clock;
+    private final List<Pending<?>> waiting = new ArrayList<>();
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private boolean started;
+    private int running;
+    private int skipped;
+
+    public BatchScheduler(BatchSchedule schedule, int parallelism, Instant jobDeadline, Clock clock) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.schedule = schedule;
+        this.parallelism = parallelism;
+        this.jobDeadline = jobDeadline;
+        this.clock = clock;
+    }
+
+    /**
+     * @param expectedLatency how long the call usually takes, empty when unknown
+     * @param call            starts the call, which must give up at the deadline it is given
+     */
+    public <T> CompletableFuture<T> submit(Optional<Duration> expectedLatency,
+                                           Function<Instant, CompletableFuture<T>> call) {
+        Pending<T> pending = new Pending<>(expectedLatency, call);
+        synchronized (this) {
+            waiting.add(pending);
+        }
+        CallCancellation.onCancel(pending.result, () -> cancel(pending));
+        drain();
+        return pending.result;
+    }
+
+    /**
+     * Lets the submitted calls start; calls submitted afterwards are scheduled straight away.
+     */
+    public void start() {
+        synchronized (this) {
+            started = true;
+        }
+        drain();
+    }
+
+    /**
+     * Calls failed without being started because they could not finish within their budget.
+     */
+    public synchronized int skipped() {
+        return skipped;
+    }
+
+    /**
+     * Starts or skips waiting calls while slots are free. Calls that complete synchronously release their slot from
+     * inside this loop; the counter turns that into another pass instead of a nested drain.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Decision next;
+            while ((next = takeNext()) != null) {
+                if (next.skip()) {
+                    next.pending().skip(next.budget());
+                } else {
+                    next.pending().start(next.deadline());
+                }
+            }
+        } while (drainRequests.decrementAndGet() != 0);
+    }
+
+    private synchronized Decision takeNext() {
+        if (!started || running >= parallelism || waiting.isEmpty()) {
+            return null;
+        }
+        Pending<?> next = schedule == BatchSchedule.SHORTEST_LATENCY
+                ? waiting.stream().min(SHORTEST_FIRST).orElseThrow()
+                : waiting.get(0);
+        Instant now = clock.instant();
+        Instant deadline = deadlineFor(now);
+        waiting.remove(next);
+        Duration budget = now.isBefore(deadline) ? Duration.between(now, deadline) : Duration.ZERO;
+        boolean skip = budget.isZero() || schedule != BatchSchedule.WHOLE_DEADLINE
+                && next.expectedLatency.isPresent() && next.expectedLatency.get().compareTo(budget) > 0;
+        if (skip) {
+            skipped++;
+        } else {
+            running++;
+        }
+        return new Decision(next, deadline, budget, skip);
+    }
+
+    private Instant deadlineFor(Instant now) {
+        if (schedule != BatchSchedule.FAIR_SHARE || !now.isBefore(jobDeadline)) {
+            return jobDeadline;
+        }
+        int rounds = (waiting.size() + parallelism - 1) / parallelism;
+        return now.plus(Duration.between(now, jobDeadline).dividedBy(rounds));
+    }
+
+    private void release() {
+        synchronized (this) {
+            running--;
+        }
+        drain();
+    }
+
+    private void cancel(Pending<?> pending) {
+        boolean dequeued;
+        synchronized (this) {
+            dequeued = waiting.remove(pending);
+        }
+        if (!dequeued) {
+            CompletableFuture<?> inFlight = pending.running;
+            if (inFlight != null) {
+                inFlight.cancel(true);
+            }
+        }
+    }
+
+    private record Decision(Pending<?> pending, Instant deadline, Duration budget, boolean skip) {
+    }
+
+    private final class Pending<T> {
+        private final Optional<Duration> expectedLatency;
+        private final Function<Instant, CompletableFuture<T>> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile CompletableFuture<T> running;
+
+        private Pending(Optional<Duration> expectedLatency, Function<Instant, CompletableFuture<T>> call) {
+            this.expectedLatency = expectedLatency;
+            this.call = call;
+        }
+
+        private void start(Instant deadline) {
+            CompletableFuture<T> started;
+            try {
+                started = call.apply(deadline);
+            } catch (RuntimeException runtimeException) {
+                started = CompletableFuture.failedFuture(runtimeException);
+            }
+            running = started;
+            if (result.isCancelled()) {
+                started.cancel(true);
+            }
+            started.whenComplete((value, failure) -> {
+                release();
+                if (failure != null) {
+                    result.completeExceptionally(SonarMetricsService.unwrap(failure));
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+
+        private void skip(Duration budget) {
+            LOGGER.debug("Skipping batch call expected to take {} ms with {} ms left",
+                    expectedLatency.map(Duration::toMillis).orElse(0L), budget.toMillis());
+            result.completeExceptionally(new JobDeadlineExceededException(
+                    "Skipped, the call cannot finish within its " + budget.toMillis() + " ms budget"));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.softman.devops.service;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+
+/**
+ * Abort switch of one upstream attempt sequence. Exchanges and timers started for the sequence are tracked here;
+ * {@link #cancel()} aborts whichever are still pending, and no further attempt is started afterwards.
+ */
+final class CallCancellation {
+    private final Queue<Future<?>> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean cancelled;
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    <F extends Future<?>> F track(F future) {
+        pending.add(future);
+        if (cancelled) {
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    void cancel() {
+        cancelled = true;
+        Future<?> future;
+        while ((future = pending.poll()) != null) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Runs {@code action} when {@code future} is cancelled, which is how callers abandon a request.
+     */
+    static <T> CompletableFuture<T> onCancel(CompletableFuture<T> future, Runnable action) {
+        future.whenComplete((value, failure) -> {
+            if (future.isCancelled()) {
+                action.run();
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,176 @@
+package com.softman.devops.service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many asynchronous calls run at once without parking threads: a call over the cap waits in a queue and is
+ * started when a running one finishes. Waiting {@link Priority#INTERACTIVE} calls are started before waiting
+ * {@link Priority#BATCH} calls, so batch work cannot hold back single requests. Waiting batch calls start in order of
+ * their deadline, and in order of arrival when deadlines are equal or not given. Cancelling a returned future drops a
+ * waiting call from the queue or cancels the running one.
+ */
+public final class CallLimiter {
+
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    private final int maxCalls;
+    private final Deque<Queued<?>> interactive = new ArrayDeque<>();
+    private final PriorityQueue<Queued<?>> batch = new PriorityQueue<>(Comparator
+            .<Queued<?>, Instant>comparing(queued -> queued.deadline)
+            .thenComparingLong(queued -> queued.sequence));
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private int active;
+    private int peakActive;
+    private long delayedCalls;
+    private long sequence;
+
+    /**
+     * @param maxCalls calls allowed to run at once, 0 for no limit
+     */
+    public CallLimiter(int maxCalls) {
+        if (maxCalls < 0) {
+            throw new IllegalArgumentException("maxCalls must not be negative");
+        }
+        this.maxCalls = maxCalls;
+    }
+
+    public static CallLimiter unlimited() {
+        return new CallLimiter(0);
+    }
+
+    public <T> CompletableFuture<T> submit(Priority priority, Supplier<CompletableFuture<T>> call) {
+        return submit(priority, Instant.MAX, call);
+    }
+
+    /**
+     * @param deadline when the call must have finished; orders waiting batch calls
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Instant deadline, Supplier<CompletableFuture<T>> call) {
+        Queued<T> queued;
+        synchronized (this) {
+            queued = new Queued<>(call, deadline, sequence++);
+            if (isFull()) {
+                delayedCalls++;
+            }
+            (priority == Priority.INTERACTIVE ? interactive : batch).add(queued);
+        }
+        CallCancellation.onCancel(queued.result, () -> cancel(queued));
+        drain();
+        return queued.result;
+    }
+
+    public synchronized LimiterStats stats() {
+        return new LimiterStats(maxCalls, active, peakActive, interactive.size(), batch.size(), delayedCalls);
+    }
+
+    private boolean isFull() {
+        return maxCalls > 0 && active >= maxCalls;
+    }
+
+    /**
+     * Starts waiting calls while permits are free. Calls that complete synchronously release their permit from
+     * inside this loop; the counter turns that into another pass instead of a nested drain.
+     */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Queued<?> next;
+            while ((next = takeNext()) != null) {
+                next.start();
+            }
+        } while (drainRequests.decrementAndGet() != 0);
+    }
+
+    private synchronized Queued<?> takeNext() {
+        if (isFull()) {
+            return null;
+        }
+        Queued<?> next = interactive.poll();
+        if (next == null) {
+            next = batch.poll();
+        }
+        if (next != null) {
+            active++;
+            peakActive = Math.max(peakActive, active);
+        }
+        return next;
+    }
+
+    private void release() {
+        synchronized (this) {
+            active--;
+        }
+        drain();
+    }
+
+    private void cancel(Queued<?> queued) {
+        boolean dequeued;
+        synchronized (this) {
+            dequeued = interactive.remove(queued) || batch.remove(queued);
+        }
+        if (!dequeued) {
+            CompletableFuture<?> running = queued.running;
+            if (running != null) {
+                running.cancel(true);
+            }
+        }
+    }
+
+    private final class Queued<T> {
+        private final Supplier<CompletableFuture<T>> call;
+        private final Instant deadline;
+        private final long sequence;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile CompletableFuture<T> running;
+
+        private Queued(Supplier<CompletableFuture<T>> call, Instant deadline, long sequence) {
+            this.call = call;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        private void start() {
+            CompletableFuture<T> started;
+            try {
+                started = call.get();
+            } catch (RuntimeException runtimeException) {
+                started = CompletableFuture.failedFuture(runtimeException);
+            }
+            running = started;
+            if (result.isCancelled()) {
+                started.cancel(true);
+            }
+            started.whenComplete((value, failure) -> {
+                release();
+                if (failure != null) {
+                    result.completeExceptionally(SonarMetricsService.unwrap(failure));
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+    }
+
+    /**
+     * {@code delayedCalls} counts calls that had to wait for a free slot.
+     */
+    public record LimiterStats(int maxCalls,
+                               int active,
+                               int peakActive,
+                               int waitingInteractive,
+                               int waitingBatch,
+                               long delayedCalls) {
+    }
+}
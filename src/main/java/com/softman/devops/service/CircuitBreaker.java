@@ -0,0 +1,213 @@
+package com.softman.devops.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Count-based circuit breaker for one upstream. Server errors, I/O failures and timeouts count as failures;
+ * once the failure rate over the last {@code windowSize} calls reaches the threshold the circuit opens, and after
+ * {@code openDuration} a single probe call decides whether it closes again.
+ */
+public final class CircuitBreaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        FAILURE,
+        TIMEOUT
+    }
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final Duration openDuration;
+    private final Clock clock;
+    private final Outcome[] window;
+
+    private State state = State.CLOSED;
+    private Instant openedAt;
+    private boolean probeInFlight;
+    private int windowIndex;
+    private int windowCalls;
+    private int windowFailures;
+    private int windowTimeouts;
+    private long trips;
+    private long rejectedCalls;
+
+    public CircuitBreaker(String name,
+                          int failureRateThreshold,
+                          int windowSize,
+                          int minimumCalls,
+                          Duration openDuration,
+                          Clock clock) {
+        if (failureRateThreshold < 0 || failureRateThreshold > 100) {
+            throw new IllegalArgumentException("failureRateThreshold must be between 0 and 100");
+        }
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        if (minimumCalls <= 0 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize");
+        }
+        if (openDuration == null || openDuration.isNegative() || openDuration.isZero()) {
+            throw new IllegalArgumentException("openDuration must be positive");
+        }
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.openDuration = openDuration;
+        this.clock = clock;
+        this.window = new Outcome[windowSize];
+    }
+
+    public boolean isEnabled() {
+        return failureRateThreshold > 0;
+    }
+
+    /**
+     * Returns whether a call may proceed. Every permitted call must be followed by exactly one
+     * {@code record*} call so a half-open probe is released.
+     */
+    public synchronized boolean tryAcquire() {
+        if (!isEnabled()) {
+            return true;
+        }
+        if (state == State.OPEN && !clock.instant().isBefore(openedAt.plus(openDuration))) {
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        rejectedCalls++;
+        return false;
+    }
+
+    public synchronized void recordSuccess() {
+        record(Outcome.SUCCESS);
+    }
+
+    public synchronized void recordFailure(boolean timeout) {
+        record(timeout ? Outcome.TIMEOUT : Outcome.FAILURE);
+    }
+
+    /**
+     * Releases a permitted call that was abandoned (for example cancelled) without recording an outcome.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized BreakerStats stats() {
+        State current = state;
+        long openRemainingMillis = 0;
+        if (current == State.OPEN) {
+            Duration remaining = Duration.between(clock.instant(), openedAt.plus(openDuration));
+            openRemainingMillis = Math.max(0, remaining.toMillis());
+        }
+        return new BreakerStats(isEnabled(), current, failureRatePercent(), windowCalls, windowFailures,
+                windowTimeouts, trips, rejectedCalls, openRemainingMillis);
+    }
+
+    private void record(Outcome outcome) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (state == State.HALF_OPEN && probeInFlight) {
+            probeInFlight = false;
+            if (outcome == Outcome.SUCCESS) {
+                resetWindow();
+                transitionTo(State.CLOSED);
+            } else {
+                trip();
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+        append(outcome);
+        if (windowCalls >= minimumCalls && failureRatePercent() >= failureRateThreshold) {
+            trip();
+        }
+    }
+
+    private void append(Outcome outcome) {
+        Outcome evicted = window[windowIndex];
+        if (evicted == null) {
+            windowCalls++;
+        } else {
+            countOutcome(evicted, -1);
+        }
+        window[windowIndex] = outcome;
+        countOutcome(outcome, 1);
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void countOutcome(Outcome outcome, int delta) {
+        if (outcome == Outcome.FAILURE) {
+            windowFailures += delta;
+        } else if (outcome == Outcome.TIMEOUT) {
+            windowTimeouts += delta;
+        }
+    }
+
+    private int failureRatePercent() {
+        if (windowCalls == 0) {
+            return 0;
+        }
+        return (windowFailures + windowTimeouts) * 100 / windowCalls;
+    }
+
+    private void trip() {
+        trips++;
+        openedAt = clock.instant();
+        transitionTo(State.OPEN);
+    }
+
+    private void resetWindow() {
+        Arrays.fill(window, null);
+        windowIndex = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+        windowTimeouts = 0;
+    }
+
+    private void transitionTo(State next) {
+        if (state == next) {
+            return;
+        }
+        if (next == State.OPEN) {
+            LOGGER.warn("Circuit for {} opened after {}% failures", name, failureRatePercent());
+        } else {
+            LOGGER.info("Circuit for {} changed from {} to {}", name, state, next);
+        }
+        state = next;
+    }
+
+    public record BreakerStats(boolean enabled,
+                               State state,
+                               int failureRatePercent,
+                               int windowCalls,
+                               int windowFailures,
+                               int windowTimeouts,
+                               long trips,
+                               long rejectedCalls,
+                               long openRemainingMillis) {
+    }
+}
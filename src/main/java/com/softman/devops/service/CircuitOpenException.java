@@ -0,0 +1,7 @@
+package com.softman.devops.service;
+
+public final class CircuitOpenException extends Exception {
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
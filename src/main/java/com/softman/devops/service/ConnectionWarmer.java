@@ -0,0 +1,149 @@
+package com.softman.devops.service;
+
+import com.softman.devops.config.WarmupSettings;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens connections to the configured SonarQube hosts before the server takes requests, and keeps them open. A round
+ * sends {@code connectionsPerHost} concurrent {@code GET api/server/version} calls to every host, so DNS lookup,
+ * TCP and TLS setup happen up front and the host's client pools that many connections. Repeating the round more
+ * often than the client's idle timeout (30 s by default) stops the pool from being closed between bursts.
+ */
+public final class ConnectionWarmer implements AutoCloseable {
+    static final String PROBE_PATH = "api/server/version";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionWarmer.class);
+
+    private final WarmupSettings settings;
+    private final UpstreamHostRegistry hostRegistry;
+    private final Duration probeTimeout;
+    private final ScheduledExecutorService timer;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final LongAdder rounds = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder failedProbes = new LongAdder();
+    private volatile ScheduledFuture<?> keepAlive;
+
+    ConnectionWarmer(WarmupSettings settings,
+                     UpstreamHostRegistry hostRegistry,
+                     Duration requestTimeout,
+                     ScheduledExecutorService timer) {
+        this.settings = settings;
+        this.hostRegistry = hostRegistry;
+        // A probe must not outlive the round after it, or keep-alive rounds would pile up on a slow host.
+        this.probeTimeout = settings.isKeepAliveEnabled() && settings.getKeepAliveInterval().compareTo(requestTimeout) < 0
+                ? settings.getKeepAliveInterval()
+                : requestTimeout;
+        this.timer = timer;
+    }
+
+    /**
+     * Runs the first round and schedules the keep-alive rounds. The returned future completes once every probe of
+     * the first round has answered or failed; it never fails.
+     */
+    CompletableFuture<Void> start() {
+        if (!settings.isEnabled() || !started.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        LOGGER.info("Warming up {} connection(s) to each of {}", settings.getConnectionsPerHost(),
+                settings.getTargets());
+        CompletableFuture<Void> warmed = round(true);
+        if (settings.isKeepAliveEnabled()) {
+            long intervalMillis = settings.getKeepAliveInterval().toMillis();
+            keepAlive = timer.scheduleWithFixedDelay(() -> round(false), intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        return warmed;
+    }
+
+    public WarmupStats stats() {
+        return new WarmupStats(settings.isEnabled(), settings.getTargets(), settings.getConnectionsPerHost(),
+                settings.isKeepAliveEnabled() ? settings.getKeepAliveInterval().toSeconds() : 0,
+                rounds.sum(), probes.sum(), failedProbes.sum());
+    }
+
+    @Override
+    public void close() {
+        ScheduledFuture<?> scheduled = keepAlive;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    private CompletableFuture<Void> round(boolean startup) {
+        rounds.increment();
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (String target : settings.getTargets()) {
+            UpstreamHost host;
+            HttpRequest request;
+            try {
+                host = hostRegistry.hostFor(target);
+                request = HttpRequest.newBuilder(URI.create(host.getBaseUrl() + PROBE_PATH))
+                        .timeout(probeTimeout)
+                        .GET()
+                        .build();
+            } catch (RuntimeException invalidTarget) {
+                failedProbes.increment();
+                LOGGER.warn("Cannot warm up {}: {}", target, invalidTarget.getMessage());
+                continue;
+            }
+            for (int i = 0; i < settings.getConnectionsPerHost(); i++) {
+                if (startup) {
+                    calls.add(probe(host, request, true));
+                } else {
+                    // Keep-alive rounds run on the shared timer, which only keeps time.
+                    host.execute(() -> probe(host, request, false));
+                }
+            }
+        }
+        return CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<Void> probe(UpstreamHost host, HttpRequest request, boolean startup) {
+        probes.increment();
+        CompletableFuture<HttpResponse<Void>> sent;
+        try {
+            sent = host.probe(request);
+        } catch (RuntimeException closed) {
+            sent = CompletableFuture.failedFuture(closed);
+        }
+        // Any HTTP status proves the connection; only failures to connect or answer count.
+        return sent.handle((response, failure) -> {
+            if (failure != null) {
+                failedProbes.increment();
+                Throwable cause = SonarMetricsService.unwrap(failure);
+                if (startup) {
+                    LOGGER.warn("Warm-up probe to {} failed: {}", host.getBaseUrl(), cause.toString());
+                } else {
+                    LOGGER.debug("Keep-alive probe to {} failed: {}", host.getBaseUrl(), cause.toString());
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * {@code rounds} includes the startup round; {@code failedProbes} counts probes that got no HTTP response.
+     */
+    public record WarmupStats(boolean enabled,
+                              List<String> targets,
+                              int connectionsPerHost,
+                              long keepAliveSeconds,
+                              long rounds,
+                              long probes,
+                              long failedProbes) {
+    }
+}
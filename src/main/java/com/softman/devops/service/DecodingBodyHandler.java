@@ -0,0 +1,133 @@
+package com.softman.devops.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Streams response bodies and undoes a {@code gzip} or {@code deflate} Content-Encoding while they are read, so a
+ * compressed body is never buffered whole. The decoder is created on the first read rather than in the subscriber,
+ * which must not block. Bytes received on the wire are reported to the host when the body is closed.
+ */
+final class DecodingBodyHandler implements HttpResponse.BodyHandler<InputStream> {
+    private final UpstreamHost host;
+
+    DecodingBodyHandler(UpstreamHost host) {
+        this.host = host;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<InputStream> apply(HttpResponse.ResponseInfo responseInfo) {
+        String encoding = responseInfo.headers().firstValue("Content-Encoding")
+                .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                .orElse("identity");
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+                raw -> new DecodingInputStream(new CountingInputStream(raw, host, !"identity".equals(encoding)),
+                        encoding));
+    }
+
+    static InputStream decoder(InputStream raw, String encoding) throws IOException {
+        return switch (encoding) {
+            case "identity", "" -> raw;
+            case "gzip", "x-gzip" -> new GZIPInputStream(raw);
+            case "deflate" -> inflate(raw);
+            default -> throw new IOException("Unsupported Content-Encoding: " + encoding);
+        };
+    }
+
+    /**
+     * HTTP deflate is meant to be zlib-wrapped, but some servers send a raw deflate stream; the zlib header decides.
+     */
+    private static InputStream inflate(InputStream raw) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(raw, 2);
+        byte[] header = pushback.readNBytes(2);
+        pushback.unread(header);
+        boolean zlib = header.length == 2
+                && (header[0] & 0x0F) == 8
+                && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        return new InflaterInputStream(pushback, new Inflater(!zlib));
+    }
+
+    private static final class DecodingInputStream extends InputStream {
+        private final InputStream raw;
+        private final String encoding;
+        private InputStream decoded;
+
+        private DecodingInputStream(InputStream raw, String encoding) {
+            this.raw = raw;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return stream().read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return stream().read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decoded != null) {
+                decoded.close();
+            } else {
+                raw.close();
+            }
+        }
+
+        private InputStream stream() throws IOException {
+            if (decoded == null) {
+                decoded = decoder(raw, encoding);
+            }
+            return decoded;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final UpstreamHost host;
+        private final boolean compressed;
+        private long count;
+        private boolean closed;
+
+        private CountingInputStream(InputStream in, UpstreamHost host, boolean compressed) {
+            super(in);
+            this.host = host;
+            this.compressed = compressed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                host.recordBody(count, compressed);
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.softman.devops.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Outbound token bucket for one upstream ({@code qps} refill, {@code burst} capacity; qps 0 means unlimited) that
+ * can also be paused, for example by a 429 {@code Retry-After}. Calls reserve a permit up front and are told how
+ * long to wait for it, so waiting callers do not block a thread.
+ */
+public final class HostRateLimiter {
+    private final int qps;
+    private final int burst;
+    private final Clock clock;
+
+    private double tokens;
+    private Instant lastRefill;
+    private Instant pausedUntil;
+    private long delayedCalls;
+    private long deadlineRejections;
+    private long pauses;
+
+    public HostRateLimiter(int qps, int burst, Clock clock) {
+        if (qps < 0) {
+            throw new IllegalArgumentException("qps must not be negative");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        this.qps = qps;
+        this.burst = burst;
+        this.clock = clock;
+        this.tokens = burst;
+        this.lastRefill = clock.instant();
+        this.pausedUntil = lastRefill;
+    }
+
+    /**
+     * Reserves a permit and returns how long the caller must wait before using it, or empty (reserving nothing)
+     * when the permit would only be available after {@code deadline}.
+     */
+    public synchronized Optional<Duration> reserve(Instant deadline) {
+        Instant now = clock.instant();
+        refill(now);
+        Instant availableAt = pausedUntil.isAfter(now) ? pausedUntil : now;
+        if (qps > 0 && tokens < 1) {
+            Instant refilledAt = now.plusNanos((long) Math.ceil((1 - tokens) * 1_000_000_000L / qps));
+            if (refilledAt.isAfter(availableAt)) {
+                availableAt = refilledAt;
+            }
+        }
+        if (availableAt.isAfter(deadline)) {
+            deadlineRejections++;
+            return Optional.empty();
+        }
+        if (qps > 0) {
+            tokens -= 1;
+        }
+        Duration wait = Duration.between(now, availableAt);
+        if (!wait.isZero()) {
+            delayedCalls++;
+        }
+        return Optional.of(wait);
+    }
+
+    /**
+     * Takes a permit only if one is available right now.
+     */
+    public synchronized boolean tryAcquire() {
+        Instant now = clock.instant();
+        refill(now);
+        if (pausedUntil.isAfter(now) || (qps > 0 && tokens < 1)) {
+            return false;
+        }
+        if (qps > 0) {
+            tokens -= 1;
+        }
+        return true;
+    }
+
+    /**
+     * Holds every call to this host for {@code duration}, extending (never shortening) an existing pause.
+     */
+    public synchronized void pause(Duration duration) {
+        Instant until = clock.instant().plus(duration);
+        if (until.isAfter(pausedUntil)) {
+            pausedUntil = until;
+            pauses++;
+        }
+    }
+
+    public synchronized RateLimiterStats stats() {
+        Instant now = clock.instant();
+        refill(now);
+        long pausedForMillis = pausedUntil.isAfter(now) ? Duration.between(now, pausedUntil).toMillis() : 0;
+        return new RateLimiterStats(qps, burst, qps > 0 ? tokens : burst, pausedForMillis, pauses, delayedCalls,
+                deadlineRejections);
+    }
+
+    private void refill(Instant now) {
+        if (qps > 0 && now.isAfter(lastRefill)) {
+            double elapsedSeconds = Duration.between(lastRefill, now).toNanos() / 1_000_000_000.0;
+            tokens = Math.min(burst, tokens + elapsedSeconds * qps);
+        }
+        lastRefill = now;
+    }
+
+    public record RateLimiterStats(int qps,
+                                   int burst,
+                                   double availableTokens,
+                                   long pausedForMillis,
+                                   long pauses,
+                                   long delayedCalls,
+                                   long deadlineRejections) {
+    }
+}
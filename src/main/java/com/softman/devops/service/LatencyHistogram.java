@@ -0,0 +1,100 @@
+package com.softman.devops.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Rolling latency histogram with logarithmic buckets (about 20% wide, 1 ms to 10 min). Samples older than two
+ * windows are dropped, so percentiles follow recent behaviour. Percentiles report the bucket's upper bound.
+ */
+public final class LatencyHistogram {
+    private static final long[] BUCKET_UPPER_MILLIS = buildBuckets();
+
+    private final long windowMillis;
+    private final Clock clock;
+    private long[] current = new long[BUCKET_UPPER_MILLIS.length];
+    private long[] previous = new long[BUCKET_UPPER_MILLIS.length];
+    private long currentStart;
+
+    public LatencyHistogram(Duration window, Clock clock) {
+        if (window == null || window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.windowMillis = window.toMillis();
+        this.clock = clock;
+        this.currentStart = clock.millis();
+    }
+
+    public synchronized void record(Duration latency) {
+        rotate();
+        current[bucketFor(latency.toMillis())]++;
+    }
+
+    public synchronized long count() {
+        rotate();
+        long total = 0;
+        for (int i = 0; i < current.length; i++) {
+            total += current[i] + previous[i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the {@code percentile} (0-100) latency, or empty while fewer than {@code minSamples} are recorded.
+     */
+    public synchronized Optional<Duration> percentile(double percentile, long minSamples) {
+        long total = count();
+        if (total == 0 || total < minSamples) {
+            return Optional.empty();
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < current.length; i++) {
+            seen += current[i] + previous[i];
+            if (seen >= Math.max(1, rank)) {
+                return Optional.of(Duration.ofMillis(BUCKET_UPPER_MILLIS[i]));
+            }
+        }
+        return Optional.of(Duration.ofMillis(BUCKET_UPPER_MILLIS[BUCKET_UPPER_MILLIS.length - 1]));
+    }
+
+    private void rotate() {
+        long now = clock.millis();
+        long elapsed = now - currentStart;
+        if (elapsed < windowMillis) {
+            return;
+        }
+        long[] recycled = previous;
+        Arrays.fill(recycled, 0);
+        if (elapsed < 2 * windowMillis) {
+            previous = current;
+        } else {
+            Arrays.fill(current, 0);
+            previous = current;
+        }
+        current = recycled;
+        currentStart = now - (elapsed % windowMillis);
+    }
+
+    private static int bucketFor(long millis) {
+        int index = Arrays.binarySearch(BUCKET_UPPER_MILLIS, millis);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, BUCKET_UPPER_MILLIS.length - 1);
+    }
+
+    private static long[] buildBuckets() {
+        long[] buckets = new long[128];
+        int count = 0;
+        long bound = 1;
+        while (bound < Duration.ofMinutes(10).toMillis()) {
+            buckets[count++] = bound;
+            bound = Math.max(bound + 1, (long) Math.ceil(bound * 1.2));
+        }
+        buckets[count++] = bound;
+        return Arrays.copyOf(buckets, count);
+    }
+}
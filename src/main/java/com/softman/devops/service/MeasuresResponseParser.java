@@ -0,0 +1,248 @@
+package com.softman.devops.service;
+
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.softman.devops.dto.SonarMetricValue;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams a {@code /api/measures/component} body and keeps only {@code component.measures[].metric/value/bestValue}
+ * ({@code /api/measures/search} bodies keep {@code measures[].component} as well). Every other field is skipped
+ * without being materialized.
+ */
+public final class MeasuresResponseParser {
+    private final long maxBodyBytes;
+
+    public MeasuresResponseParser(long maxBodyBytes) {
+        if (maxBodyBytes <= 0) {
+            throw new IllegalArgumentException("maxBodyBytes must be positive");
+        }
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public long getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    public List<SonarMetricValue> parse(InputStream body) throws UpstreamErrorException {
+        return read(body, this::readRoot);
+    }
+
+    /**
+     * Parses a {@code /api/measures/search} body into measures per component key, in response order.
+     */
+    public Map<String, List<SonarMetricValue>> parseSearch(InputStream body) throws UpstreamErrorException {
+        return read(body, this::readSearchRoot);
+    }
+
+    private <T> T read(InputStream body, RootReader<T> rootReader) throws UpstreamErrorException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new BoundedInputStream(body, maxBodyBytes),
+                StandardCharsets.UTF_8))) {
+            reader.setStrictness(Strictness.LENIENT);
+            return rootReader.read(reader);
+        } catch (BodyTooLargeException tooLargeException) {
+            throw new UpstreamErrorException("SonarQube response exceeds " + maxBodyBytes + " bytes", 502, tooLargeException);
+        } catch (IOException | RuntimeException exception) {
+            throw new UpstreamErrorException("Invalid response from SonarQube", 502, exception);
+        }
+    }
+
+    private Map<String, List<SonarMetricValue>> readSearchRoot(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.BEGIN_OBJECT, "root");
+        Map<String, List<SonarMetricValue>> measuresByComponent = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("measures".equals(reader.nextName())) {
+                measuresByComponent = readSearchMeasures(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (measuresByComponent == null) {
+            throw new IllegalStateException("measures array is missing");
+        }
+        return measuresByComponent;
+    }
+
+    private Map<String, List<SonarMetricValue>> readSearchMeasures(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.BEGIN_ARRAY, "measures");
+        Map<String, List<SonarMetricValue>> results = new LinkedHashMap<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            ComponentMeasure measure = readMeasure(reader);
+            if (measure.component() == null) {
+                throw new IllegalStateException("component missing");
+            }
+            results.computeIfAbsent(measure.component(), ignored -> new ArrayList<>()).add(measure.value());
+        }
+        reader.endArray();
+        return results;
+    }
+
+    private List<SonarMetricValue> readRoot(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.BEGIN_OBJECT, "root");
+        List<SonarMetricValue> measures = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("component".equals(reader.nextName())) {
+                measures = readComponent(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (measures == null) {
+            throw new IllegalStateException("component is missing");
+        }
+        return measures;
+    }
+
+    private List<SonarMetricValue> readComponent(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.BEGIN_OBJECT, "component");
+        List<SonarMetricValue> measures = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("measures".equals(reader.nextName())) {
+                measures = readMeasures(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (measures == null) {
+            throw new IllegalStateException("measures array is missing");
+        }
+        return measures;
+    }
+
+    private List<SonarMetricValue> readMeasures(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.BEGIN_ARRAY, "measures");
+        List<SonarMetricValue> results = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            results.add(readMeasure(reader).value());
+        }
+        reader.endArray();
+        return results;
+    }
+
+    private ComponentMeasure readMeasure(JsonReader reader) throws IOException {
+        expect(reader, JsonToken.BEGIN_OBJECT, "measure");
+        String component = null;
+        String metric = null;
+        String value = null;
+        boolean bestValue = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "component" -> component = readPrimitiveAsString(reader, "component");
+                case "metric" -> metric = readPrimitiveAsString(reader, "metric");
+                case "value" -> value = readPrimitiveAsString(reader, "value");
+                case "bestValue" -> bestValue = readBoolean(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (metric == null) {
+            throw new IllegalStateException("metric missing");
+        }
+        if (value == null) {
+            throw new IllegalStateException("value missing");
+        }
+        return new ComponentMeasure(component, new SonarMetricValue(metric, value, bestValue));
+    }
+
+    private String readPrimitiveAsString(JsonReader reader, String key) throws IOException {
+        JsonToken token = reader.peek();
+        return switch (token) {
+            case STRING, NUMBER -> reader.nextString();
+            case BOOLEAN -> String.valueOf(reader.nextBoolean());
+            case NULL -> {
+                reader.nextNull();
+                yield null;
+            }
+            default -> throw new IllegalStateException(key + " is not a primitive");
+        };
+    }
+
+    private boolean readBoolean(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        return switch (token) {
+            case BOOLEAN -> reader.nextBoolean();
+            case STRING -> Boolean.parseBoolean(reader.nextString().toLowerCase(Locale.ROOT));
+            case NUMBER -> new BigDecimal(reader.nextString()).intValue() != 0;
+            case NULL -> {
+                reader.nextNull();
+                yield false;
+            }
+            default -> throw new IllegalStateException("bestValue must be a boolean-compatible primitive");
+        };
+    }
+
+    private void expect(JsonReader reader, JsonToken expected, String context) throws IOException {
+        if (reader.peek() != expected) {
+            throw new IllegalStateException(context + " must be " + expected);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RootReader<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+
+    private record ComponentMeasure(String component, SonarMetricValue value) {
+    }
+
+    private static final class BodyTooLargeException extends IOException {
+        private BodyTooLargeException(long limit) {
+            super("Body exceeds " + limit + " bytes");
+        }
+    }
+
+    private static final class BoundedInputStream extends FilterInputStream {
+        private final long limit;
+        private long consumed;
+
+        private BoundedInputStream(InputStream delegate, long limit) {
+            super(delegate);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int bytes) throws BodyTooLargeException {
+            consumed += bytes;
+            if (consumed > limit) {
+                throw new BodyTooLargeException(limit);
+            }
+        }
+    }
+}
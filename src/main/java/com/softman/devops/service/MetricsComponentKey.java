@@ -0,0 +1,19 @@
+package com.softman.devops.service;
+
+import com.softman.devops.dto.SonarMetricsRequest;
+import java.util.Optional;
+
+/**
+ * Identity of a SonarQube component as seen through one token, without the metric list. The token is kept only as a
+ * SHA-256 digest.
+ */
+public record MetricsComponentKey(String baseUrl,
+                                  String tokenHash,
+                                  String component,
+                                  Optional<String> branch,
+                                  Optional<String> pullRequest) {
+
+    public static MetricsComponentKey of(SonarMetricsRequest request) {
+        return MetricsRequestKey.of(request).componentKey();
+    }
+}
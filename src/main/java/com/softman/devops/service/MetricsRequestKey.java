@@ -0,0 +1,57 @@
+package com.softman.devops.service;
+
+import com.softman.devops.dto.SonarMetricsRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Identity of an upstream measures lookup. The token is kept only as a SHA-256 digest.
+ */
+public record MetricsRequestKey(String baseUrl,
+                                String tokenHash,
+                                String component,
+                                Optional<String> branch,
+                                Optional<String> pullRequest,
+                                List<String> metrics) {
+
+    public MetricsRequestKey {
+        metrics = List.copyOf(metrics);
+    }
+
+    public static MetricsRequestKey of(SonarMetricsRequest request) {
+        return of(request, request.getMetrics());
+    }
+
+    /**
+     * Key for fetching only {@code metrics} of the request's component.
+     */
+    public static MetricsRequestKey of(SonarMetricsRequest request, List<String> requestedMetrics) {
+        Optional<String> pullRequest = request.getPullRequest();
+        Optional<String> branch = pullRequest.isPresent() ? Optional.empty() : request.getBranch();
+        List<String> metrics = requestedMetrics.stream().sorted().toList();
+        return new MetricsRequestKey(
+                SonarMetricsService.normalizeBaseUrl(request.getBaseUrl()),
+                hashToken(request.getToken()),
+                request.getComponent(),
+                branch,
+                pullRequest,
+                metrics);
+    }
+
+    public MetricsComponentKey componentKey() {
+        return new MetricsComponentKey(baseUrl, tokenHash, component, branch, pullRequest);
+    }
+
+    static String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+}
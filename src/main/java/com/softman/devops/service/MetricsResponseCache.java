@@ -0,0 +1,219 @@
+package com.softman.devops.service;
+
+import com.softman.devops.dto.SonarMetricValue;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of upstream measures with a global TTL. Entries are per component and hold each fetched metric
+ * with its own timestamp, so a request for a subset of previously fetched metrics is a hit and a request for a
+ * superset only needs the missing ones. Metrics SonarQube returned no value for are remembered as absent.
+ * With a {@link MetricsSnapshotStore}, stored metrics are also written to disk and a component that is not in memory
+ * is restored from the snapshot, with its original fetch times, before counting as a miss. The snapshot is never
+ * called while the entries are locked.
+ */
+public final class MetricsResponseCache {
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+    private final MetricsSnapshotStore snapshot;
+    private final LinkedHashMap<MetricsComponentKey, Map<String, StoredMetric>> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong partialHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong restored = new AtomicLong();
+
+    public MetricsResponseCache(int maxEntries, Duration ttl, Clock clock) {
+        this(maxEntries, ttl, clock, MetricsSnapshotStore.disabled());
+    }
+
+    public MetricsResponseCache(int maxEntries, Duration ttl, Clock clock, MetricsSnapshotStore snapshot) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative");
+        }
+        if (ttl == null || ttl.isNegative()) {
+            throw new IllegalArgumentException("ttl must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.snapshot = snapshot;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MetricsComponentKey, Map<String, StoredMetric>> eldest) {
+                if (size() > MetricsResponseCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0 && !ttl.isZero();
+    }
+
+    /**
+     * Returns the stored values of {@code metrics} in the given order, plus the metrics that are missing, expired or
+     * older than {@code maxAge}.
+     */
+    public CacheLookup lookup(MetricsComponentKey key, List<String> metrics, Optional<Duration> maxAge) {
+        if (!isEnabled()) {
+            return new CacheLookup(List.of(), List.copyOf(metrics));
+        }
+        Instant now = clock.instant();
+        List<SonarMetricValue> found = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        boolean inMemory;
+        synchronized (entries) {
+            inMemory = entries.containsKey(key);
+        }
+        Map<String, StoredMetric> restoredMetrics = inMemory ? null : restorable(key);
+        synchronized (entries) {
+            Map<String, StoredMetric> stored = entries.get(key);
+            if (stored == null && restoredMetrics != null) {
+                stored = restoredMetrics;
+                entries.put(key, stored);
+                restored.addAndGet(stored.size());
+            }
+            for (String metric : metrics) {
+                StoredMetric storedMetric = stored == null ? null : stored.get(metric);
+                if (storedMetric == null) {
+                    missing.add(metric);
+                    continue;
+                }
+                Duration age = Duration.between(storedMetric.storedAt(), now);
+                if (age.compareTo(ttl) >= 0) {
+                    stored.remove(metric);
+                    missing.add(metric);
+                } else if (maxAge.isPresent() && age.compareTo(maxAge.get()) > 0) {
+                    missing.add(metric);
+                } else {
+                    storedMetric.value().ifPresent(found::add);
+                }
+            }
+            if (stored != null && stored.isEmpty()) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+        }
+        if (missing.isEmpty()) {
+            hits.incrementAndGet();
+        } else if (missing.size() < metrics.size()) {
+            partialHits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return new CacheLookup(List.copyOf(found), List.copyOf(missing));
+    }
+
+    /**
+     * Whether a {@link #lookup} would be a hit, without counting it, expiring entries or restoring the component
+     * from the snapshot: metrics only found in the snapshot count as cached, as a lookup would restore them.
+     */
+    public boolean contains(MetricsComponentKey key, List<String> metrics, Optional<Duration> maxAge) {
+        if (!isEnabled()) {
+            return false;
+        }
+        Instant now = clock.instant();
+        synchronized (entries) {
+            Map<String, StoredMetric> stored = entries.get(key);
+            if (stored != null) {
+                for (String metric : metrics) {
+                    StoredMetric storedMetric = stored.get(metric);
+                    if (storedMetric == null) {
+                        return false;
+                    }
+                    Duration age = Duration.between(storedMetric.storedAt(), now);
+                    if (age.compareTo(ttl) >= 0 || maxAge.isPresent() && age.compareTo(maxAge.get()) > 0) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return snapshot.contains(key, metrics);
+    }
+
+    /**
+     * Stores the outcome of fetching {@code requestedMetrics}; requested metrics without a value in {@code values}
+     * are stored as absent.
+     */
+    public void put(MetricsComponentKey key, List<String> requestedMetrics, List<SonarMetricValue> values) {
+        if (!isEnabled()) {
+            return;
+        }
+        Instant now = clock.instant();
+        Map<String, SonarMetricValue> byMetric = new HashMap<>();
+        values.forEach(value -> byMetric.put(value.metric(), value));
+        synchronized (entries) {
+            Map<String, StoredMetric> stored = entries.get(key);
+            if (stored == null) {
+                stored = new HashMap<>();
+                entries.put(key, stored);
+            }
+            for (String metric : requestedMetrics) {
+                stored.put(metric, new StoredMetric(Optional.ofNullable(byMetric.get(metric)), now));
+            }
+        }
+        snapshot.append(key, requestedMetrics, values, now);
+    }
+
+    /**
+     * Takes the snapshotted metrics of {@code key}; called without holding the entries lock.
+     */
+    private Map<String, StoredMetric> restorable(MetricsComponentKey key) {
+        Map<String, MetricsSnapshotStore.SnapshotMetric> snapshotted = snapshot.take(key);
+        if (snapshotted.isEmpty()) {
+            return null;
+        }
+        Map<String, StoredMetric> stored = new HashMap<>();
+        snapshotted.forEach((metric, restoredMetric) ->
+                stored.put(metric, new StoredMetric(restoredMetric.value(), restoredMetric.fetchedAt())));
+        return stored;
+    }
+
+    public CacheStats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(isEnabled(), size, maxEntries, ttl.toSeconds(),
+                hits.get(), partialHits.get(), misses.get(), evictions.get(), expirations.get(), restored.get());
+    }
+
+    private record StoredMetric(Optional<SonarMetricValue> value, Instant storedAt) {
+    }
+
+    /**
+     * Result of a cache lookup: the values found, in request order, and the metrics still to fetch.
+     */
+    public record CacheLookup(List<SonarMetricValue> found, List<String> missing) {
+        public boolean isHit() {
+            return missing.isEmpty();
+        }
+    }
+
+    public record CacheStats(boolean enabled,
+                             int size,
+                             int maxEntries,
+                             long ttlSeconds,
+                             long hits,
+                             long partialHits,
+                             long misses,
+                             long evictions,
+                             long expirations,
+                             long restored) {
+    }
+}
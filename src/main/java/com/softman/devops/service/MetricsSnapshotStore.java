@@ -0,0 +1,508 @@
+package com.softman.devops.service;
+
+import com.softman.devops.dto.SonarMetricValue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only on-disk log of fetched metrics that lets {@link MetricsResponseCache} start warm after a restart.
+ * Every stored metric is written as one record holding the component key, metric, value, bestValue and fetch time;
+ * the token is only present as its SHA-256 digest.
+ *
+ * <p>The file found at startup is mapped read-only with {@link FileChannel#map}. Opening only checks the header;
+ * the walk that checks the records and indexes their offsets by component and metric runs in the background, and
+ * {@link #indexed()} completes once it is done. A record's value is only decoded when its component is looked up,
+ * after which the component lives in memory and is dropped from the index. Lookups read the startup mapping and
+ * never wait for the file.
+ *
+ * <p>Appends are queued to a single writer thread, so the threads that fetched the metrics never block on the file;
+ * when {@value #QUEUE_CAPACITY} appends are already waiting, new ones are dropped. When the file outgrows
+ * {@code maxBytes} the writer compacts it to the newest record per metric younger than {@code retention}, oldest
+ * records going first if that is still too large.
+ */
+public final class MetricsSnapshotStore implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsSnapshotStore.class);
+    private static final byte[] MAGIC = "SMSNAP01".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+    private static final byte HAS_VALUE = 1;
+    private static final byte BEST_VALUE = 2;
+    /**
+     * Largest {@code maxBytes}: record offsets are ints and the file is mapped whole, so it must stay below 2 GB
+     * even while it briefly outgrows the cap before compaction.
+     */
+    public static final int MAX_MEGABYTES = 2047;
+    static final int QUEUE_CAPACITY = 1024;
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Path file;
+    private final long maxBytes;
+    private final Duration retention;
+    private final Clock clock;
+    private final CompletableFuture<Void> indexed = new CompletableFuture<>();
+    private final AtomicLong restoredMetrics = new AtomicLong();
+    private final AtomicLong appendedRecords = new AtomicLong();
+    private final AtomicLong droppedAppends = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private volatile ThreadPoolExecutor writer;
+    private volatile FileChannel channel;
+    private volatile MappedByteBuffer mapped;
+    private final Map<MetricsComponentKey, Map<String, Integer>> index = new ConcurrentHashMap<>();
+
+    private MetricsSnapshotStore(Path file, long maxBytes, Duration retention, Clock clock) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.retention = retention;
+        this.clock = clock;
+    }
+
+    public static MetricsSnapshotStore disabled() {
+        MetricsSnapshotStore store = new MetricsSnapshotStore(null, 0, Duration.ZERO, Clock.systemUTC());
+        store.indexed.complete(null);
+        return store;
+    }
+
+    /**
+     * Opens or creates the snapshot at {@code file}. A snapshot that cannot be opened disables snapshotting with a
+     * warning; the service then simply starts cold.
+     */
+    public static MetricsSnapshotStore open(Path file, long maxBytes, Duration retention, Clock clock) {
+        if (maxBytes <= MAGIC.length) {
+            throw new IllegalArgumentException("maxBytes must exceed the snapshot header");
+        }
+        if (maxBytes > MAX_MEGABYTES * 1024L * 1024L) {
+            throw new IllegalArgumentException("maxBytes must not exceed " + MAX_MEGABYTES + " MB");
+        }
+        if (retention == null || retention.isNegative() || retention.isZero()) {
+            throw new IllegalArgumentException("retention must be positive");
+        }
+        MetricsSnapshotStore store = new MetricsSnapshotStore(file, maxBytes, retention, clock);
+        try {
+            store.openFile();
+            return store;
+        } catch (IOException | RuntimeException exception) {
+            LOGGER.warn("Metrics snapshot {} unavailable, starting without it: {}", file, exception.getMessage());
+            store.close();
+            return disabled();
+        }
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    /**
+     * Completes once the records found at startup are indexed; until then nothing is restored.
+     */
+    public CompletableFuture<Void> indexed() {
+        return indexed;
+    }
+
+    private void openFile() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        boolean created = !Files.exists(file);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (created && FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        }
+        if (!hasHeader(channel)) {
+            if (channel.size() > 0) {
+                LOGGER.warn("Metrics snapshot {} has an unknown format, starting a new one", file);
+            }
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(MAGIC), 0);
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        channel.position(channel.size());
+        writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setName("softman-snapshot-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        writer.execute(this::buildIndex);
+        LOGGER.info("Metrics snapshot {} opened with {} bytes", file, channel.size());
+    }
+
+    /**
+     * Runs first on the writer: checks and indexes the records found at startup, drops an incomplete tail and
+     * compacts a file that is already too large, before any append touches it.
+     */
+    private void buildIndex() {
+        try {
+            Map<MetricsComponentKey, Map<String, Integer>> startupIndex = new HashMap<>();
+            long validEnd = scan(mapped, startupIndex);
+            if (validEnd < channel.size()) {
+                LOGGER.warn("Dropping {} bytes of incomplete records from metrics snapshot {}",
+                        channel.size() - validEnd, file);
+                channel.truncate(validEnd);
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, validEnd);
+                channel.position(validEnd);
+            }
+            index.putAll(startupIndex);
+            LOGGER.info("Indexed {} components of metrics snapshot {}", startupIndex.size(), file);
+            if (channel.size() > maxBytes) {
+                compact();
+            }
+        } catch (IOException | RuntimeException exception) {
+            disable(exception);
+        } finally {
+            indexed.complete(null);
+        }
+    }
+    private static boolean hasHeader(FileChannel channel) throws IOException {
+        if (channel.size() < MAGIC.length) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+        channel.read(header, 0);
+        return Arrays.equals(header.array(), MAGIC);
+    }
+
+    /**
+     * Returns the snapshotted metrics of {@code key} that are younger than the retention and forgets them, so each
+     * component is restored from disk at most once.
+     */
+    public Map<String, SnapshotMetric> take(MetricsComponentKey key) {
+        MappedByteBuffer startup = mapped;
+        Map<String, Integer> offsets = index.remove(key);
+        if (offsets == null || startup == null) {
+            return Map.of();
+        }
+        Instant oldest = clock.instant().minus(retention);
+        Map<String, SnapshotMetric> metrics = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+            Record record = readRecord(startup, entry.getValue(), true);
+            if (record != null && record.fetchedAt().isAfter(oldest)) {
+                metrics.put(entry.getKey(), new SnapshotMetric(record.value(), record.fetchedAt()));
+            }
+        }
+        restoredMetrics.addAndGet(metrics.size());
+        return metrics;
+    }
+
+    /**
+     * Whether every one of {@code metrics} of {@code key} is indexed and waiting to be restored, without decoding or
+     * taking anything.
+     */
+    public boolean contains(MetricsComponentKey key, List<String> metrics) {
+        Map<String, Integer> offsets = index.get(key);
+        return offsets != null && offsets.keySet().containsAll(metrics);
+    }
+
+    /**
+     * Queues the outcome of fetching {@code requestedMetrics} for the writer, dropping it when the queue is full.
+     */
+    public void append(MetricsComponentKey key,
+                       List<String> requestedMetrics,
+                       List<SonarMetricValue> values,
+                       Instant fetchedAt) {
+        ThreadPoolExecutor current = writer;
+        if (current == null) {
+            return;
+        }
+        List<String> metrics = List.copyOf(requestedMetrics);
+        List<SonarMetricValue> fetched = List.copyOf(values);
+        try {
+            current.execute(() -> write(key, metrics, fetched, fetchedAt));
+        } catch (RejectedExecutionException rejected) {
+            droppedAppends.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs on the writer: appends the records of one fetch, compacting the file when it outgrows the cap.
+     */
+    private void write(MetricsComponentKey key,
+                       List<String> requestedMetrics,
+                       List<SonarMetricValue> values,
+                       Instant fetchedAt) {
+        if (channel == null) {
+            return;
+        }
+        index.remove(key);
+        Map<String, SonarMetricValue> byMetric = new HashMap<>();
+        values.forEach(value -> byMetric.put(value.metric(), value));
+        try {
+            for (String metric : requestedMetrics) {
+                ByteBuffer record = encode(key, metric, Optional.ofNullable(byMetric.get(metric)), fetchedAt);
+                if (record != null) {
+                    while (record.hasRemaining()) {
+                        channel.write(record);
+                    }
+                    appendedRecords.incrementAndGet();
+                }
+            }
+            if (channel.size() > maxBytes) {
+                compact();
+            }
+        } catch (IOException | RuntimeException exception) {
+            // The snapshot only warms the cache; a failure here must never reach the request that fetched the values.
+            disable(exception);
+        }
+    }
+
+    private void disable(Exception exception) {
+        LOGGER.warn("Disabling metrics snapshot {} after write failure: {}", file, exception.getMessage());
+        writer.shutdownNow();
+        closeChannel();
+    }
+
+    /**
+     * Rewrites the file with the newest record per metric that is younger than the retention, keeping at most half
+     * of {@code maxBytes} so compaction does not run on every append. Runs on the writer only. The index points into
+     * the mapping taken at startup, which is kept as it stays readable after the file is replaced.
+     */
+    private void compact() throws IOException {
+        MappedByteBuffer current = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        Map<MetricIdentity, Integer> latest = new LinkedHashMap<>();
+        Instant oldest = clock.instant().minus(retention);
+        for (int offset = MAGIC.length; offset < current.limit(); offset += recordSize(current, offset)) {
+            Record record = readRecord(current, offset, false);
+            if (record == null) {
+                break;
+            }
+            MetricIdentity identity = new MetricIdentity(record.componentKey(), record.metric());
+            latest.remove(identity);
+            if (record.fetchedAt().isAfter(oldest)) {
+                latest.put(identity, offset);
+            }
+        }
+        // Records are appended as they are fetched, so file order is age order and the oldest come first.
+        List<Integer> kept = new ArrayList<>(latest.values());
+        long target = maxBytes / 2;
+        long size = MAGIC.length;
+        int first = kept.size();
+        while (first > 0 && size + recordSize(current, kept.get(first - 1)) <= target) {
+            first--;
+            size += recordSize(current, kept.get(first));
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.wrap(MAGIC));
+            for (int offset : kept.subList(first, kept.size())) {
+                ByteBuffer record = current.duplicate();
+                record.position(offset).limit(offset + recordSize(current, offset));
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+        }
+        channel.close();
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        compactions.incrementAndGet();
+        LOGGER.info("Compacted metrics snapshot {} to {} records ({} bytes)", file, kept.size() - first, size);
+    }
+
+    private static int recordSize(ByteBuffer buffer, int offset) {
+        return Integer.BYTES + buffer.getInt(offset);
+    }
+
+    /**
+     * Walks the records once, adding the offset of each to {@code index} by component and metric without decoding
+     * values, and returns the length up to the first truncated or malformed record.
+     */
+    private static long scan(ByteBuffer buffer, Map<MetricsComponentKey, Map<String, Integer>> index) {
+        int offset = MAGIC.length;
+        while (offset < buffer.limit()) {
+            Record record = readRecord(buffer, offset, false);
+            if (record == null) {
+                break;
+            }
+            index.computeIfAbsent(record.componentKey(), ignored -> new HashMap<>()).put(record.metric(), offset);
+            offset += recordSize(buffer, offset);
+        }
+        return Math.min(offset, buffer.limit());
+    }
+
+    private static ByteBuffer encode(MetricsComponentKey key,
+                                     String metric,
+                                     Optional<SonarMetricValue> value,
+                                     Instant fetchedAt) {
+        List<byte[]> fields = new ArrayList<>();
+        fields.add(utf8(key.baseUrl()));
+        fields.add(utf8(key.tokenHash()));
+        fields.add(utf8(key.component()));
+        fields.add(utf8(key.branch().orElse("")));
+        fields.add(utf8(key.pullRequest().orElse("")));
+        fields.add(utf8(metric));
+        fields.add(utf8(value.map(SonarMetricValue::value).orElse("")));
+        int length = Long.BYTES + 1;
+        for (byte[] field : fields) {
+            if (field.length > MAX_FIELD_BYTES) {
+                return null;
+            }
+            length += Short.BYTES + field.length;
+        }
+        byte flags = 0;
+        if (value.isPresent()) {
+            flags |= HAS_VALUE;
+            if (value.get().bestValue()) {
+                flags |= BEST_VALUE;
+            }
+        }
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length).putLong(fetchedAt.toEpochMilli()).put(flags);
+        for (byte[] field : fields) {
+            record.putShort((short) field.length).put(field);
+        }
+        return record.flip();
+    }
+
+    /**
+     * Reads the record at {@code offset}, or returns {@code null} when it is truncated or malformed. The value is
+     * only decoded when {@code withValue} is set.
+     */
+    private static Record readRecord(ByteBuffer buffer, int offset, boolean withValue) {
+        int limit = buffer.limit();
+        if (offset + Integer.BYTES > limit) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        int end = offset + Integer.BYTES + length;
+        if (length < Long.BYTES + 1 || end > limit || end < 0) {
+            return null;
+        }
+        int position = offset + Integer.BYTES;
+        Instant fetchedAt = Instant.ofEpochMilli(buffer.getLong(position));
+        byte flags = buffer.get(position + Long.BYTES);
+        position += Long.BYTES + 1;
+        String[] fields = new String[7];
+        for (int i = 0; i < fields.length; i++) {
+            if (position + Short.BYTES > end) {
+                return null;
+            }
+            int fieldLength = Short.toUnsignedInt(buffer.getShort(position));
+            position += Short.BYTES;
+            if (position + fieldLength > end) {
+                return null;
+            }
+            if (i < 6 || withValue) {
+                byte[] bytes = new byte[fieldLength];
+                buffer.get(position, bytes);
+                fields[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            position += fieldLength;
+        }
+        MetricsComponentKey key = new MetricsComponentKey(fields[0], fields[1], fields[2],
+                fields[3].isEmpty() ? Optional.empty() : Optional.of(fields[3]),
+                fields[4].isEmpty() ? Optional.empty() : Optional.of(fields[4]));
+        Optional<SonarMetricValue> value = withValue && (flags & HAS_VALUE) != 0
+                ? Optional.of(new SonarMetricValue(fields[5], fields[6], (flags & BEST_VALUE) != 0))
+                : Optional.empty();
+        return new Record(key, fields[5], value, fetchedAt);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public SnapshotStats stats() {
+        long fileBytes = 0;
+        FileChannel current = channel;
+        if (current != null) {
+            try {
+                fileBytes = current.size();
+            } catch (IOException ioException) {
+                LOGGER.debug("Failed to read metrics snapshot size: {}", ioException.getMessage());
+            }
+        }
+        return new SnapshotStats(current != null, fileBytes, maxBytes, index.size(), restoredMetrics.get(),
+                appendedRecords.get(), droppedAppends.get(), compactions.get());
+    }
+
+    /**
+     * Stops taking appends, lets the writer finish the ones already queued for a few seconds and closes the file.
+     */
+    @Override
+    public void close() {
+        ThreadPoolExecutor current = writer;
+        if (current != null) {
+            current.shutdown();
+            try {
+                if (!current.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                    LOGGER.warn("Metrics snapshot {} closed with appends still queued", file);
+                    current.shutdownNow();
+                }
+            } catch (InterruptedException interruptedException) {
+                current.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeChannel();
+        index.clear();
+        mapped = null;
+    }
+
+    private void closeChannel() {
+        FileChannel current = channel;
+        if (current == null) {
+            return;
+        }
+        channel = null;
+        try {
+            current.close();
+        } catch (IOException ioException) {
+            LOGGER.debug("Failed to close metrics snapshot {}: {}", file, ioException.getMessage());
+        }
+    }
+
+    private record Record(MetricsComponentKey componentKey,
+                          String metric,
+                          Optional<SonarMetricValue> value,
+                          Instant fetchedAt) {
+    }
+
+    private record MetricIdentity(MetricsComponentKey componentKey, String metric) {
+    }
+
+    /**
+     * One restored metric: its value, or empty when SonarQube returned none, and when it was fetched.
+     */
+    public record SnapshotMetric(Optional<SonarMetricValue> value, Instant fetchedAt) {
+    }
+
+    public record SnapshotStats(boolean enabled,
+                                long fileBytes,
+                                long maxBytes,
+                                int indexedComponents,
+                                long restoredMetrics,
+                                long appendedRecords,
+                                long droppedAppends,
+                                long compactions) {
+    }
+}
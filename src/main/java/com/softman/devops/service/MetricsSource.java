@@ -0,0 +1,100 @@
+package com.softman.devops.service;
+
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.service.StaleMetricsStore.StaleMetrics;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where the HTTP handlers get measures from. {@link SonarMetricsService} calls SonarQube;
+ * {@link SyntheticMetricsSource} answers in process so the server's own overhead can be measured without network I/O.
+ * Futures fail with {@link CallTimeoutException}, {@link JobDeadlineExceededException}, {@link UpstreamErrorException}
+ * or {@link CircuitOpenException}. Cancelling a returned future abandons the request, and the source stops any work
+ * no other caller is waiting for.
+ */
+public interface MetricsSource extends AutoCloseable {
+
+    CompletableFuture<List<SonarMetricValue>> fetchMetricsAsync(SonarMetricsRequest request, Instant startTime);
+
+    /**
+     * Like {@link #fetchMetricsAsync}, but gives up at {@code deadline} when that comes before the job deadline.
+     */
+    default CompletableFuture<List<SonarMetricValue>> fetchMetricsAsync(SonarMetricsRequest request,
+                                                                        Instant startTime,
+                                                                        Instant deadline) {
+        return fetchMetricsAsync(request, startTime);
+    }
+
+    /**
+     * Like {@link #fetchMetricsAsync}, but lets the source combine the request with concurrent compatible ones.
+     */
+    default CompletableFuture<List<SonarMetricValue>> fetchMetricsBatchedAsync(SonarMetricsRequest request,
+                                                                               Instant startTime) {
+        return fetchMetricsAsync(request, startTime);
+    }
+
+    /**
+     * Fetches several main-branch components that share baseurl and token at once. The result holds one entry per
+     * request, in order; an empty entry tells the caller to use {@link #fetchMetricsAsync} for that request. Sources
+     * without a bulk call return only empty entries.
+     */
+    default CompletableFuture<List<Optional<List<SonarMetricValue>>>> searchMetricsAsync(
+            List<SonarMetricsRequest> requests,
+            Instant startTime) {
+        return CompletableFuture.completedFuture(Collections.nCopies(requests.size(), Optional.empty()));
+    }
+
+    /**
+     * Like {@link #searchMetricsAsync(List, Instant)}, but gives up at {@code deadline} when that comes before the
+     * job deadline.
+     */
+    default CompletableFuture<List<Optional<List<SonarMetricValue>>>> searchMetricsAsync(
+            List<SonarMetricsRequest> requests,
+            Instant startTime,
+            Instant deadline) {
+        return searchMetricsAsync(requests, startTime);
+    }
+
+    /**
+     * When a job started at {@code startTime} runs out of time.
+     */
+    default Instant jobDeadline(Instant startTime) {
+        return Instant.MAX;
+    }
+
+    /**
+     * How long answering {@code request} usually takes, or empty while the source cannot tell.
+     */
+    default Optional<Duration> expectedLatency(SonarMetricsRequest request) {
+        return Optional.empty();
+    }
+
+    /**
+     * An earlier answer to {@code request} that may be served instead of reporting {@code failure}.
+     */
+    default Optional<StaleMetrics> staleMetrics(SonarMetricsRequest request, Throwable failure) {
+        return Optional.empty();
+    }
+
+    /**
+     * Prepares the source before the server accepts requests, e.g. by opening upstream connections. The returned
+     * future completes when the source is ready and does not fail; a source that cannot warm up still serves.
+     */
+    default CompletableFuture<Void> warmUp() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Counters for {@code /sonar/stats}, one JSON section per entry, in display order.
+     */
+    Map<String, Object> stats();
+
+    @Override
+    void close();
+}
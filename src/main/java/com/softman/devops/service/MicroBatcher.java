@@ -0,0 +1,257 @@
+package com.softman.devops.service;
+
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.dto.SonarMetricsRequest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects concurrent single lookups for main-branch components of one SonarQube (same baseurl and token) for up to
+ * {@code window} or {@code maxItems} requests, then answers them with one {@code /api/measures/search} call. A
+ * request never waits longer than a tenth of its remaining job time, so callers close to their deadline flush the
+ * window early. Branch and pull request lookups, and cache hits, skip the window.
+ */
+public final class MicroBatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MicroBatcher.class);
+    private static final int DEADLINE_SHARE_DIVISOR = 10;
+
+    public enum FlushReason {
+        WINDOW,
+        SIZE,
+        DEADLINE
+    }
+
+    private final SonarMetricsService service;
+    private final Duration window;
+    private final int maxItems;
+    private final Duration jobTimeout;
+    private final Clock clock;
+    private final ScheduledExecutorService timer;
+    private final UpstreamHostRegistry hostRegistry;
+    private final Map<GroupKey, PendingBatch> pending = new HashMap<>();
+
+    private long batches;
+    private long batchedRequests;
+    private int largestBatch;
+    private long windowFlushes;
+    private long sizeFlushes;
+    private long deadlineFlushes;
+
+    MicroBatcher(SonarMetricsService service,
+                 Duration window,
+                 int maxItems,
+                 Duration jobTimeout,
+                 Clock clock,
+                 ScheduledExecutorService timer,
+                 UpstreamHostRegistry hostRegistry) {
+        if (window == null || window.isNegative()) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        if (maxItems <= 0 || maxItems > BatchPlanner.MAX_PROJECT_KEYS) {
+            throw new IllegalArgumentException("maxItems must be between 1 and " + BatchPlanner.MAX_PROJECT_KEYS);
+        }
+        this.service = service;
+        this.window = window;
+        this.maxItems = maxItems;
+        this.jobTimeout = jobTimeout;
+        this.clock = clock;
+        this.timer = timer;
+        this.hostRegistry = hostRegistry;
+    }
+
+    public boolean isEnabled() {
+        return !window.isZero();
+    }
+
+    CompletableFuture<List<SonarMetricValue>> submit(SonarMetricsRequest request, Instant startTime) {
+        if (!isEnabled() || request.getBranch().isPresent() || request.getPullRequest().isPresent()) {
+            return service.fetchMetricsAsync(request, startTime);
+        }
+        Optional<List<SonarMetricValue>> cached = service.cachedMetrics(request);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        Instant now = clock.instant();
+        Duration remaining = Duration.between(now, startTime.plus(jobTimeout));
+        if (remaining.isNegative() || remaining.isZero()) {
+            return CompletableFuture.failedFuture(
+                    new JobDeadlineExceededException("Job timeout exceeded before attempting call"));
+        }
+        Duration maxWait = remaining.dividedBy(DEADLINE_SHARE_DIVISOR);
+        Member member = new Member(request, startTime, new CompletableFuture<>());
+        GroupKey key = new GroupKey(SonarMetricsService.normalizeBaseUrl(request.getBaseUrl()), request.getToken());
+        PendingBatch full = null;
+        synchronized (this) {
+            PendingBatch batch = pending.get(key);
+            if (batch == null) {
+                batch = new PendingBatch(key, now.plus(window));
+                pending.put(key, batch);
+            }
+            batch.members.add(member);
+            if (batch.members.size() >= maxItems) {
+                pending.remove(key);
+                full = batch;
+            } else if (maxWait.compareTo(window) < 0 && now.plus(maxWait).isBefore(batch.flushAt)) {
+                batch.schedule(now.plus(maxWait), FlushReason.DEADLINE, now);
+            } else if (batch.timer == null) {
+                batch.schedule(batch.flushAt, FlushReason.WINDOW, now);
+            }
+        }
+        if (full != null) {
+            full.cancelTimer();
+            flush(full, FlushReason.SIZE);
+        }
+        return member.result();
+    }
+
+    public synchronized MicroBatchStats stats() {
+        int pendingRequests = pending.values().stream().mapToInt(batch -> batch.members.size()).sum();
+        double averageBatchSize = batches == 0 ? 0 : (double) batchedRequests / batches;
+        return new MicroBatchStats(isEnabled(), window.toMillis(), maxItems, pendingRequests, batches,
+                batchedRequests, averageBatchSize, largestBatch, windowFlushes, sizeFlushes, deadlineFlushes);
+    }
+
+    /**
+     * The shared timer only keeps time: the flush, and the callers it completes, run on the host's executor.
+     */
+    private void dispatch(PendingBatch batch) {
+        hostRegistry.hostFor(batch.key.baseUrl()).execute(() -> onTimer(batch));
+    }
+
+    private void onTimer(PendingBatch batch) {
+        synchronized (this) {
+            if (!pending.remove(batch.key, batch)) {
+                return;
+            }
+        }
+        flush(batch, batch.reason);
+    }
+
+    private void flush(PendingBatch batch, FlushReason reason) {
+        // Members cancelled while waiting for the window are already done and need no call.
+        List<Member> members = batch.members.stream().filter(member -> !member.result().isDone()).toList();
+        if (members.isEmpty()) {
+            return;
+        }
+        recordFlush(reason, members.size());
+        LOGGER.debug("Flushing micro-batch of {} for {} ({})", members.size(), batch.key.baseUrl(), reason);
+        if (members.size() == 1) {
+            Member member = members.get(0);
+            propagate(service.fetchMetricsAsync(member.request(), member.startTime(), false), member);
+            return;
+        }
+        List<SonarMetricsRequest> requests = members.stream().map(Member::request).toList();
+        Instant earliestStart = members.stream().map(Member::startTime).min(Instant::compareTo).orElseThrow();
+        CompletableFuture<List<Optional<List<SonarMetricValue>>>> search =
+                service.searchMetricsAsync(requests, earliestStart, false);
+        AtomicInteger waiting = new AtomicInteger(members.size());
+        for (Member member : members) {
+            CallCancellation.onCancel(member.result(), () -> {
+                if (waiting.decrementAndGet() == 0) {
+                    search.cancel(true);
+                }
+            });
+        }
+        search.whenComplete((found, failure) -> {
+            Throwable cause = failure == null ? null : SonarMetricsService.unwrap(failure);
+            boolean rejected = cause instanceof UpstreamErrorException upstreamErrorException
+                    && !upstreamErrorException.isServerError();
+            for (int i = 0; i < members.size(); i++) {
+                Member member = members.get(i);
+                if (member.result().isDone()) {
+                    continue;
+                }
+                if (cause != null && !rejected) {
+                    member.result().completeExceptionally(cause);
+                } else if (found != null && found.get(i).isPresent()) {
+                    member.result().complete(found.get(i).get());
+                } else {
+                    propagate(service.fetchMetricsAsync(member.request(), member.startTime(), false), member);
+                }
+            }
+        });
+    }
+
+    private synchronized void recordFlush(FlushReason reason, int size) {
+        batches++;
+        batchedRequests += size;
+        largestBatch = Math.max(largestBatch, size);
+        switch (reason) {
+            case WINDOW -> windowFlushes++;
+            case SIZE -> sizeFlushes++;
+            case DEADLINE -> deadlineFlushes++;
+        }
+    }
+
+    private static void propagate(CompletableFuture<List<SonarMetricValue>> source, Member member) {
+        CallCancellation.onCancel(member.result(), () -> source.cancel(true));
+        source.whenComplete((metrics, failure) -> {
+            if (failure != null) {
+                member.result().completeExceptionally(SonarMetricsService.unwrap(failure));
+            } else {
+                member.result().complete(metrics);
+            }
+        });
+    }
+
+    private record GroupKey(String baseUrl, String token) {
+    }
+
+    private record Member(SonarMetricsRequest request,
+                          Instant startTime,
+                          CompletableFuture<List<SonarMetricValue>> result) {
+    }
+
+    private final class PendingBatch {
+        private final GroupKey key;
+        private final List<Member> members = new ArrayList<>();
+        private Instant flushAt;
+        private FlushReason reason = FlushReason.WINDOW;
+        private ScheduledFuture<?> timer;
+
+        private PendingBatch(GroupKey key, Instant flushAt) {
+            this.key = key;
+            this.flushAt = flushAt;
+        }
+
+        private void schedule(Instant at, FlushReason flushReason, Instant now) {
+            cancelTimer();
+            flushAt = at;
+            reason = flushReason;
+            long delayNanos = Math.max(0, Duration.between(now, at).toNanos());
+            timer = MicroBatcher.this.timer.schedule(() -> dispatch(this), delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void cancelTimer() {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    public record MicroBatchStats(boolean enabled,
+                                  long windowMillis,
+                                  int maxItems,
+                                  int pendingRequests,
+                                  long batches,
+                                  long batchedRequests,
+                                  double averageBatchSize,
+                                  int largestBatch,
+                                  long windowFlushes,
+                                  long sizeFlushes,
+                                  long deadlineFlushes) {
+    }
+}
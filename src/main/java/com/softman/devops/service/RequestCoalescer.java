@@ -0,0 +1,116 @@
+package com.softman.devops.service;
+
+import com.softman.devops.dto.SonarMetricValue;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Lets concurrent identical lookups share one upstream attempt sequence. The first caller runs the call
+ * under its own deadline; later callers wait only as long as their own deadline allows. Each caller gets its own
+ * future; the sequence is cancelled once every caller has cancelled theirs.
+ */
+public final class RequestCoalescer {
+    private final ConcurrentMap<MetricsRequestKey, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+    public CompletableFuture<List<SonarMetricValue>> execute(
+            MetricsRequestKey key,
+            Duration maxWait,
+            Function<CallCancellation, CompletableFuture<List<SonarMetricValue>>> call) {
+        InFlight created = new InFlight();
+        while (true) {
+            InFlight existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                break;
+            }
+            if (existing.join()) {
+                followers.incrementAndGet();
+                return release(key, existing, await(existing.result, maxWait));
+            }
+            // Every caller of the existing sequence is gone and it is being cancelled; start a new one.
+            inFlight.remove(key, existing);
+        }
+        leaders.incrementAndGet();
+        CompletableFuture<List<SonarMetricValue>> upstream;
+        try {
+            upstream = call.apply(created.cancellation);
+        } catch (RuntimeException runtimeException) {
+            upstream = CompletableFuture.failedFuture(runtimeException);
+        }
+        upstream.whenComplete((metrics, failure) -> {
+            inFlight.remove(key, created);
+            if (failure != null) {
+                created.result.completeExceptionally(SonarMetricsService.unwrap(failure));
+            } else {
+                created.result.complete(metrics);
+            }
+        });
+        return release(key, created, created.result.copy());
+    }
+
+    public CoalescingStats stats() {
+        return new CoalescingStats(inFlight.size(), leaders.get(), followers.get(), abandoned.get());
+    }
+
+    private CompletableFuture<List<SonarMetricValue>> release(MetricsRequestKey key,
+                                                              InFlight entry,
+                                                              CompletableFuture<List<SonarMetricValue>> caller) {
+        return CallCancellation.onCancel(caller, () -> {
+            if (entry.callers.decrementAndGet() == 0 && !entry.result.isDone()) {
+                inFlight.remove(key, entry);
+                abandoned.incrementAndGet();
+                entry.cancellation.cancel();
+            }
+        });
+    }
+
+    private CompletableFuture<List<SonarMetricValue>> await(CompletableFuture<List<SonarMetricValue>> shared,
+                                                            Duration maxWait) {
+        if (maxWait.isZero() || maxWait.isNegative()) {
+            return CompletableFuture.failedFuture(
+                    new JobDeadlineExceededException("Job timeout exceeded before joining in-flight call"));
+        }
+        return shared.thenApply(Function.identity())
+                .orTimeout(maxWait.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(failure -> {
+                    Throwable cause = SonarMetricsService.unwrap(failure);
+                    if (cause instanceof TimeoutException) {
+                        cause = new JobDeadlineExceededException("Job timeout exceeded while waiting for in-flight call");
+                    }
+                    return CompletableFuture.failedFuture(cause);
+                });
+    }
+
+    private static final class InFlight {
+        private final CompletableFuture<List<SonarMetricValue>> result = new CompletableFuture<>();
+        private final CallCancellation cancellation = new CallCancellation();
+        private final AtomicInteger callers = new AtomicInteger(1);
+
+        private boolean join() {
+            int current;
+            do {
+                current = callers.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!callers.compareAndSet(current, current + 1));
+            return true;
+        }
+    }
+
+    /**
+     * {@code abandoned} counts sequences cancelled because every caller waiting for them went away.
+     */
+    public record CoalescingStats(int inFlight, long leaders, long followers, long abandoned) {
+    }
+}
@@ -0,0 +1,119 @@
+package com.softman.devops.service;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Limits retries to a share of first attempts seen over a sliding window, plus a small fixed allowance so a quiet
+ * host can still retry. The window is split into slots so old attempts expire gradually.
+ */
+public final class RetryBudget {
+    private static final int SLOTS = 10;
+
+    private final int retryPercent;
+    private final int minRetriesPerWindow;
+    private final long slotMillis;
+    private final Clock clock;
+    private final long[] slotIds = new long[SLOTS];
+    private final long[] firstAttempts = new long[SLOTS];
+    private final long[] retries = new long[SLOTS];
+    private long deniedRetries;
+
+    public RetryBudget(int retryPercent, int minRetriesPerWindow, Duration window, Clock clock) {
+        if (retryPercent < 0) {
+            throw new IllegalArgumentException("retryPercent must not be negative");
+        }
+        if (minRetriesPerWindow < 0) {
+            throw new IllegalArgumentException("minRetriesPerWindow must not be negative");
+        }
+        if (window == null || window.toMillis() < SLOTS) {
+            throw new IllegalArgumentException("window must be at least " + SLOTS + " ms");
+        }
+        this.retryPercent = retryPercent;
+        this.minRetriesPerWindow = minRetriesPerWindow;
+        this.slotMillis = window.toMillis() / SLOTS;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return retryPercent > 0;
+    }
+
+    public synchronized void recordFirstAttempt() {
+        firstAttempts[currentSlot()]++;
+    }
+
+    /**
+     * Takes one retry from the budget, or returns {@code false} and counts a denial when none is left.
+     */
+    public synchronized boolean tryAcquireRetry() {
+        int slot = currentSlot();
+        if (isEnabled() && available() <= 0) {
+            deniedRetries++;
+            return false;
+        }
+        retries[slot]++;
+        return true;
+    }
+
+    /**
+     * Gives back a retry taken with {@link #tryAcquireRetry()} that turned out not to be needed, such as a hedge
+     * that lost or was never sent.
+     */
+    public synchronized void refundRetry() {
+        currentSlot();
+        int newest = -1;
+        for (int i = 0; i < SLOTS; i++) {
+            if (retries[i] > 0 && (newest < 0 || slotIds[i] > slotIds[newest])) {
+                newest = i;
+            }
+        }
+        if (newest >= 0) {
+            retries[newest]--;
+        }
+    }
+
+    public synchronized BudgetStats stats() {
+        currentSlot();
+        return new BudgetStats(isEnabled(), retryPercent, sum(firstAttempts), sum(retries),
+                isEnabled() ? Math.max(0, available()) : -1, deniedRetries);
+    }
+
+    private long available() {
+        long allowed = minRetriesPerWindow + sum(firstAttempts) * retryPercent / 100;
+        return allowed - sum(retries);
+    }
+
+    private int currentSlot() {
+        long slotId = clock.millis() / slotMillis;
+        int index = (int) (slotId % SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            if (slotIds[i] <= slotId - SLOTS) {
+                firstAttempts[i] = 0;
+                retries[i] = 0;
+            }
+        }
+        if (slotIds[index] != slotId) {
+            slotIds[index] = slotId;
+            firstAttempts[index] = 0;
+            retries[index] = 0;
+        }
+        return index;
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    public record BudgetStats(boolean enabled,
+                              int retryPercent,
+                              long windowFirstAttempts,
+                              long windowRetries,
+                              long availableRetries,
+                              long deniedRetries) {
+    }
+}
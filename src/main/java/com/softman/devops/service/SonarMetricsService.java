@@ -1,15 +1,18 @@
 package com.softman.devops.service;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.softman.devops.config.BackoffStrategy;
+import com.softman.devops.config.HedgePolicy;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.config.WarmupSettings;
 import com.softman.devops.dto.SonarMetricValue;
 import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.service.MetricsResponseCache.CacheLookup;
+import com.softman.devops.service.StaleMetricsStore.StaleMetrics;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
@@ -17,114 +20,750 @@ import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public final class SonarMetricsService {
+public final class SonarMetricsService implements MetricsSource {
     private static final Logger LOGGER = LoggerFactory.getLogger(SonarMetricsService.class);
-    private static final Duration MAX_BACKOFF = Duration.ofSeconds(5);
-    private static final long BACKOFF_BASE_MILLIS = 500L;
+    private static final long HEDGE_MIN_SAMPLES = 20;
+    private static final long LATENCY_MIN_SAMPLES = 20;
+    private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(10);
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final ScheduledExecutorService RETRY_TIMER =
+            Executors.newSingleThreadScheduledExecutor(new RetryTimerThreadFactory());
 
-    private final HttpClient httpClient;
-    private final Duration requestTimeout;
+    private final UpstreamHostRegistry hostRegistry;
     private final Duration jobTimeout;
     private final Clock clock;
+    private final MetricsResponseCache responseCache;
+    private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+    private final MeasuresResponseParser responseParser;
+    private final BackoffStrategy defaultBackoffStrategy;
+    private final Map<BackoffStrategy, BackoffPolicy> backoffPolicies = new EnumMap<>(BackoffStrategy.class);
+    private final HedgePolicy hedgePolicy;
+    private final MicroBatcher microBatcher;
+    private final StaleMetricsStore staleStore;
+    private final MetricsSnapshotStore snapshotStore;
+    private final ConnectionWarmer connectionWarmer;
 
     public SonarMetricsService(Duration requestTimeout, Duration jobTimeout) {
         this(requestTimeout, jobTimeout, Clock.systemUTC());
     }
 
     public SonarMetricsService(Duration requestTimeout, Duration jobTimeout, Clock clock) {
+        this(builder().requestTimeout(requestTimeout).jobTimeout(jobTimeout).clock(clock));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private SonarMetricsService(Builder builder) {
+        Duration requestTimeout = builder.requestTimeout;
+        Duration jobTimeout = builder.jobTimeout;
+        UpstreamSettings upstreamSettings = builder.upstreamSettings;
+        MetricsSnapshotStore snapshotStore = builder.snapshotStore;
+        Clock clock = Objects.requireNonNull(builder.clock, "clock");
         if (requestTimeout == null || requestTimeout.isZero() || requestTimeout.isNegative()) {
             throw new IllegalArgumentException("requestTimeout must be positive");
         }
         if (jobTimeout == null || jobTimeout.isZero() || jobTimeout.isNegative()) {
             throw new IllegalArgumentException("jobTimeout must be positive");
         }
-        this.requestTimeout = requestTimeout;
         this.jobTimeout = jobTimeout;
+        if (upstreamSettings == null) {
+            throw new IllegalArgumentException("upstreamSettings must not be null");
+        }
         this.clock = clock;
-        this.httpClient = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .connectTimeout(requestTimeout)
-                .build();
+        this.snapshotStore = Objects.requireNonNull(snapshotStore, "snapshotStore");
+        this.responseCache = new MetricsResponseCache(
+                upstreamSettings.getCacheMaxEntries(), upstreamSettings.getCacheTtl(), clock, snapshotStore);
+        this.responseParser = new MeasuresResponseParser(upstreamSettings.getMaxResponseBytes());
+        this.hostRegistry = new UpstreamHostRegistry(upstreamSettings, requestTimeout, clock);
+        this.defaultBackoffStrategy = upstreamSettings.getBackoffStrategy();
+        this.hedgePolicy = upstreamSettings.getHedgePolicy();
+        for (BackoffStrategy strategy : BackoffStrategy.values()) {
+            backoffPolicies.put(strategy, BackoffPolicy.of(strategy, upstreamSettings.getBackoffBase(),
+                    upstreamSettings.getBackoffCap()));
+        }
+        this.staleStore = new StaleMetricsStore(upstreamSettings.getStaleMaxEntries(),
+                upstreamSettings.getMaxStaleness(), clock);
+        this.microBatcher = new MicroBatcher(this, upstreamSettings.getMicroBatchWindow(),
+                upstreamSettings.getMicroBatchMaxItems(), jobTimeout, clock, RETRY_TIMER, hostRegistry);
+        this.connectionWarmer = new ConnectionWarmer(Objects.requireNonNull(builder.warmupSettings, "warmupSettings"),
+                hostRegistry, requestTimeout, RETRY_TIMER);
     }
 
     public List<SonarMetricValue> fetchMetrics(SonarMetricsRequest request, Instant startTime)
-            throws CallTimeoutException, JobDeadlineExceededException, UpstreamErrorException {
-        Instant deadline = startTime.plus(jobTimeout);
-        int remainingRetries = Math.max(0, request.getRetries());
-        int attempt = 0;
-        while (true) {
-            attempt++;
-            Duration remainingJobTime = remainingTime(deadline);
-            if (remainingJobTime.isZero()) {
-                throw new JobDeadlineExceededException("Job timeout exceeded before attempting call");
-            }
-            Duration attemptTimeout = minDuration(requestTimeout, remainingJobTime);
-            HttpRequest httpRequest = buildHttpRequest(request, attemptTimeout);
+            throws CallTimeoutException, JobDeadlineExceededException, UpstreamErrorException, CircuitOpenException {
+        CompletableFuture<List<SonarMetricValue>> future = fetchMetricsAsync(request, startTime);
+        try {
+            return future.get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new JobDeadlineExceededException("Interrupted while waiting for SonarQube response");
+        } catch (ExecutionException executionException) {
+            throw rethrow(executionException.getCause());
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #fetchMetrics}. The returned future fails with
+     * {@link CallTimeoutException}, {@link JobDeadlineExceededException}, {@link UpstreamErrorException} or
+     * {@link CircuitOpenException}.
+     */
+    @Override
+    public CompletableFuture<List<SonarMetricValue>> fetchMetricsAsync(SonarMetricsRequest request, Instant startTime) {
+        return fetchMetricsAsync(request, startTime, true);
+    }
+
+    /**
+     * Like {@link #fetchMetricsAsync}, but lets the request share a measures search with concurrent compatible
+     * requests when micro-batching is enabled.
+     */
+    @Override
+    public CompletableFuture<List<SonarMetricValue>> fetchMetricsBatchedAsync(SonarMetricsRequest request,
+                                                                              Instant startTime) {
+        return microBatcher.submit(request, startTime);
+    }
+
+    @Override
+    public CompletableFuture<List<SonarMetricValue>> fetchMetricsAsync(SonarMetricsRequest request,
+                                                                       Instant startTime,
+                                                                       Instant deadline) {
+        return fetchMetricsUntil(request, earliest(deadline, jobDeadline(startTime)), true);
+    }
+
+    CompletableFuture<List<SonarMetricValue>> fetchMetricsAsync(SonarMetricsRequest request,
+                                                                Instant startTime,
+                                                                boolean consultCache) {
+        return fetchMetricsUntil(request, jobDeadline(startTime), consultCache);
+    }
+
+    private CompletableFuture<List<SonarMetricValue>> fetchMetricsUntil(SonarMetricsRequest request,
+                                                                        Instant deadline,
+                                                                        boolean consultCache) {
+        MetricsComponentKey componentKey = MetricsComponentKey.of(request);
+        List<SonarMetricValue> cachedValues = List.of();
+        List<String> metrics = request.getMetrics();
+        if (consultCache && !request.isNoCache()) {
+            CacheLookup lookup = responseCache.lookup(componentKey, request.getMetrics(), request.getMaxAge());
+            if (lookup.isHit()) {
+                LOGGER.debug("Serving {} from response cache", request.getComponent());
+                return CompletableFuture.completedFuture(lookup.found());
+            }
+            if (lookup.missing().size() < metrics.size()) {
+                LOGGER.debug("Fetching {} of {} metrics for {}, the rest is cached", lookup.missing().size(),
+                        metrics.size(), request.getComponent());
+                cachedValues = lookup.found();
+                metrics = lookup.missing();
+            }
+        }
+        BackoffPolicy backoffPolicy = backoffPolicies.get(request.getBackoff().orElse(defaultBackoffStrategy));
+        UpstreamCall<List<SonarMetricValue>> call = new UpstreamCall<>(request.getBaseUrl(),
+                URI.create(buildUrl(request, metrics)), request.getToken(), responseParser::parse);
+        MetricsRequestKey staleKey = MetricsRequestKey.of(request);
+        int retries = Math.max(0, request.getRetries());
+        List<String> fetchedMetrics = metrics;
+        List<SonarMetricValue> cached = cachedValues;
+        CompletableFuture<List<SonarMetricValue>> coalesced = requestCoalescer.execute(
+                MetricsRequestKey.of(request, fetchedMetrics), remainingTime(deadline), cancellation ->
+                        attemptAsync(new Attempt<>(call, deadline, 1, retries, backoffPolicy, Duration.ZERO,
+                                cancellation))
+                                .thenApply(fetched -> {
+                                    responseCache.put(componentKey, fetchedMetrics, fetched);
+                                    return fetched;
+                                }));
+        CompletableFuture<List<SonarMetricValue>> result = coalesced.thenApply(fetched -> {
+            List<SonarMetricValue> merged = merge(request.getMetrics(), cached, fetched);
+            staleStore.put(staleKey, merged);
+            return merged;
+        });
+        return CallCancellation.onCancel(result, () -> coalesced.cancel(true));
+    }
+
+    /**
+     * Fetches several main-branch components from one SonarQube with a single {@code /api/measures/search} call.
+     * All requests must share baseurl and token and name at most {@link BatchPlanner#MAX_PROJECT_KEYS} components.
+     * The result holds one entry per request, in order; an entry is empty when the search did not return that
+     * component (for example because it is not a project), and the caller should then use
+     * {@link #fetchMetricsAsync}. Cached requests are answered without a call, fetched ones are cached.
+     */
+    @Override
+    public CompletableFuture<List<Optional<List<SonarMetricValue>>>> searchMetricsAsync(
+            List<SonarMetricsRequest> requests,
+            Instant startTime) {
+        return searchMetricsAsync(requests, startTime, true);
+    }
+
+    @Override
+    public CompletableFuture<List<Optional<List<SonarMetricValue>>>> searchMetricsAsync(
+            List<SonarMetricsRequest> requests,
+            Instant startTime,
+            Instant deadline) {
+        return searchMetricsUntil(requests, earliest(deadline, jobDeadline(startTime)), true);
+    }
+
+    CompletableFuture<List<Optional<List<SonarMetricValue>>>> searchMetricsAsync(List<SonarMetricsRequest> requests,
+                                                                               Instant startTime,
+                                                                               boolean consultCache) {
+        return searchMetricsUntil(requests, jobDeadline(startTime), consultCache);
+    }
+
+    private CompletableFuture<List<Optional<List<SonarMetricValue>>>> searchMetricsUntil(
+            List<SonarMetricsRequest> requests,
+            Instant deadline,
+            boolean consultCache) {
+        validateSearch(requests);
+        List<Optional<List<SonarMetricValue>>> results = new ArrayList<>(Collections.nCopies(requests.size(),
+                Optional.<List<SonarMetricValue>>empty()));
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            SonarMetricsRequest request = requests.get(i);
+            Optional<List<SonarMetricValue>> cached = consultCache ? cachedMetrics(request) : Optional.empty();
+            if (cached.isPresent()) {
+                results.set(i, cached);
+            } else {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            LOGGER.debug("Serving {} searched components from response cache", requests.size());
+            return CompletableFuture.completedFuture(results);
+        }
+
+        Set<String> projectKeys = new LinkedHashSet<>();
+        Set<String> metricKeys = new LinkedHashSet<>();
+        int retries = 0;
+        for (int index : pending) {
+            SonarMetricsRequest request = requests.get(index);
+            projectKeys.add(request.getComponent());
+            metricKeys.addAll(request.getMetrics());
+            retries = Math.max(retries, request.getRetries());
+        }
+        SonarMetricsRequest first = requests.get(pending.get(0));
+        String url = normalizeBaseUrl(first.getBaseUrl()) + "api/measures/search?projectKeys="
+                + urlEncode(String.join(",", projectKeys)) + "&metricKeys=" + urlEncode(String.join(",", metricKeys));
+        UpstreamCall<Map<String, List<SonarMetricValue>>> call = new UpstreamCall<>(first.getBaseUrl(),
+                URI.create(url), first.getToken(), responseParser::parseSearch);
+        BackoffPolicy backoffPolicy = backoffPolicies.get(first.getBackoff().orElse(defaultBackoffStrategy));
+        CallCancellation cancellation = new CallCancellation();
+        Attempt<Map<String, List<SonarMetricValue>>> firstAttempt = new Attempt<>(call, deadline, 1, retries,
+                backoffPolicy, Duration.ZERO, cancellation);
+        CompletableFuture<List<Optional<List<SonarMetricValue>>>> result = attemptAsync(firstAttempt)
+                .thenApply(measuresByComponent -> {
+                    for (int index : pending) {
+                        SonarMetricsRequest request = requests.get(index);
+                        List<SonarMetricValue> measures = measuresByComponent.get(request.getComponent());
+                        if (measures != null) {
+                            List<SonarMetricValue> requested = merge(request.getMetrics(), List.of(), measures);
+                            responseCache.put(MetricsComponentKey.of(request), request.getMetrics(), requested);
+                            staleStore.put(MetricsRequestKey.of(request), requested);
+                            results.set(index, Optional.of(requested));
+                        }
+                    }
+                    return results;
+                });
+        return CallCancellation.onCancel(result, cancellation::cancel);
+    }
+
+    /**
+     * Returns the cached metrics of {@code request} when every requested metric is cached and fresh enough.
+     */
+    Optional<List<SonarMetricValue>> cachedMetrics(SonarMetricsRequest request) {
+        if (request.isNoCache()) {
+            return Optional.empty();
+        }
+        CacheLookup lookup = responseCache.lookup(MetricsComponentKey.of(request), request.getMetrics(),
+                request.getMaxAge());
+        if (!lookup.isHit()) {
+            return Optional.empty();
+        }
+        LOGGER.debug("Serving {} from response cache", request.getComponent());
+        return Optional.of(lookup.found());
+    }
+
+    @Override
+    public Instant jobDeadline(Instant startTime) {
+        return startTime.plus(jobTimeout);
+    }
+
+    /**
+     * Zero when every requested metric is cached, otherwise the median latency of the request's host once it has
+     * answered enough calls.
+     */
+    @Override
+    public Optional<Duration> expectedLatency(SonarMetricsRequest request) {
+        // Only an estimate: the lookup that serves the request counts the hit or miss and restores from the snapshot.
+        if (!request.isNoCache() && responseCache.contains(MetricsComponentKey.of(request), request.getMetrics(),
+                request.getMaxAge())) {
+            return Optional.of(Duration.ZERO);
+        }
+        try {
+            return hostRegistry.hostFor(request.getBaseUrl()).getLatency().percentile(50, LATENCY_MIN_SAMPLES);
+        } catch (RuntimeException invalidHost) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the last successful answer to {@code request} when {@code failure} is an upstream outage (5xx,
+     * network error, timeout, open circuit or exhausted deadline) and that answer is within the configured maximum
+     * staleness. Client errors are never answered from the stale store.
+     */
+    @Override
+    public Optional<StaleMetrics> staleMetrics(SonarMetricsRequest request, Throwable failure) {
+        Throwable cause = unwrap(failure);
+        boolean outage = cause instanceof CallTimeoutException
+                || cause instanceof JobDeadlineExceededException
+                || cause instanceof CircuitOpenException
+                || cause instanceof UpstreamErrorException upstreamErrorException
+                && upstreamErrorException.isServerError();
+        if (!outage) {
+            return Optional.empty();
+        }
+        Optional<StaleMetrics> stale = staleStore.serve(MetricsRequestKey.of(request));
+        stale.ifPresent(metrics -> LOGGER.info("Serving {} from stale store, {} s old, after: {}",
+                request.getComponent(), metrics.age().toSeconds(), cause.getMessage()));
+        return stale;
+    }
+
+    /**
+     * Values of {@code order} in that order, whatever the order SonarQube answered in, fetched values winning.
+     */
+    private static List<SonarMetricValue> merge(List<String> order,
+                                                List<SonarMetricValue> cached,
+                                                List<SonarMetricValue> fetched) {
+        Map<String, SonarMetricValue> byMetric = new HashMap<>();
+        cached.forEach(value -> byMetric.put(value.metric(), value));
+        fetched.forEach(value -> byMetric.put(value.metric(), value));
+        List<SonarMetricValue> merged = new ArrayList<>();
+        for (String metric : order) {
+            SonarMetricValue value = byMetric.get(metric);
+            if (value != null) {
+                merged.add(value);
+            }
+        }
+        return List.copyOf(merged);
+    }
+
+    private void validateSearch(List<SonarMetricsRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("requests must not be empty");
+        }
+        SonarMetricsRequest first = requests.get(0);
+        String baseUrl = normalizeBaseUrl(first.getBaseUrl());
+        Set<String> components = new HashSet<>();
+        for (SonarMetricsRequest request : requests) {
+            if (!baseUrl.equals(normalizeBaseUrl(request.getBaseUrl())) || !first.getToken().equals(request.getToken())) {
+                throw new IllegalArgumentException("searched requests must share baseurl and token");
+            }
+            if (request.getBranch().isPresent() || request.getPullRequest().isPresent()) {
+                throw new IllegalArgumentException("searched requests must target the main branch");
+            }
+            components.add(request.getComponent());
+        }
+        if (components.size() > BatchPlanner.MAX_PROJECT_KEYS) {
+            throw new IllegalArgumentException("at most " + BatchPlanner.MAX_PROJECT_KEYS + " components per search");
+        }
+    }
+
+    public MetricsResponseCache.CacheStats cacheStats() {
+        return responseCache.stats();
+    }
+
+    public RequestCoalescer.CoalescingStats coalescingStats() {
+        return requestCoalescer.stats();
+    }
+
+    public MicroBatcher.MicroBatchStats microBatchStats() {
+        return microBatcher.stats();
+    }
+
+    public StaleMetricsStore.StaleStats staleStats() {
+        return staleStore.stats();
+    }
+
+    public MetricsSnapshotStore.SnapshotStats snapshotStats() {
+        return snapshotStore.stats();
+    }
+
+    public ConnectionWarmer.WarmupStats warmupStats() {
+        return connectionWarmer.stats();
+    }
+
+    public List<UpstreamHost.HostStats> upstreamStats() {
+        return hostRegistry.stats();
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cache", cacheStats());
+        stats.put("snapshot", snapshotStats());
+        stats.put("coalescing", coalescingStats());
+        stats.put("staleIfError", staleStats());
+        stats.put("microBatching", microBatchStats());
+        stats.put("warmup", warmupStats());
+        stats.put("upstreams", upstreamStats());
+        return stats;
+    }
+
+    /**
+     * Opens the warm-up connections while the snapshot found at startup is indexed.
+     */
+    @Override
+    public CompletableFuture<Void> warmUp() {
+        return CompletableFuture.allOf(connectionWarmer.start(), snapshotStore.indexed());
+    }
+
+    @Override
+    public void close() {
+        connectionWarmer.close();
+        hostRegistry.close();
+        snapshotStore.close();
+    }
+
+    static Throwable unwrap(Throwable failure) {
+        Throwable current = failure;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private static RuntimeException rethrow(Throwable failure)
+            throws CallTimeoutException, JobDeadlineExceededException, UpstreamErrorException, CircuitOpenException {
+        Throwable cause = unwrap(failure);
+        if (cause instanceof CallTimeoutException callTimeoutException) {
+            throw callTimeoutException;
+        }
+        if (cause instanceof JobDeadlineExceededException jobDeadlineExceededException) {
+            throw jobDeadlineExceededException;
+        }
+        if (cause instanceof UpstreamErrorException upstreamErrorException) {
+            throw upstreamErrorException;
+        }
+        if (cause instanceof CircuitOpenException circuitOpenException) {
+            throw circuitOpenException;
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        throw new IllegalStateException("Unexpected failure calling SonarQube", cause);
+    }
+
+    private <T> CompletableFuture<T> attemptAsync(Attempt<T> attempt) {
+        if (attempt.cancellation().isCancelled()) {
+            return CompletableFuture.failedFuture(new CancellationException("Request abandoned by its callers"));
+        }
+        if (remainingTime(attempt.deadline()).isZero()) {
+            return CompletableFuture.failedFuture(
+                    new JobDeadlineExceededException("Job timeout exceeded before attempting call"));
+        }
+        UpstreamHost host = hostRegistry.hostFor(attempt.call().baseUrl());
+        Optional<Duration> rateLimitWait = host.getRateLimiter().reserve(attempt.deadline());
+        if (rateLimitWait.isEmpty()) {
+            return CompletableFuture.failedFuture(new JobDeadlineExceededException(
+                    "Job timeout would be exceeded waiting for SonarQube rate limit"));
+        }
+        if (rateLimitWait.get().isZero()) {
+            return sendAttempt(attempt, host);
+        }
+        LOGGER.debug("Attempt {} waiting {} ms for {} rate limit", attempt.number(), rateLimitWait.get().toMillis(),
+                host.getBaseUrl());
+        CompletableFuture<T> delayed = attempt.cancellation().track(new CompletableFuture<>());
+        attempt.cancellation().track(schedule(host, () -> propagate(sendAttempt(attempt, host), delayed),
+                rateLimitWait.get()));
+        return delayed;
+    }
+
+    private <T> CompletableFuture<T> sendAttempt(Attempt<T> attempt, UpstreamHost host) {
+        Duration remainingJobTime = remainingTime(attempt.deadline());
+        if (remainingJobTime.isZero()) {
+            return CompletableFuture.failedFuture(
+                    new JobDeadlineExceededException("Job timeout exceeded before attempting call"));
+        }
+        CircuitBreaker circuitBreaker = host.getCircuitBreaker();
+        if (!circuitBreaker.tryAcquire()) {
+            LOGGER.debug("Attempt {} rejected, circuit open for {}", attempt.number(), host.getBaseUrl());
+            return CompletableFuture.failedFuture(
+                    new CircuitOpenException("Circuit open for SonarQube " + host.getBaseUrl()));
+        }
+        if (attempt.number() == 1) {
+            host.getRetryBudget().recordFirstAttempt();
+        }
+        Duration attemptTimeout = minDuration(host.callTimeout(), remainingJobTime);
+        HttpRequest httpRequest = buildHttpRequest(attempt.call(), attemptTimeout, host.isCompressionEnabled());
+        LOGGER.debug("Attempt {} calling SonarQube {}", attempt.number(), httpRequest.uri());
+        return sendHedged(attempt, host, httpRequest)
+                .handle((response, failure) -> {
+                    Throwable cause = failure == null ? null : unwrap(failure);
+                    return cause == null
+                            ? onResponse(attempt, host, response)
+                            : onFailure(attempt, host, attemptTimeout, cause);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Sends the attempt and, when hedging applies, a second identical call once the hedge delay passes without an
+     * answer. The first response wins and the other exchange is cancelled; the attempt fails only if both fail.
+     * A hedge needs a retry-budget token, a circuit permit and time left before the job deadline; a hedge that loses,
+     * or comes too late to be sent, gives its token back.
+     */
+    private CompletableFuture<HttpResponse<InputStream>> sendHedged(Attempt<?> attempt,
+                                                                    UpstreamHost host,
+                                                                    HttpRequest httpRequest) {
+        CompletableFuture<HttpResponse<InputStream>> primary = exchange(attempt, host, httpRequest);
+        Optional<Duration> hedgeDelay = hedgeDelay(host);
+        if (hedgeDelay.isEmpty() || !clock.instant().plus(hedgeDelay.get()).isBefore(attempt.deadline())) {
+            return primary;
+        }
+        HedgedExchange hedged = new HedgedExchange(host, primary);
+        hedged.timer = schedule(host, () -> {
+            Duration remaining = remainingTime(attempt.deadline());
+            if (hedged.winner.isDone() || remaining.isZero() || !acquireHedgePermits(host)) {
+                return;
+            }
+            if (!hedged.startHedge()) {
+                // The primary settled between the check above and now: the outcome is decided without the hedge.
+                host.getCircuitBreaker().release();
+                host.getRetryBudget().refundRetry();
+                return;
+            }
+            LOGGER.debug("Attempt {} hedged after {} ms", attempt.number(), hedgeDelay.get().toMillis());
+            host.recordHedge();
+            HttpRequest hedgeRequest = buildHttpRequest(attempt.call(), minDuration(host.callTimeout(), remaining),
+                    host.isCompressionEnabled());
+            CompletableFuture<HttpResponse<InputStream>> hedge = exchange(attempt, host, hedgeRequest);
+            hedged.hedge = hedge;
+            if (hedged.answered.get()) {
+                hedge.cancel(true);
+            }
+            hedge.whenComplete((response, failure) -> hedged.settle(response, failure, true));
+        }, hedgeDelay.get());
+        primary.whenComplete((response, failure) -> hedged.settle(response, failure, false));
+        attempt.cancellation().track(hedged.winner);
+        hedged.winner.whenComplete((response, failure) -> hedged.cancelTimer());
+        return hedged.winner;
+    }
+
+    private Optional<Duration> hedgeDelay(UpstreamHost host) {
+        if (!hedgePolicy.isEnabled()) {
+            return Optional.empty();
+        }
+        if (hedgePolicy.getPercentile().isPresent()) {
+            return host.getLatency().percentile(hedgePolicy.getPercentile().getAsInt(), HEDGE_MIN_SAMPLES);
+        }
+        return hedgePolicy.getFixedDelay();
+    }
+
+    private boolean acquireHedgePermits(UpstreamHost host) {
+        if (!host.getRateLimiter().tryAcquire() || !host.getCircuitBreaker().tryAcquire()) {
+            return false;
+        }
+        if (!host.getRetryBudget().tryAcquireRetry()) {
+            host.getCircuitBreaker().release();
+            LOGGER.debug("Retry budget for {} exhausted, not hedging", host.getBaseUrl());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * One upstream exchange with its outcome recorded on the host's circuit breaker. Cancelling the attempt aborts
+     * the exchange.
+     */
+    private CompletableFuture<HttpResponse<InputStream>> exchange(Attempt<?> attempt,
+                                                                  UpstreamHost host,
+                                                                  HttpRequest httpRequest) {
+        CircuitBreaker circuitBreaker = host.getCircuitBreaker();
+        CompletableFuture<HttpResponse<InputStream>> sent =
+                attempt.cancellation().track(host.send(httpRequest, host.bodyHandler()));
+        sent.whenComplete((response, failure) -> recordOutcome(circuitBreaker, response,
+                failure == null ? null : unwrap(failure)));
+        return sent;
+    }
+
+    private void recordOutcome(CircuitBreaker circuitBreaker, HttpResponse<InputStream> response, Throwable failure) {
+        if (failure instanceof CancellationException) {
+            circuitBreaker.release();
+        } else if (failure != null) {
+            circuitBreaker.recordFailure(failure instanceof HttpTimeoutException);
+        } else if (response.statusCode() >= 500) {
+            circuitBreaker.recordFailure(false);
+        } else {
+            circuitBreaker.recordSuccess();
+        }
+    }
+
+    private <T> CompletableFuture<T> onResponse(Attempt<T> attempt,
+                                                UpstreamHost host,
+                                                HttpResponse<InputStream> response) {
+        int status = response.statusCode();
+        LOGGER.debug("Attempt {} received status {}", attempt.number(), status);
+        if (status >= 200 && status < 300) {
             try {
-                LOGGER.debug("Attempt {} calling SonarQube {}", attempt, httpRequest.uri());
-                HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-                int status = response.statusCode();
-                LOGGER.debug("Attempt {} received status {}", attempt, status);
-                if (status >= 200 && status < 300) {
-                    return parseMetricsResponse(response.body());
-                }
-                if (shouldRetry(status) && remainingRetries > 0) {
-                    remainingRetries--;
-                    waitBeforeRetry(attempt, deadline);
-                    continue;
-                }
-                if (status >= 400 && status < 500) {
-                    throw new UpstreamErrorException("Upstream returned client error: " + status, status);
-                }
-                throw new UpstreamErrorException("Upstream returned server error: " + status, status);
-            } catch (HttpTimeoutException timeoutException) {
-                LOGGER.warn("Attempt {} timed out after {} seconds", attempt, attemptTimeout.toSeconds());
-                if (remainingRetries > 0) {
-                    remainingRetries--;
-                    waitBeforeRetry(attempt, deadline);
-                    continue;
-                }
-                throw new CallTimeoutException("Call timed out after attempts: " + attempt, timeoutException);
-            } catch (IOException ioException) {
-                LOGGER.warn("Attempt {} failed due to I/O error: {}", attempt, ioException.getMessage());
-                if (remainingRetries > 0) {
-                    remainingRetries--;
-                    waitBeforeRetry(attempt, deadline);
-                    continue;
-                }
-                throw new UpstreamErrorException("I/O error communicating with SonarQube", 503, ioException);
-            } catch (InterruptedException interruptedException) {
-                Thread.currentThread().interrupt();
-                throw new JobDeadlineExceededException("Interrupted while waiting for SonarQube response");
+                return CompletableFuture.completedFuture(readBody(response, attempt.call().reader()));
+            } catch (UpstreamErrorException upstreamErrorException) {
+                return CompletableFuture.failedFuture(upstreamErrorException);
             }
         }
+        discardBody(response);
+        if (status == 429) {
+            pauseForRetryAfter(host, response);
+        }
+        UpstreamErrorException error = status >= 400 && status < 500
+                ? new UpstreamErrorException("Upstream returned client error: " + status, status)
+                : new UpstreamErrorException("Upstream returned server error: " + status, status);
+        if (shouldRetry(status) && attempt.remainingRetries() > 0) {
+            return retryAfterBackoff(attempt, host, error);
+        }
+        return CompletableFuture.failedFuture(error);
     }
 
-    private HttpRequest buildHttpRequest(SonarMetricsRequest request, Duration timeout) {
-        String url = buildUrl(request);
-        String tokenHeader = buildAuthorizationHeader(request.getToken());
-        return HttpRequest.newBuilder()
-                .uri(URI.create(url))
+    private <T> CompletableFuture<T> onFailure(Attempt<T> attempt,
+                                               UpstreamHost host,
+                                               Duration attemptTimeout,
+                                               Throwable failure) {
+        if (failure instanceof HttpTimeoutException timeoutException) {
+            LOGGER.warn("Attempt {} timed out after {} seconds", attempt.number(), attemptTimeout.toSeconds());
+            CallTimeoutException error =
+                    new CallTimeoutException("Call timed out after attempts: " + attempt.number(), timeoutException);
+            if (attempt.remainingRetries() > 0) {
+                return retryAfterBackoff(attempt, host, error);
+            }
+            return CompletableFuture.failedFuture(error);
+        }
+        if (failure instanceof IOException ioException) {
+            LOGGER.warn("Attempt {} failed due to I/O error: {}", attempt.number(), ioException.getMessage());
+            UpstreamErrorException error =
+                    new UpstreamErrorException("I/O error communicating with SonarQube", 503, ioException);
+            if (attempt.remainingRetries() > 0) {
+                return retryAfterBackoff(attempt, host, error);
+            }
+            return CompletableFuture.failedFuture(error);
+        }
+        return CompletableFuture.failedFuture(failure);
+    }
+
+    private void pauseForRetryAfter(UpstreamHost host, HttpResponse<InputStream> response) {
+        Optional<Duration> retryAfter = response.headers().firstValue("Retry-After")
+                .flatMap(value -> parseRetryAfter(value, clock.instant()));
+        if (retryAfter.isPresent()) {
+            Duration pause = minDuration(retryAfter.get(), MAX_RETRY_AFTER);
+            LOGGER.warn("SonarQube {} asked to retry after {} ms, pausing host", host.getBaseUrl(), pause.toMillis());
+            host.getRateLimiter().pause(pause);
+        }
+    }
+
+    static Optional<Duration> parseRetryAfter(String value, Instant now) {
+        String trimmed = value.trim();
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds < 0 ? Optional.empty() : Optional.of(Duration.ofSeconds(seconds));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                Instant retryAt = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return Optional.of(retryAt.isAfter(now) ? Duration.between(now, retryAt) : Duration.ZERO);
+            } catch (DateTimeParseException notDate) {
+                LOGGER.debug("Ignoring unparseable Retry-After header: {}", value);
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Schedules the next attempt, or fails with {@code failure} straight away when the host's retry budget is spent.
+     */
+    private <T> CompletableFuture<T> retryAfterBackoff(Attempt<T> attempt, UpstreamHost host, Exception failure) {
+        Duration backoff = attempt.backoffPolicy().nextDelay(attempt.number(), attempt.previousBackoff());
+        Instant now = clock.instant();
+        if (now.plus(backoff).isAfter(attempt.deadline())) {
+            return CompletableFuture.failedFuture(
+                    new JobDeadlineExceededException("Job timeout would be exceeded during backoff"));
+        }
+        if (!host.getRetryBudget().tryAcquireRetry()) {
+            LOGGER.warn("Retry budget for {} exhausted, not retrying attempt {}", host.getBaseUrl(), attempt.number());
+            return CompletableFuture.failedFuture(failure);
+        }
+        LOGGER.debug("Retrying attempt {} in {} ms", attempt.number(), backoff.toMillis());
+        CompletableFuture<T> retry = attempt.cancellation().track(new CompletableFuture<>());
+        attempt.cancellation().track(schedule(host, () -> propagate(attemptAsync(attempt.next(backoff)), retry),
+                backoff));
+        return retry;
+    }
+
+    /**
+     * Runs {@code task} on the host's executor after {@code delay}. The shared timer thread only keeps time: the
+     * futures the task completes run their callbacks (response writes, serialization, snapshot appends) elsewhere,
+     * so one slow client cannot hold up every pending retry, rate-limit wait and hedge.
+     */
+    private ScheduledFuture<?> schedule(UpstreamHost host, Runnable task, Duration delay) {
+        return RETRY_TIMER.schedule(() -> host.execute(task), delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static <T> void propagate(CompletableFuture<T> source, CompletableFuture<T> target) {
+        source.whenComplete((result, failure) -> {
+            if (failure != null) {
+                target.completeExceptionally(unwrap(failure));
+            } else {
+                target.complete(result);
+            }
+        });
+    }
+
+    private HttpRequest buildHttpRequest(UpstreamCall<?> call, Duration timeout, boolean compression) {
+        String tokenHeader = buildAuthorizationHeader(call.token());
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(call.uri())
                 .GET()
                 .header("Accept", "application/json")
                 .header("Authorization", tokenHeader)
-                .timeout(timeout)
-                .build();
+                .timeout(timeout);
+        if (compression) {
+            builder.header("Accept-Encoding", ACCEPT_ENCODING);
+        }
+        return builder.build();
     }
 
-    private String buildUrl(SonarMetricsRequest request) {
+    private String buildUrl(SonarMetricsRequest request, List<String> metrics) {
         String normalizedBase = normalizeBaseUrl(request.getBaseUrl());
         StringJoiner query = new StringJoiner("&");
         query.add("component=" + urlEncode(request.getComponent()));
-        query.add("metricKeys=" + urlEncode(String.join(",", request.getMetrics())));
+        query.add("metricKeys=" + urlEncode(String.join(",", metrics)));
         if (request.getPullRequest().isPresent()) {
             query.add("pullRequest=" + urlEncode(request.getPullRequest().get()));
         } else if (request.getBranch().isPresent()) {
@@ -133,12 +772,37 @@ public final class SonarMetricsService {
         return normalizedBase + "api/measures/component?" + query;
     }
 
-    private String normalizeBaseUrl(String baseUrl) {
+    /**
+     * Canonical form of a base URL, ending with {@code /}: scheme and host in lower case, the scheme's default port
+     * and any user info dropped, so that spellings of one SonarQube share its cache entries and its connection pool
+     * and credentials in the URL are neither sent nor reported. Requests authenticate with their token.
+     */
+    static String normalizeBaseUrl(String baseUrl) {
         String trimmed = baseUrl.trim();
         if (!trimmed.endsWith("/")) {
             trimmed = trimmed + "/";
         }
-        return trimmed;
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException syntaxException) {
+            return trimmed;
+        }
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            return trimmed;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        int port = uri.getPort();
+        boolean defaultPort = ("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443);
+        StringBuilder canonical = new StringBuilder(scheme).append("://").append(uri.getHost().toLowerCase(Locale.ROOT));
+        if (port >= 0 && !defaultPort) {
+            canonical.append(':').append(port);
+        }
+        canonical.append(uri.getRawPath());
+        if (uri.getRawQuery() != null) {
+            canonical.append('?').append(uri.getRawQuery());
+        }
+        return canonical.toString();
     }
 
     private String urlEncode(String value) {
@@ -159,82 +823,182 @@ public final class SonarMetricsService {
         return Duration.between(now, deadline);
     }
 
+    private static Instant earliest(Instant first, Instant second) {
+        return first.isBefore(second) ? first : second;
+    }
+
     private Duration minDuration(Duration first, Duration second) {
         return first.compareTo(second) <= 0 ? first : second;
     }
 
-    private void waitBeforeRetry(int attempt, Instant deadline) throws JobDeadlineExceededException {
-        long exponentialMillis = (long) (BACKOFF_BASE_MILLIS * Math.pow(2, Math.max(0, attempt - 1)));
-        Duration backoff = Duration.ofMillis(Math.min(MAX_BACKOFF.toMillis(), exponentialMillis));
-        Instant now = clock.instant();
-        if (now.plus(backoff).isAfter(deadline)) {
-            throw new JobDeadlineExceededException("Job timeout would be exceeded during backoff");
+    private boolean shouldRetry(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    private <T> T readBody(HttpResponse<InputStream> response, BodyReader<T> reader) throws UpstreamErrorException {
+        try (InputStream body = response.body()) {
+            long declaredLength = response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+            if (declaredLength > responseParser.getMaxBodyBytes()) {
+                throw new UpstreamErrorException("SonarQube response exceeds " + responseParser.getMaxBodyBytes()
+                        + " bytes", 502);
+            }
+            return reader.read(body);
+        } catch (IOException closeException) {
+            LOGGER.debug("Failed to close SonarQube response body: {}", closeException.getMessage());
+            throw new UpstreamErrorException("Invalid response from SonarQube", 502, closeException);
+        } catch (UpstreamErrorException upstreamErrorException) {
+            LOGGER.error("Failed to parse SonarQube response", upstreamErrorException);
+            throw upstreamErrorException;
         }
+    }
+
+    private void discardBody(HttpResponse<InputStream> response) {
         try {
-            Thread.sleep(backoff.toMillis());
-        } catch (InterruptedException interruptedException) {
-            Thread.currentThread().interrupt();
-            throw new JobDeadlineExceededException("Interrupted during retry backoff");
+            response.body().close();
+        } catch (IOException ioException) {
+            LOGGER.debug("Failed to discard SonarQube response body: {}", ioException.getMessage());
         }
     }
 
-    private boolean shouldRetry(int statusCode) {
-        return statusCode == 429 || statusCode >= 500;
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(InputStream body) throws UpstreamErrorException;
     }
 
-    private List<SonarMetricValue> parseMetricsResponse(String body) throws UpstreamErrorException {
-        try {
-            JsonObject root = JsonParser.parseString(body).getAsJsonObject();
-            JsonObject component = root.getAsJsonObject("component");
-            if (component == null) {
-                throw new IllegalStateException("component is missing");
+    /**
+     * One upstream GET: where it goes, which token authorizes it and how its body is read.
+     */
+    private record UpstreamCall<T>(String baseUrl, URI uri, String token, BodyReader<T> reader) {
+    }
+
+    private record Attempt<T>(UpstreamCall<T> call,
+                              Instant deadline,
+                              int number,
+                              int remainingRetries,
+                              BackoffPolicy backoffPolicy,
+                              Duration previousBackoff,
+                              CallCancellation cancellation) {
+        private Attempt<T> next(Duration backoff) {
+            return new Attempt<>(call, deadline, number + 1, remainingRetries - 1, backoffPolicy, backoff,
+                    cancellation);
+        }
+    }
+
+    /**
+     * A primary exchange and the hedge that may follow it. {@code pending} counts the exchanges in flight; the hedge
+     * may only join while the primary is still pending, so it is never sent once the outcome is decided.
+     */
+    private final class HedgedExchange {
+        private final UpstreamHost host;
+        private final CompletableFuture<HttpResponse<InputStream>> primary;
+        private final CompletableFuture<HttpResponse<InputStream>> winner = new CompletableFuture<>();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicBoolean answered = new AtomicBoolean();
+        private volatile CompletableFuture<HttpResponse<InputStream>> hedge;
+        private volatile ScheduledFuture<?> timer;
+
+        private HedgedExchange(UpstreamHost host, CompletableFuture<HttpResponse<InputStream>> primary) {
+            this.host = host;
+            this.primary = primary;
+        }
+
+        private boolean startHedge() {
+            return pending.compareAndSet(1, 2);
+        }
+
+        private void cancelTimer() {
+            ScheduledFuture<?> scheduled = timer;
+            if (scheduled != null) {
+                scheduled.cancel(false);
             }
-            JsonArray measures = component.getAsJsonArray("measures");
-            if (measures == null) {
-                throw new IllegalStateException("measures array is missing");
+        }
+
+        private void settle(HttpResponse<InputStream> response, Throwable failure, boolean fromHedge) {
+            cancelTimer();
+            int remaining = pending.decrementAndGet();
+            boolean won = false;
+            if (failure == null) {
+                if (answered.compareAndSet(false, true)) {
+                    won = true;
+                    if (fromHedge) {
+                        host.recordHedgeWin();
+                    }
+                    winner.complete(response);
+                    CompletableFuture<HttpResponse<InputStream>> other = fromHedge ? primary : hedge;
+                    if (other != null) {
+                        other.cancel(true);
+                    }
+                } else {
+                    discardBody(response);
+                }
+            } else if (remaining == 0) {
+                winner.completeExceptionally(unwrap(failure));
             }
-            List<SonarMetricValue> results = new ArrayList<>();
-            for (JsonElement element : measures) {
-                JsonObject measureObject = element.getAsJsonObject();
-                String metric = requireString(measureObject, "metric");
-                String value = requireString(measureObject, "value");
-                boolean bestValue = readBoolean(measureObject, "bestValue");
-                results.add(new SonarMetricValue(metric, value, bestValue));
+            if (fromHedge && !won) {
+                host.getRetryBudget().refundRetry();
             }
-            return results;
-        } catch (RuntimeException runtimeException) {
-            LOGGER.error("Failed to parse SonarQube response", runtimeException);
-            throw new UpstreamErrorException("Invalid response from SonarQube", 502);
         }
     }
 
-    private String requireString(JsonObject object, String key) {
-        JsonElement element = object.get(key);
-        if (element == null || element.isJsonNull()) {
-            throw new IllegalStateException(key + " missing");
+    public static final class Builder {
+        private Duration requestTimeout;
+        private Duration jobTimeout;
+        private Clock clock = Clock.systemUTC();
+        private UpstreamSettings upstreamSettings = UpstreamSettings.defaults();
+        private MetricsSnapshotStore snapshotStore = MetricsSnapshotStore.disabled();
+        private WarmupSettings warmupSettings = WarmupSettings.none();
+
+        private Builder() {
         }
-        if (element.isJsonPrimitive()) {
-            return element.getAsString();
+
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
         }
-        throw new IllegalStateException(key + " is not a primitive");
-    }
 
-    private boolean readBoolean(JsonObject object, String key) {
-        if (!object.has(key) || object.get(key).isJsonNull()) {
-            return false;
+        public Builder jobTimeout(Duration jobTimeout) {
+            this.jobTimeout = jobTimeout;
+            return this;
         }
-        JsonElement element = object.get(key);
-        if (element.isJsonPrimitive()) {
-            if (element.getAsJsonPrimitive().isBoolean()) {
-                return element.getAsBoolean();
-            }
-            if (element.getAsJsonPrimitive().isString()) {
-                return Boolean.parseBoolean(element.getAsString().toLowerCase(Locale.ROOT));
-            }
-            if (element.getAsJsonPrimitive().isNumber()) {
-                return element.getAsInt() != 0;
-            }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder upstreamSettings(UpstreamSettings upstreamSettings) {
+            this.upstreamSettings = upstreamSettings;
+            return this;
+        }
+
+        /**
+         * Store the response cache is persisted to and restored from. The service closes it in {@link #close()}.
+         */
+        public Builder snapshotStore(MetricsSnapshotStore snapshotStore) {
+            this.snapshotStore = snapshotStore;
+            return this;
+        }
+
+        /**
+         * Hosts the service connects to in {@link #warmUp()} and keeps connections open to.
+         */
+        public Builder warmupSettings(WarmupSettings warmupSettings) {
+            this.warmupSettings = warmupSettings;
+            return this;
+        }
+
+        public SonarMetricsService build() {
+            return new SonarMetricsService(this);
+        }
+    }
+
+    private static final class RetryTimerThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName("softman-retry-timer");
+            thread.setDaemon(true);
+            return thread;
         }
-        throw new IllegalStateException(key + " must be a boolean-compatible primitive");
     }
 }
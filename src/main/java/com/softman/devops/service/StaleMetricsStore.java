@@ -0,0 +1,137 @@
+package com.softman.devops.service;
+
+import com.softman.devops.dto.SonarMetricValue;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU store of the last successful answer per request key, kept for serving when SonarQube is failing.
+ * Unlike {@link MetricsResponseCache} entries are never expired by time; an answer older than {@code maxStaleness}
+ * is simply not served.
+ */
+public final class StaleMetricsStore {
+    private final int maxEntries;
+    private final Duration maxStaleness;
+    private final Clock clock;
+    private final LinkedHashMap<MetricsRequestKey, StoredAnswer> entries;
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong tooOld = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public StaleMetricsStore(int maxEntries, Duration maxStaleness, Clock clock) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative");
+        }
+        if (maxStaleness == null || maxStaleness.isNegative()) {
+            throw new IllegalArgumentException("maxStaleness must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxStaleness = maxStaleness;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MetricsRequestKey, StoredAnswer> eldest) {
+                if (size() > StaleMetricsStore.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0 && !maxStaleness.isZero();
+    }
+
+    public void put(MetricsRequestKey key, List<SonarMetricValue> values) {
+        if (!isEnabled()) {
+            return;
+        }
+        StoredAnswer answer = new StoredAnswer(List.copyOf(values), clock.instant());
+        synchronized (entries) {
+            entries.put(key, answer);
+        }
+    }
+
+    /**
+     * Whether an answer young enough to serve is stored, without counting it as served.
+     */
+    public boolean contains(MetricsRequestKey key) {
+        return find(key).isPresent();
+    }
+
+    /**
+     * Returns the stored answer for {@code key} with its age when it is not older than the maximum staleness.
+     */
+    public Optional<StaleMetrics> serve(MetricsRequestKey key) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        Optional<StaleMetrics> stale = find(key);
+        if (stale.isPresent()) {
+            served.incrementAndGet();
+        } else if (storedAt(key).isPresent()) {
+            tooOld.incrementAndGet();
+        }
+        return stale;
+    }
+
+    private Optional<StaleMetrics> find(MetricsRequestKey key) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        StoredAnswer answer;
+        synchronized (entries) {
+            answer = entries.get(key);
+        }
+        if (answer == null) {
+            return Optional.empty();
+        }
+        Duration age = Duration.between(answer.storedAt(), clock.instant());
+        if (age.compareTo(maxStaleness) > 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new StaleMetrics(answer.values(), age.isNegative() ? Duration.ZERO : age));
+    }
+
+    private Optional<Instant> storedAt(MetricsRequestKey key) {
+        synchronized (entries) {
+            StoredAnswer answer = entries.get(key);
+            return answer == null ? Optional.empty() : Optional.of(answer.storedAt());
+        }
+    }
+
+    public StaleStats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new StaleStats(isEnabled(), size, maxEntries, maxStaleness.toSeconds(), served.get(), tooOld.get(),
+                evictions.get());
+    }
+
+    private record StoredAnswer(List<SonarMetricValue> values, Instant storedAt) {
+    }
+
+    /**
+     * A previously successful answer and how long ago SonarQube returned it.
+     */
+    public record StaleMetrics(List<SonarMetricValue> values, Duration age) {
+    }
+
+    public record StaleStats(boolean enabled,
+                             int size,
+                             int maxEntries,
+                             long maxStalenessSeconds,
+                             long served,
+                             long tooOld,
+                             long evictions) {
+    }
+}
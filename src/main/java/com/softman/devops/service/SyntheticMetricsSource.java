@@ -0,0 +1,184 @@
+package com.softman.devops.service;
+
+import com.softman.devops.config.SyntheticSourceSettings;
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.dto.SonarMetricsRequest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for SonarQube. Every requested metric gets a value of the configured size after a latency drawn
+ * from the configured distribution, and the configured share of calls fails with a 503. Answers are never cached, so
+ * each request exercises the full handler path.
+ */
+public final class SyntheticMetricsSource implements MetricsSource {
+    private static final String VALUE_DIGITS = "0123456789";
+
+    private final SyntheticSourceSettings settings;
+    private final Duration jobTimeout;
+    private final Clock clock;
+    private final String value;
+    private final ScheduledExecutorService timer;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong deadlineFailures = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+    public SyntheticMetricsSource(SyntheticSourceSettings settings, Duration jobTimeout) {
+        this(settings, jobTimeout, Clock.systemUTC());
+    }
+
+    public SyntheticMetricsSource(SyntheticSourceSettings settings, Duration jobTimeout, Clock clock) {
+        if (jobTimeout == null || jobTimeout.isZero() || jobTimeout.isNegative()) {
+            throw new IllegalArgumentException("jobTimeout must be positive");
+        }
+        this.settings = settings;
+        this.jobTimeout = jobTimeout;
+        this.clock = clock;
+        this.value = VALUE_DIGITS.repeat(settings.getValueBytes() / VALUE_DIGITS.length() + 1)
+                .substring(0, settings.getValueBytes());
+        this.timer = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(),
+                new SyntheticThreadFactory());
+    }
+
+    @Override
+    public CompletableFuture<List<SonarMetricValue>> fetchMetricsAsync(SonarMetricsRequest request, Instant startTime) {
+        return fetchMetricsUntil(request, jobDeadline(startTime));
+    }
+
+    @Override
+    public CompletableFuture<List<SonarMetricValue>> fetchMetricsAsync(SonarMetricsRequest request,
+                                                                       Instant startTime,
+                                                                       Instant deadline) {
+        Instant jobDeadline = jobDeadline(startTime);
+        return fetchMetricsUntil(request, deadline.isBefore(jobDeadline) ? deadline : jobDeadline);
+    }
+
+    @Override
+    public Instant jobDeadline(Instant startTime) {
+        return startTime.plus(jobTimeout);
+    }
+
+    private CompletableFuture<List<SonarMetricValue>> fetchMetricsUntil(SonarMetricsRequest request,
+                                                                        Instant deadline) {
+        requests.incrementAndGet();
+        Duration latency = nextLatency();
+        totalLatencyMillis.addAndGet(latency.toMillis());
+        Duration remaining = Duration.between(clock.instant(), deadline);
+        if (latency.compareTo(remaining) > 0) {
+            deadlineFailures.incrementAndGet();
+            return delay(Duration.ZERO.compareTo(remaining) < 0 ? remaining : Duration.ZERO, () -> {
+                throw new JobDeadlineExceededException("Synthetic latency exceeds the job deadline");
+            });
+        }
+        boolean fail = ThreadLocalRandom.current().nextInt(100) < settings.getErrorPercent();
+        if (fail) {
+            failures.incrementAndGet();
+        }
+        return delay(latency, () -> {
+            if (fail) {
+                throw new UpstreamErrorException("Upstream returned server error: 503", 503);
+            }
+            return answer(request);
+        });
+    }
+
+    private List<SonarMetricValue> answer(SonarMetricsRequest request) {
+        List<SonarMetricValue> values = new ArrayList<>(request.getMetrics().size());
+        for (String metric : request.getMetrics()) {
+            values.add(new SonarMetricValue(metric, value, false));
+        }
+        return values;
+    }
+
+    private Duration nextLatency() {
+        long min = settings.getMinLatency().toNanos();
+        long max = settings.getMaxLatency().toNanos();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long nanos = switch (settings.getLatencyShape()) {
+            case FIXED -> min;
+            case UNIFORM -> max == min ? min : random.nextLong(min, max + 1);
+            case EXPONENTIAL -> Math.min(max, min + (long) (-Math.log(1 - random.nextDouble()) * ((max - min) / 10)));
+        };
+        return Duration.ofNanos(nanos);
+    }
+
+    private CompletableFuture<List<SonarMetricValue>> delay(Duration latency, Answer answer) {
+        if (latency.isZero()) {
+            return complete(answer);
+        }
+        CompletableFuture<List<SonarMetricValue>> result = new CompletableFuture<>();
+        ScheduledFuture<?> answered = timer.schedule(() -> complete(answer).whenComplete((values, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(SonarMetricsService.unwrap(failure));
+            } else {
+                result.complete(values);
+            }
+        }), latency.toNanos(), TimeUnit.NANOSECONDS);
+        return CallCancellation.onCancel(result, () -> answered.cancel(false));
+    }
+
+    private static CompletableFuture<List<SonarMetricValue>> complete(Answer answer) {
+        try {
+            return CompletableFuture.completedFuture(answer.get());
+        } catch (Exception exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    public SyntheticStats syntheticStats() {
+        long count = requests.get();
+        return new SyntheticStats(settings.toString(), count, failures.get(), deadlineFailures.get(),
+                count == 0 ? 0 : (double) totalLatencyMillis.get() / count);
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("synthetic", syntheticStats());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface Answer {
+        List<SonarMetricValue> get() throws Exception;
+    }
+
+    public record SyntheticStats(String settings,
+                                 long requests,
+                                 long failures,
+                                 long deadlineFailures,
+                                 double averageLatencyMillis) {
+    }
+
+    private static final class SyntheticThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName("softman-synthetic-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
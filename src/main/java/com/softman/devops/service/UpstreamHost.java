@@ -0,0 +1,286 @@
+package com.softman.devops.service;
+
+import com.softman.devops.config.HttpVersionPolicy;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One SonarQube base URL with its own HttpClient, executor, circuit breaker, retry budget, rate limiter, latency
+ * histogram and protocol statistics.
+ */
+public final class UpstreamHost {
+    /**
+     * Threads of one host's executor, which only run the client's I/O callbacks and timer hand-offs, never a blocking
+     * call; idle ones end after {@link #THREAD_KEEP_ALIVE}.
+     */
+    private static final int MAX_THREADS = 8;
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final Duration THREAD_KEEP_ALIVE = Duration.ofSeconds(60);
+
+    private final String baseUrl;
+    private final HttpVersionPolicy versionPolicy;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryBudget retryBudget;
+    private final LatencyHistogram latency;
+    private final AdaptiveTimeout adaptiveTimeout;
+    private final HostRateLimiter rateLimiter;
+    private final boolean compression;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder http1Responses = new LongAdder();
+    private final LongAdder http2Responses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder bodyBytes = new LongAdder();
+
+    UpstreamHost(String baseUrl,
+                 HttpVersionPolicy versionPolicy,
+                 Duration connectTimeout,
+                 CircuitBreaker circuitBreaker,
+                 RetryBudget retryBudget,
+                 LatencyHistogram latency,
+                 AdaptiveTimeout adaptiveTimeout,
+                 HostRateLimiter rateLimiter,
+                 boolean compression) {
+        this.baseUrl = baseUrl;
+        this.versionPolicy = versionPolicy;
+        this.circuitBreaker = circuitBreaker;
+        this.retryBudget = retryBudget;
+        this.latency = latency;
+        this.adaptiveTimeout = adaptiveTimeout;
+        this.rateLimiter = rateLimiter;
+        this.compression = compression;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, THREAD_KEEP_ALIVE.toMillis(),
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), new UpstreamThreadFactory(baseUrl));
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+        this.httpClient = HttpClient.newBuilder()
+                .version(versionPolicy.getClientVersion())
+                .connectTimeout(connectTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    public HostRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Per-call timeout for this host, learned from its latency when adaptive timeouts are enabled.
+     */
+    public Duration callTimeout() {
+        return adaptiveTimeout.timeoutFor(latency);
+    }
+
+    /**
+     * Whether calls to this host ask for gzip or deflate encoded responses.
+     */
+    public boolean isCompressionEnabled() {
+        return compression;
+    }
+
+    /**
+     * Handler for response bodies from this host, decoding compressed ones as they are read.
+     */
+    public HttpResponse.BodyHandler<InputStream> bodyHandler() {
+        return new DecodingBodyHandler(this);
+    }
+
+    void recordBody(long wireBytes, boolean compressed) {
+        bodyBytes.add(wireBytes);
+        if (compressed) {
+            compressedResponses.increment();
+        }
+    }
+
+    public void recordHedge() {
+        hedges.increment();
+    }
+
+    public void recordHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    /**
+     * Sends the request asynchronously. Cancelling the returned future aborts the exchange; a response that arrives
+     * after cancellation has its body closed.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        requests.increment();
+        long startNanos = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> exchange = httpClient.sendAsync(request, bodyHandler);
+        CompletableFuture<HttpResponse<T>> result = exchange.whenComplete((response, failure) -> {
+            if (failure != null) {
+                if (isCancellation(failure)) {
+                    cancellations.increment();
+                } else {
+                    failures.increment();
+                }
+                if (unwrap(failure) instanceof HttpTimeoutException) {
+                    latency.record(Duration.ofNanos(System.nanoTime() - startNanos));
+                }
+                return;
+            }
+            latency.record(Duration.ofNanos(System.nanoTime() - startNanos));
+            if (response.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.increment();
+            } else {
+                http1Responses.increment();
+            }
+        });
+        result.whenComplete((response, failure) -> {
+            if (!result.isCancelled()) {
+                return;
+            }
+            // The dependent stage is already done, so the outcome handler above never sees the cancellation.
+            cancellations.increment();
+            if (!exchange.cancel(true)) {
+                exchange.thenAccept(UpstreamHost::closeBody);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs {@code task} on this host's executor, or on the calling thread once the host is closed or its executor is
+     * saturated. Timers hand their
+     * work over here, so what a completed call triggers never runs on, and holds up, a shared timer thread.
+     */
+    void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException rejected) {
+            task.run();
+        }
+    }
+
+    /**
+     * Sends a request over this host's connection pool without counting it as traffic, so keeping connections warm
+     * does not skew latency, timeouts or the circuit breaker. The body is discarded.
+     */
+    CompletableFuture<HttpResponse<Void>> probe(HttpRequest request) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static boolean isCancellation(Throwable failure) {
+        return unwrap(failure) instanceof CancellationException;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private static void closeBody(HttpResponse<?> response) {
+        if (response.body() instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception exception) {
+                // Nothing else to release; the connection is dropped by the client.
+            }
+        }
+    }
+
+    public HostStats stats() {
+        return new HostStats(baseUrl, versionPolicy, requests.sum(), http1Responses.sum(), http2Responses.sum(),
+                failures.sum(), cancellations.sum(), hedges.sum(), hedgeWins.sum(), compression,
+                compressedResponses.sum(), bodyBytes.sum(), latencyStats(),
+                callTimeout().toMillis(),
+                circuitBreaker.stats(), retryBudget.stats(), rateLimiter.stats());
+    }
+
+    private LatencyStats latencyStats() {
+        return new LatencyStats(latency.count(), percentileMillis(50), percentileMillis(95), percentileMillis(99));
+    }
+
+    private long percentileMillis(double percentile) {
+        return latency.percentile(percentile, 1).map(Duration::toMillis).orElse(0L);
+    }
+
+    void close() {
+        httpClient.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Closes the client of a host dropped from the registry: exchanges already running finish, new ones are refused.
+     * The executor finishes the tasks it has queued and then lets its threads end.
+     */
+    void retire() {
+        httpClient.shutdown();
+        executor.shutdown();
+    }
+
+    public record HostStats(String baseUrl,
+                            HttpVersionPolicy versionPolicy,
+                            long requests,
+                            long http1Responses,
+                            long http2Responses,
+                            long failures,
+                            long cancellations,
+                            long hedges,
+                            long hedgeWins,
+                            boolean compression,
+                            long compressedResponses,
+                            long bodyBytes,
+                            LatencyStats latency,
+                            long callTimeoutMillis,
+                            CircuitBreaker.BreakerStats circuitBreaker,
+                            RetryBudget.BudgetStats retryBudget,
+                            HostRateLimiter.RateLimiterStats rateLimiter) {
+    }
+
+    public record LatencyStats(long samples, long p50Millis, long p95Millis, long p99Millis) {
+    }
+
+    private static final class UpstreamThreadFactory implements ThreadFactory {
+        private final String baseUrl;
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        private UpstreamThreadFactory(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName("softman-upstream-" + counter.getAndIncrement() + " " + baseUrl);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
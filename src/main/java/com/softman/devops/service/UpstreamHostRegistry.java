@@ -0,0 +1,101 @@
+package com.softman.devops.service;
+
+import com.softman.devops.config.UpstreamSettings;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazily creates one {@link UpstreamHost} per canonical SonarQube base URL. Base URLs come from clients, so at most
+ * {@code maxHosts} are kept: creating one more retires the host used least recently and closes its client.
+ */
+public final class UpstreamHostRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpstreamHostRegistry.class);
+    private static final Duration LATENCY_WINDOW = Duration.ofSeconds(60);
+    static final int DEFAULT_MAX_HOSTS = 64;
+
+    private final UpstreamSettings settings;
+    private final Duration requestTimeout;
+    private final Clock clock;
+    private final int maxHosts;
+    private final Map<String, UpstreamHost> hosts = new LinkedHashMap<>(16, 0.75f, true);
+
+    public UpstreamHostRegistry(UpstreamSettings settings, Duration requestTimeout, Clock clock) {
+        this(settings, requestTimeout, clock, DEFAULT_MAX_HOSTS);
+    }
+
+    UpstreamHostRegistry(UpstreamSettings settings, Duration requestTimeout, Clock clock, int maxHosts) {
+        if (maxHosts <= 0) {
+            throw new IllegalArgumentException("maxHosts must be positive");
+        }
+        this.settings = settings;
+        this.requestTimeout = requestTimeout;
+        this.clock = clock;
+        this.maxHosts = maxHosts;
+    }
+
+    public UpstreamHost hostFor(String baseUrl) {
+        String normalized = SonarMetricsService.normalizeBaseUrl(baseUrl);
+        UpstreamHost host;
+        UpstreamHost retired = null;
+        synchronized (this) {
+            host = hosts.get(normalized);
+            if (host != null) {
+                return host;
+            }
+            host = createHost(normalized);
+            hosts.put(normalized, host);
+            if (hosts.size() > maxHosts) {
+                Iterator<UpstreamHost> eldest = hosts.values().iterator();
+                retired = eldest.next();
+                eldest.remove();
+            }
+        }
+        if (retired != null) {
+            LOGGER.info("Retiring upstream host {}, more than {} hosts in use", retired.getBaseUrl(), maxHosts);
+            retired.retire();
+        }
+        return host;
+    }
+
+    public List<UpstreamHost.HostStats> stats() {
+        return hosts().stream()
+                .map(UpstreamHost::stats)
+                .sorted(Comparator.comparing(UpstreamHost.HostStats::baseUrl))
+                .toList();
+    }
+
+    private synchronized List<UpstreamHost> hosts() {
+        return new ArrayList<>(hosts.values());
+    }
+
+    private UpstreamHost createHost(String baseUrl) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(baseUrl, settings.getBreakerFailureRate(),
+                settings.getBreakerWindowSize(), settings.getBreakerMinimumCalls(), settings.getBreakerOpenDuration(),
+                clock);
+        RetryBudget retryBudget = new RetryBudget(settings.getRetryBudgetPercent(),
+                settings.getRetryBudgetMinRetries(), settings.getRetryBudgetWindow(), clock);
+        AdaptiveTimeout adaptiveTimeout = new AdaptiveTimeout(settings.getAdaptiveTimeoutFactor(),
+                settings.getAdaptiveTimeoutFloor(), requestTimeout);
+        return new UpstreamHost(baseUrl, settings.getHttpVersionPolicy(), requestTimeout, circuitBreaker, retryBudget,
+                new LatencyHistogram(LATENCY_WINDOW, clock), adaptiveTimeout,
+                new HostRateLimiter(settings.getHostQps(), settings.getHostBurst(), clock),
+                settings.isCompressionEnabled(baseUrl));
+    }
+
+    public void close() {
+        List<UpstreamHost> closing;
+        synchronized (this) {
+            closing = new ArrayList<>(hosts.values());
+            hosts.clear();
+        }
+        closing.forEach(UpstreamHost::close);
+    }
+}
@@ -5,6 +5,17 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.softman.devops.config.BackoffStrategy;
+import com.softman.devops.config.BatchSchedule;
+import com.softman.devops.config.HedgePolicy;
+import com.softman.devops.config.HttpVersionPolicy;
+import com.softman.devops.config.JobSettings;
+import com.softman.devops.config.SyntheticSourceSettings;
+import com.softman.devops.config.SyntheticSourceSettings.LatencyShape;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.config.WarmupSettings;
+import java.time.Duration;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class CommandLineParserTest {
@@ -46,6 +57,241 @@ class CommandLineParserTest {
         assertFalse(options.logDirectory().isPresent());
     }
 
+    @Test
+    void parsesCacheOptions() {
+        CommandLineParser parser = new CommandLineParser();
+        CommandLineOptions options = parser.parse(new String[]{"--port", "8080", "--cachesize", "0", "--cachettl", "45"});
+
+        assertEquals(0, options.upstreamSettings().getCacheMaxEntries());
+        assertEquals(Duration.ofSeconds(45), options.upstreamSettings().getCacheTtl());
+        assertFalse(options.upstreamSettings().isCacheEnabled());
+    }
+
+    @Test
+    void parsesHttpVersionPolicy() {
+        CommandLineParser parser = new CommandLineParser();
+        CommandLineOptions options = parser.parse(new String[]{"--port", "8080", "--httpversion", "2"});
+
+        assertEquals(HttpVersionPolicy.HTTP_2, options.upstreamSettings().getHttpVersionPolicy());
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--httpversion", "3"}));
+    }
+
+    @Test
+    void parsesMaxResponseSizeInKibibytes() {
+        CommandLineParser parser = new CommandLineParser();
+        CommandLineOptions options = parser.parse(new String[]{"--port", "8080", "--maxresponsekb", "64"});
+
+        assertEquals(64L * 1024, options.upstreamSettings().getMaxResponseBytes());
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--maxresponsekb", "0"}));
+    }
+
+    @Test
+    void parsesCircuitBreakerOptions() {
+        CommandLineParser parser = new CommandLineParser();
+        CommandLineOptions options = parser.parse(new String[]{"--port", "8080", "--breakerrate", "0", "--breakeropen", "5"});
+
+        assertEquals(0, options.upstreamSettings().getBreakerFailureRate());
+        assertEquals(Duration.ofSeconds(5), options.upstreamSettings().getBreakerOpenDuration());
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--breakerrate", "101"}));
+    }
+
+    @Test
+    void parsesBackoffPolicy() {
+        CommandLineParser parser = new CommandLineParser();
+
+        assertEquals(BackoffStrategy.FULL_JITTER,
+                parser.parse(new String[]{"--port", "8080"}).upstreamSettings().getBackoffStrategy());
+        assertEquals(BackoffStrategy.FIXED,
+                parser.parse(new String[]{"--port", "8080", "--backoff", "fixed"}).upstreamSettings().getBackoffStrategy());
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--backoff", "none"}));
+    }
+
+    @Test
+    void parsesRetryBudget() {
+        CommandLineParser parser = new CommandLineParser();
+        CommandLineOptions options = parser.parse(new String[]{"--port", "8080", "--retrybudget", "0"});
+
+        assertEquals(0, options.upstreamSettings().getRetryBudgetPercent());
+        assertEquals(UpstreamSettings.DEFAULT_RETRY_BUDGET_PERCENT,
+                parser.parse(new String[]{"--port", "8080"}).upstreamSettings().getRetryBudgetPercent());
+    }
+
+    @Test
+    void parsesHedgePolicy() {
+        CommandLineParser parser = new CommandLineParser();
+
+        HedgePolicy fixed = parser.parse(new String[]{"--port", "8080", "--hedge", "250"}).upstreamSettings().getHedgePolicy();
+        HedgePolicy percentile = parser.parse(new String[]{"--port", "8080", "--hedge", "p95"}).upstreamSettings().getHedgePolicy();
+
+        assertEquals(Duration.ofMillis(250), fixed.getFixedDelay().orElseThrow());
+        assertEquals(95, percentile.getPercentile().getAsInt());
+        assertFalse(parser.parse(new String[]{"--port", "8080"}).upstreamSettings().getHedgePolicy().isEnabled());
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--hedge", "p100"}));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--hedge", "soon"}));
+    }
+
+    @Test
+    void parsesAdaptiveTimeoutOptions() {
+        CommandLineParser parser = new CommandLineParser();
+        CommandLineOptions options = parser.parse(new String[]{"--port", "8080", "--adaptivetimeout", "2.5", "--timeoutfloor", "1"});
+
+        assertEquals(2.5, options.upstreamSettings().getAdaptiveTimeoutFactor());
+        assertEquals(Duration.ofSeconds(1), options.upstreamSettings().getAdaptiveTimeoutFloor());
+        assertEquals(0, parser.parse(new String[]{"--port", "8080"}).upstreamSettings().getAdaptiveTimeoutFactor());
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--adaptivetimeout", "-1"}));
+    }
+
+    @Test
+    void parsesHostRateLimit() {
+        CommandLineParser parser = new CommandLineParser();
+        CommandLineOptions options = parser.parse(new String[]{"--port", "8080", "--hostqps", "20", "--hostburst", "5"});
+
+        assertEquals(20, options.upstreamSettings().getHostQps());
+        assertEquals(5, options.upstreamSettings().getHostBurst());
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--hostburst", "0"}));
+    }
+
+    @Test
+    void parsesMicroBatchOptions() {
+        CommandLineParser parser = new CommandLineParser();
+        CommandLineOptions options = parser.parse(new String[]{"--port", "8080", "--microbatch", "5", "--microbatchsize", "50"});
+
+        assertEquals(Duration.ofMillis(5), options.upstreamSettings().getMicroBatchWindow());
+        assertEquals(50, options.upstreamSettings().getMicroBatchMaxItems());
+        assertFalse(parser.parse(new String[]{"--port", "8080"}).upstreamSettings().isMicroBatchEnabled());
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--microbatchsize", "101"}));
+    }
+
+    @Test
+    void parsesUncompressedHosts() {
+        CommandLineParser parser = new CommandLineParser();
+        UpstreamSettings settings = parser.parse(new String[]{"--port", "8080", "--nocompress",
+                "http://sonar-a/, http://sonar-b"}).upstreamSettings();
+
+        assertFalse(settings.isCompressionEnabled("http://sonar-a"));
+        assertFalse(settings.isCompressionEnabled("http://sonar-b/"));
+        assertTrue(settings.isCompressionEnabled("http://sonar-c/"));
+        assertFalse(parser.parse(new String[]{"--port", "8080", "--nocompress", "*"}).upstreamSettings()
+                .isCompressionEnabled("http://sonar-c/"));
+    }
+
+    @Test
+    void parsesStaleIfErrorOptions() {
+        CommandLineParser parser = new CommandLineParser();
+        UpstreamSettings settings = parser.parse(new String[]{"--port", "8080", "--maxstale", "600",
+                "--stalesize", "50"}).upstreamSettings();
+
+        assertEquals(Duration.ofMinutes(10), settings.getMaxStaleness());
+        assertEquals(50, settings.getStaleMaxEntries());
+        assertTrue(settings.isStaleIfErrorEnabled());
+        assertFalse(parser.parse(new String[]{"--port", "8080"}).upstreamSettings().isStaleIfErrorEnabled());
+    }
+
+    @Test
+    void parsesSnapshotSize() {
+        CommandLineParser parser = new CommandLineParser();
+
+        assertEquals(32, parser.parse(new String[]{"--port", "8080", "--snapshotmb", "32"}).snapshotMegabytes());
+        assertEquals(0, parser.parse(new String[]{"--port", "8080"}).snapshotMegabytes());
+        assertEquals(2047, parser.parse(new String[]{"--port", "8080", "--snapshotmb", "2047"}).snapshotMegabytes());
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(new String[]{"--port", "8080", "--snapshotmb", "2048"}));
+    }
+
+    @Test
+    void parsesBatchParallelismAndUpstreamCap() {
+        CommandLineParser parser = new CommandLineParser();
+        UpstreamSettings settings = parser.parse(new String[]{"--port", "8080", "--batchparallel", "8",
+                "--maxupstream", "0"}).upstreamSettings();
+
+        assertEquals(8, settings.getBatchParallelism());
+        assertEquals(0, settings.getMaxUpstreamCalls());
+        assertEquals(UpstreamSettings.DEFAULT_MAX_UPSTREAM_CALLS,
+                parser.parse(new String[]{"--port", "8080"}).upstreamSettings().getMaxUpstreamCalls());
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(new String[]{"--port", "8080", "--batchparallel", "0"}));
+    }
+
+    @Test
+    void parsesBatchSchedule() {
+        CommandLineParser parser = new CommandLineParser();
+
+        assertEquals(BatchSchedule.SHORTEST_LATENCY, parser.parse(new String[]{"--port", "8080", "--batchschedule",
+                "Shortest"}).upstreamSettings().getBatchSchedule());
+        assertEquals(BatchSchedule.WHOLE_DEADLINE,
+                parser.parse(new String[]{"--port", "8080"}).upstreamSettings().getBatchSchedule());
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(new String[]{"--port", "8080", "--batchschedule", "random"}));
+    }
+
+    @Test
+    void parsesWarmupSettings() {
+        CommandLineParser parser = new CommandLineParser();
+        WarmupSettings settings = parser.parse(new String[]{"--port", "8080", "--warmup",
+                "https://sonar.example.com, https://other.example.com", "--warmupconns", "4", "--keepalive", "0"})
+                .warmupSettings();
+
+        assertEquals(List.of("https://sonar.example.com", "https://other.example.com"), settings.getTargets());
+        assertEquals(4, settings.getConnectionsPerHost());
+        assertFalse(settings.isKeepAliveEnabled());
+        WarmupSettings defaults = parser.parse(new String[]{"--port", "8080"}).warmupSettings();
+        assertFalse(defaults.isEnabled());
+        assertEquals(WarmupSettings.DEFAULT_KEEP_ALIVE_INTERVAL, defaults.getKeepAliveInterval());
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(new String[]{"--port", "8080", "--warmup", "http://sonar", "--warmupconns", "65"}));
+    }
+
+    @Test
+    void parsesJobSettings() {
+        CommandLineParser parser = new CommandLineParser();
+        JobSettings settings = parser.parse(new String[]{"--port", "8080", "--jobworkers", "3", "--jobqueue", "0",
+                "--jobdeadline", "7200", "--jobttl", "600", "--jobresults", "5"}).jobSettings();
+
+        assertEquals(3, settings.getWorkers());
+        assertEquals(0, settings.getQueueSize());
+        assertEquals(Duration.ofHours(2), settings.getDeadline());
+        assertEquals(Duration.ofMinutes(10), settings.getResultTtl());
+        assertEquals(5, settings.getMaxResults());
+        JobSettings defaults = parser.parse(new String[]{"--port", "8080"}).jobSettings();
+        assertEquals(JobSettings.DEFAULT_WORKERS, defaults.getWorkers());
+        assertEquals(JobSettings.DEFAULT_DEADLINE, defaults.getDeadline());
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(new String[]{"--port", "8080", "--jobttl", "0"}));
+    }
+
+    @Test
+    void parsesSyntheticSource() {
+        CommandLineParser parser = new CommandLineParser();
+        SyntheticSourceSettings uniform = parser.parse(new String[]{"--port", "8080", "--synthetic",
+                "latency=5-50,errors=2,valuebytes=64"}).upstreamSettings().getSyntheticSource().orElseThrow();
+        SyntheticSourceSettings exponential = parser.parse(new String[]{"--port", "8080", "--synthetic",
+                "latency=exp:20"}).upstreamSettings().getSyntheticSource().orElseThrow();
+
+        assertEquals(LatencyShape.UNIFORM, uniform.getLatencyShape());
+        assertEquals(Duration.ofMillis(50), uniform.getMaxLatency());
+        assertEquals(2, uniform.getErrorPercent());
+        assertEquals(64, uniform.getValueBytes());
+        assertEquals(Duration.ZERO, exponential.getMinLatency());
+        assertEquals(Duration.ofMillis(200), exponential.getMaxLatency());
+        SyntheticSourceSettings shifted = parser.parse(new String[]{"--port", "8080", "--synthetic",
+                "latency=exp:10-30"}).upstreamSettings().getSyntheticSource().orElseThrow();
+        assertEquals(Duration.ofMillis(10), shifted.getMinLatency());
+        assertEquals(Duration.ofMillis(210), shifted.getMaxLatency());
+        assertEquals(Duration.ZERO, parser.parse(new String[]{"--port", "8080", "--synthetic", "on"})
+                .upstreamSettings().getSyntheticSource().orElseThrow().getMaxLatency());
+        assertTrue(parser.parse(new String[]{"--port", "8080"}).upstreamSettings().getSyntheticSource().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(new String[]{"--port", "8080", "--synthetic", "errors=101"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> parser.parse(new String[]{"--port", "8080", "--synthetic", "latency=50-5"}));
+    }
+
+    @Test
+    void negativeCacheSizeThrows() {
+        CommandLineParser parser = new CommandLineParser();
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(new String[]{"--port", "8080", "--cachesize", "-1"}));
+    }
+
     @Test
     void helpFlagIsRecognised() {
         CommandLineParser parser = new CommandLineParser();
@@ -39,4 +39,23 @@ class ServiceConfigurationTest {
         assertEquals(LogLevel.DEBUG, configuration.getLogLevel());
         assertEquals(Path.of("logs"), configuration.getLogDirectory());
     }
+
+    @Test
+    void builderDefaultsOptionalSettings() {
+        ServiceConfiguration configuration = ServiceConfiguration.builder()
+                .port(9000)
+                .maxConnections(10)
+                .requestTimeout(Duration.ofSeconds(3))
+                .jobTimeout(Duration.ofSeconds(5))
+                .logLevel(LogLevel.INFO)
+                .logDirectory(Path.of("logs"))
+                .snapshotMaxBytes(1024)
+                .build();
+
+        assertEquals(1024, configuration.getSnapshotMaxBytes());
+        assertEquals(WarmupSettings.none().getTargets(), configuration.getWarmupSettings().getTargets());
+        assertEquals(JobSettings.DEFAULT_WORKERS, configuration.getJobSettings().getWorkers());
+        assertEquals(UpstreamSettings.DEFAULT_CACHE_MAX_ENTRIES,
+                configuration.getUpstreamSettings().getCacheMaxEntries());
+    }
 }
@@ -2,9 +2,12 @@ package com.softman.devops.dto;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.gson.JsonObject;
+import com.softman.devops.config.BackoffStrategy;
 import com.softman.devops.handler.ValidationException;
+import java.time.Duration;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 
@@ -74,6 +77,59 @@ class SonarMetricsRequestTest {
         assertThrows(ValidationException.class, () -> SonarMetricsRequest.fromJson(json));
     }
 
+    @Test
+    void parsesCacheControlFields() throws Exception {
+        JsonObject json = baseRequest();
+        json.addProperty("max_age", 15);
+        json.addProperty("no_cache", true);
+
+        SonarMetricsRequest request = SonarMetricsRequest.fromJson(json);
+        assertEquals(Duration.ofSeconds(15), request.getMaxAge().orElseThrow());
+        assertTrue(request.isNoCache());
+    }
+
+    @Test
+    void noCacheMustBeBoolean() {
+        JsonObject json = baseRequest();
+        json.addProperty("no_cache", "yes");
+        assertThrows(ValidationException.class, () -> SonarMetricsRequest.fromJson(json));
+    }
+
+    @Test
+    void parsesBackoffOverride() throws Exception {
+        JsonObject json = baseRequest();
+        json.addProperty("backoff", "Decorrelated");
+
+        assertEquals(BackoffStrategy.DECORRELATED_JITTER, SonarMetricsRequest.fromJson(json).getBackoff().orElseThrow());
+        assertTrue(SonarMetricsRequest.fromJson(baseRequest()).getBackoff().isEmpty());
+
+        json.addProperty("backoff", "linear");
+        assertThrows(ValidationException.class, () -> SonarMetricsRequest.fromJson(json));
+    }
+
+    @Test
+    void unionAsksForEveryMetricWithTheStrictestCacheOptions() throws Exception {
+        JsonObject first = baseRequest();
+        first.addProperty("metrics", "coverage,bugs");
+        first.addProperty("custid", "customer-a");
+        first.addProperty("max_age", 60);
+        first.addProperty("retries", 1);
+        JsonObject second = baseRequest();
+        second.addProperty("metrics", "ncloc,coverage");
+        second.addProperty("max_age", 15);
+        second.addProperty("no_cache", true);
+        second.addProperty("retries", 4);
+
+        SonarMetricsRequest union = SonarMetricsRequest.union(
+                List.of(SonarMetricsRequest.fromJson(first), SonarMetricsRequest.fromJson(second)));
+
+        assertEquals(List.of("coverage", "bugs", "ncloc"), union.getMetrics());
+        assertEquals(Duration.ofSeconds(15), union.getMaxAge().orElseThrow());
+        assertTrue(union.isNoCache());
+        assertEquals(4, union.getRetries());
+        assertTrue(union.getCustomerId().isEmpty());
+    }
+
     private JsonObject baseRequest() {
         JsonObject json = new JsonObject();
         json.addProperty("baseurl", "http://localhost");
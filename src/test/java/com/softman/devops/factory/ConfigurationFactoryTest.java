@@ -3,8 +3,11 @@ package com.softman.devops.factory;
 import static org.junit.jupiter.api.Assertions.*;
 
 import com.softman.devops.cli.CommandLineOptions;
+import com.softman.devops.config.JobSettings;
 import com.softman.devops.config.LogLevel;
 import com.softman.devops.config.ServiceConfiguration;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.config.WarmupSettings;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Optional;
@@ -58,6 +61,29 @@ class ConfigurationFactoryTest {
         assertEquals(Path.of("."), config.getLogDirectory());
     }
 
+    @Test
+    void snapshotLivesNextToLogs() {
+        CommandLineOptions options = new CommandLineOptions(
+            false,
+            Optional.of(5050),
+            5,
+            60,
+            180,
+            2,
+            Optional.of("/tmp/logs"),
+            UpstreamSettings.defaults(),
+            16,
+            WarmupSettings.none(),
+            JobSettings.defaults()
+        );
+
+        ServiceConfiguration config = ConfigurationFactory.createConfiguration(options);
+
+        assertTrue(config.isSnapshotEnabled());
+        assertEquals(16L * 1024 * 1024, config.getSnapshotMaxBytes());
+        assertEquals(Path.of("/tmp/logs", ServiceConfiguration.SNAPSHOT_FILE_NAME), config.getSnapshotFile());
+    }
+
     @Test
     void createConfigurationThrowsWhenOptionsIsNull() {
         assertThrows(IllegalArgumentException.class, () ->
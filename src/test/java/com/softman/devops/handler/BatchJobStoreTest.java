@@ -0,0 +1,77 @@
+package com.softman.devops.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.softman.devops.dto.BatchSonarMetricsRequest;
+import com.softman.devops.support.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class BatchJobStoreTest {
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void evictsFinishedJobsOnceTheirResultsExpire() throws Exception {
+        MutableClock clock = new MutableClock(START);
+        BatchJobStore store = new BatchJobStore(Duration.ofMinutes(10), 10, clock);
+        BatchJob finished = finishedJob("finished", clock, store);
+        BatchJob running = job("running", clock);
+        store.add(running);
+        running.start(clock.instant(), clock.instant().plusSeconds(60));
+
+        clock.advance(Duration.ofMinutes(9));
+        assertTrue(store.find(finished.id()).isPresent());
+        clock.advance(Duration.ofMinutes(1));
+
+        assertTrue(store.find(finished.id()).isEmpty());
+        assertTrue(store.find("running").isPresent());
+        assertEquals(new BatchJobStore.StoreStats(0, 1, 0, 1), store.stats());
+    }
+
+    @Test
+    void evictsJobsThatFinishedFirstWhenTooManyAreKept() throws Exception {
+        MutableClock clock = new MutableClock(START);
+        BatchJobStore store = new BatchJobStore(Duration.ofHours(1), 2, clock);
+        BatchJob queued = job("queued", clock);
+        store.add(queued);
+        finishedJob("first", clock, store);
+        clock.advance(Duration.ofSeconds(1));
+        finishedJob("second", clock, store);
+        clock.advance(Duration.ofSeconds(1));
+        finishedJob("third", clock, store);
+
+        assertTrue(store.find("first").isEmpty());
+        assertTrue(store.find("second").isPresent());
+        assertTrue(store.find("third").isPresent());
+        assertTrue(store.find("queued").isPresent());
+        assertEquals(new BatchJobStore.StoreStats(1, 0, 2, 1), store.stats());
+    }
+
+    private BatchJob finishedJob(String id, MutableClock clock, BatchJobStore store) throws Exception {
+        BatchJob job = job(id, clock);
+        store.add(job);
+        job.start(clock.instant(), clock.instant().plusSeconds(60));
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "SUCCESS");
+        job.finish(clock.instant(), response);
+        store.finished(job);
+        return job;
+    }
+
+    private BatchJob job(String id, MutableClock clock) throws Exception {
+        JsonObject item = new JsonObject();
+        item.addProperty("component", "project-a");
+        item.addProperty("metrics", "coverage");
+        JsonArray data = new JsonArray();
+        data.add(item);
+        JsonObject payload = new JsonObject();
+        payload.addProperty("baseurl", "http://localhost:9000");
+        payload.addProperty("token", "token-value");
+        payload.add("data", data);
+        return new BatchJob(id, BatchSonarMetricsRequest.fromJson(payload), clock.instant());
+    }
+}
@@ -2,6 +2,7 @@ package com.softman.devops.integration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.gson.Gson;
@@ -9,13 +10,21 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.softman.devops.SoftmanDevOpsServer;
+import com.softman.devops.config.BatchSchedule;
+import com.softman.devops.config.JobSettings;
 import com.softman.devops.config.LogLevel;
 import com.softman.devops.config.ServiceConfiguration;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.service.MetricsSource;
 import com.softman.devops.service.SonarMetricsService;
 import com.softman.devops.support.SonarStubServer;
 import com.softman.devops.support.SonarStubServer.CapturedRequest;
 import com.softman.devops.support.SonarStubServer.ResponsePlan;
 import com.softman.devops.support.TestPorts;
+import java.io.OutputStream;
+import java.net.Socket;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -23,8 +32,14 @@ import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -85,6 +100,54 @@ class SoftmanDevOpsServerIntegrationTest {
         assertEquals("coverage", result.get(0).getAsJsonObject().get("metric").getAsString());
     }
 
+    @Test
+    void unexpectedFailureReturnsInternalError() throws Exception {
+        startServer(new FailingMetricsSource());
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(buildPayload()))
+                .build();
+
+        HttpResponse<String> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(500, httpResponse.statusCode());
+        JsonObject body = GSON.fromJson(httpResponse.body(), JsonObject.class);
+        assertEquals("INTERNAL_ERROR", body.get("status").getAsString());
+    }
+
+    @Test
+    void unexpectedBatchFailureReturnsInternalError() throws Exception {
+        startServer(new FailingMetricsSource());
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics_batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(branchBatchPayload("project-a", "project-b")))
+                .build();
+
+        HttpResponse<String> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(500, httpResponse.statusCode());
+        JsonObject body = GSON.fromJson(httpResponse.body(), JsonObject.class);
+        assertEquals("INTERNAL_ERROR", body.get("status").getAsString());
+    }
+
+    @Test
+    void unexpectedStreamedBatchFailureEndsWithErrorLine() throws Exception {
+        startServer(new FailingMetricsSource());
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics_batch?stream=true"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(branchBatchPayload("project-a", "project-b")))
+                .build();
+
+        HttpResponse<Stream<String>> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, httpResponse.statusCode());
+        List<JsonObject> lines = httpResponse.body().map(line -> GSON.fromJson(line, JsonObject.class)).toList();
+        assertEquals("INTERNAL_ERROR", lines.get(lines.size() - 1).get("status").getAsString());
+    }
+
     @Test
     void validationFailureReturnsBadRequest() throws Exception {
         startServer(2, Duration.ofSeconds(2), Duration.ofSeconds(10));
@@ -240,6 +303,53 @@ class SoftmanDevOpsServerIntegrationTest {
         ongoing.get(3, TimeUnit.SECONDS);
     }
 
+    @Test
+    void failedStreamWriteCancelsBatchAndFreesSlot() throws Exception {
+        sonarStubServer.enqueue("project-fast", ResponsePlan.success(componentResponse("90.0")));
+        sonarStubServer.enqueue("project-next", ResponsePlan.successWithDelay(componentResponse("70.0"), 500));
+        sonarStubServer.enqueue("project-slow", ResponsePlan.successWithDelay(componentResponse("50.0"), 5000));
+        sonarStubServer.enqueue(ResponsePlan.success(componentResponse("80.0")));
+
+        startServer(1, Duration.ofSeconds(10), Duration.ofSeconds(30));
+
+        byte[] payload = branchBatchPayload("project-fast", "project-next", "project-slow")
+                .getBytes(StandardCharsets.UTF_8);
+        try (Socket socket = new Socket("localhost", serverPort)) {
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(("POST /sonar/metrics_batch?stream=true HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Content-Type: application/json\r\nContent-Length: " + payload.length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            outputStream.write(payload);
+            outputStream.flush();
+            assertTrue(socket.getInputStream().read() >= 0);
+            socket.setSoLinger(true, 0);
+        }
+
+        JsonObject disconnects = null;
+        long giveUpAt = System.nanoTime() + Duration.ofSeconds(3).toNanos();
+        while (System.nanoTime() < giveUpAt) {
+            HttpResponse<String> stats = httpClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:" + serverPort + "/sonar/stats"))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            disconnects = GSON.fromJson(stats.body(), JsonObject.class).getAsJsonObject("clientDisconnects");
+            if (disconnects.get("cancelledBatches").getAsInt() == 1) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        assertEquals(1, disconnects.get("cancelledBatches").getAsInt());
+        assertEquals(1, disconnects.get("disconnects").getAsInt());
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(buildPayload()))
+                .build();
+        HttpResponse<String> next = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, next.statusCode(), "status=" + next.statusCode() + " body=" + next.body());
+    }
+
     @Test
     void batchRequestReturnsPartialSuccess() throws Exception {
         JsonObject measure = new JsonObject();
@@ -252,8 +362,8 @@ class SoftmanDevOpsServerIntegrationTest {
         component.add("measures", measures);
         JsonObject response = new JsonObject();
         response.add("component", component);
-        sonarStubServer.enqueue(ResponsePlan.success(response));
-        sonarStubServer.enqueue(ResponsePlan.status(503));
+        sonarStubServer.enqueue("project-a", ResponsePlan.success(response));
+        sonarStubServer.enqueue("project-b", ResponsePlan.status(503));
 
         startServer(3, Duration.ofSeconds(2), Duration.ofSeconds(10));
 
@@ -304,6 +414,149 @@ class SoftmanDevOpsServerIntegrationTest {
         assertTrue(secondResult.get("bestValue01").isJsonNull());
     }
 
+    @Test
+    void batchItemsRunConcurrentlyAndKeepTheirOrder() throws Exception {
+        JsonArray data = new JsonArray();
+        for (int i = 1; i <= 4; i++) {
+            JsonObject measure = new JsonObject();
+            measure.addProperty("metric", "coverage");
+            measure.addProperty("value", i + "0.0");
+            JsonArray measures = new JsonArray();
+            measures.add(measure);
+            JsonObject component = new JsonObject();
+            component.add("measures", measures);
+            JsonObject response = new JsonObject();
+            response.add("component", component);
+            sonarStubServer.enqueue("project-" + i, ResponsePlan.successWithDelay(response, 600));
+
+            JsonObject item = new JsonObject();
+            item.addProperty("component", "project-" + i);
+            item.addProperty("metrics", "coverage");
+            item.addProperty("branch", "develop");
+            data.add(item);
+        }
+
+        startServer(2, Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        JsonObject payload = new JsonObject();
+        payload.addProperty("baseurl", "http://localhost:" + sonarStubServer.port());
+        payload.addProperty("token", "token-value");
+        payload.add("data", data);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics_batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
+                .build();
+
+        long started = System.nanoTime();
+        HttpResponse<String> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+
+        assertEquals(200, httpResponse.statusCode());
+        assertTrue(elapsedMillis < 1800, "four 600 ms items took " + elapsedMillis + " ms");
+        JsonObject body = GSON.fromJson(httpResponse.body(), JsonObject.class);
+        assertEquals("SUCCESS", body.get("status").getAsString());
+        JsonArray results = body.getAsJsonArray("results");
+        for (int i = 1; i <= 4; i++) {
+            JsonObject result = results.get(i - 1).getAsJsonObject();
+            assertEquals("project-" + i, result.get("component").getAsString());
+            assertEquals(i + "0.0", result.get("value01").getAsString());
+        }
+    }
+
+    @Test
+    void streamedBatchWritesEachItemWhenItCompletes() throws Exception {
+        sonarStubServer.enqueue("project-slow", ResponsePlan.successWithDelay(componentResponse("50.0"), 1500));
+        sonarStubServer.enqueue("project-fast", ResponsePlan.success(componentResponse("90.0")));
+
+        startServer(2, Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics_batch"))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(branchBatchPayload("project-slow", "project-fast")))
+                .build();
+
+        long started = System.nanoTime();
+        HttpResponse<Stream<String>> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, httpResponse.statusCode());
+        assertTrue(httpResponse.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+        Iterator<String> lines = httpResponse.body().iterator();
+
+        JsonObject first = GSON.fromJson(lines.next(), JsonObject.class);
+        long firstLineMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        assertTrue(firstLineMillis < 1200, "first line after " + firstLineMillis + " ms");
+        assertEquals(1, first.get("index").getAsInt());
+        assertEquals("project-fast", first.get("component").getAsString());
+        assertEquals("90.0", first.get("value01").getAsString());
+
+        JsonObject second = GSON.fromJson(lines.next(), JsonObject.class);
+        assertEquals(0, second.get("index").getAsInt());
+        assertEquals("SUCCESS", second.get("status").getAsString());
+
+        JsonObject summary = GSON.fromJson(lines.next(), JsonObject.class);
+        assertEquals("SUCCESS", summary.get("status").getAsString());
+        assertEquals(2, summary.get("total").getAsInt());
+        assertEquals(2, summary.get("succeeded").getAsInt());
+        assertFalse(lines.hasNext());
+    }
+
+    @Test
+    void streamQueryFlagReportsFailedBatchInSummary() throws Exception {
+        sonarStubServer.enqueue("project-a", ResponsePlan.status(503));
+        sonarStubServer.enqueue("project-b", ResponsePlan.status(503));
+
+        startServer(2, Duration.ofSeconds(2), Duration.ofSeconds(10));
+
+        JsonObject payload = GSON.fromJson(branchBatchPayload("project-a", "project-b"), JsonObject.class);
+        payload.getAsJsonArray("data").forEach(item -> item.getAsJsonObject().addProperty("retries", 0));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics_batch?stream=true"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
+                .build();
+
+        HttpResponse<Stream<String>> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        List<JsonObject> lines = httpResponse.body().map(line -> GSON.fromJson(line, JsonObject.class)).toList();
+
+        assertEquals(3, lines.size());
+        assertEquals("UPSTREAM_5XX", lines.get(0).get("status").getAsString());
+        assertEquals("UPSTREAM_5XX", lines.get(1).get("status").getAsString());
+        assertEquals("FAILED", lines.get(2).get("status").getAsString());
+        assertEquals(0, lines.get(2).get("succeeded").getAsInt());
+    }
+
+    @Test
+    void fairShareKeepsSlowFirstItemFromUsingUpTheJobDeadline() throws Exception {
+        sonarStubServer.enqueue("project-slow", ResponsePlan.successWithDelay(componentResponse("50.0"), 3000));
+        sonarStubServer.enqueue("project-fast", ResponsePlan.success(componentResponse("90.0")));
+
+        UpstreamSettings upstreamSettings = UpstreamSettings.builder()
+                .batchParallelism(1)
+                .batchSchedule(BatchSchedule.FAIR_SHARE)
+                .build();
+        startServer(2, Duration.ofSeconds(5), Duration.ofSeconds(2), upstreamSettings);
+
+        JsonObject payload = GSON.fromJson(branchBatchPayload("project-slow", "project-fast"), JsonObject.class);
+        payload.getAsJsonArray("data").forEach(item -> item.getAsJsonObject().addProperty("retries", 0));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics_batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
+                .build();
+
+        HttpResponse<String> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, httpResponse.statusCode());
+
+        JsonObject body = GSON.fromJson(httpResponse.body(), JsonObject.class);
+        assertEquals("PARTIAL_SUCCESS", body.get("status").getAsString());
+        JsonArray results = body.getAsJsonArray("results");
+        assertFalse("SUCCESS".equals(results.get(0).getAsJsonObject().get("status").getAsString()));
+        assertEquals("SUCCESS", results.get(1).getAsJsonObject().get("status").getAsString());
+        assertEquals("90.0", results.get(1).getAsJsonObject().get("value01").getAsString());
+    }
+
     @Test
     void batchRequestMissingBaseUrlFailsValidation() throws Exception {
         startServer(2, Duration.ofSeconds(2), Duration.ofSeconds(10));
@@ -439,14 +692,375 @@ class SoftmanDevOpsServerIntegrationTest {
         assertFalse(first.get("bestValue03").getAsBoolean());
     }
 
+    @Test
+    void batchRequestGroupsMainBranchItemsIntoOneSearch() throws Exception {
+        String searchBody = "{\"measures\":["
+                + "{\"component\":\"project-b\",\"metric\":\"bugs\",\"value\":\"5\"},"
+                + "{\"component\":\"project-a\",\"metric\":\"coverage\",\"value\":\"70.0\",\"bestValue\":false}]}";
+        sonarStubServer.enqueueSearch(ResponsePlan.of(200, searchBody));
+        JsonObject measure = new JsonObject();
+        measure.addProperty("metric", "coverage");
+        measure.addProperty("value", "60.0");
+        JsonArray measures = new JsonArray();
+        measures.add(measure);
+        JsonObject component = new JsonObject();
+        component.add("measures", measures);
+        JsonObject branchResponse = new JsonObject();
+        branchResponse.add("component", component);
+        sonarStubServer.enqueue(ResponsePlan.success(branchResponse));
+
+        startServer(3, Duration.ofSeconds(2), Duration.ofSeconds(10));
+
+        JsonObject payload = new JsonObject();
+        payload.addProperty("baseurl", "http://localhost:" + sonarStubServer.port());
+        payload.addProperty("token", "token-value");
+        JsonArray data = new JsonArray();
+        JsonObject branchItem = new JsonObject();
+        branchItem.addProperty("component", "project-c");
+        branchItem.addProperty("metrics", "coverage");
+        branchItem.addProperty("branch", "develop");
+        data.add(branchItem);
+        JsonObject firstItem = new JsonObject();
+        firstItem.addProperty("component", "project-a");
+        firstItem.addProperty("metrics", "coverage,bugs");
+        data.add(firstItem);
+        JsonObject secondItem = new JsonObject();
+        secondItem.addProperty("component", "project-b");
+        secondItem.addProperty("metrics", "bugs");
+        data.add(secondItem);
+        payload.add("data", data);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics_batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
+                .build();
+
+        HttpResponse<String> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, httpResponse.statusCode());
+
+        JsonObject body = GSON.fromJson(httpResponse.body(), JsonObject.class);
+        assertEquals("SUCCESS", body.get("status").getAsString());
+        JsonArray results = body.getAsJsonArray("results");
+        assertEquals(3, results.size());
+        JsonObject branchResult = results.get(0).getAsJsonObject();
+        assertEquals("project-c", branchResult.get("component").getAsString());
+        assertEquals("60.0", branchResult.get("value01").getAsString());
+        JsonObject first = results.get(1).getAsJsonObject();
+        assertEquals("project-a", first.get("component").getAsString());
+        assertEquals("coverage", first.get("metric01").getAsString());
+        assertEquals("70.0", first.get("value01").getAsString());
+        assertEquals("bugs", first.get("metric02").getAsString());
+        assertTrue(first.get("value02").isJsonNull());
+        JsonObject second = results.get(2).getAsJsonObject();
+        assertEquals("project-b", second.get("component").getAsString());
+        assertEquals("5", second.get("value01").getAsString());
+
+        // Both calls run at once, so the stub may see them in either order.
+        CapturedRequest firstCall = sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        CapturedRequest secondCall = sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        boolean branchFirst = "/api/measures/component".equals(firstCall.uri().getPath());
+        CapturedRequest branchCall = branchFirst ? firstCall : secondCall;
+        CapturedRequest searchCall = branchFirst ? secondCall : firstCall;
+        assertEquals("/api/measures/component", branchCall.uri().getPath());
+        assertEquals("/api/measures/search", searchCall.uri().getPath());
+        assertEquals("projectKeys=project-a,project-b&metricKeys=coverage,bugs", searchCall.uri().getQuery());
+    }
+
+    @Test
+    void batchRequestMergesItemsOfTheSameBranchIntoOneCall() throws Exception {
+        String componentBody = "{\"component\":{\"measures\":["
+                + "{\"metric\":\"coverage\",\"value\":\"75.0\"},"
+                + "{\"metric\":\"bugs\",\"value\":\"3\"}]}}";
+        sonarStubServer.enqueue(ResponsePlan.of(200, componentBody));
+
+        startServer(2, Duration.ofSeconds(2), Duration.ofSeconds(10));
+
+        JsonObject payload = new JsonObject();
+        payload.addProperty("baseurl", "http://localhost:" + sonarStubServer.port());
+        payload.addProperty("token", "token-value");
+        JsonArray data = new JsonArray();
+        JsonObject firstItem = new JsonObject();
+        firstItem.addProperty("component", "project-a");
+        firstItem.addProperty("metrics", "bugs,coverage");
+        firstItem.addProperty("branch", "develop");
+        firstItem.addProperty("custid", "customer-1");
+        data.add(firstItem);
+        JsonObject secondItem = new JsonObject();
+        secondItem.addProperty("component", "project-a");
+        secondItem.addProperty("metrics", "coverage");
+        secondItem.addProperty("branch", "develop");
+        secondItem.addProperty("custid", "customer-2");
+        data.add(secondItem);
+        payload.add("data", data);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics_batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
+                .build();
+
+        HttpResponse<String> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, httpResponse.statusCode());
+
+        JsonObject body = GSON.fromJson(httpResponse.body(), JsonObject.class);
+        assertEquals("SUCCESS", body.get("status").getAsString());
+        assertEquals(2, body.get("requestedCalls").getAsInt());
+        assertEquals(1, body.get("plannedCalls").getAsInt());
+        assertEquals(0, body.get("skippedCalls").getAsInt());
+        JsonArray results = body.getAsJsonArray("results");
+        JsonObject first = results.get(0).getAsJsonObject();
+        assertEquals("customer-1", first.get("custid").getAsString());
+        assertEquals("bugs", first.get("metric01").getAsString());
+        assertEquals("3", first.get("value01").getAsString());
+        assertEquals("coverage", first.get("metric02").getAsString());
+        assertEquals("75.0", first.get("value02").getAsString());
+        JsonObject second = results.get(1).getAsJsonObject();
+        assertEquals("customer-2", second.get("custid").getAsString());
+        assertEquals("coverage", second.get("metric01").getAsString());
+        assertEquals("75.0", second.get("value01").getAsString());
+        assertFalse(second.has("metric02"));
+
+        CapturedRequest call = sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertTrue(call.uri().getQuery().contains("metricKeys=bugs,coverage"));
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(200)));
+    }
+
+    @Test
+    void jobRunsInTheBackgroundAndReportsPartialResults() throws Exception {
+        sonarStubServer.enqueue("project-a", ResponsePlan.success(componentResponse("70.0")));
+        sonarStubServer.enqueue("project-b", ResponsePlan.successWithDelay(componentResponse("80.0"), 1500));
+
+        startServer(2, Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        HttpRequest submit = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/jobs"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(branchBatchPayload("project-a", "project-b")))
+                .build();
+        long submittedAt = System.nanoTime();
+        HttpResponse<String> accepted = httpClient.send(submit, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submittedAt) < 1000);
+        assertEquals(202, accepted.statusCode());
+        String id = GSON.fromJson(accepted.body(), JsonObject.class).get("id").getAsString();
+        assertEquals("/sonar/jobs/" + id, accepted.headers().firstValue("Location").orElseThrow());
+
+        JsonObject partial = pollJob(id, job -> job.get("completed").getAsInt() >= 1);
+        assertEquals("RUNNING", partial.get("state").getAsString());
+        assertEquals(2, partial.get("total").getAsInt());
+        JsonArray partialResults = partial.getAsJsonArray("results");
+        assertEquals("70.0", partialResults.get(0).getAsJsonObject().get("value01").getAsString());
+        assertTrue(partialResults.get(1).isJsonNull());
+
+        JsonObject done = pollJob(id, job -> "DONE".equals(job.get("state").getAsString()));
+        assertEquals("SUCCESS", done.get("status").getAsString());
+        assertEquals(2, done.get("succeeded").getAsInt());
+        assertEquals("80.0", done.getAsJsonArray("results").get(1).getAsJsonObject().get("value01").getAsString());
+        assertTrue(done.has("finishedAt"));
+
+        HttpRequest unknown = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/jobs/no-such-job"))
+                .GET()
+                .build();
+        assertEquals(404, httpClient.send(unknown, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).statusCode());
+    }
+
+    @Test
+    void fullJobQueueRejectsNewJobs() throws Exception {
+        sonarStubServer.enqueue("project-a", ResponsePlan.successWithDelay(componentResponse("70.0"), 1000));
+        sonarStubServer.enqueue("project-b", ResponsePlan.success(componentResponse("80.0")));
+
+        startServer(2, Duration.ofSeconds(5), Duration.ofSeconds(10), UpstreamSettings.defaults(),
+                new JobSettings(1, 0, Duration.ofSeconds(30), Duration.ofSeconds(60), 10));
+
+        HttpRequest first = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/jobs"))
+                .POST(HttpRequest.BodyPublishers.ofString(branchBatchPayload("project-a")))
+                .build();
+        HttpResponse<String> accepted = httpClient.send(first, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(202, accepted.statusCode());
+        HttpRequest second = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/jobs"))
+                .POST(HttpRequest.BodyPublishers.ofString(branchBatchPayload("project-b")))
+                .build();
+        HttpResponse<String> rejected = httpClient.send(second, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(429, rejected.statusCode());
+        assertEquals("TOO_MANY_JOBS", GSON.fromJson(rejected.body(), JsonObject.class).get("status").getAsString());
+
+        String id = GSON.fromJson(accepted.body(), JsonObject.class).get("id").getAsString();
+        assertEquals("SUCCESS", pollJob(id, job -> "DONE".equals(job.get("state").getAsString()))
+                .get("status").getAsString());
+
+        HttpRequest statsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/stats"))
+                .GET()
+                .build();
+        JsonObject jobs = GSON.fromJson(httpClient.send(statsRequest,
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).body(), JsonObject.class)
+                .getAsJsonObject("jobs");
+        assertEquals(1, jobs.get("rejected").getAsInt());
+        assertEquals(1, jobs.get("finished").getAsInt());
+    }
+
+    @Test
+    void queuedJobStartsWhenRunningJobFinishes() throws Exception {
+        sonarStubServer.enqueue("project-a", ResponsePlan.successWithDelay(componentResponse("70.0"), 500));
+        sonarStubServer.enqueue("project-b", ResponsePlan.success(componentResponse("80.0")));
+
+        startServer(2, Duration.ofSeconds(5), Duration.ofSeconds(10), UpstreamSettings.defaults(),
+                new JobSettings(1, 1, Duration.ofSeconds(30), Duration.ofSeconds(60), 10));
+
+        String first = submitJob(branchBatchPayload("project-a"));
+        String second = submitJob(branchBatchPayload("project-b"));
+        assertEquals("QUEUED", pollJob(second, job -> true).get("state").getAsString());
+
+        assertEquals("SUCCESS", pollJob(first, job -> "DONE".equals(job.get("state").getAsString()))
+                .get("status").getAsString());
+        JsonObject queued = pollJob(second, job -> "DONE".equals(job.get("state").getAsString()));
+        assertEquals("80.0", queued.getAsJsonArray("results").get(0).getAsJsonObject().get("value01").getAsString());
+    }
+
+    @Test
+    void statsEndpointReportsCacheCounters() throws Exception {
+        JsonObject measure = new JsonObject();
+        measure.addProperty("metric", "coverage");
+        measure.addProperty("value", "80.0");
+        JsonArray measures = new JsonArray();
+        measures.add(measure);
+        JsonObject component = new JsonObject();
+        component.add("measures", measures);
+        JsonObject response = new JsonObject();
+        response.add("component", component);
+        sonarStubServer.enqueue(ResponsePlan.success(response));
+
+        startServer(2, Duration.ofSeconds(2), Duration.ofSeconds(10));
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/metrics"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(buildPayload()))
+                .build();
+        assertEquals(200, httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).statusCode());
+        assertEquals(200, httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).statusCode());
+
+        HttpRequest statsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/stats"))
+                .GET()
+                .build();
+        HttpResponse<String> statsResponse = httpClient.send(statsRequest, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, statsResponse.statusCode());
+        JsonObject cache = GSON.fromJson(statsResponse.body(), JsonObject.class).getAsJsonObject("cache");
+        assertEquals(1, cache.get("hits").getAsInt());
+        assertEquals(1, cache.get("misses").getAsInt());
+    }
+
     private void startServer(int maxConnections, Duration timeout, Duration jobTimeout) {
+        startServer(maxConnections, timeout, jobTimeout, UpstreamSettings.defaults());
+    }
+
+    private void startServer(int maxConnections,
+                             Duration timeout,
+                             Duration jobTimeout,
+                             UpstreamSettings upstreamSettings) {
+        startServer(maxConnections, timeout, jobTimeout, upstreamSettings, JobSettings.defaults());
+    }
+
+    private void startServer(int maxConnections,
+                             Duration timeout,
+                             Duration jobTimeout,
+                             UpstreamSettings upstreamSettings,
+                             JobSettings jobSettings) {
         Path logDirectory = Path.of(System.getProperty("java.io.tmpdir"));
-        ServiceConfiguration configuration = new ServiceConfiguration(serverPort, maxConnections, timeout, jobTimeout, LogLevel.INFO, logDirectory);
-        SonarMetricsService service = new SonarMetricsService(timeout, jobTimeout);
+        ServiceConfiguration configuration = ServiceConfiguration.builder()
+                .port(serverPort)
+                .maxConnections(maxConnections)
+                .requestTimeout(timeout)
+                .jobTimeout(jobTimeout)
+                .logLevel(LogLevel.INFO)
+                .logDirectory(logDirectory)
+                .upstreamSettings(upstreamSettings)
+                .jobSettings(jobSettings)
+                .build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(timeout)
+                .jobTimeout(jobTimeout)
+                .upstreamSettings(upstreamSettings)
+                .build();
         softmanServer = new SoftmanDevOpsServer(configuration, service, GSON);
         softmanServer.start();
     }
 
+    private void startServer(MetricsSource source) {
+        Path logDirectory = Path.of(System.getProperty("java.io.tmpdir"));
+        ServiceConfiguration configuration = new ServiceConfiguration(serverPort, 2, Duration.ofSeconds(2),
+                Duration.ofSeconds(10), LogLevel.INFO, logDirectory);
+        softmanServer = new SoftmanDevOpsServer(configuration, source, GSON);
+        softmanServer.start();
+    }
+
+    private String submitJob(String payload) throws Exception {
+        HttpRequest submit = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/jobs"))
+                .POST(HttpRequest.BodyPublishers.ofString(payload))
+                .build();
+        HttpResponse<String> accepted = httpClient.send(submit, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(202, accepted.statusCode());
+        return GSON.fromJson(accepted.body(), JsonObject.class).get("id").getAsString();
+    }
+
+    /**
+     * Polls a background job until {@code done} accepts its report, for at most five seconds.
+     */
+    private JsonObject pollJob(String id, Predicate<JsonObject> done) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + serverPort + "/sonar/jobs/" + id))
+                .GET()
+                .build();
+        long giveUpAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            assertEquals(200, response.statusCode());
+            JsonObject job = GSON.fromJson(response.body(), JsonObject.class);
+            if (done.test(job)) {
+                return job;
+            }
+            assertTrue(System.nanoTime() < giveUpAt, "job did not get there in time: " + job);
+            Thread.sleep(50);
+        }
+    }
+
+    private JsonObject componentResponse(String coverage) {
+        JsonObject measure = new JsonObject();
+        measure.addProperty("metric", "coverage");
+        measure.addProperty("value", coverage);
+        JsonArray measures = new JsonArray();
+        measures.add(measure);
+        JsonObject component = new JsonObject();
+        component.add("measures", measures);
+        JsonObject response = new JsonObject();
+        response.add("component", component);
+        return response;
+    }
+
+    /**
+     * Branch items, so every component gets its own call instead of a shared search.
+     */
+    private String branchBatchPayload(String... components) {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("baseurl", "http://localhost:" + sonarStubServer.port());
+        payload.addProperty("token", "token-value");
+        JsonArray data = new JsonArray();
+        for (String component : components) {
+            JsonObject item = new JsonObject();
+            item.addProperty("component", component);
+            item.addProperty("metrics", "coverage");
+            item.addProperty("branch", "develop");
+            data.add(item);
+        }
+        payload.add("data", data);
+        return payload.toString();
+    }
+
     private String buildPayload() {
         JsonObject payload = new JsonObject();
         payload.addProperty("baseurl", "http://localhost:" + sonarStubServer.port());
@@ -455,4 +1069,24 @@ class SoftmanDevOpsServerIntegrationTest {
         payload.addProperty("metrics", "coverage");
         return payload.toString();
     }
+
+    /**
+     * A source with a bug: every lookup fails with an exception no handler expects.
+     */
+    private static final class FailingMetricsSource implements MetricsSource {
+        @Override
+        public CompletableFuture<List<SonarMetricValue>> fetchMetricsAsync(SonarMetricsRequest request,
+                                                                           Instant startTime) {
+            return CompletableFuture.failedFuture(new IllegalStateException("broken source"));
+        }
+
+        @Override
+        public Map<String, Object> stats() {
+            return Map.of();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.support.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveTimeoutTest {
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @Test
+    void usesCeilingUntilEnoughSamples() {
+        AdaptiveTimeout timeout = new AdaptiveTimeout(3, Duration.ofMillis(100), Duration.ofSeconds(60));
+        LatencyHistogram latency = histogramWith(AdaptiveTimeout.MIN_SAMPLES - 1, Duration.ofMillis(50));
+
+        assertEquals(Duration.ofSeconds(60), timeout.timeoutFor(latency));
+    }
+
+    @Test
+    void scalesP99ByFactorWithinBounds() {
+        AdaptiveTimeout timeout = new AdaptiveTimeout(3, Duration.ofMillis(100), Duration.ofSeconds(60));
+
+        Duration learned = timeout.timeoutFor(histogramWith(50, Duration.ofMillis(1000)));
+        assertTrue(learned.toMillis() >= 3000 && learned.toMillis() <= 3600, "learned " + learned);
+
+        assertEquals(Duration.ofMillis(100), timeout.timeoutFor(histogramWith(50, Duration.ofMillis(5))));
+        assertEquals(Duration.ofSeconds(60), timeout.timeoutFor(histogramWith(50, Duration.ofSeconds(30))));
+    }
+
+    @Test
+    void zeroFactorDisablesLearning() {
+        AdaptiveTimeout timeout = new AdaptiveTimeout(0, Duration.ofMillis(100), Duration.ofSeconds(60));
+
+        assertEquals(Duration.ofSeconds(60), timeout.timeoutFor(histogramWith(50, Duration.ofMillis(5))));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveTimeout(-1, Duration.ZERO, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveTimeout(2, Duration.ZERO, Duration.ZERO));
+    }
+
+    private LatencyHistogram histogramWith(long samples, Duration latency) {
+        LatencyHistogram histogram = new LatencyHistogram(Duration.ofSeconds(60), clock);
+        for (long i = 0; i < samples; i++) {
+            histogram.record(latency);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,66 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.config.BackoffStrategy;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class BackoffPolicyTest {
+    private static final Duration BASE = Duration.ofMillis(500);
+    private static final Duration CAP = Duration.ofSeconds(5);
+
+    @Test
+    void exponentialDoublesUpToCap() {
+        BackoffPolicy policy = BackoffPolicy.of(BackoffStrategy.EXPONENTIAL, BASE, CAP);
+
+        assertEquals(Duration.ofMillis(500), policy.nextDelay(1, Duration.ZERO));
+        assertEquals(Duration.ofMillis(1000), policy.nextDelay(2, Duration.ZERO));
+        assertEquals(Duration.ofMillis(4000), policy.nextDelay(4, Duration.ZERO));
+        assertEquals(CAP, policy.nextDelay(5, Duration.ZERO));
+        assertEquals(CAP, policy.nextDelay(60, Duration.ZERO));
+    }
+
+    @Test
+    void fullJitterStaysWithinExponentialEnvelopeAndSpreads() {
+        BackoffPolicy policy = BackoffPolicy.of(BackoffStrategy.FULL_JITTER, BASE, CAP);
+        Set<Long> distinct = new HashSet<>();
+
+        for (int i = 0; i < 200; i++) {
+            long delay = policy.nextDelay(3, Duration.ZERO).toMillis();
+            assertTrue(delay >= 0 && delay <= 2000, "delay " + delay);
+            distinct.add(delay);
+        }
+        assertTrue(distinct.size() > 10);
+    }
+
+    @Test
+    void decorrelatedJitterGrowsFromPreviousDelayWithinCap() {
+        BackoffPolicy policy = BackoffPolicy.of(BackoffStrategy.DECORRELATED_JITTER, BASE, CAP);
+
+        for (int i = 0; i < 200; i++) {
+            long first = policy.nextDelay(1, Duration.ZERO).toMillis();
+            assertTrue(first >= 500 && first <= 1500, "first " + first);
+            long later = policy.nextDelay(2, Duration.ofSeconds(3)).toMillis();
+            assertTrue(later >= 500 && later <= 5000, "later " + later);
+        }
+    }
+
+    @Test
+    void fixedAlwaysUsesBase() {
+        BackoffPolicy policy = BackoffPolicy.of(BackoffStrategy.FIXED, BASE, CAP);
+
+        assertEquals(BASE, policy.nextDelay(1, Duration.ZERO));
+        assertEquals(BASE, policy.nextDelay(7, Duration.ofSeconds(4)));
+    }
+
+    @Test
+    void rejectsCapBelowBase() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BackoffPolicy.of(BackoffStrategy.FIXED, Duration.ofSeconds(2), Duration.ofSeconds(1)));
+    }
+}
@@ -0,0 +1,111 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.softman.devops.dto.BatchSonarMetricsRequest.BatchItem;
+import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.handler.ValidationException;
+import com.softman.devops.service.BatchPlanner.PlannedCall;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BatchPlannerTest {
+
+    @Test
+    void groupsMainBranchItemsByHostAndToken() throws Exception {
+        List<BatchItem> items = List.of(
+                item(0, "http://sonar", "token-a", "alpha", null),
+                item(1, "http://sonar/", "token-a", "beta", null),
+                item(2, "http://sonar", "token-b", "gamma", null),
+                item(3, "http://sonar", "token-a", "delta", "develop"),
+                item(4, "http://sonar", "token-a", "epsilon", null));
+
+        List<PlannedCall> calls = new BatchPlanner().plan(items);
+
+        assertEquals(3, calls.size());
+        assertTrue(calls.get(0).search());
+        assertEquals(List.of(0, 1, 4), indexes(calls.get(0)));
+        assertFalse(calls.get(1).search());
+        assertEquals(List.of(2), indexes(calls.get(1)));
+        assertFalse(calls.get(2).search());
+        assertEquals(List.of(3), indexes(calls.get(2)));
+    }
+
+    @Test
+    void chunksByDistinctComponents() throws Exception {
+        List<BatchItem> items = List.of(
+                item(0, "http://sonar", "token", "alpha", null),
+                item(1, "http://sonar", "token", "beta", null),
+                item(2, "http://sonar", "token", "alpha", null),
+                item(3, "http://sonar", "token", "gamma", null),
+                item(4, "http://sonar", "token", "delta", null));
+
+        List<PlannedCall> calls = new BatchPlanner(2).plan(items);
+
+        assertEquals(2, calls.size());
+        assertEquals(List.of(0, 1, 2), indexes(calls.get(0)));
+        assertEquals(List.of(3, 4), indexes(calls.get(1)));
+        assertTrue(calls.get(1).search());
+    }
+
+    @Test
+    void mergesSingleComponentGroupIntoOnePerItemCall() throws Exception {
+        List<BatchItem> items = List.of(
+                item(0, "http://sonar", "token", "alpha", null),
+                item(1, "http://sonar", "token", "alpha", null));
+
+        List<PlannedCall> calls = new BatchPlanner().plan(items);
+
+        assertEquals(1, calls.size());
+        assertFalse(calls.get(0).search());
+        assertEquals(List.of(0, 1), indexes(calls.get(0)));
+    }
+
+    @Test
+    void mergesItemsOfTheSameBranchAndKeepsOthersApart() throws Exception {
+        List<BatchItem> items = List.of(
+                item(0, "http://sonar", "token", "alpha", "develop", "coverage,bugs"),
+                item(1, "http://sonar", "token", "alpha", "main", "coverage"),
+                item(2, "http://sonar/", "token", "alpha", "develop", "ncloc,coverage"),
+                item(3, "http://sonar", "other-token", "alpha", "develop", "coverage"));
+
+        List<PlannedCall> calls = new BatchPlanner().plan(items);
+
+        assertEquals(3, calls.size());
+        assertEquals(List.of(0, 2), indexes(calls.get(0)));
+        assertEquals(List.of("coverage", "bugs", "ncloc"), calls.get(0).request().getMetrics());
+        assertEquals(List.of(1), indexes(calls.get(1)));
+        assertEquals(List.of(3), indexes(calls.get(2)));
+    }
+
+    @Test
+    void rejectsChunkSizeAboveSonarLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchPlanner(BatchPlanner.MAX_PROJECT_KEYS + 1));
+    }
+
+    private List<Integer> indexes(PlannedCall call) {
+        return call.items().stream().map(BatchItem::index).toList();
+    }
+
+    private BatchItem item(int index, String baseUrl, String token, String component, String branch)
+            throws ValidationException {
+        return item(index, baseUrl, token, component, branch, "coverage");
+    }
+
+    private BatchItem item(int index, String baseUrl, String token, String component, String branch, String metrics)
+            throws ValidationException {
+        JsonObject json = new JsonObject();
+        json.addProperty("baseurl", baseUrl);
+        json.addProperty("token", token);
+        json.addProperty("component", component);
+        json.addProperty("metrics", metrics);
+        if (branch != null) {
+            json.addProperty("branch", branch);
+        }
+        return new BatchItem(index, SonarMetricsRequest.fromJson(json));
+    }
+}
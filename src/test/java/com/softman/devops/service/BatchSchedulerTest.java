@@ -0,0 +1,149 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.config.BatchSchedule;
+import com.softman.devops.support.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+
+class BatchSchedulerTest {
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void wholeDeadlineStartsCallsInOrderWithoutSkippingSlowOnes() {
+        MutableClock clock = new MutableClock(START);
+        Instant jobDeadline = START.plusSeconds(4);
+        BatchScheduler scheduler = new BatchScheduler(BatchSchedule.WHOLE_DEADLINE, 1, jobDeadline, clock);
+        List<String> started = new ArrayList<>();
+        List<Instant> deadlines = new ArrayList<>();
+        CompletableFuture<String> first = new CompletableFuture<>();
+        scheduler.submit(Optional.of(Duration.ofSeconds(10)), deadline -> {
+            started.add("slow");
+            deadlines.add(deadline);
+            return first;
+        });
+        submitNamed(scheduler, started, deadlines, "second", Optional.of(Duration.ofSeconds(3)));
+        CompletableFuture<String> late = scheduler.submit(Optional.empty(),
+                deadline -> CompletableFuture.completedFuture("late"));
+
+        scheduler.start();
+        assertEquals(List.of("slow"), started);
+        clock.advance(Duration.ofSeconds(2));
+        first.complete("slow");
+        assertEquals(List.of("slow", "second"), started);
+        assertTrue(deadlines.stream().allMatch(jobDeadline::equals));
+        assertEquals("late", late.join());
+        assertEquals(0, scheduler.skipped());
+    }
+
+    @Test
+    void fairShareSplitsTimeLeftAcrossRemainingRounds() {
+        MutableClock clock = new MutableClock(START);
+        BatchScheduler scheduler = new BatchScheduler(BatchSchedule.FAIR_SHARE, 2, START.plusSeconds(12), clock);
+        List<Instant> deadlines = new ArrayList<>();
+        List<CompletableFuture<String>> upstream = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            scheduler.submit(Optional.empty(), deadline -> {
+                deadlines.add(deadline);
+                CompletableFuture<String> call = new CompletableFuture<>();
+                upstream.add(call);
+                return call;
+            });
+        }
+        assertTrue(deadlines.isEmpty());
+
+        scheduler.start();
+        assertEquals(List.of(START.plusSeconds(4), START.plusSeconds(4)), deadlines);
+
+        clock.advance(Duration.ofSeconds(2));
+        upstream.get(0).complete("done");
+        assertEquals(START.plusSeconds(7), deadlines.get(2));
+        clock.advance(Duration.ofSeconds(2));
+        upstream.get(1).complete("done");
+        assertEquals(START.plusSeconds(8), deadlines.get(3));
+    }
+
+    @Test
+    void skipsCallsThatCannotFinishWithinTheirBudget() {
+        MutableClock clock = new MutableClock(START);
+        BatchScheduler scheduler = new BatchScheduler(BatchSchedule.FAIR_SHARE, 1, START.plusSeconds(4), clock);
+        List<Integer> started = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int index = i;
+            results.add(scheduler.submit(Optional.of(Duration.ofMillis(1500)), deadline -> {
+                started.add(index);
+                return CompletableFuture.completedFuture(index);
+            }));
+        }
+
+        scheduler.start();
+
+        // With four calls left each gets 1 s; once two are skipped the others get 2 s and fit.
+        assertEquals(List.of(2, 3), started);
+        assertEquals(2, scheduler.skipped());
+        CompletionException failure = assertThrows(CompletionException.class, () -> results.get(0).join());
+        assertInstanceOf(JobDeadlineExceededException.class, failure.getCause());
+        assertEquals(3, results.get(3).join());
+    }
+
+    @Test
+    void shortestLatencyStartsFastestCallsFirstWithTheWholeDeadline() {
+        MutableClock clock = new MutableClock(START);
+        Instant jobDeadline = START.plusSeconds(10);
+        BatchScheduler scheduler = new BatchScheduler(BatchSchedule.SHORTEST_LATENCY, 1, jobDeadline, clock);
+        List<String> started = new ArrayList<>();
+        List<Instant> deadlines = new ArrayList<>();
+        submitNamed(scheduler, started, deadlines, "unknown", Optional.empty());
+        submitNamed(scheduler, started, deadlines, "slow", Optional.of(Duration.ofSeconds(3)));
+        submitNamed(scheduler, started, deadlines, "cached", Optional.of(Duration.ZERO));
+        submitNamed(scheduler, started, deadlines, "fast", Optional.of(Duration.ofMillis(200)));
+
+        scheduler.start();
+
+        assertEquals(List.of("cached", "fast", "slow", "unknown"), started);
+        assertTrue(deadlines.stream().allMatch(jobDeadline::equals));
+    }
+
+    @Test
+    void cancellingWaitingCallDropsIt() {
+        BatchScheduler scheduler = new BatchScheduler(BatchSchedule.EARLIEST_DEADLINE, 1, START.plusSeconds(10),
+                new MutableClock(START));
+        CompletableFuture<String> running = new CompletableFuture<>();
+        CompletableFuture<String> first = scheduler.submit(Optional.empty(), deadline -> running);
+        List<String> started = new ArrayList<>();
+        CompletableFuture<String> waiting = scheduler.submit(Optional.empty(), deadline -> {
+            started.add("waiting");
+            return CompletableFuture.completedFuture("waiting");
+        });
+        scheduler.start();
+
+        waiting.cancel(true);
+        running.complete("first");
+
+        assertEquals("first", first.join());
+        assertTrue(started.isEmpty());
+    }
+
+    private void submitNamed(BatchScheduler scheduler,
+                             List<String> started,
+                             List<Instant> deadlines,
+                             String name,
+                             Optional<Duration> expectedLatency) {
+        scheduler.submit(expectedLatency, deadline -> {
+            started.add(name);
+            deadlines.add(deadline);
+            return CompletableFuture.completedFuture(name);
+        });
+    }
+}
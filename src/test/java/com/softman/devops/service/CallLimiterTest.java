@@ -0,0 +1,138 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.service.CallLimiter.LimiterStats;
+import com.softman.devops.service.CallLimiter.Priority;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class CallLimiterTest {
+
+    @Test
+    void startsCallsOverTheCapOnlyWhenOthersFinish() {
+        CallLimiter limiter = new CallLimiter(2);
+        List<CompletableFuture<String>> upstream = new ArrayList<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            upstream.add(call);
+            results.add(limiter.submit(Priority.BATCH, () -> call));
+        }
+
+        LimiterStats stats = limiter.stats();
+        assertEquals(2, stats.active());
+        assertEquals(1, stats.waitingBatch());
+        assertEquals(1, stats.delayedCalls());
+
+        upstream.get(0).complete("first");
+        assertEquals("first", results.get(0).join());
+        assertEquals(2, limiter.stats().active());
+        assertEquals(0, limiter.stats().waitingBatch());
+        upstream.get(1).complete("second");
+        upstream.get(2).complete("third");
+        assertEquals("third", results.get(2).join());
+        assertEquals(0, limiter.stats().active());
+        assertEquals(2, limiter.stats().peakActive());
+    }
+
+    @Test
+    void startsWaitingInteractiveCallsBeforeBatchCalls() {
+        CallLimiter limiter = new CallLimiter(1);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        limiter.submit(Priority.BATCH, () -> running);
+        List<String> started = new ArrayList<>();
+        limiter.submit(Priority.BATCH, () -> {
+            started.add("batch");
+            return CompletableFuture.completedFuture("batch");
+        });
+        limiter.submit(Priority.INTERACTIVE, () -> {
+            started.add("interactive");
+            return CompletableFuture.completedFuture("interactive");
+        });
+
+        running.complete("done");
+
+        assertEquals(List.of("interactive", "batch"), started);
+    }
+
+    @Test
+    void startsWaitingBatchCallsInDeadlineOrder() {
+        CallLimiter limiter = new CallLimiter(1);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        limiter.submit(Priority.BATCH, () -> running);
+        Instant now = Instant.parse("2024-01-01T00:00:00Z");
+        List<String> started = new ArrayList<>();
+        limiter.submit(Priority.BATCH, () -> {
+            started.add("no deadline");
+            return CompletableFuture.completedFuture("no deadline");
+        });
+        limiter.submit(Priority.BATCH, now.plusSeconds(30), () -> {
+            started.add("later");
+            return CompletableFuture.completedFuture("later");
+        });
+        limiter.submit(Priority.BATCH, now.plusSeconds(5), () -> {
+            started.add("sooner");
+            return CompletableFuture.completedFuture("sooner");
+        });
+
+        running.complete("done");
+
+        assertEquals(List.of("sooner", "later", "no deadline"), started);
+    }
+
+    @Test
+    void cancellingWaitingCallDropsItAndCancellingRunningCallCancelsIt() {
+        CallLimiter limiter = new CallLimiter(1);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        CompletableFuture<String> first = limiter.submit(Priority.BATCH, () -> running);
+        AtomicInteger waitingStarts = new AtomicInteger();
+        CompletableFuture<String> waiting = limiter.submit(Priority.BATCH, () -> {
+            waitingStarts.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        waiting.cancel(true);
+        assertEquals(0, limiter.stats().waitingBatch());
+        first.cancel(true);
+
+        assertTrue(running.isCancelled());
+        assertEquals(0, waitingStarts.get());
+        assertEquals(0, limiter.stats().active());
+    }
+
+    @Test
+    void synchronouslyCompletingCallsDoNotNestDrains() {
+        CallLimiter limiter = new CallLimiter(1);
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        limiter.submit(Priority.BATCH, () -> blocker);
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int value = i;
+            results.add(limiter.submit(Priority.BATCH, () -> CompletableFuture.completedFuture(value)));
+        }
+
+        blocker.complete("go");
+
+        assertEquals(19_999, results.get(19_999).join());
+        assertFalse(results.stream().anyMatch(result -> !result.isDone()));
+        assertEquals(0, limiter.stats().active());
+    }
+
+    @Test
+    void unlimitedLimiterNeverQueues() {
+        CallLimiter limiter = CallLimiter.unlimited();
+        for (int i = 0; i < 100; i++) {
+            limiter.submit(Priority.BATCH, CompletableFuture::new);
+        }
+
+        assertEquals(100, limiter.stats().active());
+        assertEquals(0, limiter.stats().delayedCalls());
+    }
+}
@@ -0,0 +1,115 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.support.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @Test
+    void staysClosedUntilMinimumCallsAreRecorded() {
+        CircuitBreaker breaker = new CircuitBreaker("sonar", 50, 10, 4, Duration.ofSeconds(30), clock);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.recordFailure(false);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.stats().state());
+        assertEquals(100, breaker.stats().failureRatePercent());
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThresholdAndRejectsCalls() {
+        CircuitBreaker breaker = new CircuitBreaker("sonar", 50, 10, 4, Duration.ofSeconds(30), clock);
+        breaker.recordSuccess();
+        breaker.recordSuccess();
+        breaker.recordFailure(false);
+        breaker.recordFailure(true);
+
+        CircuitBreaker.BreakerStats stats = breaker.stats();
+        assertEquals(CircuitBreaker.State.OPEN, stats.state());
+        assertEquals(1, stats.windowTimeouts());
+        assertEquals(1, stats.trips());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.stats().rejectedCalls());
+        assertEquals(30_000, breaker.stats().openRemainingMillis());
+    }
+
+    @Test
+    void oldOutcomesSlideOutOfTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker("sonar", 50, 4, 4, Duration.ofSeconds(30), clock);
+        breaker.recordFailure(false);
+        breaker.recordSuccess();
+        breaker.recordSuccess();
+        breaker.recordSuccess();
+        breaker.recordSuccess();
+
+        assertEquals(4, breaker.stats().windowCalls());
+        assertEquals(0, breaker.stats().windowFailures());
+    }
+
+    @Test
+    void halfOpenAllowsSingleProbeAndClosesOnSuccess() {
+        CircuitBreaker breaker = openBreaker();
+
+        clock.advance(Duration.ofSeconds(30));
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.stats().state());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.stats().state());
+        assertEquals(0, breaker.stats().windowCalls());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void failedProbeReopensCircuit() {
+        CircuitBreaker breaker = openBreaker();
+
+        clock.advance(Duration.ofSeconds(30));
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure(true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.stats().state());
+        assertEquals(2, breaker.stats().trips());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void zeroThresholdDisablesBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker("sonar", 0, 2, 1, Duration.ofSeconds(30), clock);
+        breaker.recordFailure(false);
+        breaker.recordFailure(false);
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.stats().enabled());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.stats().state());
+    }
+
+    @Test
+    void constructorRejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CircuitBreaker("sonar", 101, 10, 5, Duration.ofSeconds(1), clock));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CircuitBreaker("sonar", 50, 5, 10, Duration.ofSeconds(1), clock));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CircuitBreaker("sonar", 50, 10, 5, Duration.ZERO, clock));
+    }
+
+    private CircuitBreaker openBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker("sonar", 50, 4, 2, Duration.ofSeconds(30), clock);
+        breaker.recordFailure(false);
+        breaker.recordFailure(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.stats().state());
+        return breaker;
+    }
+}
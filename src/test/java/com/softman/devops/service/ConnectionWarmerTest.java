@@ -0,0 +1,123 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.softman.devops.config.WarmupSettings;
+import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.handler.ValidationException;
+import com.softman.devops.service.ConnectionWarmer.WarmupStats;
+import com.softman.devops.support.SonarStubServer;
+import com.softman.devops.support.SonarStubServer.CapturedRequest;
+import com.softman.devops.support.SonarStubServer.ResponsePlan;
+import com.softman.devops.support.TestPorts;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionWarmerTest {
+    private SonarStubServer sonarStubServer;
+
+    @BeforeEach
+    void setUp() {
+        sonarStubServer = new SonarStubServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sonarStubServer.close();
+    }
+
+    @Test
+    void warmUpOpensConnectionsThatTheFirstCallReuses() throws Exception {
+        String baseUrl = "http://localhost:" + sonarStubServer.port();
+        try (SonarMetricsService service = service(new WarmupSettings(List.of(baseUrl), 3, Duration.ZERO))) {
+            service.warmUp().get(2, TimeUnit.SECONDS);
+
+            Set<Integer> warmedPorts = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                CapturedRequest probe = sonarStubServer.takeRequest(Duration.ofSeconds(1));
+                assertEquals("/api/server/version", probe.uri().getPath());
+                warmedPorts.add(probe.clientPort());
+            }
+            assertEquals(3, warmedPorts.size());
+
+            sonarStubServer.enqueue(ResponsePlan.success(measuresResponse()));
+            service.fetchMetrics(request(baseUrl), Instant.now());
+            assertTrue(warmedPorts.contains(sonarStubServer.takeRequest(Duration.ofSeconds(1)).clientPort()));
+
+            WarmupStats stats = service.warmupStats();
+            assertEquals(1, stats.rounds());
+            assertEquals(3, stats.probes());
+            assertEquals(0, stats.failedProbes());
+            assertEquals(1, service.upstreamStats().get(0).requests());
+        }
+    }
+
+    @Test
+    void keepAliveProbesRepeatUntilClosed() throws Exception {
+        String baseUrl = "http://localhost:" + sonarStubServer.port();
+        SonarMetricsService service = service(new WarmupSettings(List.of(baseUrl), 1, Duration.ofMillis(200)));
+        service.warmUp().get(2, TimeUnit.SECONDS);
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+
+        CapturedRequest keepAlive = sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertEquals("/api/server/version", keepAlive.uri().getPath());
+        assertTrue(service.warmupStats().rounds() >= 2);
+
+        service.close();
+        Thread.sleep(100);
+        long rounds = service.warmupStats().rounds();
+        Thread.sleep(400);
+        assertEquals(rounds, service.warmupStats().rounds());
+    }
+
+    @Test
+    void unreachableTargetDoesNotFailWarmUp() throws Exception {
+        String deadUrl = "http://localhost:" + TestPorts.findAvailablePort();
+        try (SonarMetricsService service = service(new WarmupSettings(List.of(deadUrl), 2, Duration.ZERO))) {
+            service.warmUp().get(2, TimeUnit.SECONDS);
+
+            assertEquals(2, service.warmupStats().failedProbes());
+            assertEquals(0, service.upstreamStats().get(0).failures());
+        }
+    }
+
+    private SonarMetricsService service(WarmupSettings warmupSettings) {
+        return SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(Duration.ofSeconds(10))
+                .warmupSettings(warmupSettings)
+                .build();
+    }
+
+    private JsonObject measuresResponse() {
+        JsonObject measure = new JsonObject();
+        measure.addProperty("metric", "coverage");
+        measure.addProperty("value", "85.3");
+        JsonArray measures = new JsonArray();
+        measures.add(measure);
+        JsonObject component = new JsonObject();
+        component.add("measures", measures);
+        JsonObject response = new JsonObject();
+        response.add("component", component);
+        return response;
+    }
+
+    private SonarMetricsRequest request(String baseUrl) throws ValidationException {
+        JsonObject json = new JsonObject();
+        json.addProperty("baseurl", baseUrl);
+        json.addProperty("token", "sonar-token");
+        json.addProperty("component", "warm");
+        json.addProperty("metrics", "coverage");
+        return SonarMetricsRequest.fromJson(json);
+    }
+}
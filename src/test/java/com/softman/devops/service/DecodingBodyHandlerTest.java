@@ -0,0 +1,44 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import org.junit.jupiter.api.Test;
+
+class DecodingBodyHandlerTest {
+    private static final byte[] BODY = "{\"component\":{\"measures\":[]}}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void inflatesZlibAndRawDeflate() throws IOException {
+        assertArrayEquals(BODY, decode(deflate(false), "deflate"));
+        assertArrayEquals(BODY, decode(deflate(true), "deflate"));
+    }
+
+    @Test
+    void passesIdentityThroughAndRejectsUnknownEncodings() throws IOException {
+        assertArrayEquals(BODY, decode(BODY, "identity"));
+        assertThrows(IOException.class, () -> decode(BODY, "br"));
+    }
+
+    private static byte[] decode(byte[] encoded, String encoding) throws IOException {
+        try (InputStream decoded = DecodingBodyHandler.decoder(new ByteArrayInputStream(encoded), encoding)) {
+            return decoded.readAllBytes();
+        }
+    }
+
+    private static byte[] deflate(boolean raw) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (DeflaterOutputStream outputStream = new DeflaterOutputStream(encoded,
+                new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            outputStream.write(BODY);
+        }
+        return encoded.toByteArray();
+    }
+}
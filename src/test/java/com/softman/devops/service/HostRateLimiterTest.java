@@ -0,0 +1,64 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.support.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class HostRateLimiterTest {
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+    private final Instant farDeadline = clock.instant().plus(Duration.ofMinutes(5));
+
+    @Test
+    void burstIsServedImmediatelyThenCallsAreSpacedByQps() {
+        HostRateLimiter limiter = new HostRateLimiter(2, 2, clock);
+
+        assertEquals(Duration.ZERO, limiter.reserve(farDeadline).orElseThrow());
+        assertEquals(Duration.ZERO, limiter.reserve(farDeadline).orElseThrow());
+        assertEquals(Duration.ofMillis(500), limiter.reserve(farDeadline).orElseThrow());
+        assertEquals(Duration.ofMillis(1000), limiter.reserve(farDeadline).orElseThrow());
+        assertEquals(2, limiter.stats().delayedCalls());
+    }
+
+    @Test
+    void refillsOverTime() {
+        HostRateLimiter limiter = new HostRateLimiter(1, 1, clock);
+        limiter.reserve(farDeadline);
+        assertFalse(limiter.tryAcquire());
+
+        clock.advance(Duration.ofSeconds(1));
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void rejectsReservationThatWouldMissDeadline() {
+        HostRateLimiter limiter = new HostRateLimiter(1, 1, clock);
+        limiter.reserve(farDeadline);
+
+        assertTrue(limiter.reserve(clock.instant().plusMillis(500)).isEmpty());
+        assertEquals(1, limiter.stats().deadlineRejections());
+        assertEquals(Duration.ofSeconds(1), limiter.reserve(farDeadline).orElseThrow());
+    }
+
+    @Test
+    void pauseHoldsCallsEvenWithoutQpsLimit() {
+        HostRateLimiter limiter = new HostRateLimiter(0, 1, clock);
+        limiter.pause(Duration.ofSeconds(30));
+
+        assertFalse(limiter.tryAcquire());
+        assertEquals(Duration.ofSeconds(30), limiter.reserve(farDeadline).orElseThrow());
+        assertTrue(limiter.reserve(clock.instant().plusSeconds(10)).isEmpty());
+        assertEquals(30_000, limiter.stats().pausedForMillis());
+
+        limiter.pause(Duration.ofSeconds(5));
+        assertEquals(30_000, limiter.stats().pausedForMillis());
+        assertEquals(1, limiter.stats().pauses());
+
+        clock.advance(Duration.ofSeconds(30));
+        assertTrue(limiter.tryAcquire());
+    }
+}
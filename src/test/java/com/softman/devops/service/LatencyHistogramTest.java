@@ -0,0 +1,52 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.support.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @Test
+    void reportsPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram(Duration.ofSeconds(60), clock);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(Duration.ofMillis(i * 10L));
+        }
+
+        long p50 = histogram.percentile(50, 1).orElseThrow().toMillis();
+        long p99 = histogram.percentile(99, 1).orElseThrow().toMillis();
+        assertTrue(p50 >= 500 && p50 <= 600, "p50 " + p50);
+        assertTrue(p99 >= 990 && p99 <= 1200, "p99 " + p99);
+    }
+
+    @Test
+    void requiresMinimumSamples() {
+        LatencyHistogram histogram = new LatencyHistogram(Duration.ofSeconds(60), clock);
+        histogram.record(Duration.ofMillis(40));
+
+        assertTrue(histogram.percentile(95, 2).isEmpty());
+        assertTrue(histogram.percentile(95, 1).isPresent());
+    }
+
+    @Test
+    void forgetsSamplesAfterTwoWindows() {
+        LatencyHistogram histogram = new LatencyHistogram(Duration.ofSeconds(60), clock);
+        histogram.record(Duration.ofSeconds(5));
+
+        clock.advance(Duration.ofSeconds(61));
+        histogram.record(Duration.ofMillis(20));
+        assertEquals(2, histogram.count());
+
+        clock.advance(Duration.ofSeconds(60));
+        assertEquals(1, histogram.count());
+        assertTrue(histogram.percentile(99, 1).orElseThrow().toMillis() <= 25);
+
+        clock.advance(Duration.ofSeconds(120));
+        assertEquals(0, histogram.count());
+    }
+}
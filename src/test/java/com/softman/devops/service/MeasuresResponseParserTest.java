@@ -0,0 +1,109 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.dto.SonarMetricValue;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class MeasuresResponseParserTest {
+    private final MeasuresResponseParser parser = new MeasuresResponseParser(1024 * 1024);
+
+    @Test
+    void extractsMeasuresAndSkipsUnrelatedFields() throws Exception {
+        String body = """
+                {"paging":{"total":1},
+                 "component":{"key":"k","periods":[{"index":1,"nested":{"deep":[1,2,3]}}],
+                   "measures":[
+                     {"metric":"coverage","value":"85.3","bestValue":true,"period":{"value":"1"}},
+                     {"metric":"ncloc","value":1200}
+                   ],
+                   "qualifiers":["TRK"]},
+                 "metrics":[{"key":"coverage"}]}
+                """;
+
+        List<SonarMetricValue> result = parser.parse(stream(body));
+
+        assertEquals(2, result.size());
+        assertEquals(new SonarMetricValue("coverage", "85.3", true), result.get(0));
+        assertEquals(new SonarMetricValue("ncloc", "1200", false), result.get(1));
+    }
+
+    @Test
+    void acceptsStringAndNumericBestValue() throws Exception {
+        String body = "{\"component\":{\"measures\":["
+                + "{\"metric\":\"a\",\"value\":\"1\",\"bestValue\":\"TRUE\"},"
+                + "{\"metric\":\"b\",\"value\":\"1\",\"bestValue\":0},"
+                + "{\"metric\":\"c\",\"value\":\"1\",\"bestValue\":null}]}}";
+
+        List<SonarMetricValue> result = parser.parse(stream(body));
+
+        assertTrue(result.get(0).bestValue());
+        assertFalse(result.get(1).bestValue());
+        assertFalse(result.get(2).bestValue());
+    }
+
+    @Test
+    void rejectsMissingMeasures() {
+        UpstreamErrorException exception = assertThrows(UpstreamErrorException.class,
+                () -> parser.parse(stream("{\"component\":{}}")));
+        assertEquals(502, exception.getStatusCode());
+    }
+
+    @Test
+    void rejectsNonPrimitiveMetric() {
+        assertThrows(UpstreamErrorException.class,
+                () -> parser.parse(stream("{\"component\":{\"measures\":[{\"metric\":{},\"value\":\"1\"}]}}")));
+    }
+
+    @Test
+    void rejectsMalformedJson() {
+        assertThrows(UpstreamErrorException.class, () -> parser.parse(stream("{\"component\":{\"measures\":[")));
+    }
+
+    @Test
+    void enforcesMaximumBodySize() {
+        MeasuresResponseParser smallParser = new MeasuresResponseParser(32);
+        String body = "{\"component\":{\"measures\":[{\"metric\":\"coverage\",\"value\":\"85.3\"}]}}";
+
+        UpstreamErrorException exception = assertThrows(UpstreamErrorException.class, () -> smallParser.parse(stream(body)));
+        assertEquals(502, exception.getStatusCode());
+        assertTrue(exception.getMessage().contains("exceeds 32 bytes"));
+    }
+
+    @Test
+    void groupsSearchMeasuresByComponent() throws Exception {
+        String body = """
+                {"measures":[
+                   {"metric":"coverage","value":"85.3","component":"alpha","bestValue":true},
+                   {"metric":"coverage","value":"12.0","component":"beta","period":{"value":"1"}},
+                   {"component":"alpha","metric":"bugs","value":2}
+                 ],
+                 "metrics":[{"key":"coverage"}]}
+                """;
+
+        Map<String, List<SonarMetricValue>> result = parser.parseSearch(stream(body));
+
+        assertEquals(List.of("alpha", "beta"), List.copyOf(result.keySet()));
+        assertEquals(List.of(new SonarMetricValue("coverage", "85.3", true), new SonarMetricValue("bugs", "2", false)),
+                result.get("alpha"));
+        assertEquals(List.of(new SonarMetricValue("coverage", "12.0", false)), result.get("beta"));
+    }
+
+    @Test
+    void rejectsSearchMeasureWithoutComponent() {
+        assertThrows(UpstreamErrorException.class,
+                () -> parser.parseSearch(stream("{\"measures\":[{\"metric\":\"coverage\",\"value\":\"1\"}]}")));
+    }
+
+    private InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
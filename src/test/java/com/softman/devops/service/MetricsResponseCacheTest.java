@@ -0,0 +1,153 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.service.MetricsResponseCache.CacheLookup;
+import com.softman.devops.support.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class MetricsResponseCacheTest {
+    private static final List<String> COVERAGE = List.of("coverage");
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @Test
+    void returnsStoredValueWithinTtl() {
+        MetricsResponseCache cache = new MetricsResponseCache(10, Duration.ofSeconds(30), clock);
+        cache.put(key("project-a"), COVERAGE, metrics("85.0"));
+
+        clock.advance(Duration.ofSeconds(29));
+        CacheLookup lookup = cache.lookup(key("project-a"), COVERAGE, Optional.empty());
+
+        assertTrue(lookup.isHit());
+        assertEquals("85.0", lookup.found().get(0).value());
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() {
+        MetricsResponseCache cache = new MetricsResponseCache(10, Duration.ofSeconds(30), clock);
+        cache.put(key("project-a"), COVERAGE, metrics("85.0"));
+
+        clock.advance(Duration.ofSeconds(30));
+
+        assertFalse(cache.lookup(key("project-a"), COVERAGE, Optional.empty()).isHit());
+        assertEquals(1, cache.stats().expirations());
+        assertEquals(1, cache.stats().misses());
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        MetricsResponseCache cache = new MetricsResponseCache(2, Duration.ofMinutes(1), clock);
+        cache.put(key("project-a"), COVERAGE, metrics("1"));
+        cache.put(key("project-b"), COVERAGE, metrics("2"));
+        cache.lookup(key("project-a"), COVERAGE, Optional.empty());
+        cache.put(key("project-c"), COVERAGE, metrics("3"));
+
+        assertTrue(cache.lookup(key("project-a"), COVERAGE, Optional.empty()).isHit());
+        assertFalse(cache.lookup(key("project-b"), COVERAGE, Optional.empty()).isHit());
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void maxAgeRejectsOlderEntriesWithoutRemovingThem() {
+        MetricsResponseCache cache = new MetricsResponseCache(10, Duration.ofMinutes(1), clock);
+        cache.put(key("project-a"), COVERAGE, metrics("1"));
+        clock.advance(Duration.ofSeconds(10));
+
+        assertFalse(cache.lookup(key("project-a"), COVERAGE, Optional.of(Duration.ofSeconds(5))).isHit());
+        assertTrue(cache.lookup(key("project-a"), COVERAGE, Optional.of(Duration.ofSeconds(15))).isHit());
+    }
+
+    @Test
+    void containsDoesNotCountLookups() {
+        MetricsResponseCache cache = new MetricsResponseCache(10, Duration.ofMinutes(1), clock);
+        cache.put(key("project-a"), COVERAGE, metrics("1"));
+        clock.advance(Duration.ofSeconds(10));
+
+        assertTrue(cache.contains(key("project-a"), COVERAGE, Optional.empty()));
+        assertFalse(cache.contains(key("project-a"), COVERAGE, Optional.of(Duration.ofSeconds(5))));
+        assertFalse(cache.contains(key("project-b"), COVERAGE, Optional.empty()));
+
+        MetricsResponseCache.CacheStats stats = cache.stats();
+        assertEquals(0, stats.hits());
+        assertEquals(0, stats.misses());
+    }
+
+    @Test
+    void disabledCacheNeverStores() {
+        MetricsResponseCache cache = new MetricsResponseCache(0, Duration.ofMinutes(1), clock);
+        cache.put(key("project-a"), COVERAGE, metrics("1"));
+
+        assertFalse(cache.lookup(key("project-a"), COVERAGE, Optional.empty()).isHit());
+        assertFalse(cache.stats().enabled());
+    }
+
+    @Test
+    void servesSubsetOfStoredMetricsInRequestedOrder() {
+        MetricsResponseCache cache = new MetricsResponseCache(10, Duration.ofMinutes(1), clock);
+        cache.put(key("project-a"), List.of("coverage", "bugs", "ncloc"), List.of(
+                new SonarMetricValue("coverage", "80.0", false),
+                new SonarMetricValue("bugs", "3", false),
+                new SonarMetricValue("ncloc", "1200", false)));
+
+        CacheLookup lookup = cache.lookup(key("project-a"), List.of("ncloc", "coverage"), Optional.empty());
+
+        assertTrue(lookup.isHit());
+        assertEquals(List.of("ncloc", "coverage"), lookup.found().stream().map(SonarMetricValue::metric).toList());
+    }
+
+    @Test
+    void reportsMissingMetricsOnPartialHit() {
+        MetricsResponseCache cache = new MetricsResponseCache(10, Duration.ofMinutes(1), clock);
+        cache.put(key("project-a"), COVERAGE, metrics("80.0"));
+
+        CacheLookup lookup = cache.lookup(key("project-a"), List.of("bugs", "coverage"), Optional.empty());
+
+        assertFalse(lookup.isHit());
+        assertEquals(List.of("bugs"), lookup.missing());
+        assertEquals("coverage", lookup.found().get(0).metric());
+        assertEquals(1, cache.stats().partialHits());
+    }
+
+    @Test
+    void remembersMetricsWithoutValue() {
+        MetricsResponseCache cache = new MetricsResponseCache(10, Duration.ofMinutes(1), clock);
+        cache.put(key("project-a"), List.of("coverage", "bugs"), metrics("80.0"));
+
+        CacheLookup lookup = cache.lookup(key("project-a"), List.of("coverage", "bugs"), Optional.empty());
+
+        assertTrue(lookup.isHit());
+        assertEquals(1, lookup.found().size());
+    }
+
+    @Test
+    void keyIgnoresMetricOrderButNotToken() {
+        MetricsRequestKey first = new MetricsRequestKey("http://sonar/", MetricsRequestKey.hashToken("a"),
+                "project", Optional.empty(), Optional.empty(), List.of("bugs", "coverage"));
+        MetricsRequestKey other = new MetricsRequestKey("http://sonar/", MetricsRequestKey.hashToken("b"),
+                "project", Optional.empty(), Optional.empty(), List.of("bugs", "coverage"));
+
+        assertNotEquals(first, other);
+        assertNotEquals(first.componentKey(), other.componentKey());
+        assertEquals(64, first.tokenHash().length());
+    }
+
+    private MetricsComponentKey key(String component) {
+        return new MetricsComponentKey("http://sonar/", MetricsRequestKey.hashToken("token"), component,
+                Optional.empty(), Optional.empty());
+    }
+
+    private List<SonarMetricValue> metrics(String value) {
+        return List.of(new SonarMetricValue("coverage", value, false));
+    }
+}
@@ -0,0 +1,189 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.service.MetricsResponseCache.CacheLookup;
+import com.softman.devops.service.MetricsSnapshotStore.SnapshotMetric;
+import com.softman.devops.support.MutableClock;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MetricsSnapshotStoreTest {
+    private static final long MAX_BYTES = 64 * 1024;
+    private static final Duration RETENTION = Duration.ofMinutes(10);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot-test");
+        file = directory.resolve("metrics.snapshot");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void restoresAppendedMetricsAfterReopening() {
+        try (MetricsSnapshotStore store = MetricsSnapshotStore.open(file, MAX_BYTES, RETENTION, clock)) {
+            store.append(key("project-a"), List.of("coverage", "bugs"),
+                    List.of(new SonarMetricValue("coverage", "85.0", true)), clock.instant());
+        }
+        clock.advance(Duration.ofSeconds(5));
+
+        try (MetricsSnapshotStore reopened = openIndexed(MAX_BYTES)) {
+            Map<String, SnapshotMetric> restored = reopened.take(key("project-a"));
+
+            assertEquals(new SonarMetricValue("coverage", "85.0", true), restored.get("coverage").value().orElseThrow());
+            assertTrue(restored.get("bugs").value().isEmpty());
+            assertEquals(Instant.parse("2024-01-01T00:00:00Z"), restored.get("coverage").fetchedAt());
+            assertTrue(reopened.take(key("project-a")).isEmpty());
+            assertTrue(reopened.take(key("project-b")).isEmpty());
+        }
+    }
+
+    @Test
+    void warmsResponseCacheAfterRestart() {
+        try (MetricsSnapshotStore store = MetricsSnapshotStore.open(file, MAX_BYTES, RETENTION, clock)) {
+            new MetricsResponseCache(10, RETENTION, clock, store)
+                    .put(key("project-a"), List.of("coverage"), metrics("85.0"));
+        }
+        clock.advance(Duration.ofSeconds(30));
+
+        try (MetricsSnapshotStore store = openIndexed(MAX_BYTES)) {
+            MetricsResponseCache cache = new MetricsResponseCache(10, RETENTION, clock, store);
+            CacheLookup lookup = cache.lookup(key("project-a"), List.of("coverage"), Optional.empty());
+
+            assertTrue(lookup.isHit());
+            assertEquals("85.0", lookup.found().get(0).value());
+            assertEquals(1, cache.stats().restored());
+            assertFalse(cache.lookup(key("project-a"), List.of("coverage"), Optional.of(Duration.ofSeconds(10)))
+                    .isHit());
+        }
+    }
+
+    @Test
+    void skipsMetricsOlderThanRetention() {
+        try (MetricsSnapshotStore store = MetricsSnapshotStore.open(file, MAX_BYTES, RETENTION, clock)) {
+            store.append(key("project-a"), List.of("coverage"), metrics("85.0"), clock.instant());
+        }
+        clock.advance(RETENTION.plusSeconds(1));
+
+        try (MetricsSnapshotStore reopened = openIndexed(MAX_BYTES)) {
+            assertTrue(reopened.take(key("project-a")).isEmpty());
+        }
+    }
+
+    @Test
+    void dropsIncompleteTrailingRecord() throws IOException {
+        try (MetricsSnapshotStore store = MetricsSnapshotStore.open(file, MAX_BYTES, RETENTION, clock)) {
+            store.append(key("project-a"), List.of("coverage"), metrics("85.0"), clock.instant());
+        }
+        long complete = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 42}));
+        }
+
+        try (MetricsSnapshotStore reopened = openIndexed(MAX_BYTES)) {
+            assertEquals(complete, Files.size(file));
+            assertEquals("85.0", reopened.take(key("project-a")).get("coverage").value().orElseThrow().value());
+        }
+    }
+
+    @Test
+    void compactsToNewestRecordsWithinSizeCap() throws IOException {
+        long maxBytes = 4 * 1024;
+        MetricsSnapshotStore store = MetricsSnapshotStore.open(file, maxBytes, RETENTION, clock);
+        for (int i = 0; i < 200; i++) {
+            store.append(key("project-" + (i % 5)), List.of("coverage"), metrics(String.valueOf(i)), clock.instant());
+            clock.advance(Duration.ofMillis(10));
+        }
+        store.close();
+
+        assertTrue(store.stats().compactions() > 0);
+        assertTrue(Files.size(file) <= maxBytes);
+
+        try (MetricsSnapshotStore reopened = openIndexed(maxBytes)) {
+            assertEquals("199", reopened.take(key("project-4")).get("coverage").value().orElseThrow().value());
+            assertEquals("195", reopened.take(key("project-0")).get("coverage").value().orElseThrow().value());
+        }
+    }
+
+    @Test
+    void replacesFileWithUnknownFormat() throws IOException {
+        Files.writeString(file, "not a snapshot");
+
+        try (MetricsSnapshotStore store = openIndexed(MAX_BYTES)) {
+            assertTrue(store.isEnabled());
+            assertTrue(store.take(key("project-a")).isEmpty());
+        }
+    }
+
+    @Test
+    void rejectsSizeCapTheMappingCannotHold() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MetricsSnapshotStore.open(file, 2048L * 1024 * 1024, RETENTION, clock));
+    }
+
+    @Test
+    void disabledStoreIgnoresWrites() {
+        MetricsSnapshotStore store = MetricsSnapshotStore.disabled();
+        store.append(key("project-a"), List.of("coverage"), metrics("85.0"), clock.instant());
+
+        assertFalse(store.isEnabled());
+        assertTrue(store.take(key("project-a")).isEmpty());
+    }
+
+    @Test
+    void countsEveryAppendAsWrittenOrDropped() {
+        MetricsSnapshotStore store = MetricsSnapshotStore.open(file, MAX_BYTES, RETENTION, clock);
+        for (int i = 0; i < MetricsSnapshotStore.QUEUE_CAPACITY * 4; i++) {
+            store.append(key("project-" + i), List.of("coverage"), metrics(String.valueOf(i)), clock.instant());
+        }
+        store.close();
+
+        MetricsSnapshotStore.SnapshotStats stats = store.stats();
+        assertEquals(MetricsSnapshotStore.QUEUE_CAPACITY * 4L, stats.appendedRecords() + stats.droppedAppends());
+    }
+
+    private MetricsSnapshotStore openIndexed(long maxBytes) {
+        MetricsSnapshotStore store = MetricsSnapshotStore.open(file, maxBytes, RETENTION, clock);
+        store.indexed().join();
+        return store;
+    }
+
+    private MetricsComponentKey key(String component) {
+        return new MetricsComponentKey("http://sonar/", MetricsRequestKey.hashToken("token"), component,
+                Optional.empty(), Optional.empty());
+    }
+
+    private List<SonarMetricValue> metrics(String value) {
+        return List.of(new SonarMetricValue("coverage", value, false));
+    }
+}
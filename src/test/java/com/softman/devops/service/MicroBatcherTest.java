@@ -0,0 +1,145 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.softman.devops.config.UpstreamSettings;
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.handler.ValidationException;
+import com.softman.devops.support.SonarStubServer;
+import com.softman.devops.support.SonarStubServer.CapturedRequest;
+import com.softman.devops.support.SonarStubServer.ResponsePlan;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MicroBatcherTest {
+    private SonarStubServer sonarStubServer;
+
+    @BeforeEach
+    void setUp() {
+        sonarStubServer = new SonarStubServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sonarStubServer.close();
+    }
+
+    @Test
+    void concurrentRequestsShareOneSearchCall() throws Exception {
+        sonarStubServer.enqueueSearch(ResponsePlan.of(200, "{\"measures\":["
+                + "{\"component\":\"alpha\",\"metric\":\"coverage\",\"value\":\"80\"},"
+                + "{\"component\":\"beta\",\"metric\":\"bugs\",\"value\":\"2\"}]}"));
+        SonarMetricsService service = newService(Duration.ofMillis(200), 20, Duration.ofSeconds(30));
+
+        CompletableFuture<List<SonarMetricValue>> alpha =
+                service.fetchMetricsBatchedAsync(request("alpha", "coverage"), Instant.now());
+        CompletableFuture<List<SonarMetricValue>> beta =
+                service.fetchMetricsBatchedAsync(request("beta", "bugs"), Instant.now());
+
+        assertEquals(List.of(new SonarMetricValue("coverage", "80", false)), alpha.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(new SonarMetricValue("bugs", "2", false)), beta.get(5, TimeUnit.SECONDS));
+        CapturedRequest captured = sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertEquals("/api/measures/search", captured.uri().getPath());
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(100)));
+
+        MicroBatcher.MicroBatchStats stats = service.microBatchStats();
+        assertEquals(1, stats.batches());
+        assertEquals(2, stats.batchedRequests());
+        assertEquals(2, stats.largestBatch());
+        assertEquals(1, stats.windowFlushes());
+    }
+
+    @Test
+    void fullBatchFlushesWithoutWaitingForWindow() throws Exception {
+        sonarStubServer.enqueueSearch(ResponsePlan.of(200, "{\"measures\":["
+                + "{\"component\":\"alpha\",\"metric\":\"coverage\",\"value\":\"80\"},"
+                + "{\"component\":\"beta\",\"metric\":\"coverage\",\"value\":\"90\"}]}"));
+        SonarMetricsService service = newService(Duration.ofSeconds(20), 2, Duration.ofSeconds(60));
+
+        CompletableFuture<List<SonarMetricValue>> alpha =
+                service.fetchMetricsBatchedAsync(request("alpha", "coverage"), Instant.now());
+        CompletableFuture<List<SonarMetricValue>> beta =
+                service.fetchMetricsBatchedAsync(request("beta", "coverage"), Instant.now());
+
+        assertEquals("80", alpha.get(2, TimeUnit.SECONDS).get(0).value());
+        assertEquals("90", beta.get(2, TimeUnit.SECONDS).get(0).value());
+        assertEquals(1, service.microBatchStats().sizeFlushes());
+    }
+
+    @Test
+    void nearDeadlineRequestFlushesEarly() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(componentResponse("coverage", "75")));
+        SonarMetricsService service = newService(Duration.ofSeconds(20), 20, Duration.ofSeconds(5));
+
+        List<SonarMetricValue> result = service.fetchMetricsBatchedAsync(request("alpha", "coverage"), Instant.now())
+                .get(3, TimeUnit.SECONDS);
+
+        assertEquals("75", result.get(0).value());
+        assertEquals("/api/measures/component", sonarStubServer.takeRequest(Duration.ofSeconds(1)).uri().getPath());
+        assertEquals(1, service.microBatchStats().deadlineFlushes());
+    }
+
+    @Test
+    void searchMissFallsBackToComponentCall() throws Exception {
+        sonarStubServer.enqueueSearch(ResponsePlan.of(200, "{\"measures\":["
+                + "{\"component\":\"alpha\",\"metric\":\"coverage\",\"value\":\"80\"}]}"));
+        sonarStubServer.enqueue(ResponsePlan.success(componentResponse("coverage", "10")));
+        SonarMetricsService service = newService(Duration.ofMillis(200), 20, Duration.ofSeconds(30));
+
+        CompletableFuture<List<SonarMetricValue>> alpha =
+                service.fetchMetricsBatchedAsync(request("alpha", "coverage"), Instant.now());
+        CompletableFuture<List<SonarMetricValue>> file =
+                service.fetchMetricsBatchedAsync(request("alpha:src/Main.java", "coverage"), Instant.now());
+
+        assertEquals("80", alpha.get(5, TimeUnit.SECONDS).get(0).value());
+        assertEquals("10", file.get(5, TimeUnit.SECONDS).get(0).value());
+    }
+
+    @Test
+    void disabledWindowCallsUpstreamDirectly() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(componentResponse("coverage", "75")));
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+
+        service.fetchMetricsBatchedAsync(request("alpha", "coverage"), Instant.now()).get(3, TimeUnit.SECONDS);
+
+        assertFalse(service.microBatchStats().enabled());
+        assertEquals(0, service.microBatchStats().batches());
+    }
+
+    private SonarMetricsService newService(Duration window, int maxItems, Duration jobTimeout) {
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .microBatchWindow(window)
+                .microBatchMaxItems(maxItems)
+                .build();
+        return SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(jobTimeout)
+                .upstreamSettings(settings)
+                .build();
+    }
+
+    private SonarMetricsRequest request(String component, String metrics) throws ValidationException {
+        JsonObject json = new JsonObject();
+        json.addProperty("baseurl", "http://localhost:" + sonarStubServer.port());
+        json.addProperty("token", "sonar-token");
+        json.addProperty("component", component);
+        json.addProperty("metrics", metrics);
+        return SonarMetricsRequest.fromJson(json);
+    }
+
+    private JsonObject componentResponse(String metric, String value) {
+        return JsonParser.parseString("{\"component\":{\"measures\":[{\"metric\":\"" + metric
+                + "\",\"value\":\"" + value + "\"}]}}").getAsJsonObject();
+    }
+}
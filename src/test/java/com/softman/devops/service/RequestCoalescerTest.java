@@ -0,0 +1,128 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.dto.SonarMetricValue;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTest {
+    private static final MetricsRequestKey KEY = new MetricsRequestKey("http://sonar/", MetricsRequestKey.hashToken("t"),
+            "project", Optional.empty(), Optional.empty(), List.of("coverage"));
+
+    @Test
+    void followersShareLeaderResult() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<List<SonarMetricValue>> upstream = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        List<SonarMetricValue> expected = List.of(new SonarMetricValue("coverage", "90", true));
+
+        CompletableFuture<List<SonarMetricValue>> leader = coalescer.execute(KEY, Duration.ofSeconds(5), cancellation -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<List<SonarMetricValue>> follower = coalescer.execute(KEY, Duration.ofSeconds(5), cancellation -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(List.of());
+        });
+        upstream.complete(expected);
+
+        assertSame(expected, leader.get(2, TimeUnit.SECONDS));
+        assertSame(expected, follower.get(2, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, coalescer.stats().followers());
+        assertEquals(0, coalescer.stats().inFlight());
+    }
+
+    @Test
+    void followerStopsWaitingAtItsOwnDeadline() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<List<SonarMetricValue>> upstream = new CompletableFuture<>();
+        coalescer.execute(KEY, Duration.ofSeconds(5), cancellation -> upstream);
+
+        CompletableFuture<List<SonarMetricValue>> follower = coalescer.execute(KEY, Duration.ofMillis(100),
+                cancellation -> CompletableFuture.completedFuture(List.of()));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> follower.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(JobDeadlineExceededException.class, failure.getCause());
+        assertEquals(1, coalescer.stats().inFlight());
+        upstream.complete(List.of());
+    }
+
+    @Test
+    void leaderFailureIsPropagatedToFollowers() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<List<SonarMetricValue>> upstream = new CompletableFuture<>();
+        CompletableFuture<List<SonarMetricValue>> leader = coalescer.execute(KEY, Duration.ofSeconds(5), cancellation -> upstream);
+        CompletableFuture<List<SonarMetricValue>> follower = coalescer.execute(KEY, Duration.ofSeconds(5),
+                cancellation -> CompletableFuture.completedFuture(List.of()));
+
+        upstream.completeExceptionally(new UpstreamErrorException("boom", 503));
+
+        ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(2, TimeUnit.SECONDS));
+        ExecutionException followerFailure = assertThrows(ExecutionException.class, () -> follower.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(UpstreamErrorException.class, leaderFailure.getCause());
+        assertInstanceOf(UpstreamErrorException.class, followerFailure.getCause());
+    }
+
+    @Test
+    void cancellingOneCallerDoesNotAffectOthers() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<List<SonarMetricValue>> upstream = new CompletableFuture<>();
+        CompletableFuture<List<SonarMetricValue>> leader = coalescer.execute(KEY, Duration.ofSeconds(5), cancellation -> upstream);
+        CompletableFuture<List<SonarMetricValue>> follower = coalescer.execute(KEY, Duration.ofSeconds(5),
+                cancellation -> CompletableFuture.completedFuture(List.of()));
+
+        leader.cancel(true);
+        upstream.complete(List.of(new SonarMetricValue("coverage", "1", false)));
+
+        assertEquals(1, follower.get(2, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    void cancellingEveryCallerCancelsTheSequence() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AtomicReference<CallCancellation> sequence = new AtomicReference<>();
+        CompletableFuture<List<SonarMetricValue>> upstream = new CompletableFuture<>();
+        CompletableFuture<List<SonarMetricValue>> leader = coalescer.execute(KEY, Duration.ofSeconds(5),
+                cancellation -> {
+                    sequence.set(cancellation);
+                    return cancellation.track(upstream);
+                });
+        CompletableFuture<List<SonarMetricValue>> follower = coalescer.execute(KEY, Duration.ofSeconds(5),
+                cancellation -> CompletableFuture.completedFuture(List.of()));
+
+        leader.cancel(true);
+        assertFalse(sequence.get().isCancelled());
+        follower.cancel(true);
+
+        assertTrue(sequence.get().isCancelled());
+        assertTrue(upstream.isCancelled());
+        assertEquals(1, coalescer.stats().abandoned());
+        assertEquals(0, coalescer.stats().inFlight());
+    }
+
+    @Test
+    void callerArrivingAfterAbandonmentStartsNewSequence() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        coalescer.execute(KEY, Duration.ofSeconds(5), cancellation -> new CompletableFuture<>()).cancel(true);
+
+        CompletableFuture<List<SonarMetricValue>> next = coalescer.execute(KEY, Duration.ofSeconds(5),
+                cancellation -> CompletableFuture.completedFuture(List.of()));
+
+        assertTrue(next.get(2, TimeUnit.SECONDS).isEmpty());
+        assertEquals(2, coalescer.stats().leaders());
+    }
+}
@@ -0,0 +1,87 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.support.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class RetryBudgetTest {
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @Test
+    void allowsRetriesUpToPercentOfFirstAttempts() {
+        RetryBudget budget = new RetryBudget(20, 0, Duration.ofSeconds(10), clock);
+        for (int i = 0; i < 10; i++) {
+            budget.recordFirstAttempt();
+        }
+
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+
+        RetryBudget.BudgetStats stats = budget.stats();
+        assertEquals(10, stats.windowFirstAttempts());
+        assertEquals(2, stats.windowRetries());
+        assertEquals(0, stats.availableRetries());
+        assertEquals(1, stats.deniedRetries());
+    }
+
+    @Test
+    void minimumAllowanceLetsQuietHostRetry() {
+        RetryBudget budget = new RetryBudget(20, 2, Duration.ofSeconds(10), clock);
+
+        assertTrue(budget.tryAcquireRetry());
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void attemptsExpireAfterWindow() {
+        RetryBudget budget = new RetryBudget(50, 0, Duration.ofSeconds(10), clock);
+        budget.recordFirstAttempt();
+        budget.recordFirstAttempt();
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+
+        clock.advance(Duration.ofSeconds(5));
+        budget.recordFirstAttempt();
+        budget.recordFirstAttempt();
+        assertTrue(budget.tryAcquireRetry());
+
+        clock.advance(Duration.ofSeconds(6));
+        assertEquals(2, budget.stats().windowFirstAttempts());
+        assertEquals(1, budget.stats().windowRetries());
+        assertEquals(0, budget.stats().availableRetries());
+
+        clock.advance(Duration.ofSeconds(10));
+        assertEquals(0, budget.stats().windowFirstAttempts());
+        assertEquals(0, budget.stats().windowRetries());
+    }
+
+    @Test
+    void refundedRetryCanBeTakenAgain() {
+        RetryBudget budget = new RetryBudget(20, 1, Duration.ofSeconds(10), clock);
+        assertTrue(budget.tryAcquireRetry());
+        assertFalse(budget.tryAcquireRetry());
+
+        budget.refundRetry();
+
+        assertEquals(0, budget.stats().windowRetries());
+        assertTrue(budget.tryAcquireRetry());
+    }
+
+    @Test
+    void zeroPercentDisablesBudget() {
+        RetryBudget budget = new RetryBudget(0, 0, Duration.ofSeconds(10), clock);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(budget.tryAcquireRetry());
+        }
+        assertFalse(budget.stats().enabled());
+        assertEquals(0, budget.stats().deniedRetries());
+    }
+}
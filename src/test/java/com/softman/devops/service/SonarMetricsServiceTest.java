@@ -1,11 +1,17 @@
 package com.softman.devops.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.softman.devops.config.BackoffStrategy;
+import com.softman.devops.config.HedgePolicy;
+import com.softman.devops.config.UpstreamSettings;
 import com.softman.devops.dto.SonarMetricValue;
 import com.softman.devops.dto.SonarMetricsRequest;
 import com.softman.devops.handler.ValidationException;
@@ -15,7 +21,15 @@ import com.softman.devops.support.SonarStubServer.ResponsePlan;
 import com.softman.devops.support.TestPorts;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -171,6 +185,40 @@ class SonarMetricsServiceTest {
         assertEquals(502, exception.getStatusCode());
     }
 
+    @Test
+    void decodesCompressedResponses() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.compressed(successResponse("coverage", "91.2", false), "gzip"));
+        sonarStubServer.enqueue(ResponsePlan.compressed(successResponse("bugs", "3", false), "deflate"));
+
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        String baseUrl = "http://localhost:" + sonarStubServer.port();
+        List<SonarMetricValue> gzip = service.fetchMetrics(buildRequest(baseUrl, "gzip", "coverage"), Instant.now());
+        List<SonarMetricValue> deflate = service.fetchMetrics(buildRequest(baseUrl, "deflate", "bugs"), Instant.now());
+
+        assertEquals("91.2", gzip.get(0).value());
+        assertEquals("3", deflate.get(0).value());
+        assertEquals("gzip, deflate", sonarStubServer.takeRequest(Duration.ofSeconds(1)).header("Accept-Encoding"));
+        assertEquals(2, service.upstreamStats().get(0).compressedResponses());
+        assertTrue(service.upstreamStats().get(0).bodyBytes() > 0);
+    }
+
+    @Test
+    void uncompressedHostDoesNotAskForEncoding() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("coverage", "91.2", false)));
+        String baseUrl = "http://localhost:" + sonarStubServer.port();
+        UpstreamSettings settings = UpstreamSettings.builder().uncompressedHosts(Set.of(baseUrl + "/")).build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+
+        service.fetchMetrics(buildRequest(baseUrl, "plain", "coverage"), Instant.now());
+
+        assertNull(sonarStubServer.takeRequest(Duration.ofSeconds(1)).header("Accept-Encoding"));
+        assertFalse(service.upstreamStats().get(0).compression());
+    }
+
     @Test
     void retriesOnServerError() throws Exception {
         JsonObject response = successResponse("bugs", "3", false);
@@ -270,12 +318,483 @@ class SonarMetricsServiceTest {
     @Test
     void jobTimeoutExceededDuringBackoff() throws Exception {
         sonarStubServer.enqueue(ResponsePlan.status(503));
-        SonarMetricsService service = new SonarMetricsService(Duration.ofMillis(200), Duration.ofMillis(600));
+        UpstreamSettings settings = UpstreamSettings.builder().backoffStrategy(BackoffStrategy.EXPONENTIAL).build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofMillis(200))
+                .jobTimeout(Duration.ofMillis(600))
+                .upstreamSettings(settings)
+                .build();
         SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "proj", "bugs", 3);
 
         assertThrows(JobDeadlineExceededException.class, () -> service.fetchMetrics(request, Instant.now()));
     }
 
+    @Test
+    void cancellingRequestAbortsPendingBackoff() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.status(503));
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .backoffStrategy(BackoffStrategy.FIXED)
+                .backoffBase(Duration.ofMillis(300))
+                .build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "proj", "bugs", 3);
+
+        CompletableFuture<List<SonarMetricValue>> pending = service.fetchMetricsAsync(request, Instant.now());
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        Thread.sleep(100);
+        pending.cancel(true);
+
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(600)));
+        assertEquals(1, service.coalescingStats().abandoned());
+        assertEquals(0, service.coalescingStats().inFlight());
+    }
+
+    @Test
+    void cancellingRequestAbortsInFlightExchange() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.successWithDelay(successResponse("coverage", "85.3", true), 2000));
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(5), Duration.ofSeconds(10));
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "slow", "coverage");
+
+        CompletableFuture<List<SonarMetricValue>> pending = service.fetchMetricsAsync(request, Instant.now());
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        pending.cancel(true);
+
+        assertEquals(1, service.upstreamStats().get(0).cancellations());
+        assertEquals(0, service.cacheStats().size());
+    }
+
+    @Test
+    void servesRepeatedRequestFromCache() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("coverage", "85.3", true)));
+
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "cached", "coverage");
+
+        service.fetchMetrics(request, Instant.now());
+        List<SonarMetricValue> second = service.fetchMetrics(request, Instant.now());
+
+        assertEquals("85.3", second.get(0).value());
+        assertEquals(1, service.cacheStats().hits());
+        assertEquals(1, service.cacheStats().misses());
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(100)));
+    }
+
+    @Test
+    void supersetRequestFetchesOnlyMissingMetrics() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("coverage", "85.3", true)));
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("bugs", "2", false)));
+
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        String baseUrl = "http://localhost:" + sonarStubServer.port();
+        service.fetchMetrics(buildRequest(baseUrl, "superset", "coverage"), Instant.now());
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+
+        List<SonarMetricValue> result = service.fetchMetrics(buildRequest(baseUrl, "superset", "bugs,coverage"),
+                Instant.now());
+
+        CapturedRequest partial = sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertTrue(partial.uri().getQuery().contains("metricKeys=bugs"));
+        assertFalse(partial.uri().getQuery().contains("coverage"));
+        assertEquals(List.of("bugs", "coverage"), result.stream().map(SonarMetricValue::metric).toList());
+        assertEquals(1, service.cacheStats().partialHits());
+
+        List<SonarMetricValue> subset = service.fetchMetrics(buildRequest(baseUrl, "superset", "bugs"), Instant.now());
+        assertEquals("2", subset.get(0).value());
+        assertEquals(1, service.cacheStats().hits());
+    }
+
+    @Test
+    void missReturnsMetricsInRequestOrder() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.of(200, "{\"component\":{\"measures\":["
+                + "{\"metric\":\"coverage\",\"value\":\"85.3\",\"bestValue\":true},"
+                + "{\"metric\":\"bugs\",\"value\":\"2\",\"bestValue\":false}]}}"));
+
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        String baseUrl = "http://localhost:" + sonarStubServer.port();
+        List<SonarMetricValue> result = service.fetchMetrics(buildRequest(baseUrl, "ordered", "bugs,coverage"),
+                Instant.now());
+
+        assertEquals(List.of("bugs", "coverage"), result.stream().map(SonarMetricValue::metric).toList());
+    }
+
+    @Test
+    void noCacheRequestBypassesStoredResponse() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("coverage", "80", true)));
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("coverage", "81", true)));
+
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        String baseUrl = "http://localhost:" + sonarStubServer.port();
+        service.fetchMetrics(buildRequest(baseUrl, "fresh", "coverage"), Instant.now());
+
+        JsonObject json = new JsonObject();
+        json.addProperty("baseurl", baseUrl);
+        json.addProperty("token", "sonar-token");
+        json.addProperty("component", "fresh");
+        json.addProperty("metrics", "coverage");
+        json.addProperty("no_cache", true);
+        List<SonarMetricValue> result = service.fetchMetrics(SonarMetricsRequest.fromJson(json), Instant.now());
+
+        assertEquals("81", result.get(0).value());
+    }
+
+    @Test
+    void disabledCacheAlwaysCallsUpstream() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("bugs", "1", false)));
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("bugs", "2", false)));
+
+        UpstreamSettings settings = UpstreamSettings.builder().cacheMaxEntries(0).build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "uncached", "bugs");
+
+        service.fetchMetrics(request, Instant.now());
+        List<SonarMetricValue> second = service.fetchMetrics(request, Instant.now());
+
+        assertEquals("2", second.get(0).value());
+    }
+
+    @Test
+    void serverErrorIsAnsweredFromStaleStoreAfterRetrying() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("coverage", "85.3", true)));
+        sonarStubServer.enqueue(ResponsePlan.status(503));
+        sonarStubServer.enqueue(ResponsePlan.status(503));
+
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .cacheMaxEntries(0)
+                .maxStaleness(Duration.ofMinutes(5))
+                .build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "outage", "coverage", 1);
+        service.fetchMetrics(request, Instant.now());
+
+        UpstreamErrorException failure = assertThrows(UpstreamErrorException.class,
+                () -> service.fetchMetrics(request, Instant.now()));
+        Optional<StaleMetricsStore.StaleMetrics> stale = service.staleMetrics(request, failure);
+
+        assertEquals("85.3", stale.orElseThrow().values().get(0).value());
+        assertEquals(1, service.staleStats().served());
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(200)));
+        assertTrue(service.staleMetrics(request, new UpstreamErrorException("gone", 404)).isEmpty());
+    }
+
+    @Test
+    void concurrentIdenticalRequestsShareOneUpstreamCall() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.successWithDelay(successResponse("coverage", "77", true), 500));
+
+        UpstreamSettings settings = UpstreamSettings.builder().cacheMaxEntries(0).build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "burst", "coverage", 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<CompletableFuture<List<SonarMetricValue>>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return service.fetchMetrics(request, Instant.now());
+                    } catch (Exception exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                }, executor));
+            }
+            for (CompletableFuture<List<SonarMetricValue>> future : futures) {
+                assertEquals("77", future.get(3, TimeUnit.SECONDS).get(0).value());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(100)));
+        assertEquals(1, service.coalescingStats().leaders());
+    }
+
+    @Test
+    void asyncFetchRetriesWithoutBlockingCaller() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.status(503));
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("bugs", "4", false)));
+
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "async", "bugs", 1);
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<List<SonarMetricValue>> future = service.fetchMetricsAsync(request, Instant.now());
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(400));
+
+        assertEquals("4", future.get(5, TimeUnit.SECONDS).get(0).value());
+    }
+
+    @Test
+    void asyncFetchFailsWithCheckedCause() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.status(404));
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+
+        CompletableFuture<List<SonarMetricValue>> future = service.fetchMetricsAsync(
+                buildRequest("http://localhost:" + sonarStubServer.port(), "missing", "bugs"), Instant.now());
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(UpstreamErrorException.class, failure.getCause());
+    }
+
+    @Test
+    void oversizedResponseIsRejected() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("coverage", "9".repeat(2048), false)));
+
+        UpstreamSettings settings = UpstreamSettings.builder().maxResponseBytes(1024).build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "large", "coverage", 0);
+
+        UpstreamErrorException exception = assertThrows(UpstreamErrorException.class,
+                () -> service.fetchMetrics(request, Instant.now()));
+        assertEquals(502, exception.getStatusCode());
+    }
+
+    @Test
+    void openCircuitFailsFastWithoutCallingUpstream() throws Exception {
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .breakerWindowSize(4)
+                .breakerMinimumCalls(2)
+                .build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "down", "bugs", 1);
+        sonarStubServer.enqueue(ResponsePlan.status(503));
+        sonarStubServer.enqueue(ResponsePlan.status(503));
+
+        assertThrows(UpstreamErrorException.class, () -> service.fetchMetrics(request, Instant.now()));
+        sonarStubServer.takeRequest(Duration.ofSeconds(2));
+        sonarStubServer.takeRequest(Duration.ofSeconds(2));
+
+        long startNanos = System.nanoTime();
+        assertThrows(CircuitOpenException.class, () -> service.fetchMetrics(request, Instant.now()));
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(400));
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(100)));
+
+        CircuitBreaker.BreakerStats breakerStats = service.upstreamStats().get(0).circuitBreaker();
+        assertEquals(CircuitBreaker.State.OPEN, breakerStats.state());
+        assertEquals(1, breakerStats.rejectedCalls());
+    }
+
+    @Test
+    void exhaustedRetryBudgetFailsWithoutRetrying() throws Exception {
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .retryBudgetPercent(20)
+                .retryBudgetMinRetries(0)
+                .build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(2))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "storm", "bugs", 3);
+        sonarStubServer.enqueue(ResponsePlan.status(503));
+
+        UpstreamErrorException exception = assertThrows(UpstreamErrorException.class,
+                () -> service.fetchMetrics(request, Instant.now()));
+
+        assertEquals(503, exception.getStatusCode());
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(100)));
+        RetryBudget.BudgetStats budgetStats = service.upstreamStats().get(0).retryBudget();
+        assertEquals(1, budgetStats.windowFirstAttempts());
+        assertEquals(1, budgetStats.deniedRetries());
+    }
+
+    @Test
+    void hedgedCallAnswersBeforeSlowPrimary() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.successWithDelay(successResponse("bugs", "slow", false), 1500));
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("bugs", "fast", false)));
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .hedgePolicy(HedgePolicy.fixedDelay(Duration.ofMillis(100)))
+                .build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(5))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "hedged", "bugs", 0);
+
+        long startNanos = System.nanoTime();
+        List<SonarMetricValue> result = service.fetchMetrics(request, Instant.now());
+
+        assertEquals("fast", result.get(0).value());
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(1200));
+        UpstreamHost.HostStats hostStats = service.upstreamStats().get(0);
+        assertEquals(1, hostStats.hedges());
+        assertEquals(1, hostStats.hedgeWins());
+        assertEquals(1, hostStats.retryBudget().windowRetries());
+    }
+
+    @Test
+    void losingHedgeGivesItsRetryBack() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.successWithDelay(successResponse("bugs", "primary", false), 300));
+        sonarStubServer.enqueue(ResponsePlan.successWithDelay(successResponse("bugs", "hedge", false), 1500));
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .hedgePolicy(HedgePolicy.fixedDelay(Duration.ofMillis(100)))
+                .build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(5))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "hedged", "bugs", 0);
+
+        List<SonarMetricValue> result = service.fetchMetrics(request, Instant.now());
+        Thread.sleep(200);
+
+        assertEquals("primary", result.get(0).value());
+        UpstreamHost.HostStats hostStats = service.upstreamStats().get(0);
+        assertEquals(1, hostStats.hedges());
+        assertEquals(0, hostStats.hedgeWins());
+        assertEquals(0, hostStats.retryBudget().windowRetries());
+    }
+
+    @Test
+    void noHedgeWhenPrimaryAnswersInTime() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.success(successResponse("bugs", "1", false)));
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .hedgePolicy(HedgePolicy.fixedDelay(Duration.ofMillis(500)))
+                .build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(5))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+
+        service.fetchMetrics(buildRequest("http://localhost:" + sonarStubServer.port(), "quick", "bugs", 0), Instant.now());
+        Thread.sleep(600);
+
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(100)));
+        assertEquals(0, service.upstreamStats().get(0).hedges());
+    }
+
+    @Test
+    void learnedTimeoutCutsOffSlowCallOnFastHost() throws Exception {
+        UpstreamSettings settings = UpstreamSettings.builder()
+                .cacheMaxEntries(0)
+                .adaptiveTimeoutFactor(2)
+                .adaptiveTimeoutFloor(Duration.ofMillis(300))
+                .build();
+        SonarMetricsService service = SonarMetricsService.builder()
+                .requestTimeout(Duration.ofSeconds(5))
+                .jobTimeout(Duration.ofSeconds(10))
+                .upstreamSettings(settings)
+                .build();
+        SonarMetricsRequest request = buildRequest("http://localhost:" + sonarStubServer.port(), "fast", "bugs", 0);
+        for (int i = 0; i < AdaptiveTimeout.MIN_SAMPLES; i++) {
+            sonarStubServer.enqueue(ResponsePlan.success(successResponse("bugs", "1", false)));
+            service.fetchMetrics(request, Instant.now());
+        }
+        assertEquals(300, service.upstreamStats().get(0).callTimeoutMillis());
+
+        sonarStubServer.enqueue(ResponsePlan.successWithDelay(successResponse("bugs", "2", false), 2000));
+        long startNanos = System.nanoTime();
+        assertThrows(CallTimeoutException.class, () -> service.fetchMetrics(request, Instant.now()));
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(1500));
+    }
+
+    @Test
+    void retryAfterPausesHostBeyondJobDeadline() throws Exception {
+        sonarStubServer.enqueue(ResponsePlan.withHeader(429, "Retry-After", "30"));
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        String baseUrl = "http://localhost:" + sonarStubServer.port();
+
+        long startNanos = System.nanoTime();
+        assertThrows(JobDeadlineExceededException.class,
+                () -> service.fetchMetrics(buildRequest(baseUrl, "throttled", "bugs", 3), Instant.now()));
+        assertThrows(JobDeadlineExceededException.class,
+                () -> service.fetchMetrics(buildRequest(baseUrl, "other", "bugs", 0), Instant.now()));
+
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+        sonarStubServer.takeRequest(Duration.ofSeconds(1));
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(100)));
+        HostRateLimiter.RateLimiterStats limiterStats = service.upstreamStats().get(0).rateLimiter();
+        assertEquals(1, limiterStats.pauses());
+        assertEquals(2, limiterStats.deadlineRejections());
+    }
+
+    @Test
+    void searchFetchesSeveralComponentsInOneCall() throws Exception {
+        String body = "{\"measures\":["
+                + "{\"component\":\"alpha\",\"metric\":\"coverage\",\"value\":\"80\",\"bestValue\":false},"
+                + "{\"component\":\"alpha\",\"metric\":\"bugs\",\"value\":\"3\"},"
+                + "{\"component\":\"beta\",\"metric\":\"bugs\",\"value\":\"0\",\"bestValue\":true}]}";
+        sonarStubServer.enqueueSearch(ResponsePlan.of(200, body));
+
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        String baseUrl = "http://localhost:" + sonarStubServer.port();
+        List<SonarMetricsRequest> requests = List.of(
+                buildRequest(baseUrl, "alpha", "coverage"),
+                buildRequest(baseUrl, "beta", "bugs"),
+                buildRequest(baseUrl, "gamma", "bugs"));
+
+        List<Optional<List<SonarMetricValue>>> results =
+                service.searchMetricsAsync(requests, Instant.now()).get(5, TimeUnit.SECONDS);
+        CapturedRequest captured = sonarStubServer.takeRequest(Duration.ofSeconds(1));
+
+        assertEquals("/api/measures/search", captured.uri().getPath());
+        assertEquals("projectKeys=alpha,beta,gamma&metricKeys=coverage,bugs", captured.uri().getQuery());
+        assertEquals(List.of(new SonarMetricValue("coverage", "80", false)), results.get(0).orElseThrow());
+        assertEquals(List.of(new SonarMetricValue("bugs", "0", true)), results.get(1).orElseThrow());
+        assertTrue(results.get(2).isEmpty());
+
+        List<SonarMetricValue> cached = service.fetchMetrics(requests.get(1), Instant.now());
+        assertEquals("0", cached.get(0).value());
+        assertThrows(IllegalStateException.class, () -> sonarStubServer.takeRequest(Duration.ofMillis(100)));
+    }
+
+    @Test
+    void searchRejectsBranchRequests() throws Exception {
+        SonarMetricsService service = new SonarMetricsService(Duration.ofSeconds(2), Duration.ofSeconds(10));
+        JsonObject json = new JsonObject();
+        json.addProperty("baseurl", "http://localhost:" + sonarStubServer.port());
+        json.addProperty("token", "sonar-token");
+        json.addProperty("component", "alpha");
+        json.addProperty("metrics", "coverage");
+        json.addProperty("branch", "develop");
+        SonarMetricsRequest branchRequest = SonarMetricsRequest.fromJson(json);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.searchMetricsAsync(List.of(branchRequest), Instant.now()));
+    }
+
+    @Test
+    void parsesRetryAfterSecondsAndHttpDate() {
+        Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        assertEquals(Duration.ofSeconds(7), SonarMetricsService.parseRetryAfter(" 7 ", now).orElseThrow());
+        assertEquals(Duration.ofSeconds(90),
+                SonarMetricsService.parseRetryAfter("Mon, 01 Jan 2024 00:01:30 GMT", now).orElseThrow());
+        assertTrue(SonarMetricsService.parseRetryAfter("soon", now).isEmpty());
+    }
+
     @Test
     void constructorRejectsInvalidDurations() {
         assertThrows(IllegalArgumentException.class, () -> new SonarMetricsService(Duration.ZERO, Duration.ofSeconds(1)));
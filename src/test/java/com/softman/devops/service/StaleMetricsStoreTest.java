@@ -0,0 +1,75 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.service.StaleMetricsStore.StaleMetrics;
+import com.softman.devops.support.MutableClock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class StaleMetricsStoreTest {
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    @Test
+    void servesStoredAnswerWithItsAge() {
+        StaleMetricsStore store = new StaleMetricsStore(10, Duration.ofMinutes(10), clock);
+        store.put(key("project-a"), metrics("85.0"));
+        clock.advance(Duration.ofSeconds(90));
+
+        StaleMetrics stale = store.serve(key("project-a")).orElseThrow();
+
+        assertEquals("85.0", stale.values().get(0).value());
+        assertEquals(Duration.ofSeconds(90), stale.age());
+        assertEquals(1, store.stats().served());
+    }
+
+    @Test
+    void doesNotServeAnswersOlderThanMaxStaleness() {
+        StaleMetricsStore store = new StaleMetricsStore(10, Duration.ofMinutes(10), clock);
+        store.put(key("project-a"), metrics("85.0"));
+        clock.advance(Duration.ofMinutes(11));
+
+        assertFalse(store.contains(key("project-a")));
+        assertTrue(store.serve(key("project-a")).isEmpty());
+        assertEquals(1, store.stats().tooOld());
+        assertEquals(1, store.stats().size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        StaleMetricsStore store = new StaleMetricsStore(2, Duration.ofMinutes(10), clock);
+        store.put(key("project-a"), metrics("1"));
+        store.put(key("project-b"), metrics("2"));
+        store.serve(key("project-a"));
+        store.put(key("project-c"), metrics("3"));
+
+        assertTrue(store.contains(key("project-a")));
+        assertFalse(store.contains(key("project-b")));
+        assertEquals(1, store.stats().evictions());
+    }
+
+    @Test
+    void disabledStoreNeverServes() {
+        StaleMetricsStore store = new StaleMetricsStore(10, Duration.ZERO, clock);
+        store.put(key("project-a"), metrics("1"));
+
+        assertTrue(store.serve(key("project-a")).isEmpty());
+        assertFalse(store.stats().enabled());
+        assertEquals(0, store.stats().size());
+    }
+
+    private MetricsRequestKey key(String component) {
+        return new MetricsRequestKey("http://sonar/", MetricsRequestKey.hashToken("token"), component,
+                Optional.empty(), Optional.empty(), List.of("coverage"));
+    }
+
+    private List<SonarMetricValue> metrics(String value) {
+        return List.of(new SonarMetricValue("coverage", value, false));
+    }
+}
@@ -0,0 +1,96 @@
+package com.softman.devops.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.softman.devops.config.SyntheticSourceSettings;
+import com.softman.devops.dto.SonarMetricValue;
+import com.softman.devops.dto.SonarMetricsRequest;
+import com.softman.devops.handler.ValidationException;
+import com.softman.devops.service.SyntheticMetricsSource.SyntheticStats;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+class SyntheticMetricsSourceTest {
+
+    @Test
+    void answersEveryMetricWithConfiguredValueSize() throws Exception {
+        try (SyntheticMetricsSource source = new SyntheticMetricsSource(
+                SyntheticSourceSettings.fromOption("valuebytes=12"), Duration.ofSeconds(10))) {
+            List<SonarMetricValue> values = source.fetchMetricsAsync(request("coverage,bugs"), Instant.now()).get();
+
+            assertEquals(List.of("coverage", "bugs"), values.stream().map(SonarMetricValue::metric).toList());
+            assertEquals(12, values.get(0).value().length());
+            assertEquals(1, source.syntheticStats().requests());
+        }
+    }
+
+    @Test
+    void delaysAnswerByConfiguredLatency() throws Exception {
+        try (SyntheticMetricsSource source = new SyntheticMetricsSource(
+                SyntheticSourceSettings.fromOption("latency=50"), Duration.ofSeconds(10))) {
+            long started = System.nanoTime();
+            source.fetchMetricsAsync(request("coverage"), Instant.now()).get();
+
+            assertTrue(System.nanoTime() - started >= Duration.ofMillis(50).toNanos());
+            assertEquals(50.0, source.syntheticStats().averageLatencyMillis());
+        }
+    }
+
+    @Test
+    void exponentialLatencyNeverGoesBelowItsMinimum() throws Exception {
+        try (SyntheticMetricsSource source = new SyntheticMetricsSource(
+                SyntheticSourceSettings.fromOption("latency=exp:40-41"), Duration.ofSeconds(10))) {
+            for (int i = 0; i < 3; i++) {
+                long started = System.nanoTime();
+                source.fetchMetricsAsync(request("coverage"), Instant.now()).get();
+
+                assertTrue(System.nanoTime() - started >= Duration.ofMillis(40).toNanos());
+            }
+        }
+    }
+
+    @Test
+    void failsConfiguredShareOfCallsWithServerError() throws Exception {
+        try (SyntheticMetricsSource source = new SyntheticMetricsSource(
+                SyntheticSourceSettings.fromOption("errors=100"), Duration.ofSeconds(10))) {
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> source.fetchMetricsAsync(request("coverage"), Instant.now()).get());
+
+            UpstreamErrorException cause = assertInstanceOf(UpstreamErrorException.class, exception.getCause());
+            assertEquals(503, cause.getStatusCode());
+            assertEquals(1, source.syntheticStats().failures());
+        }
+    }
+
+    @Test
+    void latencyBeyondJobDeadlineFailsAtTheDeadline() throws Exception {
+        try (SyntheticMetricsSource source = new SyntheticMetricsSource(
+                SyntheticSourceSettings.fromOption("latency=5000"), Duration.ofMillis(100))) {
+            long started = System.nanoTime();
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> source.fetchMetricsAsync(request("coverage"), Instant.now()).get());
+
+            assertInstanceOf(JobDeadlineExceededException.class, exception.getCause());
+            assertTrue(System.nanoTime() - started < Duration.ofSeconds(2).toNanos());
+            SyntheticStats stats = source.syntheticStats();
+            assertEquals(1, stats.deadlineFailures());
+            assertEquals(stats, source.stats().get("synthetic"));
+        }
+    }
+
+    private SonarMetricsRequest request(String metrics) throws ValidationException {
+        JsonObject json = new JsonObject();
+        json.addProperty("baseurl", "http://synthetic");
+        json.addProperty("token", "sonar-token");
+        json.addProperty("component", "component");
+        json.addProperty("metrics", metrics);
+        return SonarMetricsRequest.fromJson(json);
+    }
+}
@@ -5,6 +5,7 @@ import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
@@ -12,19 +13,26 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 public final class SonarStubServer implements AutoCloseable {
     private final HttpServer httpServer;
     private final ExecutorService executorService;
     private final BlockingQueue<ResponsePlan> responsePlans = new LinkedBlockingQueue<>();
+    private final BlockingQueue<ResponsePlan> searchPlans = new LinkedBlockingQueue<>();
+    private final Map<String, BlockingQueue<ResponsePlan>> componentPlans = new ConcurrentHashMap<>();
     private final BlockingQueue<CapturedRequest> capturedRequests = new LinkedBlockingQueue<>();
 
     public SonarStubServer() {
@@ -35,7 +43,11 @@ public final class SonarStubServer implements AutoCloseable {
         }
         this.executorService = Executors.newCachedThreadPool(new StubThreadFactory());
         this.httpServer.setExecutor(executorService);
-        this.httpServer.createContext("/api/measures/component", new StubHandler());
+        this.httpServer.createContext("/api/measures/component", new StubHandler(responsePlans, ResponsePlan::internalError));
+        this.httpServer.createContext("/api/measures/search", new StubHandler(searchPlans, () -> ResponsePlan.status(404)));
+        // Slow enough that concurrent warm-up probes each need their own connection.
+        this.httpServer.createContext("/api/server/version",
+                new StubHandler(new LinkedBlockingQueue<>(), () -> new ResponsePlan(200, "10.4", 100)));
         this.httpServer.start();
     }
 
@@ -47,6 +59,21 @@ public final class SonarStubServer implements AutoCloseable {
         responsePlans.add(plan);
     }
 
+    /**
+     * Queues a response for {@code /api/measures/component} calls about {@code component} only, for tests whose
+     * calls run concurrently. Such responses are used before the shared queue.
+     */
+    public void enqueue(String component, ResponsePlan plan) {
+        componentPlans.computeIfAbsent(component, ignored -> new LinkedBlockingQueue<>()).add(plan);
+    }
+
+    /**
+     * Queues a response for {@code /api/measures/search}, which answers 404 when nothing is queued.
+     */
+    public void enqueueSearch(ResponsePlan plan) {
+        searchPlans.add(plan);
+    }
+
     public CapturedRequest takeRequest(Duration timeout) throws InterruptedException {
         CapturedRequest captured = capturedRequests.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
         if (captured == null) {
@@ -62,10 +89,20 @@ public final class SonarStubServer implements AutoCloseable {
     }
 
     private final class StubHandler implements HttpHandler {
+        private final BlockingQueue<ResponsePlan> plans;
+        private final Supplier<ResponsePlan> fallback;
+
+        private StubHandler(BlockingQueue<ResponsePlan> plans, Supplier<ResponsePlan> fallback) {
+            this.plans = plans;
+            this.fallback = fallback;
+        }
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             capturedRequests.add(CapturedRequest.from(exchange));
-            ResponsePlan plan = Optional.ofNullable(responsePlans.poll()).orElse(ResponsePlan.internalError());
+            ResponsePlan plan = Optional.ofNullable(componentPlan(exchange.getRequestURI()))
+                    .or(() -> Optional.ofNullable(plans.poll()))
+                    .orElseGet(fallback);
             if (plan.delayMillis() > 0) {
                 try {
                     Thread.sleep(plan.delayMillis());
@@ -73,10 +110,11 @@ public final class SonarStubServer implements AutoCloseable {
                     Thread.currentThread().interrupt();
                 }
             }
-            byte[] body = plan.body().getBytes(StandardCharsets.UTF_8);
+            byte[] body = encode(plan.body().getBytes(StandardCharsets.UTF_8), plan.headers().get("Content-Encoding"));
             Headers headers = exchange.getResponseHeaders();
             headers.put("Content-Type", List.of("application/json"));
             headers.put("Cache-Control", List.of("no-store"));
+            plan.headers().forEach((name, value) -> headers.put(name, List.of(value)));
             exchange.sendResponseHeaders(plan.statusCode(), body.length);
             try (OutputStream outputStream = exchange.getResponseBody()) {
                 outputStream.write(body);
@@ -84,6 +122,33 @@ public final class SonarStubServer implements AutoCloseable {
         }
     }
 
+    private ResponsePlan componentPlan(URI uri) {
+        String query = uri.getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("component=")) {
+                BlockingQueue<ResponsePlan> queue = componentPlans.get(parameter.substring("component=".length()));
+                return queue == null ? null : queue.poll();
+            }
+        }
+        return null;
+    }
+
+    private static byte[] encode(byte[] body, String encoding) throws IOException {
+        if (encoding == null) {
+            return body;
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream outputStream = "gzip".equals(encoding)
+                ? new GZIPOutputStream(encoded)
+                : new DeflaterOutputStream(encoded)) {
+            outputStream.write(body);
+        }
+        return encoded.toByteArray();
+    }
+
     private static final class StubThreadFactory implements ThreadFactory {
         private final AtomicInteger counter = new AtomicInteger(1);
 
@@ -96,7 +161,11 @@ public final class SonarStubServer implements AutoCloseable {
         }
     }
 
-    public record ResponsePlan(int statusCode, String body, long delayMillis) {
+    public record ResponsePlan(int statusCode, String body, long delayMillis, Map<String, String> headers) {
+        public ResponsePlan(int statusCode, String body, long delayMillis) {
+            this(statusCode, body, delayMillis, Map.of());
+        }
+
         public static ResponsePlan success(JsonObject body) {
             return new ResponsePlan(200, body.toString(), 0);
         }
@@ -113,6 +182,17 @@ public final class SonarStubServer implements AutoCloseable {
             return new ResponsePlan(statusCode, "{}", 0);
         }
 
+        public static ResponsePlan withHeader(int statusCode, String name, String value) {
+            return new ResponsePlan(statusCode, "{}", 0, Map.of(name, value));
+        }
+
+        /**
+         * Success whose body is sent {@code gzip} or (zlib) {@code deflate} encoded.
+         */
+        public static ResponsePlan compressed(JsonObject body, String encoding) {
+            return new ResponsePlan(200, body.toString(), 0, Map.of("Content-Encoding", encoding));
+        }
+
         public static ResponsePlan internalError() {
             JsonObject error = new JsonObject();
             error.addProperty("message", "stub default error");
@@ -120,11 +200,15 @@ public final class SonarStubServer implements AutoCloseable {
         }
     }
 
-    public record CapturedRequest(String method, URI uri, Headers headers) {
+    /**
+     * {@code clientPort} identifies the connection the request arrived on.
+     */
+    public record CapturedRequest(String method, URI uri, Headers headers, int clientPort) {
         private static CapturedRequest from(HttpExchange exchange) {
             Headers copy = new Headers();
             copy.putAll(exchange.getRequestHeaders());
-            return new CapturedRequest(exchange.getRequestMethod(), exchange.getRequestURI(), copy);
+            return new CapturedRequest(exchange.getRequestMethod(), exchange.getRequestURI(), copy,
+                    exchange.getRemoteAddress().getPort());
         }
 
         public String header(String name) {